@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the twin json received by the device and the service. A new parser is used
+ * for each update, so every property is a change, as in the first GET of the twin.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwinParserBenchmark
+{
+    @Param({"4", "64"})
+    public int propertyCount;
+
+    private String fullTwinJson;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder desired = new StringBuilder();
+        StringBuilder reported = new StringBuilder();
+        for (int i = 0; i < propertyCount; i++)
+        {
+            desired.append("\"desired").append(i).append("\":{\"target\":").append(i).append(",\"mode\":\"eco\"},");
+            reported.append("\"reported").append(i).append("\":{\"current\":").append(i).append(",\"unit\":\"celsius\"},");
+        }
+
+        fullTwinJson =
+                "{" +
+                    "\"deviceId\":\"benchmark-device\"," +
+                    "\"etag\":\"AAAAAAAAAAE=\"," +
+                    "\"status\":\"enabled\"," +
+                    "\"properties\":{" +
+                        "\"desired\":{" + desired + "\"$version\":4}," +
+                        "\"reported\":{" + reported + "\"$version\":7}" +
+                    "}" +
+                "}";
+    }
+
+    @Benchmark
+    public TwinParser updateTwin()
+    {
+        TwinParser twinParser = new TwinParser();
+        twinParser.updateTwin(fullTwinJson);
+        return twinParser;
+    }
+}
@@ -0,0 +1,49 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 encoding used by the SAS token signatures (32 bytes) and by the HTTPS batch bodies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark
+{
+    @Param({"32", "1024", "65536"})
+    public int dataSize;
+
+    private byte[] data;
+    private byte[] encodedData;
+
+    @Setup
+    public void setup()
+    {
+        data = new byte[dataSize];
+        for (int i = 0; i < dataSize; i++)
+        {
+            data[i] = (byte) (i * 31);
+        }
+        encodedData = Base64.encodeBase64Local(data);
+    }
+
+    @Benchmark
+    public String encodeBase64StringLocal()
+    {
+        return Base64.encodeBase64StringLocal(data);
+    }
+
+    @Benchmark
+    public byte[] decodeBase64Local()
+    {
+        return Base64.decodeBase64Local(encodedData);
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.ws.impl;
+
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket framing of the AMQP over WebSocket transport: masking each outgoing frame,
+ * and reading the header of each incoming frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketHandlerBenchmark
+{
+    /* The sizes cover the 7 bits, 16 bits and 64 bits payload length encodings. */
+    @Param({"100", "4096", "70000"})
+    public int payloadSize;
+
+    private WebSocketHandlerImpl webSocketHandler;
+    private ByteBuffer payload;
+    private ByteBuffer frame;
+    private ByteBuffer incomingFrame;
+
+    @Setup
+    public void setup()
+    {
+        webSocketHandler = new WebSocketHandlerImpl();
+
+        payload = ByteBuffer.allocate(payloadSize);
+        for (int i = 0; i < payloadSize; i++)
+        {
+            payload.put((byte) i);
+        }
+        payload.flip();
+
+        frame = ByteBuffer.allocate(payloadSize + webSocketHandler.calculateHeaderSize(payloadSize));
+
+        // Frames from the server are not masked: FIN + binary, then the payload length.
+        incomingFrame = ByteBuffer.allocate(payloadSize + 10);
+        incomingFrame.put((byte) 0x82);
+        if (payloadSize <= 125)
+        {
+            incomingFrame.put((byte) payloadSize);
+        }
+        else if (payloadSize <= 0xFFFF)
+        {
+            incomingFrame.put((byte) 126);
+            incomingFrame.putShort((short) payloadSize);
+        }
+        else
+        {
+            incomingFrame.put((byte) 127);
+            incomingFrame.putLong(payloadSize);
+        }
+        incomingFrame.put(payload.duplicate());
+        incomingFrame.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer wrapBuffer()
+    {
+        payload.rewind();
+        frame.clear();
+        webSocketHandler.wrapBuffer(payload, frame);
+        return frame;
+    }
+
+    @Benchmark
+    public WebSocketHandler.WebsocketTuple unwrapBuffer()
+    {
+        incomingFrame.rewind();
+        return webSocketHandler.unwrapBuffer(incomingFrame);
+    }
+}
@@ -0,0 +1,39 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the device SAS token from the device key, done on every connection
+ * and on every HTTPS request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IotHubSasTokenBenchmark
+{
+    private static final String HOST_NAME = "benchmark-hub.azure-devices.net";
+    private static final String DEVICE_ID = "benchmark-device";
+    private static final String DEVICE_KEY = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    private long expiryTime;
+
+    @Setup
+    public void setup()
+    {
+        expiryTime = System.currentTimeMillis() / 1000L + 3600L;
+    }
+
+    @Benchmark
+    public String generate()
+    {
+        return new IotHubSasToken(HOST_NAME, DEVICE_ID, DEVICE_KEY, null, expiryTime).toString();
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
+import com.microsoft.azure.sdk.iot.device.Message;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Send path of the AMQPS telemetry link: the conversion of the IoT Hub message into a
+ * Proton message, and the encoding of the Proton message into the bytes of the transfer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmqpsTelemetryBenchmark
+{
+    @Param({"64", "4096", "65536"})
+    public int payloadSize;
+
+    private AmqpsDeviceTelemetry deviceTelemetry;
+    private Message message;
+    private MessageImpl protonMessage;
+
+    @Setup
+    public void setup()
+    {
+        deviceTelemetry = new AmqpsDeviceTelemetry("benchmark-device");
+
+        byte[] payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++)
+        {
+            payload[i] = (byte) ('a' + (i % 26));
+        }
+        message = new Message(payload);
+        message.setMessageId("3f2b6c1e-8d4a-4c55-9e1a-6f0d2b7a9c10");
+        message.setCorrelationId("request-42");
+        message.setProperty("sensor", "thermostat");
+        message.setProperty("unit", "celsius");
+
+        protonMessage = deviceTelemetry.iotHubMessageToProtonMessage(message);
+    }
+
+    @Benchmark
+    public MessageImpl convert()
+    {
+        return deviceTelemetry.iotHubMessageToProtonMessage(message);
+    }
+
+    @Benchmark
+    public byte[] encode()
+    {
+        return AmqpMessageEncoder.encode(protonMessage);
+    }
+
+    @Benchmark
+    public byte[] convertAndEncode()
+    {
+        return AmqpMessageEncoder.encode(deviceTelemetry.iotHubMessageToProtonMessage(message));
+    }
+}
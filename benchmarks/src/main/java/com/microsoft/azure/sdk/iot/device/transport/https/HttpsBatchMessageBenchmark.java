@@ -0,0 +1,53 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembly of the HTTPS batch body, from the single messages to the final JSON array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpsBatchMessageBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int messageCount;
+
+    private HttpsSingleMessage[] singleMessages;
+
+    @Setup
+    public void setup()
+    {
+        singleMessages = new HttpsSingleMessage[messageCount];
+        for (int i = 0; i < messageCount; i++)
+        {
+            Message message = new Message(("{\"temperature\":21.5,\"humidity\":43,\"sequence\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+            message.setMessageId("message-" + i);
+            message.setProperty("sensor", "thermostat");
+            singleMessages[i] = HttpsSingleMessage.parseHttpsMessage(message);
+        }
+    }
+
+    @Benchmark
+    public byte[] buildBatch() throws IotHubSizeExceededException
+    {
+        HttpsBatchMessage batchMessage = new HttpsBatchMessage();
+        for (HttpsSingleMessage singleMessage : singleMessages)
+        {
+            batchMessage.addMessage(singleMessage);
+        }
+
+        return batchMessage.getBody();
+    }
+}
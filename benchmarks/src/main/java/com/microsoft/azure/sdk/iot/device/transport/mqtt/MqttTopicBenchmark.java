@@ -0,0 +1,82 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.SSLContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Topic handling of the MQTT transport: the publish topic that {@link MqttMessaging#send(Message)}
+ * builds for each telemetry message, and the properties that {@link Mqtt#receive()} parses from
+ * each cloud-to-device topic. Both helpers are private, so they are called through method handles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MqttTopicBenchmark
+{
+    private static final String DEVICE_ID = "benchmark-device";
+    private static final byte[] PAYLOAD = "{\"temperature\":21.5,\"humidity\":43}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"0", "4", "16"})
+    public int propertyCount;
+
+    private MqttMessaging mqttMessaging;
+    private MethodHandle buildPublishTopic;
+    private MethodHandle constructMessage;
+
+    private Message message;
+    private String receivedTopic;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        // The connection only creates the client; nothing is connected.
+        MqttConnection mqttConnection = new MqttConnection("ssl://localhost:8883", DEVICE_ID, "userName", "password", SSLContext.getDefault());
+        mqttMessaging = new MqttMessaging(mqttConnection, DEVICE_ID);
+
+        Method buildPublishTopicMethod = MqttMessaging.class.getDeclaredMethod("buildPublishTopic", Message.class);
+        buildPublishTopicMethod.setAccessible(true);
+        buildPublishTopic = MethodHandles.lookup().unreflect(buildPublishTopicMethod);
+
+        Method constructMessageMethod = Mqtt.class.getDeclaredMethod("constructMessage", byte[].class, String.class);
+        constructMessageMethod.setAccessible(true);
+        constructMessage = MethodHandles.lookup().unreflect(constructMessageMethod);
+
+        message = new Message(PAYLOAD);
+        message.setMessageId("3f2b6c1e-8d4a-4c55-9e1a-6f0d2b7a9c10");
+        message.setCorrelationId("request 42");
+        for (int i = 0; i < propertyCount; i++)
+        {
+            message.setProperty("property" + i, "value " + i);
+        }
+
+        // A device-bound message carries the same properties as the telemetry message.
+        receivedTopic = "devices/" + DEVICE_ID + "/messages/devicebound/"
+                + ((String) buildPublishTopic.invoke(mqttMessaging, message)).substring(("devices/" + DEVICE_ID + "/messages/events/").length());
+    }
+
+    @Benchmark
+    public String buildPublishTopic() throws Throwable
+    {
+        return (String) buildPublishTopic.invoke(mqttMessaging, message);
+    }
+
+    @Benchmark
+    public Message constructReceivedMessage() throws Throwable
+    {
+        return (Message) constructMessage.invoke((Mqtt) mqttMessaging, PAYLOAD, receivedTopic);
+    }
+}
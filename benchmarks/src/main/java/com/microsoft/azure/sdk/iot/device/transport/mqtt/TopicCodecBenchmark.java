@@ -0,0 +1,128 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TopicCodec} against the JDK URL codec, and the single pass parsing of the properties of
+ * a received topic against the former parsing, which split the topic on '&amp;', then each property
+ * twice on '=', and decoded every key and value with {@link URLDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicCodecBenchmark
+{
+    private static final String UTF_8 = StandardCharsets.UTF_8.name();
+    private static final int PROPERTY_COUNT = 8;
+
+    /* plain values have nothing to encode, which is the case of most keys and values. */
+    @Param({"plain", "escaped"})
+    public String valueKind;
+
+    private String value;
+    private String encodedValue;
+    private String propertiesString;
+    private String[] keysAndValues;
+    private StringBuilder builder;
+
+    @Setup
+    public void setup() throws UnsupportedEncodingException
+    {
+        value = "plain".equals(valueKind) ? "3f2b6c1e-8d4a-4c55-9e1a-6f0d2b7a9c10" : "room 42/floor #3 & hall=east (50%)";
+        encodedValue = URLEncoder.encode(value, UTF_8);
+
+        StringBuilder properties = new StringBuilder("%24.mid=").append(encodedValue);
+        for (int i = 0; i < PROPERTY_COUNT; i++)
+        {
+            properties.append("&property").append(i).append('=').append(encodedValue);
+        }
+        propertiesString = properties.toString();
+
+        keysAndValues = new String[(PROPERTY_COUNT + 1) * 2];
+        builder = new StringBuilder(128);
+    }
+
+    @Benchmark
+    public int appendEncoded()
+    {
+        builder.setLength(0);
+        TopicCodec.appendEncoded(builder, value);
+        return builder.length();
+    }
+
+    @Benchmark
+    public int urlEncoderEncode() throws UnsupportedEncodingException
+    {
+        builder.setLength(0);
+        builder.append(URLEncoder.encode(value, UTF_8));
+        return builder.length();
+    }
+
+    @Benchmark
+    public String decode()
+    {
+        return TopicCodec.decode(encodedValue, 0, encodedValue.length());
+    }
+
+    @Benchmark
+    public String urlDecoderDecode() throws UnsupportedEncodingException
+    {
+        return URLDecoder.decode(encodedValue, UTF_8);
+    }
+
+    /* The loop of Mqtt.assignPropertiesToMessage, without the Message. */
+    @Benchmark
+    public String[] parseProperties()
+    {
+        int length = propertiesString.length();
+        int propertyStartIndex = 0;
+        int index = 0;
+        while (propertyStartIndex < length)
+        {
+            int propertyEndIndex = propertiesString.indexOf('&', propertyStartIndex);
+            if (propertyEndIndex == -1)
+            {
+                propertyEndIndex = length;
+            }
+
+            int keyValueSeparatorIndex = propertiesString.indexOf('=', propertyStartIndex);
+            keysAndValues[index++] = TopicCodec.decode(propertiesString, propertyStartIndex, keyValueSeparatorIndex);
+            keysAndValues[index++] = TopicCodec.decode(propertiesString, keyValueSeparatorIndex + 1, propertyEndIndex);
+
+            propertyStartIndex = propertyEndIndex + 1;
+        }
+
+        return keysAndValues;
+    }
+
+    /* The loop that Mqtt.assignPropertiesToMessage used before TopicCodec, without the Message. */
+    @Benchmark
+    public String[] parsePropertiesWithSplit() throws UnsupportedEncodingException
+    {
+        int index = 0;
+        for (String propertyString : propertiesString.split(String.valueOf('&')))
+        {
+            if (propertyString.contains("="))
+            {
+                String key = propertyString.split("=")[0];
+                String value = propertyString.split("=")[1];
+                keysAndValues[index++] = URLDecoder.decode(key, UTF_8);
+                keysAndValues[index++] = URLDecoder.decode(value, UTF_8);
+            }
+        }
+
+        return keysAndValues;
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the service SAS token from the shared access policy, done by the service
+ * clients for each request when no cached token is available.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IotHubServiceSasTokenBenchmark
+{
+    private static final String CONNECTION_STRING =
+            "HostName=benchmark-hub.azure-devices.net;" +
+            "SharedAccessKeyName=iothubowner;" +
+            "SharedAccessKey=AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    private IotHubConnectionString iotHubConnectionString;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+    }
+
+    @Benchmark
+    public String generate()
+    {
+        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representation of the result of a bulk registry operation, with a Json deserializer and serializer.
+ */
+public class BulkRegistryOperationResultParser
+{
+    private static final Gson gson = GsonInstances.DEFAULT;
+
+    private static final String IS_SUCCESSFUL_NAME = "isSuccessful";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(IS_SUCCESSFUL_NAME)
+    private boolean isSuccessful;
+
+    private static final String ERRORS_NAME = "errors";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(ERRORS_NAME)
+    private List<DeviceRegistryOperationErrorParser> errors;
+
+    /**
+     * Empty constructor
+     */
+    public BulkRegistryOperationResultParser()
+    {
+    }
+
+    /**
+     * Constructor for a BulkRegistryOperationResultParser that is constructed from Json.
+     * @param json the json to build from.
+     */
+    public BulkRegistryOperationResultParser(String json)
+    {
+        if (json == null || json.isEmpty())
+        {
+            //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
+        BulkRegistryOperationResultParser parser;
+        try
+        {
+            //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_002: [This constructor shall create and return an instance of a BulkRegistryOperationResultParser object based off the provided json.]
+            parser = gson.fromJson(json, BulkRegistryOperationResultParser.class);
+        }
+        catch (JsonSyntaxException e)
+        {
+            //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+            throw new IllegalArgumentException("The provided json could not be parsed");
+        }
+
+        if (parser == null)
+        {
+            //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+            throw new IllegalArgumentException("The provided json could not be parsed");
+        }
+
+        this.isSuccessful = parser.isSuccessful;
+        this.errors = parser.errors;
+    }
+
+    /**
+     * Converts this into a json string.
+     * @return the json representation of this.
+     */
+    public String toJson()
+    {
+        //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_001: [This method shall return a json representation of this.]
+        return gson.toJson(this);
+    }
+
+    /**
+     * Getter for isSuccessful
+     *
+     * @return The value of isSuccessful
+     */
+    public boolean isSuccessful()
+    {
+        //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_004: [This method shall return the value of this object's isSuccessful.]
+        return isSuccessful;
+    }
+
+    /**
+     * Setter for isSuccessful
+     *
+     * @param isSuccessful the value to set isSuccessful to
+     */
+    public void setSuccessful(boolean isSuccessful)
+    {
+        //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_005: [This method shall set the value of this object's isSuccessful equal to the provided value.]
+        this.isSuccessful = isSuccessful;
+    }
+
+    /**
+     * Getter for errors
+     *
+     * @return The errors of the devices that failed, or an empty list if there are none
+     */
+    public List<DeviceRegistryOperationErrorParser> getErrors()
+    {
+        if (errors == null)
+        {
+            //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_007: [If this object has no errors, this method shall return an empty list.]
+            return new ArrayList<DeviceRegistryOperationErrorParser>();
+        }
+
+        //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_006: [This method shall return the value of this object's errors.]
+        return errors;
+    }
+
+    /**
+     * Setter for errors
+     *
+     * @param errors the value to set errors to
+     */
+    public void setErrors(List<DeviceRegistryOperationErrorParser> errors)
+    {
+        //Codes_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_008: [This method shall set the value of this object's errors equal to the provided value.]
+        this.errors = errors;
+    }
+}
@@ -70,7 +70,7 @@ public class DeviceParser
     @SerializedName(AUTHENTICATION_NAME)
     private AuthenticationParser authenticationParser;
 
-    private transient Gson gson = new Gson();
+    private static final Gson gson = GsonInstances.DEFAULT;
 
     /**
      * Converts this into json format and returns it
@@ -0,0 +1,38 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Gson instances shared by the serializer classes, one for each configuration they use.
+ *
+ * Gson is immutable and thread safe, and caches the type adapter of each class it serializes, so
+ * sharing the instances builds each adapter only once, instead of once per serialized object.
+ */
+final class GsonInstances
+{
+    /** Default configuration, which escapes html characters and omits null fields. */
+    static final Gson DEFAULT = new Gson();
+
+    /** Keeps html characters as they are, and omits null fields. */
+    static final Gson NO_HTML_ESCAPING = new GsonBuilder().disableHtmlEscaping().create();
+
+    /** Escapes html characters, and includes null fields. */
+    static final Gson SERIALIZE_NULLS = new GsonBuilder().serializeNulls().create();
+
+    /** Keeps html characters as they are, and includes null fields. */
+    static final Gson NO_HTML_ESCAPING_SERIALIZE_NULLS = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+    /** Serializes complex map keys as arrays, and includes null fields. */
+    static final Gson COMPLEX_MAP_KEYS_SERIALIZE_NULLS = new GsonBuilder().enableComplexMapKeySerialization().serializeNulls().create();
+
+    /** Keeps html characters as they are, omits null fields, and ignores inner classes, for the twin collections. */
+    static final Gson TWIN = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
+
+    private GsonInstances()
+    {
+    }
+}
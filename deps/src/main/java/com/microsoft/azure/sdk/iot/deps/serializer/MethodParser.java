@@ -151,7 +151,7 @@ public class MethodParser
         }
 
         /* Codes_SRS_METHODPARSER_21_007: [The json can contain values `null`, `"null"`, and `""`, which represents null, the string null, and empty string respectively.] */
-        Gson gson = new GsonBuilder().serializeNulls().create();
+        Gson gson = GsonInstances.SERIALIZE_NULLS;
 
         /* Codes_SRS_METHODPARSER_21_006: [The fromJson shall parse the json and fill the method collection.] */
         if(json.contains(METHOD_NAME_TAG))
@@ -303,7 +303,7 @@ public class MethodParser
         /* Codes_SRS_METHODPARSER_21_019: [If the payload is null, the toJsonElement shall include `payload` with value `null`.] */
         /* Codes_SRS_METHODPARSER_21_024: [The class toJsonElement include status as `status` in the json.] */
         /* Codes_SRS_METHODPARSER_21_025: [If the status is null, the toJsonElement shall include `status` as `null`.] */
-        Gson gson = new GsonBuilder().enableComplexMapKeySerialization().serializeNulls().create();
+        Gson gson = GsonInstances.COMPLEX_MAP_KEYS_SERIALIZE_NULLS;
         JsonObject jsonProperty = new JsonObject();
 
         switch(operation)
@@ -6,10 +6,14 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.MalformedJsonException;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -28,7 +32,7 @@ public class QueryResponseParser
     public QueryResponseParser(String json) throws IllegalArgumentException
     {
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_001: [The constructor shall create an instance of the QueryResponseParser.]
-        gson = new GsonBuilder().disableHtmlEscaping().create();
+        gson = GsonInstances.NO_HTML_ESCAPING;
 
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_003: [If the provided json is null, empty, or not valid, the constructor shall throws IllegalArgumentException.]
         ParserUtility.validateStringUTF8(json);
@@ -44,6 +48,55 @@ public class QueryResponseParser
         }
     }
 
+    /**
+     * CONSTRUCTOR
+     * Create an instance of the QueryResponseParser parsing the json while it is read from the provided reader,
+     * so the response does not need to be buffered first.
+     *
+     * @param json is the reader that provides a valid json with the QueryResponse.
+     * @throws IllegalArgumentException if the json is null, empty, or not valid.
+     * @throws IOException if the json could not be read from the reader.
+     */
+    public QueryResponseParser(Reader json) throws IllegalArgumentException, IOException
+    {
+        if (json == null)
+        {
+            //Codes_SRS_QUERY_RESPONSE_PARSER_21_001: [If the provided reader is null or provides an empty json, the constructor shall throws IllegalArgumentException.]
+            throw new IllegalArgumentException("json reader cannot be null");
+        }
+
+        gson = GsonInstances.NO_HTML_ESCAPING;
+
+        try
+        {
+            this.jsonItems = gson.fromJson(json, JsonObject[].class);
+        }
+        catch (JsonIOException e)
+        {
+            //Codes_SRS_QUERY_RESPONSE_PARSER_21_003: [If the json could not be read from the reader, the constructor shall throws IOException.]
+            throw new IOException("Could not read the json", e);
+        }
+        catch (JsonSyntaxException malformed)
+        {
+            // Gson reports the failures of the reader as syntax errors, with the IOException as the cause.
+            Throwable cause = malformed.getCause();
+            if ((cause instanceof IOException) && !(cause instanceof MalformedJsonException) && !(cause instanceof EOFException))
+            {
+                //Codes_SRS_QUERY_RESPONSE_PARSER_21_003: [If the json could not be read from the reader, the constructor shall throws IOException.]
+                throw new IOException("Could not read the json", cause);
+            }
+
+            //Codes_SRS_QUERY_RESPONSE_PARSER_21_002: [If the provided reader do not provide a valid array of json items the constructor shall throws IllegalArgumentException.]
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+
+        if (this.jsonItems == null)
+        {
+            //Codes_SRS_QUERY_RESPONSE_PARSER_21_001: [If the provided reader is null or provides an empty json, the constructor shall throws IllegalArgumentException.]
+            throw new IllegalArgumentException("json cannot be empty");
+        }
+    }
+
     /**
      * Getter for Json Items from Json Array
      * @return the array of json as string
@@ -0,0 +1,132 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * INNER TWINPARSER CLASS
+ *
+ * Reads a twin json in a single pass of a {@link JsonReader}, into the tree of maps used by the
+ * twin collections. The values have the same types that Gson gives to an {@code Object}: {@code Double}
+ * for numbers, and maps and lists for objects and arrays.
+ */
+final class TwinJsonReader
+{
+    private static final Gson GSON = GsonInstances.TWIN;
+    private static final TypeAdapter<Object> VALUE_ADAPTER = GSON.getAdapter(Object.class);
+    private static final TypeAdapter<JsonElement> ELEMENT_ADAPTER = GSON.getAdapter(JsonElement.class);
+
+    private static final String TAGS_TAG = "tags";
+    private static final String PROPERTIES_TAG = "properties";
+    private static final String DESIRED_TAG = "desired";
+    private static final String REPORTED_TAG = "reported";
+
+    private TwinJsonReader()
+    {
+    }
+
+    /**
+     * Reads a json object. A duplicated key in the first level is an error, and a duplicated key in
+     * an inner level keeps the last value.
+     *
+     * @param json the json to read.
+     * @param otherFields if not null, the object that receives a copy of the first level fields that
+     *                    are not `properties`, `tags`, `desired`, or `reported`.
+     * @return the first level of the json object, or null if the json has no content.
+     * @throws IllegalArgumentException if the json is not a well formed json object.
+     */
+    static Map<String, Object> read(String json, JsonObject otherFields) throws IllegalArgumentException
+    {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        try
+        {
+            JsonToken token;
+            try
+            {
+                token = reader.peek();
+            }
+            catch (EOFException e)
+            {
+                return null;
+            }
+
+            if (token == JsonToken.NULL)
+            {
+                reader.nextNull();
+                return null;
+            }
+
+            Map<String, Object> tree = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String key = reader.nextName();
+                Object value;
+                if ((otherFields != null) && !isTwinCollection(key))
+                {
+                    JsonElement element = ELEMENT_ADAPTER.read(reader);
+                    otherFields.add(key, element);
+                    value = VALUE_ADAPTER.fromJsonTree(element);
+                }
+                else
+                {
+                    value = VALUE_ADAPTER.read(reader);
+                }
+
+                if (tree.put(key, value) != null)
+                {
+                    throw new IllegalArgumentException("Malformed Json: duplicate key " + key);
+                }
+            }
+            reader.endObject();
+
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+            {
+                throw new IllegalArgumentException("Malformed Json: content after the end of the object");
+            }
+
+            return tree;
+        }
+        catch (IOException | IllegalStateException | JsonParseException e)
+        {
+            throw new IllegalArgumentException("Malformed Json: " + e);
+        }
+    }
+
+    /**
+     * Converts the fields of a json object to an instance of the given class.
+     *
+     * @param fields the json object with the fields.
+     * @param classOfT the class of the instance.
+     * @param <T> the type of the instance.
+     * @return the new instance.
+     * @throws IllegalArgumentException if a field does not fit the class.
+     */
+    static <T> T fromJsonTree(JsonObject fields, Class<T> classOfT) throws IllegalArgumentException
+    {
+        try
+        {
+            return GSON.fromJson(fields, classOfT);
+        }
+        catch (JsonParseException e)
+        {
+            throw new IllegalArgumentException("Malformed Json: " + e);
+        }
+    }
+
+    private static boolean isTwinCollection(String key)
+    {
+        return key.equals(PROPERTIES_TAG) || key.equals(TAGS_TAG) || key.equals(DESIRED_TAG) || key.equals(REPORTED_TAG);
+    }
+}
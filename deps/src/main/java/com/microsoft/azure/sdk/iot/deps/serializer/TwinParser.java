@@ -6,7 +6,6 @@ package com.microsoft.azure.sdk.iot.deps.serializer;
 import com.google.gson.*;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -150,7 +149,7 @@ public class TwinParser
     public JsonElement toJsonElement()
     {
         /* Codes_SRS_TWINPARSER_21_017: [The toJsonElement shall return a JsonElement with information in the TwinParser using json format.] */
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = GsonInstances.NO_HTML_ESCAPING;
         JsonObject twinJson = gson.toJsonTree(manager).getAsJsonObject();
 
         /* Codes_SRS_TWINPARSER_21_018: [The toJsonElement shall not include null fields.] */
@@ -217,7 +216,7 @@ public class TwinParser
         validateMap(reportedPropertyMap);
         validateMap(tagsMap);
 
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = GsonInstances.NO_HTML_ESCAPING;
         jsonTwin = gson.toJsonTree(manager).getAsJsonObject();
 
         /* Codes_SRS_TWINPARSER_21_075: [If Tags is not enable and `tagsMap` is not null, the updateTwin shall throw IOException.] */
@@ -613,26 +612,18 @@ public class TwinParser
         }
 
         /* Codes_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
-        validateJson(json);
+        /* Codes_SRS_TWINPARSER_21_097: [If the provided json have any duplicated `properties` or `tags`, the updateTwin shall throw IllegalArgumentException.] */
+        /* Codes_SRS_TWINPARSER_21_098: [If the provided json is properties only and contains duplicated `desired` or `reported`, the updateTwin shall throws IllegalArgumentException.] */
+        /* Codes_SRS_TWINPARSER_21_094: [If the provided json have any duplicated `key`, the updateTwin shall use the content of the last one in the String.] */
+        // The json is read only once, and the same tree is validated and then applied to the collection.
+        JsonObject managerFields = new JsonObject();
+        Map<String, Object> jsonTree = TwinJsonReader.read(json, managerFields);
+        validateJson(jsonTree);
 
         /* Codes_SRS_TWINPARSER_21_071: [If the provided json is empty, the updateTwin shall not change the collection and not call the OnDesiredCallback or the OnReportedCallback.] */
-        if(!json.isEmpty())
+        if(jsonTree != null)
         {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
-            Map<String, Object> jsonTree;
-            try
-            {
-                /* Codes_SRS_TWINPARSER_21_097: [If the provided json have any duplicated `properties` or `tags`, the updateTwin shall throw IllegalArgumentException.] */
-                /* Codes_SRS_TWINPARSER_21_098: [If the provided json is properties only and contains duplicated `desired` or `reported`, the updateTwin shall throws IllegalArgumentException.] */
-                /* Codes_SRS_TWINPARSER_21_094: [If the provided json have any duplicated `key`, the updateTwin shall use the content of the last one in the String.] */
-                jsonTree = (Map<String, Object>) gson.fromJson(json, HashMap.class);
-                manager = gson.fromJson(json, RegisterManagerParser.class);
-            }
-            catch (JsonSyntaxException e)
-            {
-                /* Codes_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
-                throw new IllegalArgumentException("Malformed Json: " + e);
-            }
+            manager = TwinJsonReader.fromJsonTree(managerFields, RegisterManagerParser.class);
 
             boolean propertiesLevel = false;
             for (Map.Entry<String, Object> entry : jsonTree.entrySet())
@@ -1000,19 +991,8 @@ public class TwinParser
         return this.manager.lastActivityTime;
     }
 
-    private void validateJson(String json) throws IllegalArgumentException
+    private void validateJson(Map<String, Object> map) throws IllegalArgumentException
     {
-        Map<String, Object> map;
-        try
-        {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
-            map = (Map<String, Object>) gson.fromJson(json, HashMap.class);
-        }
-        catch (Exception e)
-        {
-            throw new IllegalArgumentException("Malformed Json: " + e);
-        }
-
         if(map != null)
         {
             boolean propertiesLevel = false;
@@ -3,8 +3,6 @@
 
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.internal.LinkedTreeMap;
 
@@ -354,18 +352,9 @@ public class TwinProperty
 
     protected void update(String json, TwinChangedCallback onCallback) throws IllegalArgumentException
     {
-        Map   <String, Object> newValues;
-        try
-        {
-            /* Codes_SRS_TWINPARSER_21_095: [If the provided json have any duplicated `key`, the updateReportedProperty shall throws IllegalArgumentException.] */
-            /* Codes_SRS_TWINPARSER_21_096: [If the provided json have any duplicated `key`, the updateDesiredProperty shall throws IllegalArgumentException.] */
-            Gson gson = new GsonBuilder().create();
-            newValues = (Map<String, Object>) gson.fromJson(json, Map.class);
-        }
-        catch (Exception e)
-        {
-            throw new IllegalArgumentException("Malformed Json:" + e);
-        }
+        /* Codes_SRS_TWINPARSER_21_095: [If the provided json have any duplicated `key`, the updateReportedProperty shall throws IllegalArgumentException.] */
+        /* Codes_SRS_TWINPARSER_21_096: [If the provided json have any duplicated `key`, the updateDesiredProperty shall throws IllegalArgumentException.] */
+        Map<String, Object> newValues = TwinJsonReader.read(json, null);
         update(newValues, onCallback);
     }
 
@@ -0,0 +1,136 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.transport.amqp;
+
+import org.apache.qpid.proton.message.Message;
+
+import java.nio.BufferOverflowException;
+import java.util.Arrays;
+
+/**
+ * Encodes Proton messages and delivery tags with a minimum of allocations.
+ *
+ * <p>Each thread encodes into its own scratch buffer, which grows to fit the largest message
+ * it has encoded and is reused for the next ones. The only allocation per message is the
+ * right sized copy of the encoded bytes.</p>
+ */
+public final class AmqpMessageEncoder
+{
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /** Larger buffers are used for a single message and not kept by the thread. */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_TAG_SIZE = 8;
+    private static final int ONE_BYTE = 8;
+    private static final int ISOLATE_BYTE = 0xFF;
+
+    private static final ThreadLocal<byte[]> encodeBuffer = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[INITIAL_BUFFER_SIZE];
+        }
+    };
+
+    private AmqpMessageEncoder()
+    {
+    }
+
+    /**
+     * Encodes the provided message.
+     *
+     * @param message the Proton message to encode.
+     * @return an array with exactly the encoded bytes of the message.
+     * @throws IllegalArgumentException if the provided message is null.
+     */
+    public static byte[] encode(Message message) throws IllegalArgumentException
+    {
+        // Codes_SRS_AMQPMESSAGEENCODER_21_001: [If the provided message is null, the encode shall throw IllegalArgumentException.]
+        if (message == null)
+        {
+            throw new IllegalArgumentException("message cannot be null");
+        }
+
+        // Codes_SRS_AMQPMESSAGEENCODER_21_002: [The encode shall encode the message in the buffer of the current thread.]
+        byte[] buffer = encodeBuffer.get();
+        int length;
+        while (true)
+        {
+            try
+            {
+                length = message.encode(buffer, 0, buffer.length);
+                break;
+            }
+            catch (BufferOverflowException e)
+            {
+                // Codes_SRS_AMQPMESSAGEENCODER_21_003: [If the message does not fit in the buffer, the encode shall double the buffer and try again, keeping the new buffer for the next messages if it is not bigger than 1MB.]
+                buffer = new byte[buffer.length * 2];
+                if (buffer.length <= MAX_RETAINED_BUFFER_SIZE)
+                {
+                    encodeBuffer.set(buffer);
+                }
+            }
+        }
+
+        // Codes_SRS_AMQPMESSAGEENCODER_21_004: [The encode shall return a new array with exactly the encoded bytes.]
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Creates the delivery tag for a sequence number.
+     *
+     * @param sequenceNumber the non negative sequence number of the delivery on its link.
+     * @return the sequence number as big endian bytes, without the leading zeros.
+     * @throws IllegalArgumentException if the provided sequence number is negative.
+     */
+    public static byte[] deliveryTag(long sequenceNumber) throws IllegalArgumentException
+    {
+        // Codes_SRS_AMQPMESSAGEENCODER_21_005: [If the provided sequenceNumber is negative, the deliveryTag shall throw IllegalArgumentException.]
+        if (sequenceNumber < 0)
+        {
+            throw new IllegalArgumentException("sequenceNumber cannot be negative");
+        }
+
+        // Codes_SRS_AMQPMESSAGEENCODER_21_006: [The deliveryTag shall return the sequenceNumber in big endian bytes without the leading zeros, with at least one byte.]
+        int size = 1;
+        while (size < MAX_TAG_SIZE && (sequenceNumber >>> (size * ONE_BYTE)) != 0)
+        {
+            size++;
+        }
+
+        byte[] tag = new byte[size];
+        for (int i = size - 1; i >= 0; i--)
+        {
+            tag[i] = (byte)sequenceNumber;
+            sequenceNumber >>>= ONE_BYTE;
+        }
+
+        return tag;
+    }
+
+    /**
+     * Reads the sequence number of a delivery tag created by {@link #deliveryTag(long)}.
+     *
+     * @param deliveryTag the delivery tag.
+     * @return the sequence number in the delivery tag.
+     * @throws IllegalArgumentException if the provided delivery tag is null, empty, or longer than 8 bytes.
+     */
+    public static long sequenceNumber(byte[] deliveryTag) throws IllegalArgumentException
+    {
+        // Codes_SRS_AMQPMESSAGEENCODER_21_007: [If the provided deliveryTag is null, empty, or longer than 8 bytes, the sequenceNumber shall throw IllegalArgumentException.]
+        if (deliveryTag == null || deliveryTag.length == 0 || deliveryTag.length > MAX_TAG_SIZE)
+        {
+            throw new IllegalArgumentException("deliveryTag is not a sequence number");
+        }
+
+        // Codes_SRS_AMQPMESSAGEENCODER_21_008: [The sequenceNumber shall return the big endian number in the deliveryTag.]
+        long sequenceNumber = 0;
+        for (byte tagByte : deliveryTag)
+        {
+            sequenceNumber = (sequenceNumber << ONE_BYTE) | (tagByte & ISOLATE_BYTE);
+        }
+
+        return sequenceNumber;
+    }
+}
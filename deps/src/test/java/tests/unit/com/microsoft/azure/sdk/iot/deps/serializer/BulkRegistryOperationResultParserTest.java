@@ -0,0 +1,99 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Code coverage:
+ * Methods: 100%
+ * Lines: 100%
+ */
+public class BulkRegistryOperationResultParserTest
+{
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_001: [This method shall return a json representation of this.]
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_002: [This constructor shall create and return an instance of a BulkRegistryOperationResultParser object based off the provided json.]
+    @Test
+    public void testBasicFunctionality()
+    {
+        //arrange
+        DeviceRegistryOperationErrorParser error = new DeviceRegistryOperationErrorParser();
+        error.setDeviceId("device1");
+        error.setErrorCode("DeviceAlreadyExists");
+        error.setErrorStatus("A device with ID 'device1' is already registered.");
+        List<DeviceRegistryOperationErrorParser> errors = new ArrayList<>();
+        errors.add(error);
+        BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser();
+        parser.setSuccessful(false);
+        parser.setErrors(errors);
+
+        //act
+        BulkRegistryOperationResultParser processedParser = new BulkRegistryOperationResultParser(parser.toJson());
+
+        //assert
+        assertFalse(processedParser.isSuccessful());
+        assertEquals(1, processedParser.getErrors().size());
+        assertEquals("device1", processedParser.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceAlreadyExists", processedParser.getErrors().get(0).getErrorCode());
+        assertEquals("A device with ID 'device1' is already registered.", processedParser.getErrors().get(0).getErrorStatus());
+    }
+
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_002: [This constructor shall create and return an instance of a BulkRegistryOperationResultParser object based off the provided json.]
+    @Test
+    public void constructorAcceptsNumericErrorCode()
+    {
+        //act
+        BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser(
+                "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"device1\",\"errorCode\":409001,\"errorStatus\":\"exists\"}],\"warnings\":[]}");
+
+        //assert
+        assertEquals("409001", parser.getErrors().get(0).getErrorCode());
+    }
+
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_004: [This method shall return the value of this object's isSuccessful.]
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_007: [If this object has no errors, this method shall return an empty list.]
+    @Test
+    public void constructorWithoutErrorsSucceeds()
+    {
+        //act
+        BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser("{\"isSuccessful\":true}");
+
+        //assert
+        assertTrue(parser.isSuccessful());
+        assertTrue(parser.getErrors().isEmpty());
+    }
+
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+    @Test (expected = IllegalArgumentException.class)
+    public void nullJsonForConstructorThrows()
+    {
+        //act
+        new BulkRegistryOperationResultParser(null);
+    }
+
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+    @Test (expected = IllegalArgumentException.class)
+    public void emptyJsonForConstructorThrows()
+    {
+        //act
+        new BulkRegistryOperationResultParser("");
+    }
+
+    //Tests_SRS_BULK_REGISTRY_OPERATION_RESULT_PARSER_21_003: [If the provided json is null, empty, or cannot be parsed into a BulkRegistryOperationResultParser object, an IllegalArgumentException shall be thrown.]
+    @Test (expected = IllegalArgumentException.class)
+    public void invalidJsonForConstructorThrows()
+    {
+        //act
+        new BulkRegistryOperationResultParser("}");
+    }
+}
@@ -9,8 +9,13 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -122,6 +127,58 @@ public class QueryResponseParserTest
         QueryResponseParser testParser = new QueryResponseParser(testJson);
     }
 
+    //Tests_SRS_QUERY_RESPONSE_PARSER_25_001: [The constructor shall create an instance of the QueryResponseParser.]
+    @Test
+    public void constructorWithReaderSucceeds() throws IllegalArgumentException, IOException
+    {
+        //act
+        QueryResponseParser testParser = new QueryResponseParser(new StringReader(VALID_TWIN_JSON_ARRAY_2));
+
+        //assert
+        assertListEquals(buildListFromJsonArray(VALID_TWIN_JSON_ARRAY_2), testParser.getJsonItems());
+    }
+
+    //Tests_SRS_QUERY_RESPONSE_PARSER_21_001: [If the provided reader is null or provides an empty json, the constructor shall throws IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithReaderThrowsOnNullReader() throws IllegalArgumentException, IOException
+    {
+        //act
+        new QueryResponseParser((Reader) null);
+    }
+
+    //Tests_SRS_QUERY_RESPONSE_PARSER_21_001: [If the provided reader is null or provides an empty json, the constructor shall throws IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithReaderThrowsOnEmptyJson() throws IllegalArgumentException, IOException
+    {
+        //act
+        new QueryResponseParser(new StringReader(""));
+    }
+
+    //Tests_SRS_QUERY_RESPONSE_PARSER_21_002: [If the provided reader do not provide a valid array of json items the constructor shall throws IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithReaderThrowsOnMalformedJson() throws IllegalArgumentException, IOException
+    {
+        //act
+        new QueryResponseParser(new StringReader(buildJsonInputArrayFromJson(MALFORMED_JSON)));
+    }
+
+    //Tests_SRS_QUERY_RESPONSE_PARSER_21_003: [If the json could not be read from the reader, the constructor shall throws IOException.]
+    @Test (expected = IOException.class)
+    public void constructorWithReaderThrowsIfReadFails(@Mocked final Reader mockReader) throws IllegalArgumentException, IOException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockReader.read((char[]) any, anyInt, anyInt);
+                result = new IOException();
+            }
+        };
+
+        //act
+        new QueryResponseParser(mockReader);
+    }
+
     //Tests_SRS_QUERY_RESPONSE_PARSER_25_008: [The getJsonItems shall return the list of json items as strings .]
     @Test
     public void getJsonItemsGets() throws IllegalArgumentException
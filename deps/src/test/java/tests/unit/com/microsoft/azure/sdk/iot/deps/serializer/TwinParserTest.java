@@ -3098,6 +3098,27 @@ public class TwinParserTest {
         assertNull(twinParser.getReportedPropertyMap());
     }
 
+    /* Tests_SRS_TWINPARSER_21_071: [If the provided json is empty, the updateTwin shall not change the collection and not call the OnDesiredCallback or the OnReportedCallback.] */
+    @Test
+    public void updateTwinJsonOnlyWhitespacesSucceed()
+    {
+        // Arrange
+        OnDesiredCallback onDesiredCallback = new OnDesiredCallback();
+        OnReportedCallback onReportedCallback = new OnReportedCallback();
+        TwinParser twinParser = new TwinParser(onDesiredCallback, onReportedCallback);
+
+        String json = " \n ";
+
+        // Act
+        twinParser.updateTwin(json);
+
+        // Assert
+        assertNull(onDesiredCallback.diff);
+        assertNull(onReportedCallback.diff);
+        assertNull(twinParser.getDesiredPropertyMap());
+        assertNull(twinParser.getReportedPropertyMap());
+    }
+
     /* Tests_SRS_TWINPARSER_21_072: [If the provided json is null, the updateTwin shall not change the collection, not call the OnDesiredCallback or the OnReportedCallback, and throws IllegalArgumentException.] */
     @Test (expected = IllegalArgumentException.class)
     public void updateTwinJsonNullSucceed()
@@ -4127,6 +4148,32 @@ public class TwinParserTest {
         assertTwin(twinParser, oldDesiredValues, oldReportedValues, null);
     }
 
+    /* Tests_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
+    @Test
+    public void updateTwinJsonContentAfterTheObjectFailed()
+    {
+        // Arrange
+        OnDesiredCallback onDesiredCallback = new OnDesiredCallback();
+        TwinParser twinParser = new TwinParser(onDesiredCallback);
+
+        String json = "{\"properties\":{\"desired\":{\"key1\":\"value1\"},\"reported\":{}}}{\"tags\":{}}";
+
+        // Act
+        try
+        {
+            twinParser.updateTwin(json);
+            fail("updateTwin shall throw IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // Expected behavior, don't do anything
+        }
+
+        // Assert
+        assertNull(onDesiredCallback.diff);
+        assertNull(twinParser.getDesiredPropertyMap());
+    }
+
     /* Tests_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
     @Test (expected = IllegalArgumentException.class)
     public void updateTwinJsonMissingCommaFailed()
@@ -6,8 +6,34 @@ package com.microsoft.azure.sdk.iot.device;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+/**
+ * Logging facade over log4j.
+ *
+ * <p>Every Log* function checks the level before doing any work, so a call on a
+ * disabled level does not format the message, does not walk the stack and, for
+ * up to three arguments, does not allocate the varargs array. To include the
+ * name of the calling method in a message, pass {@link #METHOD_NAME} as an
+ * argument instead of calling {@link #getMethodName()}; it is only resolved
+ * when the message is actually recorded.</p>
+ */
 public class CustomLogger {
 
+    /**
+     * Placeholder argument that is replaced by the name of the method that called
+     * the Log* function, only when the message is recorded.
+     */
+    public static final Object METHOD_NAME = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            return "METHOD_NAME";
+        }
+    };
+
+    private static final String CUSTOM_LOGGER_CLASS_NAME = CustomLogger.class.getName();
+    private static final Object[] NO_PARAMS = new Object[0];
+
     private final Logger logger;
     private static final int CALLING_METHOD_NAME_DEPTH = 2;
 
@@ -16,11 +42,105 @@ public class CustomLogger {
         logger = Logger.getLogger(clazz);
     }
 
+    public boolean isInfoEnabled()
+    {
+        return logger.isEnabledFor(Level.INFO);
+    }
+
+    public boolean isDebugEnabled()
+    {
+        return logger.isEnabledFor(Level.DEBUG);
+    }
+
+    public boolean isTraceEnabled()
+    {
+        return logger.isEnabledFor(Level.TRACE);
+    }
+
+    public boolean isWarnEnabled()
+    {
+        return logger.isEnabledFor(Level.WARN);
+    }
+
+    public boolean isFatalEnabled()
+    {
+        return logger.isEnabledFor(Level.FATAL);
+    }
+
+    public boolean isErrorEnabled()
+    {
+        return logger.isEnabledFor(Level.ERROR);
+    }
+
+    public void LogInfo(String message)
+    {
+        if(logger.isEnabledFor(Level.INFO))
+        {
+            logger.info(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogInfo(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.INFO))
+        {
+            logger.info(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogInfo(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.INFO))
+        {
+            logger.info(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogInfo(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.INFO))
+        {
+            logger.info(format(message, new Object[] { param1, param2, param3 }));
+        }
+    }
+
     public void LogInfo(String message, Object...params)
     {
         if(logger.isEnabledFor(Level.INFO))
         {
-            logger.info(String.format(message, params));
+            logger.info(format(message, params));
+        }
+    }
+
+    public void LogDebug(String message)
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogDebug(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogDebug(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogDebug(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(format(message, new Object[] { param1, param2, param3 }));
         }
     }
 
@@ -28,7 +148,15 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.DEBUG))
         {
-            logger.debug(String.format(message, params));
+            logger.debug(format(message, params));
+        }
+    }
+
+    public void LogDebug(String message, Throwable t)
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(format(message, NO_PARAMS), t);
         }
     }
 
@@ -36,7 +164,39 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.DEBUG))
         {
-            logger.debug(String.format(message, params), t);
+            logger.debug(format(message, params), t);
+        }
+    }
+
+    public void LogTrace(String message)
+    {
+        if(logger.isEnabledFor(Level.TRACE))
+        {
+            logger.trace(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogTrace(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.TRACE))
+        {
+            logger.trace(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogTrace(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.TRACE))
+        {
+            logger.trace(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogTrace(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.TRACE))
+        {
+            logger.trace(format(message, new Object[] { param1, param2, param3 }));
         }
     }
 
@@ -44,7 +204,39 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.TRACE))
         {
-            logger.trace(String.format(message, params));
+            logger.trace(format(message, params));
+        }
+    }
+
+    public void LogWarn(String message)
+    {
+        if(logger.isEnabledFor(Level.WARN))
+        {
+            logger.warn(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogWarn(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.WARN))
+        {
+            logger.warn(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogWarn(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.WARN))
+        {
+            logger.warn(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogWarn(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.WARN))
+        {
+            logger.warn(format(message, new Object[] { param1, param2, param3 }));
         }
     }
 
@@ -52,7 +244,39 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.WARN))
         {
-            logger.warn(String.format(message, params));
+            logger.warn(format(message, params));
+        }
+    }
+
+    public void LogFatal(String message)
+    {
+        if(logger.isEnabledFor(Level.FATAL))
+        {
+            logger.fatal(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogFatal(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.FATAL))
+        {
+            logger.fatal(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogFatal(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.FATAL))
+        {
+            logger.fatal(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogFatal(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.FATAL))
+        {
+            logger.fatal(format(message, new Object[] { param1, param2, param3 }));
         }
     }
 
@@ -60,7 +284,39 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.FATAL))
         {
-            logger.fatal(String.format(message, params));
+            logger.fatal(format(message, params));
+        }
+    }
+
+    public void LogError(String message)
+    {
+        if(logger.isEnabledFor(Level.ERROR))
+        {
+            logger.error(format(message, NO_PARAMS));
+        }
+    }
+
+    public void LogError(String message, Object param1)
+    {
+        if(logger.isEnabledFor(Level.ERROR))
+        {
+            logger.error(format(message, new Object[] { param1 }));
+        }
+    }
+
+    public void LogError(String message, Object param1, Object param2)
+    {
+        if(logger.isEnabledFor(Level.ERROR))
+        {
+            logger.error(format(message, new Object[] { param1, param2 }));
+        }
+    }
+
+    public void LogError(String message, Object param1, Object param2, Object param3)
+    {
+        if(logger.isEnabledFor(Level.ERROR))
+        {
+            logger.error(format(message, new Object[] { param1, param2, param3 }));
         }
     }
 
@@ -68,7 +324,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.ERROR))
         {
-            logger.error(String.format(message, params));
+            logger.error(format(message, params));
         }
     }
 
@@ -80,8 +336,50 @@ public class CustomLogger {
         }
     }
 
+    /**
+     * Returns the name of the executing method. This walks the stack on every call,
+     * even if the message it is passed to is never recorded.
+     *
+     * @return the name of the method that called this function.
+     * @deprecated pass {@link #METHOD_NAME} to the Log* functions instead.
+     */
+    @Deprecated
     public String getMethodName()
     {
         return Thread.currentThread().getStackTrace()[CALLING_METHOD_NAME_DEPTH].getMethodName();
     }
+
+    private static String format(String message, Object[] params)
+    {
+        Object[] resolvedParams = params;
+        for (int i = 0; i < params.length; i++)
+        {
+            if (params[i] == METHOD_NAME)
+            {
+                if (resolvedParams == params)
+                {
+                    // do not change an array that may belong to the caller
+                    resolvedParams = params.clone();
+                }
+                resolvedParams[i] = getCallerMethodName();
+            }
+        }
+
+        return String.format(message, resolvedParams);
+    }
+
+    private static String getCallerMethodName()
+    {
+        // The first frame outside of this class belongs to the method that called the Log* function.
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        for (StackTraceElement element : stackTrace)
+        {
+            if (!CUSTOM_LOGGER_CLASS_NAME.equals(element.getClassName()))
+            {
+                return element.getMethodName();
+            }
+        }
+
+        return "";
+    }
 }
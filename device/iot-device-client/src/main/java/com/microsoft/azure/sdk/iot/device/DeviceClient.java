@@ -6,6 +6,8 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
+import com.microsoft.azure.sdk.iot.device.store.FileMessageStore;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
 
 import java.io.Closeable;
 import java.io.IOError;
@@ -16,9 +18,12 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.AMQPS;
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.AMQPS_WS;
+import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.MQTT;
+import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.MQTT_WS;
 
 /**
  * <p>
@@ -101,6 +106,14 @@ public final class DeviceClient implements Closeable
     private static final String SET_SEND_INTERVAL = "SetSendInterval";
     private static final String SET_CERTIFICATE_PATH = "SetCertificatePath";
     private static final String SET_SAS_TOKEN_EXPIRY_TIME = "SetSASTokenExpiryTime";
+    private static final String SET_EVENT_DRIVEN = "SetEventDriven";
+    private static final String SET_MQTT_MAX_IN_FLIGHT_COUNT = "SetMqttMaxInFlightCount";
+    private static final String SET_AMQPS_CONNECTION_POOL = "SetAmqpsConnectionPool";
+    private static final String SET_OUTBOUND_QUEUE_CAPACITY = "SetOutboundQueueCapacity";
+    private static final String SET_OUTBOUND_QUEUE_POLICY = "SetOutboundQueuePolicy";
+    private static final String SET_MESSAGE_STORE = "SetMessageStore";
+    private static final String SET_MQTT_CALLBACK_EXECUTOR = "SetMqttCallbackExecutor";
+    private static final String SET_REPORTED_PROPERTIES_COALESCING_WINDOW = "SetReportedPropertiesCoalescingWindow";
 
     private DeviceClientConfig config;
     private DeviceIO deviceIO;
@@ -226,7 +239,7 @@ public final class DeviceClient implements Closeable
         this.deviceIO = new DeviceIO(this.config, protocol, SEND_PERIOD_MILLIS, RECEIVE_PERIOD_MILLIS);
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -247,7 +260,7 @@ public final class DeviceClient implements Closeable
         /* Codes_SRS_DEVICECLIENT_21_007: [If the opening a connection via deviceIO is not successful, the open shall throw IOException.] */
         this.deviceIO.open();
 
-        logger.LogInfo("Connection opened with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection opened with success, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -262,6 +275,11 @@ public final class DeviceClient implements Closeable
     @Deprecated
     public void close() throws IOException
     {
+        /* Codes_SRS_DEVICECLIENT_21_099: [If the deviceTwin is not null, the close shall call close on deviceTwin before closing the deviceIO connection.] */
+        if (this.deviceTwin != null)
+        {
+            this.deviceTwin.close();
+        }
 
         // Codes_SRS_DEVICECLIENT_11_040: [The function shall finish all ongoing tasks.]
         // Codes_SRS_DEVICECLIENT_11_041: [The function shall cancel all recurring tasks.]
@@ -274,7 +292,7 @@ public final class DeviceClient implements Closeable
         /* Codes_SRS_DEVICECLIENT_21_043: [If the closing a connection via deviceIO is not successful, the close shall throw IOException.] */
         this.deviceIO.close();
 
-        logger.LogInfo("Connection closed with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection closed with success, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -290,6 +308,12 @@ public final class DeviceClient implements Closeable
      */
     public void closeNow() throws IOException
     {
+        /* Codes_SRS_DEVICECLIENT_21_098: [If the deviceTwin is not null, the closeNow shall call close on deviceTwin before closing the deviceIO connection.] */
+        if (this.deviceTwin != null)
+        {
+            this.deviceTwin.close();
+        }
+
         /* Codes_SRS_DEVICECLIENT_21_008: [The closeNow shall close the deviceIO connection.] */
         /* Codes_SRS_DEVICECLIENT_21_009: [If the closing a connection via deviceIO is not successful, the closeNow shall throw IOException.] */
         this.deviceIO.close();
@@ -300,7 +324,7 @@ public final class DeviceClient implements Closeable
             fileUpload.closeNow();
         }
 
-        logger.LogInfo("Connection closed with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection closed with success, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -322,7 +346,19 @@ public final class DeviceClient implements Closeable
         /* Codes_SRS_DEVICECLIENT_21_011: [If starting to send via deviceIO is not successful, the sendEventAsync shall bypass the threw exception.] */
         deviceIO.sendEventAsync(message, callback, callbackContext);
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), CustomLogger.METHOD_NAME);
+    }
+
+    /**
+     * Getter for the number of messages waiting to be sent. The messages already sent and
+     * waiting for the IoT Hub to acknowledge them are not counted.
+     *
+     * @return the number of messages in the outbound queue of the transport.
+     */
+    public int getOutboundQueueSize()
+    {
+        /* Codes_SRS_DEVICECLIENT_21_084: [The getOutboundQueueSize shall return the number of messages waiting in the deviceIO to be sent.] */
+        return this.deviceIO.getOutboundQueueSize();
     }
 
     /**
@@ -475,6 +511,31 @@ public final class DeviceClient implements Closeable
 
     }
 
+    /**
+     * Sends the reported properties waiting for the coalescing window set with the
+     * "SetReportedPropertiesCoalescingWindow" option, without waiting for the window to end.
+     *
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if the pending properties are not valid for the twin.
+     */
+    public void flushReportedProperties() throws IOException
+    {
+        if (this.deviceTwin == null)
+        {
+            /* Codes_SRS_DEVICECLIENT_21_095: [If the client has not started twin before calling this method, the function shall throw an IOException.] */
+            throw new IOException("Start twin before using it");
+        }
+
+        if (!this.deviceIO.isOpen())
+        {
+            /* Codes_SRS_DEVICECLIENT_21_096: [If the client has not been open, the function shall throw an IOException.] */
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        /* Codes_SRS_DEVICECLIENT_21_097: [The function shall send the pending reported properties by calling flushReportedProperties on the twin object.] */
+        this.deviceTwin.flushReportedProperties();
+    }
+
     /**
      * Subscribes to device methods
      *
@@ -588,7 +649,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetMinimumPollingInterval(Object value)
     {
-        logger.LogInfo("Setting MinimumPollingInterval as %s milliseconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting MinimumPollingInterval as %s milliseconds, method name is %s ", value, CustomLogger.METHOD_NAME);
 
         if (this.deviceIO.isOpen())
         {
@@ -625,7 +686,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetSendInterval(Object value)
     {
-        logger.LogInfo("Setting send Interval as %s milliseconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting send Interval as %s milliseconds, method name is %s ", value, CustomLogger.METHOD_NAME);
 
         if (value != null)
         {
@@ -654,7 +715,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetCertificatePath(Object value)
     {
-        logger.LogInfo("Setting CertificatePath as %s, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting CertificatePath as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
         if (this.deviceIO.isOpen())
         {
             throw new IllegalStateException("setOption " + SET_CERTIFICATE_PATH +
@@ -682,7 +743,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetSASTokenExpiryTime(Object value)
     {
-        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, CustomLogger.METHOD_NAME);
 
         if (this.config.getAuthenticationType() != DeviceClientConfig.AuthType.SAS_TOKEN)
         {
@@ -746,6 +807,217 @@ public final class DeviceClient implements Closeable
         }
     }
 
+    private void setOption_SetEventDriven(Object value)
+    {
+        logger.LogInfo("Setting EventDriven as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (this.deviceIO.isOpen())
+        {
+            // Codes_SRS_DEVICECLIENT_21_068: ["SetEventDriven" only works when the transport is closed.]
+            throw new IllegalStateException("setOption " + SET_EVENT_DRIVEN +
+                    " only works when the transport is closed");
+        }
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_069: ["SetEventDriven" needs to have value type boolean.]
+            if (value instanceof Boolean)
+            {
+                this.deviceIO.setEventDriven((boolean) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not boolean = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetMqttMaxInFlightCount(Object value)
+    {
+        logger.LogInfo("Setting MqttMaxInFlightCount as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (this.deviceIO.isOpen())
+        {
+            // Codes_SRS_DEVICECLIENT_21_071: ["SetMqttMaxInFlightCount" only works when the transport is closed.]
+            throw new IllegalStateException("setOption " + SET_MQTT_MAX_IN_FLIGHT_COUNT +
+                    " only works when the transport is closed");
+        }
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_072: ["SetMqttMaxInFlightCount" needs to have value type integer.]
+            if (value instanceof Integer)
+            {
+                this.config.setMqttMaxInFlightCount((int) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not int = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetAmqpsConnectionPool(Object value)
+    {
+        logger.LogInfo("Setting AmqpsConnectionPool as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (this.deviceIO.isOpen())
+        {
+            // Codes_SRS_DEVICECLIENT_21_076: ["SetAmqpsConnectionPool" only works when the transport is closed.]
+            throw new IllegalStateException("setOption " + SET_AMQPS_CONNECTION_POOL +
+                    " only works when the transport is closed");
+        }
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_077: ["SetAmqpsConnectionPool" needs to have value type AmqpsConnectionPool.]
+            if (value instanceof AmqpsConnectionPool)
+            {
+                this.deviceIO.setAmqpsConnectionPool((AmqpsConnectionPool) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not AmqpsConnectionPool = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetOutboundQueueCapacity(Object value)
+    {
+        logger.LogInfo("Setting OutboundQueueCapacity as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_079: ["SetOutboundQueueCapacity" needs to have value type integer.]
+            if (value instanceof Integer)
+            {
+                this.config.setOutboundQueueCapacity((int) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not int = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetOutboundQueuePolicy(Object value)
+    {
+        logger.LogInfo("Setting OutboundQueuePolicy as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_081: ["SetOutboundQueuePolicy" needs to have value type OutboundQueuePolicy.]
+            if (value instanceof OutboundQueuePolicy)
+            {
+                this.config.setOutboundQueuePolicy((OutboundQueuePolicy) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not OutboundQueuePolicy = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetMessageStore(Object value)
+    {
+        logger.LogInfo("Setting MessageStore as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (this.deviceIO.isOpen())
+        {
+            // Codes_SRS_DEVICECLIENT_21_086: ["SetMessageStore" only works when the transport is closed.]
+            throw new IllegalStateException("setOption " + SET_MESSAGE_STORE +
+                    " only works when the transport is closed");
+        }
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_087: ["SetMessageStore" needs to have value type FileMessageStore.]
+            if (value instanceof FileMessageStore)
+            {
+                this.deviceIO.setMessageStore((FileMessageStore) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not FileMessageStore = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetMqttCallbackExecutor(Object value)
+    {
+        logger.LogInfo("Setting MqttCallbackExecutor as %s, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (this.deviceIO.isOpen())
+        {
+            // Codes_SRS_DEVICECLIENT_21_090: ["SetMqttCallbackExecutor" only works when the transport is closed.]
+            throw new IllegalStateException("setOption " + SET_MQTT_CALLBACK_EXECUTOR +
+                    " only works when the transport is closed");
+        }
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_091: ["SetMqttCallbackExecutor" needs to have value type Executor.]
+            if (value instanceof Executor)
+            {
+                this.config.setMqttCallbackExecutor((Executor) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not Executor = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
+    private void setOption_SetReportedPropertiesCoalescingWindow(Object value)
+    {
+        logger.LogInfo("Setting ReportedPropertiesCoalescingWindow as %s milliseconds, method name is %s ", value, CustomLogger.METHOD_NAME);
+
+        if (value != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_094: ["SetReportedPropertiesCoalescingWindow" needs to have value type long.]
+            if (value instanceof Long)
+            {
+                this.config.setReportedPropertiesCoalescingWindowMillis((long) value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("value is not long = " + value);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+    }
+
     /**
      * Sets a runtime option identified by parameter {@code optionName}
      * to {@code value}.
@@ -756,8 +1028,8 @@ public final class DeviceClient implements Closeable
      *	      option specifies the interval in milliseconds between calls to
      *	      the service checking for availability of new messages. The value
      *	      is expected to be of type {@code long}.
-     *	    - <b>SetCertificatePath</b> - this option is applicable only
-     *	      when the transport configured with this client is AMQP. This
+     *	    - <b>SetCertificatePath</b> - this option is applicable for HTTP/
+     *	      AMQP/MQTT and can only be set while the client is closed. This
      *	      option specifies the path to the certificate used to verify peer.
      *	      The value is expected to be of type {@code String}.
      *      - <b>SetSASTokenExpiryTime</b> - this option is applicable for HTTP/
@@ -765,6 +1037,62 @@ public final class DeviceClient implements Closeable
      *         SASToken expires. If the transport is already open then setting this
      *         option will restart the transport with the updated expiry time. The
      *         value is expected to be of type {@code long}.
+     *      - <b>SetEventDriven</b> - this option is applicable for HTTP/AMQP/MQTT
+     *         and can only be set while the client is closed. When {@code true},
+     *         messages are sent as soon as they are queued instead of every send
+     *         interval, and AMQP/MQTT received messages are handled as soon as
+     *         they arrive instead of every polling interval. The value is expected
+     *         to be of type {@code boolean}.
+     *      - <b>SetMqttMaxInFlightCount</b> - this option is applicable only
+     *         when the transport configured with this client is MQTT, and can
+     *         only be set while the client is closed. This option specifies how
+     *         many messages can be published without waiting for the IoT Hub to
+     *         acknowledge them. The value is expected to be of type {@code int},
+     *         and is 10 by default.
+     *      - <b>SetAmqpsConnectionPool</b> - this option is applicable only
+     *         when the transport configured with this client is AMQP, and can
+     *         only be set while the client is closed. The client opens its own
+     *         session on a connection of the pool, shared with the other clients
+     *         of the pool, instead of opening its own connection. Only clients
+     *         that use SAS token authentication with the same IoT Hub can share
+     *         a pool. The value is expected to be of type
+     *         {@link AmqpsConnectionPool}.
+     *      - <b>SetOutboundQueueCapacity</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT. This option specifies how many messages can wait
+     *         in the client to be sent. Messages that failed to be sent and wait
+     *         to be sent again are not bounded. The value is expected to be of
+     *         type {@code int}, and the queue is not bounded by default.
+     *      - <b>SetOutboundQueuePolicy</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT. This option specifies what happens to a new message
+     *         when the outbound queue is full. The value is expected to be of
+     *         type {@link OutboundQueuePolicy}, and is
+     *         {@link OutboundQueuePolicy#FAIL_FAST} by default.
+     *      - <b>SetMessageStore</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT, and can only be set while the client is closed.
+     *         The telemetry sent with an {@link IotHubEventCallback} is kept in
+     *         the store until the IoT Hub acknowledges it, and the messages left
+     *         in the store, even by a previous process, are sent again when the
+     *         client is opened. A message can be sent more than once. The
+     *         application shall close the store after closing the client. The
+     *         value is expected to be of type {@link FileMessageStore}.
+     *      - <b>SetMqttCallbackExecutor</b> - this option is applicable only
+     *         when the transport configured with this client is MQTT, and can
+     *         only be set while the client is closed. The received messages are
+     *         handled as a batch, and their callbacks are handed off to this
+     *         executor instead of running in the receive task. The callbacks run
+     *         in the order the messages arrived only if the executor runs one
+     *         task at a time. The value is expected to be of type
+     *         {@link Executor}.
+     *      - <b>SetReportedPropertiesCoalescingWindow</b> - this option is
+     *         applicable for HTTP/AMQP/MQTT. This option specifies how many
+     *         milliseconds the reported properties wait before they are sent.
+     *         The properties sent in the meantime are merged, the last value of
+     *         each property replaces the previous ones, and only the properties
+     *         that changed are sent, in a single update. The pending properties
+     *         can be sent earlier with {@link #flushReportedProperties()}, and
+     *         are sent when the client is closed. The value is expected to be of
+     *         type {@code long}, and is 0 by default, which sends the properties
+     *         at once.
      *
      * @param optionName the option name to modify
      * @param value an object of the appropriate type for the option's value
@@ -793,7 +1121,7 @@ public final class DeviceClient implements Closeable
                     else
                     {
                         logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName,
-                                this.deviceIO.getProtocol().toString(), logger.getMethodName());
+                                this.deviceIO.getProtocol().toString(), CustomLogger.METHOD_NAME);
                         // Codes_SRS_DEVICECLIENT_02_015: [If optionName is null or not an option
                         // handled by the client, then it shall throw IllegalArgumentException.]
                         throw new IllegalArgumentException("optionName is unknown = " + optionName
@@ -811,17 +1139,56 @@ public final class DeviceClient implements Closeable
                 // Codes_SRS_DEVICECLIENT_25_019: ["SetCertificatePath" - path to the certificate to verify peer.]
                 case SET_CERTIFICATE_PATH:
                 {
-                    // Codes_SRS_DEVICECLIENT_25_020: ["SetCertificatePath" is available only for AMQP.]
-
+                    // Codes_SRS_DEVICECLIENT_21_092: ["SetCertificatePath" is available for HTTPS/AMQPS/AMQPS_WS/MQTT/MQTT_WS.]
+                    setOption_SetCertificatePath(value);
+                    break;
+                }
+                //Codes_SRS_DEVICECLIENT_25_021: ["SetSASTokenExpiryTime" - Time in secs to specify SAS Token Expiry time.]
+                case SET_SAS_TOKEN_EXPIRY_TIME:
+                {
+                    //Codes__SRS_DEVICECLIENT_25_023: ["SetSASTokenExpiryTime" is available for HTTPS/AMQP/MQTT/AMQPS_WS/MQTT_WS.]
+                    setOption_SetSASTokenExpiryTime(value);
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_067: ["SetEventDriven" - send and receive messages as soon as they are available.]
+                case SET_EVENT_DRIVEN:
+                {
+                    setOption_SetEventDriven(value);
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_070: ["SetMqttMaxInFlightCount" - maximum number of MQTT messages published and not acknowledged yet.]
+                case SET_MQTT_MAX_IN_FLIGHT_COUNT:
+                {
+                    // Codes_SRS_DEVICECLIENT_21_073: ["SetMqttMaxInFlightCount" is available only for MQTT and MQTT_WS.]
+                    if ((this.deviceIO.getProtocol() == MQTT) ||
+                            (this.deviceIO.getProtocol() == MQTT_WS))
+                    {
+                        setOption_SetMqttMaxInFlightCount(value);
+                    }
+                    else
+                    {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName,
+                                this.deviceIO.getProtocol().toString(), CustomLogger.METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_015: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.deviceIO.getProtocol().toString());
+                    }
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_074: ["SetAmqpsConnectionPool" - pool of AMQPS connections shared with other clients.]
+                case SET_AMQPS_CONNECTION_POOL:
+                {
+                    // Codes_SRS_DEVICECLIENT_21_075: ["SetAmqpsConnectionPool" is available only for AMQPS and AMQPS_WS.]
                     if ((this.deviceIO.getProtocol() == AMQPS) ||
                             (this.deviceIO.getProtocol() == AMQPS_WS))
                     {
-                        setOption_SetCertificatePath(value);
+                        setOption_SetAmqpsConnectionPool(value);
                     }
                     else
                     {
                         logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName,
-                                this.deviceIO.getProtocol().toString(), logger.getMethodName());
+                                this.deviceIO.getProtocol().toString(), CustomLogger.METHOD_NAME);
                         // Codes_SRS_DEVICECLIENT_02_015: [If optionName is null or not an option handled by the
                         // client, then it shall throw IllegalArgumentException.]
                         throw new IllegalArgumentException("optionName is unknown = " + optionName +
@@ -829,11 +1196,48 @@ public final class DeviceClient implements Closeable
                     }
                     break;
                 }
-                //Codes_SRS_DEVICECLIENT_25_021: ["SetSASTokenExpiryTime" - Time in secs to specify SAS Token Expiry time.]
-                case SET_SAS_TOKEN_EXPIRY_TIME:
+                // Codes_SRS_DEVICECLIENT_21_078: ["SetOutboundQueueCapacity" - maximum number of messages waiting to be sent.]
+                case SET_OUTBOUND_QUEUE_CAPACITY:
                 {
-                    //Codes__SRS_DEVICECLIENT_25_023: ["SetSASTokenExpiryTime" is available for HTTPS/AMQP/MQTT/AMQPS_WS/MQTT_WS.]
-                    setOption_SetSASTokenExpiryTime(value);
+                    setOption_SetOutboundQueueCapacity(value);
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_080: ["SetOutboundQueuePolicy" - what happens to a new message when the outbound queue is full.]
+                case SET_OUTBOUND_QUEUE_POLICY:
+                {
+                    setOption_SetOutboundQueuePolicy(value);
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_085: ["SetMessageStore" - durable store for the telemetry waiting to be acknowledged.]
+                case SET_MESSAGE_STORE:
+                {
+                    setOption_SetMessageStore(value);
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_088: ["SetMqttCallbackExecutor" - executor of the callbacks of the MQTT received messages.]
+                case SET_MQTT_CALLBACK_EXECUTOR:
+                {
+                    // Codes_SRS_DEVICECLIENT_21_089: ["SetMqttCallbackExecutor" is available only for MQTT and MQTT_WS.]
+                    if ((this.deviceIO.getProtocol() == MQTT) ||
+                            (this.deviceIO.getProtocol() == MQTT_WS))
+                    {
+                        setOption_SetMqttCallbackExecutor(value);
+                    }
+                    else
+                    {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName,
+                                this.deviceIO.getProtocol().toString(), CustomLogger.METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_015: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.deviceIO.getProtocol().toString());
+                    }
+                    break;
+                }
+                // Codes_SRS_DEVICECLIENT_21_093: ["SetReportedPropertiesCoalescingWindow" - time in milliseconds that reported properties wait to be merged with later ones.]
+                case SET_REPORTED_PROPERTIES_COALESCING_WINDOW:
+                {
+                    setOption_SetReportedPropertiesCoalescingWindow(value);
                     break;
                 }
                 default:
@@ -6,6 +6,8 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubX509Authentication;
 
+import java.util.concurrent.Executor;
+
 /**
  * Configuration settings for an IoT Hub client. Validates all user-defined
  * settings.
@@ -16,9 +18,26 @@ public final class DeviceClientConfig
     private static final int DEFAULT_READ_TIMEOUT_MILLIS = 240000;
     /** The default value for messageLockTimeoutSecs. */
     private static final int DEFAULT_MESSAGE_LOCK_TIMEOUT_SECS = 180;
+    /** The default value for mqttMaxInFlightCount. */
+    private static final int DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT = 10;
+    /** The default value for outboundQueueCapacity, which does not bound the queue. */
+    private static final int DEFAULT_OUTBOUND_QUEUE_CAPACITY = Integer.MAX_VALUE;
 
     private boolean useWebsocket;
 
+    /** The maximum number of MQTT messages published and not acknowledged yet. */
+    private int mqttMaxInFlightCount = DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT;
+    /** The executor that runs the callbacks of the MQTT received messages, or null to run them in the receive task. */
+    private volatile Executor mqttCallbackExecutor;
+
+    /** The maximum number of messages waiting in the transport to be sent. */
+    private volatile int outboundQueueCapacity = DEFAULT_OUTBOUND_QUEUE_CAPACITY;
+    /** What the transport does with a new message when its queue is full. */
+    private volatile OutboundQueuePolicy outboundQueuePolicy = OutboundQueuePolicy.FAIL_FAST;
+
+    /** The time in milliseconds that reported properties wait to be merged with later ones, or 0 to send them at once. */
+    private volatile long reportedPropertiesCoalescingWindowMillis;
+
     private IotHubX509Authentication x509Authentication;
     private IotHubSasTokenAuthentication sasTokenAuthentication;
 
@@ -94,7 +113,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ",
-                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), logger.getMethodName());
+                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -129,7 +148,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ",
-                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), logger.getMethodName());
+                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -185,6 +204,150 @@ public final class DeviceClientConfig
         this.useWebsocket = useWebsocket;
     }
 
+    /**
+     * Getter for the MQTT in flight window.
+     *
+     * @return the maximum number of MQTT messages published and not acknowledged yet.
+     */
+    public int getMqttMaxInFlightCount()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_035: [The function shall return the saved MQTT in flight window, which is 10 by default.]
+        return this.mqttMaxInFlightCount;
+    }
+
+    /**
+     * Setter for the MQTT in flight window.
+     *
+     * @param mqttMaxInFlightCount the maximum number of MQTT messages published and not acknowledged yet.
+     * @throws IllegalArgumentException if the provided value is smaller than 1.
+     */
+    public void setMqttMaxInFlightCount(int mqttMaxInFlightCount)
+    {
+        if (mqttMaxInFlightCount < 1)
+        {
+            // Codes_SRS_DEVICECLIENTCONFIG_21_036: [If the provided value is smaller than 1, the function shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("mqttMaxInFlightCount shall be at least 1");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_037: [The function shall save the MQTT in flight window.]
+        this.mqttMaxInFlightCount = mqttMaxInFlightCount;
+    }
+
+    /**
+     * Getter for the executor of the MQTT message callbacks.
+     *
+     * @return the executor that runs the callbacks of the received messages, or {@code null}
+     * if they run in the receive task.
+     */
+    public Executor getMqttCallbackExecutor()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_044: [The function shall return the saved MQTT callback executor, which is null by default.]
+        return this.mqttCallbackExecutor;
+    }
+
+    /**
+     * Setter for the executor of the MQTT message callbacks. The callbacks run in the order the
+     * messages arrived only if the executor runs one task at a time.
+     *
+     * @param mqttCallbackExecutor the executor that runs the callbacks of the received messages,
+     *                             or {@code null} to run them in the receive task.
+     */
+    public void setMqttCallbackExecutor(Executor mqttCallbackExecutor)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_045: [The function shall save the MQTT callback executor.]
+        this.mqttCallbackExecutor = mqttCallbackExecutor;
+    }
+
+    /**
+     * Getter for the coalescing window of the reported properties.
+     *
+     * @return the time in milliseconds that reported properties wait to be merged with later
+     * ones before they are sent, or 0 if they are sent at once.
+     */
+    public long getReportedPropertiesCoalescingWindowMillis()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_046: [The function shall return the saved coalescing window, which is 0 by default.]
+        return this.reportedPropertiesCoalescingWindowMillis;
+    }
+
+    /**
+     * Setter for the coalescing window of the reported properties.
+     *
+     * @param reportedPropertiesCoalescingWindowMillis the time in milliseconds that reported properties
+     *                                                 wait to be merged with later ones before they are
+     *                                                 sent, or 0 to send them at once.
+     * @throws IllegalArgumentException if the provided value is negative.
+     */
+    public void setReportedPropertiesCoalescingWindowMillis(long reportedPropertiesCoalescingWindowMillis)
+    {
+        if (reportedPropertiesCoalescingWindowMillis < 0)
+        {
+            // Codes_SRS_DEVICECLIENTCONFIG_21_047: [If the provided value is negative, the function shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("reportedPropertiesCoalescingWindowMillis cannot be negative");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_048: [The function shall save the coalescing window.]
+        this.reportedPropertiesCoalescingWindowMillis = reportedPropertiesCoalescingWindowMillis;
+    }
+
+    /**
+     * Getter for the capacity of the transport outbound queue.
+     *
+     * @return the maximum number of messages waiting in the transport to be sent.
+     */
+    public int getOutboundQueueCapacity()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_038: [The function shall return the saved outbound queue capacity, which is Integer.MAX_VALUE by default.]
+        return this.outboundQueueCapacity;
+    }
+
+    /**
+     * Setter for the capacity of the transport outbound queue.
+     *
+     * @param outboundQueueCapacity the maximum number of messages waiting in the transport to be sent.
+     * @throws IllegalArgumentException if the provided value is smaller than 1.
+     */
+    public void setOutboundQueueCapacity(int outboundQueueCapacity)
+    {
+        if (outboundQueueCapacity < 1)
+        {
+            // Codes_SRS_DEVICECLIENTCONFIG_21_039: [If the provided value is smaller than 1, the function shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("outboundQueueCapacity shall be at least 1");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_040: [The function shall save the outbound queue capacity.]
+        this.outboundQueueCapacity = outboundQueueCapacity;
+    }
+
+    /**
+     * Getter for the policy applied when the transport outbound queue is full.
+     *
+     * @return the outbound queue policy.
+     */
+    public OutboundQueuePolicy getOutboundQueuePolicy()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_041: [The function shall return the saved outbound queue policy, which is FAIL_FAST by default.]
+        return this.outboundQueuePolicy;
+    }
+
+    /**
+     * Setter for the policy applied when the transport outbound queue is full.
+     *
+     * @param outboundQueuePolicy the outbound queue policy.
+     * @throws IllegalArgumentException if the provided policy is {@code null}.
+     */
+    public void setOutboundQueuePolicy(OutboundQueuePolicy outboundQueuePolicy)
+    {
+        if (outboundQueuePolicy == null)
+        {
+            // Codes_SRS_DEVICECLIENTCONFIG_21_042: [If the provided policy is null, the function shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("outboundQueuePolicy cannot be null");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_043: [The function shall save the outbound queue policy.]
+        this.outboundQueuePolicy = outboundQueuePolicy;
+    }
+
     /**
      * Setter for the message callback. Can be {@code null}.
      * @param callback the message callback. Can be {@code null}.
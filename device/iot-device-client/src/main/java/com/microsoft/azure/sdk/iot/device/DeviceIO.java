@@ -3,17 +3,25 @@
 
 package com.microsoft.azure.sdk.iot.device;
 
+import com.microsoft.azure.sdk.iot.device.store.FileMessageStore;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implement the standard I/O interface with the IoTHub.
@@ -85,6 +93,23 @@ public final class DeviceIO
     private ScheduledExecutorService taskScheduler;
     private IotHubClientState state;
 
+    /*
+     * In the event driven mode, the send task runs only when a message is added or the transport
+     * reports pending work, and the receive task runs when the transport reports an arrived message.
+     */
+    private boolean isEventDriven = false;
+    private ScheduledExecutorService sendScheduler;
+    private ScheduledExecutorService receiveScheduler;
+    private final AtomicBoolean isSendSignaled = new AtomicBoolean(false);
+    private final AtomicBoolean isSendRetryScheduled = new AtomicBoolean(false);
+
+    /*
+     * With a message store, the telemetry is kept on disk until the IoT Hub acknowledges it, and the
+     * messages still in the store are sent again when the client is opened.
+     */
+    private FileMessageStore messageStore;
+    private final Map<Long, StoredMessageCallback> storedMessageCallbacks = new ConcurrentHashMap<>();
+
     /**
      * Constructor that takes a connection string as an argument.
      *
@@ -153,7 +178,7 @@ public final class DeviceIO
         this.state = IotHubClientState.CLOSED;
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceIO object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceIO object is created successfully, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -170,6 +195,12 @@ public final class DeviceIO
             return;
         }
 
+        if (this.isEventDriven)
+        {
+            this.openEventDriven();
+            return;
+        }
+
         /* Codes_SRS_DEVICE_IO_21_012: [The open shall open the transport to communicate with an IoT Hub.] */
         /* Codes_SRS_DEVICE_IO_21_015: [If an error occurs in opening the transport, the open shall throw an IOException.] */
         this.transport.open();
@@ -188,6 +219,9 @@ public final class DeviceIO
         this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
                 receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
 
+        /* Codes_SRS_DEVICE_IO_21_060: [If there is a message store, the open shall add the messages pending in the store to the transport, in order.] */
+        this.replayStoredMessages();
+
         /* Codes_SRS_DEVICE_IO_21_016: [The open shall set the `state` as `OPEN`.] */
         this.state = IotHubClientState.OPEN;
     }
@@ -211,7 +245,20 @@ public final class DeviceIO
 
         /* Codes_SRS_DEVICE_IO_21_017: [The close shall finish all ongoing tasks.] */
         /* Codes_SRS_DEVICE_IO_21_018: [The close shall cancel all recurring tasks.] */
-        this.taskScheduler.shutdown();
+        if (this.taskScheduler != null)
+        {
+            this.taskScheduler.shutdown();
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_050: [If the client is event driven, the close shall stop notifications from the transport and shut down the send and receive schedulers.] */
+        if (this.sendScheduler != null)
+        {
+            this.transport.registerTransportListener(null);
+            this.sendScheduler.shutdown();
+            this.receiveScheduler.shutdown();
+            this.sendScheduler = null;
+            this.receiveScheduler = null;
+        }
 
         /* Codes_SRS_DEVICE_IO_21_019: [The close shall close the transport.] */
         this.transport.close();
@@ -250,9 +297,24 @@ public final class DeviceIO
             throw new IllegalArgumentException("Cannot send message 'null'.");
         }
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
-        /* Codes_SRS_DEVICE_IO_21_022: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
-        transport.addMessage(message, callback, callbackContext);
+        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), CustomLogger.METHOD_NAME);
+        StoredMessageCallback storedMessageCallback = this.storeMessage(message, callback, callbackContext);
+        if (storedMessageCallback != null)
+        {
+            /* Codes_SRS_DEVICE_IO_21_058: [If there is a message store and the message is telemetry, the sendEventAsync shall append the message to the store, and add it to the transport with a callback that acknowledges it in the store before calling the provided callback.] */
+            transport.addMessage(message, storedMessageCallback, null);
+        }
+        else
+        {
+            /* Codes_SRS_DEVICE_IO_21_022: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
+            transport.addMessage(message, callback, callbackContext);
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_051: [If the client is event driven, the sendEventAsync shall wake up the send task.] */
+        if (this.isEventDriven)
+        {
+            this.signalSendWork();
+        }
     }
 
     /**
@@ -287,9 +349,15 @@ public final class DeviceIO
             throw new IllegalArgumentException("Cannot send message 'null'.");
         }
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackContext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        logger.LogInfo("Message with messageid %s along with callback and callbackContext is added to the queue, method name is %s ", message.getMessageId(), CustomLogger.METHOD_NAME);
         /* Codes_SRS_DEVICE_IO_21_040: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
         transport.addMessage(message, callback, callbackContext);
+
+        /* Codes_SRS_DEVICE_IO_21_051: [If the client is event driven, the sendEventAsync shall wake up the send task.] */
+        if (this.isEventDriven)
+        {
+            this.signalSendWork();
+        }
     }
 
     /**
@@ -322,7 +390,7 @@ public final class DeviceIO
         this.receivePeriodInMilliseconds = newIntervalInMilliseconds;
 
         /* Codes_SRS_DEVICE_IO_21_028: [If the task scheduler already exists, the setReceivePeriodInMilliseconds shall change the `scheduleAtFixedRate` for the receiveTask to the new value.] */
-        if(this.taskScheduler != null)
+        if((this.taskScheduler != null) && !this.isEventDriven)
         {
             /* Codes_SRS_DEVICE_IO_21_029: [If the `receiveTask` is null, the setReceivePeriodInMilliseconds shall throw IOException.] */
             if(this.receiveTask == null)
@@ -365,7 +433,7 @@ public final class DeviceIO
         this.sendPeriodInMilliseconds = newIntervalInMilliseconds;
 
         /* Codes_SRS_DEVICE_IO_21_034: [If the task scheduler already exists, the setSendPeriodInMilliseconds shall change the `scheduleAtFixedRate` for the sendTask to the new value.] */
-        if(this.taskScheduler != null)
+        if((this.taskScheduler != null) && !this.isEventDriven)
         {
             /* Codes_SRS_DEVICE_IO_21_035: [If the `sendTask` is null, the setSendPeriodInMilliseconds shall throw IOException.] */
             if(this.sendTask == null)
@@ -410,6 +478,16 @@ public final class DeviceIO
         return this.transport.isEmpty();
     }
 
+    /**
+     * Getter for the number of messages waiting in the transport to be sent.
+     * @return the number of messages in the outbound queue of the transport.
+     */
+    public int getOutboundQueueSize()
+    {
+        /* Codes_SRS_DEVICE_IO_21_055: [The getOutboundQueueSize shall return the number of messages waiting in the transport to be sent.] */
+        return this.transport.getOutboundQueueSize();
+    }
+
     /**
      * Registers a callback with the configured transport to be executed whenever the connection to the device is lost or established.
      *
@@ -421,4 +499,335 @@ public final class DeviceIO
         /* Codes_SRS_DEVICE_IO_99_001: [The registerConnectionStateCallback shall register the callback with the transport.]*/
         this.transport.registerConnectionStateCallback(callback, callbackContext);
     }
+
+    /**
+     * Setter for the event driven mode. In the event driven mode the send task is triggered
+     * when a message is added or when the transport reports pending work, instead of running
+     * every send period. For AMQPS and MQTT the receive task is triggered by the transport when a
+     * message arrives; HTTPS keeps polling every receive period. If there is still work pending
+     * after a send attempt, it is retried after the send period.
+     *
+     * @param isEventDriven {@code true} to use the event driven mode, {@code false} to use
+     *                      the periodic send and receive tasks.
+     * @throws IllegalStateException if the client is open.
+     */
+    public void setEventDriven(boolean isEventDriven)
+    {
+        /* Codes_SRS_DEVICE_IO_21_043: [If the client is open, the setEventDriven shall throw IllegalStateException.] */
+        if (this.state == IotHubClientState.OPEN)
+        {
+            throw new IllegalStateException("The event driven mode can only be changed when the client is closed.");
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_044: [The setEventDriven shall store the new mode.] */
+        this.isEventDriven = isEventDriven;
+    }
+
+    /**
+     * Setter for the AMQPS connection pool. Once set, the AMQPS transport opens its own session on a
+     * connection shared with the other devices of the pool instead of opening a dedicated connection.
+     *
+     * @param connectionPool the pool to use, or null to use a dedicated connection.
+     * @throws IllegalStateException if the client is open, or if the transport is not AMQPS.
+     */
+    public void setAmqpsConnectionPool(AmqpsConnectionPool connectionPool)
+    {
+        /* Codes_SRS_DEVICE_IO_21_052: [If the client is open, the setAmqpsConnectionPool shall throw IllegalStateException.] */
+        if (this.state == IotHubClientState.OPEN)
+        {
+            throw new IllegalStateException("The AMQPS connection pool can only be changed when the client is closed.");
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_053: [If the transport is not AMQPS, the setAmqpsConnectionPool shall throw IllegalStateException.] */
+        if (!(this.transport instanceof AmqpsTransport))
+        {
+            throw new IllegalStateException("The AMQPS connection pool can only be used with the AMQPS transport.");
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_054: [The setAmqpsConnectionPool shall set the connection pool on the AMQPS transport.] */
+        ((AmqpsTransport)this.transport).setConnectionPool(connectionPool);
+    }
+
+    /**
+     * Setter for the message store. Once set, the telemetry sent with an event callback is kept in
+     * the store until the IoT Hub acknowledges it, and the messages still in the store are sent again
+     * the next time the client is opened. The application owns the store, and shall close it after
+     * the client is closed.
+     *
+     * @param messageStore the store to use, or null to keep the messages only in memory.
+     * @throws IllegalStateException if the client is open.
+     */
+    public void setMessageStore(FileMessageStore messageStore)
+    {
+        /* Codes_SRS_DEVICE_IO_21_056: [If the client is open, the setMessageStore shall throw IllegalStateException.] */
+        if (this.state == IotHubClientState.OPEN)
+        {
+            throw new IllegalStateException("The message store can only be changed when the client is closed.");
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_057: [The setMessageStore shall store the new message store.] */
+        if (this.messageStore != messageStore)
+        {
+            this.storedMessageCallbacks.clear();
+            this.messageStore = messageStore;
+        }
+    }
+
+    /**
+     * Getter for the event driven mode.
+     *
+     * @return a boolean true if the send and receive tasks are event driven, or false if they run periodically.
+     */
+    public boolean isEventDriven()
+    {
+        /* Codes_SRS_DEVICE_IO_21_045: [The isEventDriven shall return the programed mode.] */
+        return this.isEventDriven;
+    }
+
+    private void openEventDriven() throws IOException
+    {
+        this.sendTask = new IotHubSendTask(this.transport);
+        this.receiveTask = new IotHubReceiveTask(this.transport);
+
+        /* Codes_SRS_DEVICE_IO_21_046: [If the client is event driven, the open shall create one single thread scheduler for the send task and one for the receive task.] */
+        this.sendScheduler = Executors.newSingleThreadScheduledExecutor();
+        this.receiveScheduler = Executors.newSingleThreadScheduledExecutor();
+
+        /* Codes_SRS_DEVICE_IO_21_047: [If the client is event driven, the open shall register a transport listener before opening the transport.] */
+        this.transport.registerTransportListener(new TransportWorkListener());
+
+        try
+        {
+            this.transport.open();
+        }
+        catch (IOException e)
+        {
+            this.transport.registerTransportListener(null);
+            this.sendScheduler.shutdown();
+            this.receiveScheduler.shutdown();
+            this.sendScheduler = null;
+            this.receiveScheduler = null;
+            throw e;
+        }
+
+        /* Codes_SRS_DEVICE_IO_21_048: [If the client is event driven and the protocol is HTTPS, the open shall schedule receive tasks to run every receivePeriodInMilliseconds milliseconds.] */
+        if (this.protocol == IotHubClientProtocol.HTTPS)
+        {
+            this.receiveScheduler.scheduleAtFixedRate(this.receiveTask, 0,
+                    this.receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        this.replayStoredMessages();
+
+        this.state = IotHubClientState.OPEN;
+    }
+
+    /**
+     * Appends a telemetry message to the message store.
+     *
+     * @return the callback that acknowledges the message in the store, or null if the message is not stored.
+     */
+    private StoredMessageCallback storeMessage(Message message, IotHubEventCallback callback, Object callbackContext)
+    {
+        FileMessageStore store = this.messageStore;
+        MessageType messageType = message.getMessageType();
+        if ((store == null) || (messageType == MessageType.DEVICE_TWIN) || (messageType == MessageType.DEVICE_METHODS))
+        {
+            return null;
+        }
+
+        try
+        {
+            long sequenceNumber = store.append(message);
+            StoredMessageCallback storedMessageCallback = new StoredMessageCallback(store, sequenceNumber, callback, callbackContext);
+            this.storedMessageCallbacks.put(sequenceNumber, storedMessageCallback);
+            return storedMessageCallback;
+        }
+        catch (IOException | IllegalStateException e)
+        {
+            /* Codes_SRS_DEVICE_IO_21_059: [If the message cannot be appended to the store, the sendEventAsync shall add it to the transport with the provided callback.] */
+            logger.LogError("Message with messageid %s cannot be stored and is sent only from memory, method name is %s ", message.getMessageId(), CustomLogger.METHOD_NAME);
+            logger.LogError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the messages pending in the message store to the transport, keeping the callbacks of
+     * the messages stored since this client was created.
+     */
+    private void replayStoredMessages()
+    {
+        FileMessageStore store = this.messageStore;
+        if (store == null)
+        {
+            return;
+        }
+
+        SortedMap<Long, Message> pendingMessages = store.getPendingMessages();
+        if (!pendingMessages.isEmpty())
+        {
+            logger.LogInfo("Sending %s messages from the message store, method name is %s ", pendingMessages.size(), CustomLogger.METHOD_NAME);
+        }
+
+        for (Map.Entry<Long, Message> pendingMessage : pendingMessages.entrySet())
+        {
+            StoredMessageCallback storedMessageCallback = this.storedMessageCallbacks.get(pendingMessage.getKey());
+            if (storedMessageCallback == null)
+            {
+                storedMessageCallback = new StoredMessageCallback(store, pendingMessage.getKey(), null, null);
+                this.storedMessageCallbacks.put(pendingMessage.getKey(), storedMessageCallback);
+            }
+
+            this.transport.addMessage(pendingMessage.getValue(), storedMessageCallback, null);
+
+            // the queue can block the replay when it is full, so the send task shall be already running.
+            if (this.isEventDriven)
+            {
+                this.signalSendWork();
+            }
+        }
+    }
+
+    /**
+     * Schedules one execution of the send task, unless one is already waiting to run.
+     */
+    private void signalSendWork()
+    {
+        ScheduledExecutorService scheduler = this.sendScheduler;
+        if ((scheduler != null) && this.isSendSignaled.compareAndSet(false, true))
+        {
+            try
+            {
+                scheduler.execute(new SendRunner());
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the client is closing, there is nothing else to send.
+                this.isSendSignaled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Schedules one execution of the receive task. Each notification maps to one received
+     * message, so the notifications are not coalesced.
+     */
+    private void signalReceiveWork()
+    {
+        ScheduledExecutorService scheduler = this.receiveScheduler;
+        if (scheduler != null)
+        {
+            try
+            {
+                scheduler.execute(this.receiveTask);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the client is closing, the message will not be handled.
+                logger.LogDebug("Receive task rejected, the client is closing, method name is %s ", CustomLogger.METHOD_NAME);
+            }
+        }
+    }
+
+    /**
+     * Runs the send task once and, if the transport still has pending work, retries after
+     * the send period.
+     */
+    private final class SendRunner implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            isSendSignaled.set(false);
+
+            /* Codes_SRS_DEVICE_IO_21_049: [If the transport is not empty after the send task, it shall be retried after sendPeriodInMilliseconds milliseconds.] */
+            sendTask.run();
+
+            ScheduledExecutorService scheduler = sendScheduler;
+            if ((scheduler != null) && !transport.isEmpty() && isSendRetryScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    scheduler.schedule(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            isSendRetryScheduled.set(false);
+                            signalSendWork();
+                        }
+                    }, sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    isSendRetryScheduled.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Acknowledges a message in the message store once the transport completes it, and forwards
+     * the status to the callback of the application. The messages cancelled by the close of the
+     * client, or rejected by a full outbound queue, stay in the store to be sent again on the next open.
+     */
+    private final class StoredMessageCallback implements IotHubEventCallback
+    {
+        private final FileMessageStore store;
+        private final long sequenceNumber;
+        private final IotHubEventCallback callback;
+        private final Object callbackContext;
+
+        private StoredMessageCallback(FileMessageStore store, long sequenceNumber, IotHubEventCallback callback, Object callbackContext)
+        {
+            this.store = store;
+            this.sequenceNumber = sequenceNumber;
+            this.callback = callback;
+            this.callbackContext = callbackContext;
+        }
+
+        @Override
+        public void execute(IotHubStatusCode responseStatus, Object context)
+        {
+            /* Codes_SRS_DEVICE_IO_21_061: [If the message is completed with a status other than MESSAGE_CANCELLED_ONCLOSE or OUTBOUND_QUEUE_FULL, the callback shall acknowledge it in the message store.] */
+            if ((responseStatus != IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE) && (responseStatus != IotHubStatusCode.OUTBOUND_QUEUE_FULL))
+            {
+                storedMessageCallbacks.remove(this.sequenceNumber);
+                try
+                {
+                    this.store.acknowledge(this.sequenceNumber);
+                }
+                catch (IOException | IllegalStateException e)
+                {
+                    // the message stays in the store, and will be sent again.
+                    logger.LogError(e);
+                }
+            }
+
+            /* Codes_SRS_DEVICE_IO_21_062: [The callback shall call the callback provided with the message, if any, with its context.] */
+            if (this.callback != null)
+            {
+                this.callback.execute(responseStatus, this.callbackContext);
+            }
+        }
+    }
+
+    /**
+     * Bridges the transport notifications to the send and receive tasks.
+     */
+    private final class TransportWorkListener implements IotHubTransportListener
+    {
+        @Override
+        public void onSendWorkAvailable()
+        {
+            signalSendWork();
+        }
+
+        @Override
+        public void onReceiveWorkAvailable()
+        {
+            signalReceiveWork();
+        }
+    }
 }
@@ -13,7 +13,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.*;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.ABANDON;
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.COMPLETE;
@@ -28,6 +28,13 @@ public class DeviceTwin
 
     private final Object DEVICE_TWIN_LOCK = new Object();
 
+    /*
+        Reported properties waiting for the coalescing window to end, with the last value of each key
+     */
+    private final Map<String, Object> pendingReportedProperties = new HashMap<>();
+    private ScheduledExecutorService reportedPropertiesScheduler = null;
+    private ScheduledFuture<?> reportedPropertiesFlushTask = null;
+
     /*
         Callback to respond to user on all of its status
      */
@@ -316,6 +323,108 @@ public class DeviceTwin
             reportedPropertiesMap.put(p.getKey(), p.getValue());
         }
 
+        if (!canMerge(this.pendingReportedProperties, reportedPropertiesMap))
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_003: [**If a property deleted by a pending update is set again to an object, the method shall send the pending updates before merging the new ones.**]**
+             */
+            this.sendPendingReportedProperties();
+        }
+
+        /*
+        **Codes_SRS_DEVICETWIN_21_001: [**The method shall merge the properties with the pending updates, where the last value of each key replaces the previous ones, and the objects are merged key by key.**]**
+         */
+        merge(this.pendingReportedProperties, reportedPropertiesMap);
+
+        long coalescingWindowMillis = this.config.getReportedPropertiesCoalescingWindowMillis();
+        if (coalescingWindowMillis == 0)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_002: [**If the coalescing window is 0, the method shall send the pending updates at once.**]**
+             */
+            this.sendPendingReportedProperties();
+        }
+        else if (this.reportedPropertiesFlushTask == null)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_004: [**If the coalescing window is not 0, the method shall schedule the pending updates to be sent when the window of the first one ends.**]**
+             */
+            if (this.reportedPropertiesScheduler == null)
+            {
+                this.reportedPropertiesScheduler = Executors.newSingleThreadScheduledExecutor();
+            }
+            this.reportedPropertiesFlushTask = this.reportedPropertiesScheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flushScheduledReportedProperties();
+                }
+            }, coalescingWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the reported properties waiting for the coalescing window to end, in a single update.
+     *
+     * @throws IllegalArgumentException if the pending properties are not valid for the twin.
+     * @throws IllegalStateException if the transport is closed.
+     */
+    public synchronized void flushReportedProperties()
+    {
+        this.cancelScheduledReportedProperties();
+
+        if (this.pendingReportedProperties.isEmpty())
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_006: [**If there is no pending update, the method shall do nothing.**]**
+             */
+            return;
+        }
+
+        this.sendPendingReportedProperties();
+    }
+
+    /**
+     * Sends the pending reported properties, and stops the scheduler of the coalescing window.
+     */
+    public synchronized void close()
+    {
+        /*
+        **Codes_SRS_DEVICETWIN_21_008: [**The method shall send the pending updates.**]**
+         */
+        flushScheduledReportedProperties();
+
+        if (this.reportedPropertiesScheduler != null)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_009: [**The method shall shut down the scheduler of the coalescing window.**]**
+             */
+            this.reportedPropertiesScheduler.shutdownNow();
+            this.reportedPropertiesScheduler = null;
+        }
+    }
+
+    private void cancelScheduledReportedProperties()
+    {
+        if (this.reportedPropertiesFlushTask != null)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_005: [**The method shall cancel the scheduled send of the pending updates.**]**
+             */
+            this.reportedPropertiesFlushTask.cancel(false);
+            this.reportedPropertiesFlushTask = null;
+        }
+    }
+
+    private void sendPendingReportedProperties()
+    {
+        this.cancelScheduledReportedProperties();
+
+        // a property that the serializer refuses shall not stay pending and fail the next updates.
+        Map<String, Object> reportedPropertiesMap = new HashMap<>(this.pendingReportedProperties);
+        this.pendingReportedProperties.clear();
+
         /*
         **Codes_SRS_DEVICETWIN_25_011: [**The method shall send the property set to Twin Serializer for serilization by calling updateReportedProperty.**]**
          */
@@ -345,7 +454,65 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_015: [**This method shall send the message to the lower transport layers by calling sendEventAsync.**]**
          */
         this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, new deviceTwinRequestMessageCallback(), null);
+    }
+
+    private synchronized void flushScheduledReportedProperties()
+    {
+        try
+        {
+            this.flushReportedProperties();
+        }
+        catch (IllegalArgumentException | IllegalStateException e)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_007: [**If the pending updates cannot be sent when the coalescing window ends, the user shall be notified on the status callback as ERROR.**]**
+             */
+            deviceTwinStatusCallback.execute(IotHubStatusCode.ERROR, deviceTwinStatusCallbackContext);
+        }
+    }
+
+    /*
+        A patch deletes a property with null, so a property deleted and then set to an object is not the same
+        as the object merged into the property.
+     */
+    private static boolean canMerge(Map<String, Object> pending, Map<String, Object> update)
+    {
+        for (Map.Entry<String, Object> entry : update.entrySet())
+        {
+            if (entry.getValue() instanceof Map)
+            {
+                Object pendingValue = pending.get(entry.getKey());
+                if ((pendingValue == null) && pending.containsKey(entry.getKey()))
+                {
+                    return false;
+                }
+
+                if ((pendingValue instanceof Map) && !canMerge((Map<String, Object>)pendingValue, (Map<String, Object>)entry.getValue()))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 
+    private static void merge(Map<String, Object> pending, Map<String, Object> update)
+    {
+        for (Map.Entry<String, Object> entry : update.entrySet())
+        {
+            Object pendingValue = pending.get(entry.getKey());
+            if ((pendingValue instanceof Map) && (entry.getValue() instanceof Map))
+            {
+                // the pending map may be the user's own map, so it is copied before it changes.
+                Map<String, Object> merged = new HashMap<>((Map<String, Object>)pendingValue);
+                merge(merged, (Map<String, Object>)entry.getValue());
+                pending.put(entry.getKey(), merged);
+            }
+            else
+            {
+                pending.put(entry.getKey(), entry.getValue());
+            }
+        }
     }
 
     public void subscribeDesiredPropertiesNotification(Map<Property, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChange)
@@ -7,7 +7,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.UUID;
@@ -18,6 +17,9 @@ public class Message
 
     public static final Charset DEFAULT_IOTHUB_MESSAGE_CHARSET = StandardCharsets.UTF_8;
 
+    private static final MessageProperty[] NO_PROPERTIES = new MessageProperty[0];
+    private static final int INITIAL_PROPERTIES_CAPACITY = 8;
+
 
     // ----- Data Fields -----
 
@@ -113,9 +115,10 @@ public class Message
     private String deliveryAcknowledgement;
 
     /**
-     * User-defined properties.
+     * User-defined properties, in the first propertyCount positions of the array, in the order they were set.
      */
-    private ArrayList<MessageProperty> properties;
+    private MessageProperty[] properties;
+    private int propertyCount;
 
     /// <summary>
     /// The message body
@@ -215,24 +218,15 @@ public class Message
      */
     public String getProperty(String name)
     {
-        MessageProperty messageProperty = null;
-
-        for (MessageProperty currentMessageProperty: this.properties)
-        {
-            if (currentMessageProperty.hasSameName(name))
-            {
-                messageProperty = currentMessageProperty;
-                break;
-            }
-        }
+        int index = this.indexOfProperty(name);
 
         // Codes_SRS_MESSAGE_11_034: [If no value associated with the property name is found, the function shall return null.]
-        if (messageProperty == null) {
+        if (index < 0) {
             return null;
         }
 
         // Codes_SRS_MESSAGE_11_032: [The function shall return the value associated with the message property name, where the name can be either the HTTPS or AMQPS property name.]
-        return messageProperty.getValue();
+        return this.properties[index].getValue();
     }
 
     /**
@@ -256,24 +250,21 @@ public class Message
         }
 
         // Codes_SRS_MESSAGE_11_026: [The function shall set the message property to the given value.]
-        MessageProperty messageProperty = null;
+        MessageProperty messageProperty = new MessageProperty(name, value);
 
-        for (MessageProperty currentMessageProperty: this.properties)
+        int index = this.indexOfProperty(name);
+        if (index >= 0)
         {
-            if (currentMessageProperty.hasSameName(name))
-            {
-                messageProperty = currentMessageProperty;
-                break;
-            }
+            System.arraycopy(this.properties, index + 1, this.properties, index, this.propertyCount - index - 1);
+            this.propertyCount--;
         }
-
-        if (messageProperty != null)
+        else if (this.propertyCount == this.properties.length)
         {
-            this.properties.remove(messageProperty);
+            this.properties = Arrays.copyOf(this.properties, Math.max(INITIAL_PROPERTIES_CAPACITY, this.properties.length * 2));
         }
 
-        logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, logger.getMethodName());
-        this.properties.add(new MessageProperty(name, value));
+        logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, CustomLogger.METHOD_NAME);
+        this.properties[this.propertyCount++] = messageProperty;
     }
 
     /**
@@ -283,7 +274,38 @@ public class Message
      */
     public MessageProperty[] getProperties() {
         // Codes_SRS_MESSAGE_11_033: [The function shall return a copy of the message properties.]
-        return properties.toArray(new MessageProperty[this.properties.size()]);
+        return Arrays.copyOf(this.properties, this.propertyCount);
+    }
+
+    /**
+     * Returns the number of message properties. Together with {@link #getPropertyAt(int)},
+     * it walks the message properties without copying them.
+     *
+     * @return the number of message properties.
+     */
+    public int getPropertyCount()
+    {
+        // Codes_SRS_MESSAGE_21_002: [The function shall return the number of message properties.]
+        return this.propertyCount;
+    }
+
+    /**
+     * Returns the message property in the provided position, in the order the properties were set.
+     *
+     * @param index the position of the property, from 0 to {@link #getPropertyCount()} - 1.
+     * @return the message property.
+     * @throws IndexOutOfBoundsException if the index is not the position of a property.
+     */
+    public MessageProperty getPropertyAt(int index) throws IndexOutOfBoundsException
+    {
+        if ((index < 0) || (index >= this.propertyCount))
+        {
+            // Codes_SRS_MESSAGE_21_003: [If the index is not between 0 and the number of properties - 1, the function shall throw IndexOutOfBoundsException.]
+            throw new IndexOutOfBoundsException("index " + index + " is out of the " + this.propertyCount + " message properties");
+        }
+
+        // Codes_SRS_MESSAGE_21_004: [The function shall return the message property in the provided position, in the order the properties were set.]
+        return this.properties[index];
     }
 
     // ----- Private Methods -----
@@ -297,10 +319,24 @@ public class Message
         this.correlationId = UUID.randomUUID().toString();
         this.feedbackStatusCode = FeedbackStatusCodeEnum.none;
         this.ack = FeedbackStatusCodeEnum.none;
-        this.properties = new ArrayList<>();
+        this.properties = NO_PROPERTIES;
+        this.propertyCount = 0;
         this.logger = new CustomLogger(this.getClass());
     }
 
+    private int indexOfProperty(String name)
+    {
+        for (int index = 0; index < this.propertyCount; index++)
+        {
+            if (this.properties[index].hasSameName(name))
+            {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
     /**
      * Verifies whether the message is expired or not
      * @return true if the message is expired, false otherwise
@@ -320,7 +356,10 @@ public class Message
             long currentTime = System.currentTimeMillis();
             if (currentTime > expiryTime)
             {
-                logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), logger.getMethodName());
+                if (logger.isWarnEnabled())
+                {
+                    logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), CustomLogger.METHOD_NAME);
+                }
                 messageExpired = true;
             }
             else
@@ -381,7 +420,7 @@ public class Message
         // Codes_SRS_MESSAGE_34_047: [The function shall set the message's expiry time.]
         long currentTime = System.currentTimeMillis();
         this.expiryTime = currentTime + timeOut;
-        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), logger.getMethodName());
+        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -398,7 +437,17 @@ public class Message
 
         // Codes_SRS_MESSAGE_34_037: [The function shall set the message's expiry time to be the number of milliseconds since the epoch provided in absoluteTimeout.]
         this.expiryTime = absoluteTimeout;
-        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), absoluteTimeout, new Date(this.expiryTime), logger.getMethodName());
+        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), absoluteTimeout, new Date(this.expiryTime), CustomLogger.METHOD_NAME);
+    }
+
+    /**
+     * Getter for the expiryTime property
+     * @return The absolute expiry time, in milliseconds since the epoch, or 0 if the message does not expire.
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_MESSAGE_21_001: [The function shall return the message's absolute expiry time, or 0 if it is not set.]
+        return this.expiryTime;
     }
 
     /**
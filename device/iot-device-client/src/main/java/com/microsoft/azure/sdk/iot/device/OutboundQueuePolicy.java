@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * What the transport does with a new message when its outbound queue is full.
+ */
+public enum OutboundQueuePolicy
+{
+    /** The caller waits until the queue has room for the message. */
+    BLOCK,
+    /** The message is not queued, and its callback receives {@link IotHubStatusCode#OUTBOUND_QUEUE_FULL}. */
+    FAIL_FAST,
+    /** The oldest queued message is dropped, and its callback receives {@link IotHubStatusCode#OUTBOUND_QUEUE_FULL}. */
+    DROP_OLDEST,
+    /**
+     * The expired queued messages are dropped, and their callbacks receive {@link IotHubStatusCode#MESSAGE_EXPIRED}.
+     * If no message expired, the new message is handled as in {@link #FAIL_FAST}.
+     */
+    DROP_EXPIRED
+}
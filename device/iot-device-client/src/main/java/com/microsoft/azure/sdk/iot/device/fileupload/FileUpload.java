@@ -67,7 +67,7 @@ public final class FileUpload
         fileUploadStatusCallBack = new FileUploadStatusCallBack();
 
         logger = new CustomLogger(this.getClass());
-        logger.LogInfo("FileUpload object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("FileUpload object is created successfully, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -122,7 +122,7 @@ public final class FileUploadTask implements Runnable
         this.httpsTransportManager = httpsTransportManager;
 
         logger = new CustomLogger(this.getClass());
-        logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -141,7 +141,7 @@ public final class FileUploadTask implements Runnable
         catch (IOException | IllegalArgumentException | URISyntaxException | NullPointerException e) //Nobody will handel exception from this thread, so, convert it to an failed code in the user callback.
         {
             /* Codes_SRS_FILEUPLOADTASK_21_031: [If run failed to send the request, it shall call the userCallback with the status `ERROR`, and abort the upload.] */
-            logger.LogError("File upload failed to upload the stream to the blob. " + e.toString());
+            logger.LogError("File upload failed to upload the stream to the blob. %s", e);
             resultStatus = IotHubStatusCode.ERROR;
         }
 
@@ -159,7 +159,7 @@ public final class FileUploadTask implements Runnable
             }
             catch (StorageException | IOException | IllegalArgumentException e) //Nobody will handel exception from this thread, so, convert it to an failed code in the user callback.
             {
-                logger.LogError("File upload failed to upload the stream to the blob. " + e.toString());
+                logger.LogError("File upload failed to upload the stream to the blob. %s", e);
             /* Codes_SRS_FILEUPLOADTASK_21_030: [If the upload to blob failed, the run shall call the `userCallback` reporting an error status `ERROR`.] */
                 resultStatus = IotHubStatusCode.ERROR;
             /* Codes_SRS_FILEUPLOADTASK_21_022: [If the upload to blob failed, the run shall create a notification the IoT Hub with `isSuccess` equals false, `statusCode` equals -1.] */
@@ -269,7 +269,7 @@ public final class FileUploadTask implements Runnable
         catch (IllegalArgumentException |IOException | JsonIOException e) //Nobody will handel exception from this thread, so, convert it to an failed code in the user callback.
         {
             /* Codes_SRS_FILEUPLOADTASK_21_033: [If run failed to send the notification, it shall call the userCallback with the stratus `ERROR`, and abort the upload.] */
-            logger.LogError("File upload failed to report status to the iothub. " + e.toString());
+            logger.LogError("File upload failed to report status to the iothub. %s", e);
             responseStatus = IotHubStatusCode.ERROR;
         }
 
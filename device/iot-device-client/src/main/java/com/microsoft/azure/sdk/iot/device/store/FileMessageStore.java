@@ -0,0 +1,438 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.store;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * A durable store for the telemetry messages of a device, kept in a journal on disk until the
+ * IoT Hub acknowledges them. Set it in the client with the option "SetMessageStore", and the
+ * messages sent while the connection is down, or when the process stops, are sent again in order
+ * the next time the client is opened, even by a new process.
+ * </p>
+ * <p>
+ * The journal is a directory of segment files, written through memory mappings. Messages are
+ * forced to the storage device in batches, so a power loss can lose the last messages of the
+ * batch, while a crash of the process does not lose any. Acknowledgements are written the same
+ * way, so a message can be sent twice after a power loss, but it is never lost. Once all the
+ * messages of the oldest segments are acknowledged, their files are deleted.
+ * </p>
+ * <p>
+ * A store can only be used by one client at a time, and shall be closed by the application once
+ * the client is closed.
+ * </p>
+ */
+public final class FileMessageStore implements Closeable
+{
+    /** The default size of a segment file. */
+    private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /** The default number of messages appended between two writes to the storage device. */
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 16;
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final File directory;
+    private final int segmentSize;
+    private final int syncBatchSize;
+
+    private final Object storeLock = new Object();
+    private final Deque<JournalSegment> segments = new ArrayDeque<>();
+    private final SortedMap<Long, Message> pendingMessages = new TreeMap<>();
+    private final Map<Long, JournalSegment> pendingMessageSegments = new HashMap<>();
+    private JournalSegment activeSegment;
+    private long nextSequenceNumber;
+    private long nextSegmentId;
+    private int unsyncedCount;
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Opens the store in the provided directory, recovering the messages that were not
+     * acknowledged yet. The directory is created if it does not exist.
+     *
+     * @param directoryPath the path of the directory of the journal.
+     * @throws IllegalArgumentException if the provided path is null or empty.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public FileMessageStore(String directoryPath) throws IllegalArgumentException, IOException
+    {
+        this(directoryPath, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_BATCH_SIZE);
+    }
+
+    /**
+     * Opens the store in the provided directory, recovering the messages that were not
+     * acknowledged yet. The directory is created if it does not exist.
+     *
+     * @param directoryPath the path of the directory of the journal.
+     * @param segmentSize the size of each segment file. Bigger messages use a segment of their own.
+     * @param syncBatchSize the number of messages appended between two writes to the storage device.
+     * @throws IllegalArgumentException if the provided path is null or empty, or if the sizes are smaller than 1.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public FileMessageStore(String directoryPath, int segmentSize, int syncBatchSize) throws IllegalArgumentException, IOException
+    {
+        // Codes_SRS_FILEMESSAGESTORE_21_001: [If the provided directoryPath is null or empty, or if segmentSize or syncBatchSize is smaller than 1, the constructor shall throw IllegalArgumentException.]
+        if (directoryPath == null || directoryPath.isEmpty())
+        {
+            throw new IllegalArgumentException("directoryPath cannot be null or empty");
+        }
+        if (segmentSize < 1 || syncBatchSize < 1)
+        {
+            throw new IllegalArgumentException("segmentSize and syncBatchSize shall be at least 1");
+        }
+
+        this.directory = new File(directoryPath);
+        this.segmentSize = segmentSize;
+        this.syncBatchSize = syncBatchSize;
+
+        // Codes_SRS_FILEMESSAGESTORE_21_002: [If the directory does not exist and cannot be created, the constructor shall throw IOException.]
+        if (!this.directory.isDirectory() && !this.directory.mkdirs())
+        {
+            throw new IOException("Cannot create the message store directory " + directoryPath);
+        }
+
+        // Codes_SRS_FILEMESSAGESTORE_21_003: [The constructor shall recover, in order, the messages of the journal in the directory that were not acknowledged.]
+        this.recover();
+
+        // Codes_SRS_FILEMESSAGESTORE_21_004: [The constructor shall delete the segments whose messages are all acknowledged.]
+        this.compact();
+
+        // Codes_SRS_FILEMESSAGESTORE_21_005: [The constructor shall append the new records to a new segment.]
+        this.activeSegment = JournalSegment.create(this.directory, this.nextSegmentId++, this.segmentSize);
+        this.segments.addLast(this.activeSegment);
+    }
+
+    /**
+     * Appends a message to the journal.
+     *
+     * @param message the message to store.
+     * @return the sequence number of the message in the store.
+     * @throws IllegalArgumentException if the provided message is null.
+     * @throws IllegalStateException if the store is closed.
+     * @throws IOException if the message cannot be written.
+     */
+    public long append(Message message) throws IllegalArgumentException, IllegalStateException, IOException
+    {
+        // Codes_SRS_FILEMESSAGESTORE_21_006: [If the provided message is null, the append shall throw IllegalArgumentException.]
+        if (message == null)
+        {
+            throw new IllegalArgumentException("message cannot be null");
+        }
+
+        byte[] payload = encode(message);
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_007: [If the store is closed, the append shall throw IllegalStateException.]
+            this.checkOpen();
+
+            // Codes_SRS_FILEMESSAGESTORE_21_008: [The append shall write the message to the journal with the next sequence number, and keep it as pending.]
+            long sequenceNumber = this.nextSequenceNumber;
+            JournalSegment segment = this.write(JournalSegment.MESSAGE_RECORD, sequenceNumber, payload);
+            this.nextSequenceNumber++;
+            segment.incrementPendingCount();
+            this.pendingMessages.put(sequenceNumber, message);
+            this.pendingMessageSegments.put(sequenceNumber, segment);
+
+            // Codes_SRS_FILEMESSAGESTORE_21_009: [The append shall force the journal to the storage device once every syncBatchSize messages.]
+            if (++this.unsyncedCount >= this.syncBatchSize)
+            {
+                this.activeSegment.force();
+                this.unsyncedCount = 0;
+            }
+
+            return sequenceNumber;
+        }
+    }
+
+    /**
+     * Removes a message from the store, once the IoT Hub has acknowledged it.
+     *
+     * @param sequenceNumber the sequence number of the message.
+     * @throws IllegalStateException if the store is closed.
+     * @throws IOException if the acknowledgement cannot be written.
+     */
+    public void acknowledge(long sequenceNumber) throws IllegalStateException, IOException
+    {
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_010: [If the store is closed, the acknowledge shall throw IllegalStateException.]
+            this.checkOpen();
+
+            // Codes_SRS_FILEMESSAGESTORE_21_011: [If the message is not pending, the acknowledge shall do nothing.]
+            JournalSegment segment = this.pendingMessageSegments.remove(sequenceNumber);
+            if (segment == null)
+            {
+                return;
+            }
+
+            // Codes_SRS_FILEMESSAGESTORE_21_012: [The acknowledge shall write the acknowledgement to the journal and remove the message from the pending messages.]
+            this.write(JournalSegment.ACKNOWLEDGEMENT_RECORD, sequenceNumber, NO_PAYLOAD);
+            this.pendingMessages.remove(sequenceNumber);
+            segment.decrementPendingCount();
+
+            // Codes_SRS_FILEMESSAGESTORE_21_013: [The acknowledge shall delete the oldest segments whose messages are all acknowledged.]
+            this.compact();
+        }
+    }
+
+    /**
+     * Gets the messages that were not acknowledged yet.
+     *
+     * @return a copy of the pending messages, sorted by sequence number.
+     */
+    public SortedMap<Long, Message> getPendingMessages()
+    {
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_014: [The getPendingMessages shall return a copy of the pending messages, sorted by sequence number.]
+            return new TreeMap<>(this.pendingMessages);
+        }
+    }
+
+    /**
+     * Getter for the number of messages that were not acknowledged yet.
+     *
+     * @return the number of pending messages.
+     */
+    public int size()
+    {
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_015: [The size shall return the number of pending messages.]
+            return this.pendingMessages.size();
+        }
+    }
+
+    /**
+     * Forces all the appended records to the storage device.
+     *
+     * @throws IllegalStateException if the store is closed.
+     */
+    public void flush() throws IllegalStateException
+    {
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_016: [If the store is closed, the flush shall throw IllegalStateException.]
+            this.checkOpen();
+
+            // Codes_SRS_FILEMESSAGESTORE_21_017: [The flush shall force the journal to the storage device.]
+            this.activeSegment.force();
+            this.unsyncedCount = 0;
+        }
+    }
+
+    /**
+     * Forces all the appended records to the storage device and closes the store. The pending
+     * messages stay in the journal. If the store is already closed, the function does nothing.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this.storeLock)
+        {
+            // Codes_SRS_FILEMESSAGESTORE_21_018: [If the store is closed, the close shall do nothing.]
+            if (this.activeSegment == null)
+            {
+                return;
+            }
+
+            // Codes_SRS_FILEMESSAGESTORE_21_019: [The close shall force the journal to the storage device and close it.]
+            this.activeSegment.seal();
+            this.activeSegment = null;
+        }
+    }
+
+    private void checkOpen()
+    {
+        if (this.activeSegment == null)
+        {
+            throw new IllegalStateException("The message store is closed");
+        }
+    }
+
+    private JournalSegment write(byte type, long sequenceNumber, byte[] payload) throws IOException
+    {
+        if (!this.activeSegment.append(type, sequenceNumber, payload))
+        {
+            this.activeSegment.seal();
+            this.activeSegment = JournalSegment.create(this.directory, this.nextSegmentId++,
+                    Math.max(this.segmentSize, JournalSegment.recordSize(payload.length)));
+            this.segments.addLast(this.activeSegment);
+            this.activeSegment.append(type, sequenceNumber, payload);
+            this.unsyncedCount = 0;
+        }
+
+        return this.activeSegment;
+    }
+
+    private void recover() throws IOException
+    {
+        for (JournalSegment segment : JournalSegment.list(this.directory))
+        {
+            this.nextSegmentId = segment.getSegmentId() + 1;
+            this.segments.addLast(segment);
+            List<JournalSegment.Record> records = segment.read();
+            for (JournalSegment.Record record : records)
+            {
+                if (record.type == JournalSegment.MESSAGE_RECORD)
+                {
+                    try
+                    {
+                        this.pendingMessages.put(record.sequenceNumber, decode(record.payload));
+                        this.pendingMessageSegments.put(record.sequenceNumber, segment);
+                        segment.incrementPendingCount();
+                    }
+                    catch (IOException e)
+                    {
+                        logger.LogError("The message %s of the message store cannot be read and is dropped, method name is %s ", record.sequenceNumber, CustomLogger.METHOD_NAME);
+                    }
+                    this.nextSequenceNumber = Math.max(this.nextSequenceNumber, record.sequenceNumber + 1);
+                }
+                else if (record.type == JournalSegment.ACKNOWLEDGEMENT_RECORD)
+                {
+                    JournalSegment messageSegment = this.pendingMessageSegments.remove(record.sequenceNumber);
+                    if (messageSegment != null)
+                    {
+                        this.pendingMessages.remove(record.sequenceNumber);
+                        messageSegment.decrementPendingCount();
+                    }
+                }
+            }
+        }
+
+        logger.LogInfo("The message store recovered %s pending messages, method name is %s ", this.pendingMessages.size(), CustomLogger.METHOD_NAME);
+    }
+
+    /**
+     * Deletes the oldest segments while all their messages are acknowledged. A segment is only
+     * deleted after all the older ones, because it can hold the acknowledgements of their messages.
+     */
+    private void compact() throws IOException
+    {
+        JournalSegment oldest;
+        while ((oldest = this.segments.peekFirst()) != null && oldest != this.activeSegment && oldest.getPendingCount() == 0)
+        {
+            if (!oldest.delete())
+            {
+                // kept at the head, so the next compaction tries again.
+                logger.LogWarn("The message store cannot delete the segment %s, method name is %s ", oldest.getSegmentId(), CustomLogger.METHOD_NAME);
+                return;
+            }
+            this.segments.pollFirst();
+        }
+    }
+
+    private static byte[] encode(Message message) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(FORMAT_VERSION);
+        writeString(output, message.getMessageId());
+        writeString(output, message.getCorrelationId());
+        output.writeLong(message.getExpiryTime());
+
+        int propertyCount = message.getPropertyCount();
+        output.writeInt(propertyCount);
+        for (int index = 0; index < propertyCount; index++)
+        {
+            MessageProperty property = message.getPropertyAt(index);
+            output.writeUTF(property.getName());
+            output.writeUTF(property.getValue());
+        }
+
+        byte[] body = message.getBytes();
+        if (body == null)
+        {
+            output.writeInt(-1);
+        }
+        else
+        {
+            output.writeInt(body.length);
+            output.write(body);
+        }
+
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Message decode(byte[] payload) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        if (input.readByte() != FORMAT_VERSION)
+        {
+            throw new IOException("Unknown message format");
+        }
+
+        String messageId = readString(input);
+        String correlationId = readString(input);
+        long expiryTime = input.readLong();
+
+        int propertyCount = input.readInt();
+        String[] properties = new String[propertyCount * 2];
+        for (int i = 0; i < properties.length; i++)
+        {
+            properties[i] = input.readUTF();
+        }
+
+        int bodyLength = input.readInt();
+        Message message;
+        if (bodyLength < 0)
+        {
+            message = new Message();
+        }
+        else
+        {
+            byte[] body = new byte[bodyLength];
+            input.readFully(body);
+            message = new Message(body);
+        }
+
+        message.setMessageId(messageId);
+        message.setCorrelationId(correlationId);
+        if (expiryTime > 0)
+        {
+            message.setAbsoluteExpiryTime(expiryTime);
+        }
+        for (int i = 0; i < properties.length; i += 2)
+        {
+            message.setProperty(properties[i], properties[i + 1]);
+        }
+
+        return message;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null)
+        {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
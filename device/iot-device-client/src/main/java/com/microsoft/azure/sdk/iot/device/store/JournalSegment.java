@@ -0,0 +1,289 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * One file of the journal of a {@link FileMessageStore}. Records are only appended, through a
+ * memory mapping of the whole file, and the file is deleted once all its messages are acknowledged.
+ * </p>
+ * <p>
+ * Each record is its length after the length field, the CRC32 of its type, sequence number and
+ * payload, the type, the sequence number, and the payload. The unused end of the file is zeros, so
+ * a zero length marks the end of the records. A record with a wrong CRC is a write interrupted by a crash,
+ * and ends the records as well.
+ * </p>
+ */
+final class JournalSegment
+{
+    static final byte MESSAGE_RECORD = 1;
+    static final byte ACKNOWLEDGEMENT_RECORD = 2;
+
+    private static final String FILE_SUFFIX = ".journal";
+    private static final String FILE_NAME_FORMAT = "%020d" + FILE_SUFFIX;
+    private static final int LENGTH_SIZE = 4;
+    private static final int HEADER_SIZE = LENGTH_SIZE + 4 + 1 + 8;
+
+    private final File file;
+    private final long segmentId;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    /** The number of messages in this segment that are not acknowledged yet. */
+    private int pendingCount;
+
+    /** A record read from a segment. */
+    static final class Record
+    {
+        final byte type;
+        final long sequenceNumber;
+        final byte[] payload;
+
+        private Record(byte type, long sequenceNumber, byte[] payload)
+        {
+            this.type = type;
+            this.sequenceNumber = sequenceNumber;
+            this.payload = payload;
+        }
+    }
+
+    private JournalSegment(File file, long segmentId)
+    {
+        this.file = file;
+        this.segmentId = segmentId;
+    }
+
+    /**
+     * Creates a new segment file, mapped to be written.
+     *
+     * @param directory the directory of the journal.
+     * @param segmentId the id of the segment, bigger than the ids of all the existing segments.
+     * @param size the size of the file.
+     * @return the new segment.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    static JournalSegment create(File directory, long segmentId, int size) throws IOException
+    {
+        JournalSegment segment = new JournalSegment(new File(directory, String.format(FILE_NAME_FORMAT, segmentId)), segmentId);
+        segment.randomAccessFile = new RandomAccessFile(segment.file, "rw");
+        try
+        {
+            segment.randomAccessFile.setLength(size);
+            segment.buffer = segment.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        catch (IOException e)
+        {
+            segment.randomAccessFile.close();
+            throw e;
+        }
+
+        return segment;
+    }
+
+    /**
+     * Lists the segments in a journal directory, sorted by id.
+     *
+     * @param directory the directory of the journal.
+     * @return the segments, which are read only.
+     */
+    static List<JournalSegment> list(File directory)
+    {
+        List<JournalSegment> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(FILE_SUFFIX))
+                {
+                    try
+                    {
+                        segments.add(new JournalSegment(file, Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length()))));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // not a segment of this journal.
+                    }
+                }
+            }
+        }
+
+        Collections.sort(segments, new Comparator<JournalSegment>()
+        {
+            @Override
+            public int compare(JournalSegment first, JournalSegment second)
+            {
+                return Long.compare(first.segmentId, second.segmentId);
+            }
+        });
+        return segments;
+    }
+
+    /**
+     * Gets the size of a record with the given payload.
+     *
+     * @param payloadLength the length of the payload.
+     * @return the size of the record, with its header.
+     */
+    static int recordSize(int payloadLength)
+    {
+        return HEADER_SIZE + payloadLength;
+    }
+
+    /**
+     * Reads all the records of the segment.
+     *
+     * @return the records, in the order they were appended.
+     * @throws IOException if the file cannot be read.
+     */
+    List<Record> read() throws IOException
+    {
+        byte[] content;
+        RandomAccessFile reader = new RandomAccessFile(this.file, "r");
+        try
+        {
+            content = new byte[(int)reader.length()];
+            reader.readFully(content);
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        List<Record> records = new ArrayList<>();
+        ByteBuffer input = ByteBuffer.wrap(content);
+        while (input.remaining() >= HEADER_SIZE)
+        {
+            int length = input.getInt();
+            if (length < HEADER_SIZE - LENGTH_SIZE || length > input.remaining())
+            {
+                break;
+            }
+
+            int crc = input.getInt();
+            byte type = input.get();
+            long sequenceNumber = input.getLong();
+            byte[] payload = new byte[length - (HEADER_SIZE - LENGTH_SIZE)];
+            input.get(payload);
+            if (crc != checksum(type, sequenceNumber, payload))
+            {
+                break;
+            }
+
+            records.add(new Record(type, sequenceNumber, payload));
+        }
+
+        return records;
+    }
+
+    /**
+     * Appends a record to the segment.
+     *
+     * @param type the type of the record.
+     * @param sequenceNumber the sequence number of the message of the record.
+     * @param payload the payload of the record.
+     * @return {@code true} if the record was appended, or {@code false} if the segment is full.
+     */
+    boolean append(byte type, long sequenceNumber, byte[] payload)
+    {
+        if (this.buffer.remaining() < recordSize(payload.length))
+        {
+            return false;
+        }
+
+        // the length is written last, so a crash in the middle of the record leaves the end of the records.
+        int position = this.buffer.position();
+        this.buffer.position(position + LENGTH_SIZE);
+        this.buffer.putInt(checksum(type, sequenceNumber, payload));
+        this.buffer.put(type);
+        this.buffer.putLong(sequenceNumber);
+        this.buffer.put(payload);
+        this.buffer.putInt(position, recordSize(payload.length) - LENGTH_SIZE);
+        return true;
+    }
+
+    /**
+     * Writes the appended records to the storage device.
+     */
+    void force()
+    {
+        if (this.buffer != null)
+        {
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * Writes the appended records to the storage device, and stops writing to this segment.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    void seal() throws IOException
+    {
+        if (this.buffer != null)
+        {
+            this.buffer.force();
+            this.buffer = null;
+            this.randomAccessFile.close();
+            this.randomAccessFile = null;
+        }
+    }
+
+    /**
+     * Deletes the file of the segment.
+     *
+     * @return {@code true} if the file was deleted, and {@code false} otherwise.
+     * @throws IOException if the segment cannot be sealed.
+     */
+    boolean delete() throws IOException
+    {
+        this.seal();
+        return this.file.delete() || !this.file.exists();
+    }
+
+    long getSegmentId()
+    {
+        return this.segmentId;
+    }
+
+    int getPendingCount()
+    {
+        return this.pendingCount;
+    }
+
+    void incrementPendingCount()
+    {
+        this.pendingCount++;
+    }
+
+    void decrementPendingCount()
+    {
+        this.pendingCount--;
+    }
+
+    private static int checksum(byte type, long sequenceNumber, byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            crc.update((int)(sequenceNumber >>> shift));
+        }
+        crc.update(payload);
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,8 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+/**
+ * A durable store for the outbound messages of a device, so they survive
+ * connection outages and restarts of the process.
+ */
+package com.microsoft.azure.sdk.iot.device.store;
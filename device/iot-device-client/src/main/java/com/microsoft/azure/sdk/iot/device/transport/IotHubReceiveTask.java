@@ -45,7 +45,7 @@ public final class IotHubReceiveTask implements Runnable
         // Codes_SRS_IOTHUBRECEIVETASK_11_005: [The function shall not crash because of any error or exception thrown by the transport.]
         catch (Throwable e)
         {
-            logger.LogError(e.toString() + ": " + e.getMessage());
+            logger.LogError("%s: %s", e, e.getMessage());
             logger.LogDebug("Exception on receiving queued messages to IoT Hub", e);
         }
     }
@@ -50,7 +50,7 @@ public final class IotHubSendTask implements Runnable
         // Codes_SRS_IOTHUBSENDTASK_11_008: [The function shall not crash because of any error or exception thrown by the transport.]
         catch (Throwable e)
         {
-            logger.LogError(e.toString() + ": " + e.getMessage());
+            logger.LogError("%s: %s", e, e.getMessage());
             logger.LogDebug("Exception on sending queued messages to IoT Hub", e);
         }
     }
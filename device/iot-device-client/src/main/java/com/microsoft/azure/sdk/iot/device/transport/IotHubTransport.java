@@ -91,6 +91,13 @@ public interface IotHubTransport extends Closeable
      */
     boolean isEmpty();
 
+    /**
+     * Returns the number of messages waiting in the transport to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    int getOutboundQueueSize();
+
     /**
      * Registers a callback to be executed whenever the connection to the IoT Hub is lost or established.
      * 
@@ -99,4 +106,12 @@ public interface IotHubTransport extends Closeable
      * {@code null} if no callback is provided.
      */
     void registerConnectionStateCallback(IotHubConnectionStateCallback callback, Object callbackContext);
+
+    /**
+     * Registers a listener to be notified whenever the transport has messages to send,
+     * callbacks to invoke, or received messages to handle.
+     *
+     * @param listener the listener to be notified. Can be {@code null} to stop the notifications.
+     */
+    void registerTransportListener(IotHubTransportListener listener);
 }
@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+/**
+ * Receives notifications from an {@link IotHubTransport} when it has work to be done, so the
+ * send and receive tasks can be triggered on demand instead of polling the transport.
+ */
+public interface IotHubTransportListener
+{
+    /**
+     * Called when the transport has outbound messages to send or completed requests
+     * whose callbacks are waiting to be invoked.
+     */
+    void onSendWorkAvailable();
+
+    /**
+     * Called when the transport received a message from the IoT Hub that is waiting
+     * to be handled.
+     */
+    void onReceiveWorkAvailable();
+}
@@ -0,0 +1,284 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.OutboundQueuePolicy;
+import com.microsoft.azure.sdk.iot.device.ResponseMessage;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * The queue of the messages waiting in a transport to be sent. New messages are bounded by the
+ * capacity in the {@link DeviceClientConfig}, and when the queue is full the
+ * {@link OutboundQueuePolicy} in the configuration decides what happens to them. The messages
+ * rejected or dropped by the policy are completed in the callback list of the transport.
+ * </p>
+ * <p>
+ * Messages that go back to the queue because they could not be sent are not bounded, so the
+ * transport never waits on its own queue.
+ * </p>
+ */
+public final class OutboundPacketQueue
+{
+    private final DeviceClientConfig config;
+    private final Queue<IotHubCallbackPacket> callbackList;
+
+    private final ArrayDeque<IotHubOutboundPacket> packets = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * Constructor.
+     *
+     * @param config the configuration with the capacity and the policy of the queue.
+     * @param callbackList the callback list of the transport, for the messages rejected or dropped.
+     * @throws IllegalArgumentException if one of the parameters is {@code null}.
+     */
+    public OutboundPacketQueue(DeviceClientConfig config, Queue<IotHubCallbackPacket> callbackList) throws IllegalArgumentException
+    {
+        // Codes_SRS_OUTBOUNDPACKETQUEUE_21_001: [If the config or the callbackList is null, the constructor shall throw IllegalArgumentException.]
+        if (config == null || callbackList == null)
+        {
+            throw new IllegalArgumentException("config and callbackList cannot be null");
+        }
+
+        // Codes_SRS_OUTBOUNDPACKETQUEUE_21_002: [The constructor shall create an empty queue that reads its capacity and policy from the config.]
+        this.config = config;
+        this.callbackList = callbackList;
+    }
+
+    /**
+     * Adds a new message at the end of the queue, applying the policy of the configuration
+     * if the queue is full. With {@link OutboundQueuePolicy#BLOCK}, this function waits for
+     * the transport to send the queued messages, so it shall not be called from a message
+     * callback.
+     *
+     * @param packet the packet with the message to send.
+     */
+    public void add(IotHubOutboundPacket packet)
+    {
+        this.lock.lock();
+        try
+        {
+            while (this.isFull())
+            {
+                OutboundQueuePolicy policy = this.config.getOutboundQueuePolicy();
+                if (policy == OutboundQueuePolicy.BLOCK)
+                {
+                    // Codes_SRS_OUTBOUNDPACKETQUEUE_21_004: [If the queue is full and the policy is BLOCK, the function shall wait until the queue has room for the message.]
+                    try
+                    {
+                        this.notFull.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Codes_SRS_OUTBOUNDPACKETQUEUE_21_005: [If the thread is interrupted while waiting, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the message to the callback list, and keep the thread interrupted.]
+                        Thread.currentThread().interrupt();
+                        this.addToCallbackList(packet, IotHubStatusCode.OUTBOUND_QUEUE_FULL);
+                        return;
+                    }
+                }
+                else if (policy == OutboundQueuePolicy.DROP_OLDEST)
+                {
+                    // Codes_SRS_OUTBOUNDPACKETQUEUE_21_006: [If the queue is full and the policy is DROP_OLDEST, the function shall remove the oldest message and add the status OUTBOUND_QUEUE_FULL with its callback and context to the callback list.]
+                    this.addToCallbackList(this.packets.poll(), IotHubStatusCode.OUTBOUND_QUEUE_FULL);
+                }
+                else if (policy == OutboundQueuePolicy.DROP_EXPIRED && this.removeExpired())
+                {
+                    // Codes_SRS_OUTBOUNDPACKETQUEUE_21_007: [If the queue is full and the policy is DROP_EXPIRED, the function shall remove the expired messages and add the status MESSAGE_EXPIRED with their callbacks and contexts to the callback list.]
+                    continue;
+                }
+                else
+                {
+                    // Codes_SRS_OUTBOUNDPACKETQUEUE_21_008: [If the queue is full and the policy is FAIL_FAST, or DROP_EXPIRED with no expired message, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the new message to the callback list.]
+                    this.addToCallbackList(packet, IotHubStatusCode.OUTBOUND_QUEUE_FULL);
+                    return;
+                }
+            }
+
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_003: [The function shall add the packet at the end of the queue.]
+            this.packets.add(packet);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back a message that could not be sent at the head of the queue, ignoring the capacity.
+     *
+     * @param packet the packet with the message to send again.
+     */
+    public void addFirst(IotHubOutboundPacket packet)
+    {
+        this.lock.lock();
+        try
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_009: [The function shall add the packet at the head of the queue, even if the queue is full.]
+            this.packets.addFirst(packet);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back messages that could not be sent at the end of the queue, ignoring the capacity.
+     *
+     * @param packets the packets with the messages to send again.
+     */
+    public void requeue(Collection<IotHubOutboundPacket> packets)
+    {
+        this.lock.lock();
+        try
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_010: [The function shall add the packets at the end of the queue, even if the queue is full.]
+            this.packets.addAll(packets);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the message at the head of the queue.
+     *
+     * @return the packet at the head of the queue, or {@code null} if the queue is empty.
+     */
+    public IotHubOutboundPacket poll()
+    {
+        this.lock.lock();
+        try
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_011: [The function shall remove and return the packet at the head of the queue, or null if the queue is empty, and wake up the callers waiting for room.]
+            IotHubOutboundPacket packet = this.packets.poll();
+            if (packet != null)
+            {
+                this.notFull.signal();
+            }
+            return packet;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the message at the head of the queue.
+     *
+     * @return the packet at the head of the queue.
+     * @throws NoSuchElementException if the queue is empty.
+     */
+    public IotHubOutboundPacket remove() throws NoSuchElementException
+    {
+        IotHubOutboundPacket packet = this.poll();
+        if (packet == null)
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_012: [If the queue is empty, the function shall throw NoSuchElementException.]
+            throw new NoSuchElementException("the outbound queue is empty");
+        }
+
+        return packet;
+    }
+
+    /**
+     * Returns the message at the head of the queue without removing it.
+     *
+     * @return the packet at the head of the queue, or {@code null} if the queue is empty.
+     */
+    public IotHubOutboundPacket peek()
+    {
+        this.lock.lock();
+        try
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_013: [The function shall return the packet at the head of the queue without removing it, or null if the queue is empty.]
+            return this.packets.peek();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of messages in the queue.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int size()
+    {
+        this.lock.lock();
+        try
+        {
+            // Codes_SRS_OUTBOUNDPACKETQUEUE_21_014: [The function shall return the number of packets in the queue.]
+            return this.packets.size();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return {@code true} if no message is waiting to be sent, and {@code false} otherwise.
+     */
+    public boolean isEmpty()
+    {
+        // Codes_SRS_OUTBOUNDPACKETQUEUE_21_015: [The function shall return true if the queue has no packets, and false otherwise.]
+        return this.size() == 0;
+    }
+
+    private boolean isFull()
+    {
+        // The config does not accept a capacity smaller than 1, so a smaller one does not bound the queue.
+        int capacity = this.config.getOutboundQueueCapacity();
+        return capacity > 0 && this.packets.size() >= capacity;
+    }
+
+    private boolean removeExpired()
+    {
+        boolean removed = false;
+        Iterator<IotHubOutboundPacket> iterator = this.packets.iterator();
+        while (iterator.hasNext())
+        {
+            IotHubOutboundPacket packet = iterator.next();
+            if (packet.getMessage() != null && packet.getMessage().isExpired())
+            {
+                iterator.remove();
+                this.addToCallbackList(packet, IotHubStatusCode.MESSAGE_EXPIRED);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    private void addToCallbackList(IotHubOutboundPacket packet, IotHubStatusCode status)
+    {
+        if (packet.getResponseCallback() != null)
+        {
+            ResponseMessage responseMessage = new ResponseMessage(new byte[]{}, status);
+            this.callbackList.add(new IotHubCallbackPacket(responseMessage, packet.getResponseCallback(), packet.getContext()));
+        }
+        else
+        {
+            this.callbackList.add(new IotHubCallbackPacket(status, packet.getCallback(), packet.getContext()));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * A pool of AMQPS connections shared by many {@link com.microsoft.azure.sdk.iot.device.DeviceClient}s,
+ * for gateways that front many devices. Each device gets its own session and links on one of the
+ * pooled connections, and authenticates on it with its own SAS token using claims based security,
+ * so the number of reactor threads and TLS connections depends on the size of the pool instead of
+ * on the number of devices.
+ * </p>
+ * <p>
+ * All the devices in a pool shall belong to the same IoT Hub, use SAS token authentication and use
+ * the same protocol (AMQPS or AMQPS_WS). Set the pool on each client with the
+ * {@code SetAmqpsConnectionPool} option before opening it, and close the pool once all its clients
+ * are closed.
+ * </p>
+ */
+public final class AmqpsConnectionPool implements Closeable
+{
+    private final int connectionCount;
+    private final List<AmqpsSharedConnection> connections = new ArrayList<>();
+
+    private String iotHubHostname;
+    private boolean useWebSockets;
+    private boolean isClosed = false;
+
+    private final CustomLogger logger;
+
+    /**
+     * Creates a pool that opens up to {@code connectionCount} connections, one for each of the first
+     * devices, and then adds each new device to the connection with the fewest devices.
+     *
+     * @param connectionCount the maximum number of AMQPS connections of the pool.
+     * @throws IllegalArgumentException if the connectionCount is smaller than 1.
+     */
+    public AmqpsConnectionPool(int connectionCount)
+    {
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_001: [The constructor shall throw IllegalArgumentException if the connectionCount is smaller than 1.]
+        if (connectionCount < 1)
+        {
+            throw new IllegalArgumentException("connectionCount shall be at least 1");
+        }
+
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_002: [The constructor shall save the connectionCount.]
+        this.connectionCount = connectionCount;
+        this.logger = new CustomLogger(this.getClass());
+    }
+
+    /**
+     * Getter for the maximum number of connections of the pool.
+     *
+     * @return the maximum number of AMQPS connections of the pool.
+     */
+    public int getConnectionCount()
+    {
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_003: [The function shall return the saved connectionCount.]
+        return this.connectionCount;
+    }
+
+    /**
+     * Closes all the connections of the pool. The devices that are still open lose their connection.
+     *
+     * @throws IOException if a connection cannot be closed.
+     */
+    public synchronized void close() throws IOException
+    {
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_004: [The function shall close all the connections of the pool and mark the pool as closed.]
+        this.isClosed = true;
+        IOException closeException = null;
+        for (AmqpsSharedConnection connection : this.connections)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (IOException e)
+            {
+                logger.LogError(e);
+                closeException = e;
+            }
+        }
+        this.connections.clear();
+
+        if (closeException != null)
+        {
+            throw closeException;
+        }
+    }
+
+    /**
+     * Adds the device session to the connection with the fewest devices, opening a new connection
+     * if the pool is not full yet.
+     *
+     * @param deviceSession the device session to add.
+     * @return the connection that carries the device session.
+     * @throws IllegalArgumentException if the device cannot share the connections of this pool.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    synchronized AmqpsSharedConnection register(AmqpsDeviceSession deviceSession)
+    {
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_005: [The function shall throw IllegalStateException if the pool is closed.]
+        if (this.isClosed)
+        {
+            throw new IllegalStateException("The AMQPS connection pool is closed.");
+        }
+
+        DeviceClientConfig config = deviceSession.getConfig();
+
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_006: [The function shall throw IllegalArgumentException if the device does not use SAS token authentication.]
+        if (config.getAuthenticationType() != DeviceClientConfig.AuthType.SAS_TOKEN)
+        {
+            throw new IllegalArgumentException("Only devices that use SAS token authentication can share an AMQPS connection.");
+        }
+
+        if (this.iotHubHostname == null)
+        {
+            this.iotHubHostname = config.getIotHubHostname();
+            this.useWebSockets = config.isUseWebsocket();
+        }
+        else if (!this.iotHubHostname.equalsIgnoreCase(config.getIotHubHostname()) || this.useWebSockets != config.isUseWebsocket())
+        {
+            // Codes_SRS_AMQPSCONNECTIONPOOL_21_007: [The function shall throw IllegalArgumentException if the device does not use the same IoT Hub and protocol as the devices already in the pool.]
+            throw new IllegalArgumentException("All the devices of an AMQPS connection pool shall use the same IoT Hub and protocol.");
+        }
+
+        AmqpsSharedConnection selectedConnection = null;
+        if (this.connections.size() < this.connectionCount)
+        {
+            // Codes_SRS_AMQPSCONNECTIONPOOL_21_008: [If the pool has less than connectionCount connections, the function shall create a new connection for the device.]
+            selectedConnection = new AmqpsSharedConnection(config);
+            this.connections.add(selectedConnection);
+        }
+        else
+        {
+            // Codes_SRS_AMQPSCONNECTIONPOOL_21_009: [If the pool is full, the function shall select the connection with the fewest device sessions.]
+            for (AmqpsSharedConnection connection : this.connections)
+            {
+                if (selectedConnection == null || connection.getDeviceSessionCount() < selectedConnection.getDeviceSessionCount())
+                {
+                    selectedConnection = connection;
+                }
+            }
+        }
+
+        // Codes_SRS_AMQPSCONNECTIONPOOL_21_010: [The function shall add the device session to the selected connection and return it.]
+        selectedConnection.addDeviceSession(deviceSession);
+        logger.LogInfo("Device %s added to a shared AMQPS connection with %s devices, method name is %s ", config.getDeviceId(), selectedConnection.getDeviceSessionCount(), CustomLogger.METHOD_NAME);
+        return selectedConnection;
+    }
+}
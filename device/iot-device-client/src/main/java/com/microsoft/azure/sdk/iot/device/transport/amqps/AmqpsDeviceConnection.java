@@ -0,0 +1,61 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.IotHubMessageResult;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import org.apache.qpid.proton.message.Message;
+
+import java.io.IOException;
+
+/**
+ * The AMQPS link set used by an {@link AmqpsTransport} to exchange messages for one device, either
+ * over a connection of its own or over a connection shared with other devices.
+ */
+interface AmqpsDeviceConnection
+{
+    /**
+     * Opens the links of the device and waits for them to be ready.
+     * @throws IOException if the links cannot be opened.
+     */
+    void open() throws IOException;
+
+    /**
+     * Closes the links of the device.
+     * @throws IOException if the links cannot be closed.
+     */
+    void close() throws IOException;
+
+    /**
+     * Reserves the id of the next message to send. The caller registers the message under this id
+     * before it calls {@link #sendMessage(int, Message, MessageType)}, so the acknowledgement of the
+     * message always finds it.
+     * @return the id that identifies the message when it is acknowledged.
+     */
+    int nextMessageId();
+
+    /**
+     * Queues the message to be sent using the sender link of its type.
+     * @param messageId the id reserved for the message with {@link #nextMessageId()}.
+     * @param message The message to be sent.
+     * @param messageType the type of the message being sent
+     * @return true if the message was queued, or false if it could not be sent.
+     * @throws IOException if send message fails
+     */
+    Boolean sendMessage(int messageId, Message message, MessageType messageType) throws IOException;
+
+    /**
+     * Sends the message result for a previously received message.
+     * @param message the message to be acknowledged.
+     * @param result the message result.
+     * @return true if the message was acknowledged, false otherwise.
+     */
+    Boolean sendMessageResult(AmqpsMessage message, IotHubMessageResult result);
+
+    /**
+     * Subscribes a listener to the events of the device links.
+     * @param listener the listener to be subscribed.
+     */
+    void addListener(ServerListener listener);
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
+import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.transport.State;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.message.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The session and links of one device on an {@link AmqpsSharedConnection} of an {@link AmqpsConnectionPool}.
+ * The events of the device links are delivered by the shared connection on its reactor thread.
+ */
+final class AmqpsDeviceSession implements AmqpsDeviceConnection
+{
+    private static final int MAX_WAIT_TO_OPEN_CLOSE_CONNECTION = 1*60*1000; // 1 minute timeout
+    private static final String CBS_AUDIENCE_FORMAT = "%s/devices/%s";
+
+    private final DeviceClientConfig config;
+    private final ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList;
+    /** The device operations by the name of their receiver link. */
+    private final Map<String, AmqpsDeviceOperations> receiverLinkOperations = new HashMap<>();
+    private final AmqpsConnectionPool connectionPool;
+    private final List<ServerListener> listeners = new ArrayList<>();
+
+    private final ObjectLock openLock = new ObjectLock();
+    private final ObjectLock closeLock = new ObjectLock();
+    private boolean isRemoved = false;
+
+    private AmqpsSharedConnection sharedConnection;
+    private volatile State state = State.CLOSED;
+    /** Messages and dispositions waiting for the reactor thread. */
+    private final AmqpsOutboundQueue outboundQueue = new AmqpsOutboundQueue();
+    private final AtomicBoolean isProcessScheduled = new AtomicBoolean(false);
+    private final Runnable processTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            isProcessScheduled.set(false);
+            processOutboundQueue();
+        }
+    };
+
+    /* Only used on the reactor thread of the shared connection. */
+    private Session session;
+    private int linkCredit = -1;
+    private boolean isAuthenticated = false;
+    private String lastSentSasToken;
+
+    private final CustomLogger logger;
+
+    /**
+     * Constructor to set up a device session that uses a connection of the given pool.
+     *
+     * @param config The {@link DeviceClientConfig} of the device.
+     * @param amqpsDeviceOperationsList the list of device operations to run
+     * @param connectionPool the pool that provides the connection.
+     * @throws IllegalArgumentException if any of the parameters is null, or if the list of device operations is empty.
+     */
+    AmqpsDeviceSession(DeviceClientConfig config, ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList, AmqpsConnectionPool connectionPool)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_001: [The constructor shall throw IllegalArgumentException if any of the parameters is null, or if the list of device operations is empty.]
+        if (config == null)
+        {
+            throw new IllegalArgumentException("The DeviceClientConfig cannot be null.");
+        }
+        if (amqpsDeviceOperationsList == null || amqpsDeviceOperationsList.isEmpty())
+        {
+            throw new IllegalArgumentException("amqpsDeviceOperationsList cannot be null or empty.");
+        }
+        if (connectionPool == null)
+        {
+            throw new IllegalArgumentException("connectionPool cannot be null.");
+        }
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_002: [The constructor shall save the parameters and set the state to CLOSED.]
+        this.config = config;
+        this.amqpsDeviceOperationsList = amqpsDeviceOperationsList;
+        // Codes_SRS_AMQPSDEVICESESSION_21_024: [The constructor shall index the device operation objects by the name of their receiver link.]
+        for (AmqpsDeviceOperations amqpsDeviceOperations : amqpsDeviceOperationsList)
+        {
+            this.receiverLinkOperations.put(amqpsDeviceOperations.getReceiverLinkTag(), amqpsDeviceOperations);
+        }
+        this.connectionPool = connectionPool;
+        this.logger = new CustomLogger(this.getClass());
+    }
+
+    /**
+     * Adds the device to a connection of the pool and waits for its links to be open.
+     *
+     * @throws IOException if the device cannot use the pool, or if the wait is interrupted.
+     */
+    public void open() throws IOException
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_003: [If the device session is already open, the function shall do nothing.]
+        if (this.sharedConnection != null)
+        {
+            return;
+        }
+
+        synchronized (openLock)
+        {
+            try
+            {
+                // Codes_SRS_AMQPSDEVICESESSION_21_004: [The function shall register the device session on the connection pool.]
+                this.sharedConnection = this.connectionPool.register(this);
+            }
+            catch (IllegalArgumentException | IllegalStateException e)
+            {
+                // Codes_SRS_AMQPSDEVICESESSION_21_005: [The function shall throw IOException if the registration fails.]
+                logger.LogError(e);
+                throw new IOException("Error opening Amqp device session: ", e);
+            }
+
+            // Codes_SRS_AMQPSDEVICESESSION_21_006: [The function shall wait for the device links to be open.]
+            try
+            {
+                if (this.state != State.OPEN)
+                {
+                    openLock.waitLock(MAX_WAIT_TO_OPEN_CLOSE_CONNECTION);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                logger.LogError(e);
+                throw new IOException("Waited too long for the connection to open.");
+            }
+        }
+    }
+
+    /**
+     * Removes the device from its shared connection, closing its links and session. The shared
+     * connection itself stays open for the other devices of the pool.
+     *
+     * @throws IOException if the wait is interrupted.
+     */
+    public void close() throws IOException
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_007: [If the device session is not open, the function shall do nothing.]
+        if (this.sharedConnection == null)
+        {
+            return;
+        }
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_008: [The function shall set the state to CLOSED, remove the device session from its shared connection, and wait for its links to be closed.]
+        this.state = State.CLOSED;
+        synchronized (closeLock)
+        {
+            this.isRemoved = false;
+            this.sharedConnection.removeDeviceSession(this);
+            try
+            {
+                if (!this.isRemoved)
+                {
+                    closeLock.waitLock(MAX_WAIT_TO_OPEN_CLOSE_CONNECTION);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                logger.LogError(e);
+                throw new IOException("Waited too long for the connection to close.");
+            }
+            finally
+            {
+                this.sharedConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Reserves the id of the next message to send.
+     * @return the id that identifies the message when it is acknowledged.
+     */
+    public int nextMessageId()
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_025: [The function shall return a new id from the outbound queue.]
+        return this.outboundQueue.nextMessageId();
+    }
+
+    /**
+     * Encodes the message and queues it to be sent by the reactor thread of the shared connection.
+     * @param messageId the id reserved for the message with {@link #nextMessageId()}.
+     * @param message The message to be sent.
+     * @param messageType the type of the message being sent
+     * @return true if the message was queued, or false if the connection is closed.
+     */
+    public Boolean sendMessage(int messageId, Message message, MessageType messageType)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_009: [If the state of the device session is CLOSED, the function shall return false.]
+        if (this.state == State.CLOSED)
+        {
+            return false;
+        }
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_010: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes.]
+        byte[] msgData = AmqpMessageEncoder.encode(message);
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_011: [The function shall queue the encoded message with the given id for the reactor thread, and return true.]
+        this.outboundQueue.addMessage(messageId, messageType, msgData);
+        scheduleProcess();
+        return true;
+    }
+
+    /**
+     * Queues the message result for the previously received message.
+     *
+     * @param message the message to be acknowledged.
+     * @param result the message result (one of {@link IotHubMessageResult#COMPLETE},
+     *               {@link IotHubMessageResult#ABANDON}, or {@link IotHubMessageResult#REJECT}).
+     * @return a boolean true if the message result was queued, or false if the device session is closed.
+     */
+    public Boolean sendMessageResult(final AmqpsMessage message, final IotHubMessageResult result)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_012: [If the device session is closed, the function shall return false.]
+        if (this.state == State.CLOSED)
+        {
+            return false;
+        }
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_013: [The function shall queue the acknowledgement of the message with the given result for the reactor thread, and return true.]
+        this.outboundQueue.addTask(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acknowledge(message, result);
+            }
+        });
+        scheduleProcess();
+        return true;
+    }
+
+    private void acknowledge(AmqpsMessage message, IotHubMessageResult result)
+    {
+        try
+        {
+            switch (result)
+            {
+                case COMPLETE:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.COMPLETE);
+                    break;
+                case REJECT:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.REJECT);
+                    break;
+                case ABANDON:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.ABANDON);
+                    break;
+                default:
+                    // should never happen.
+                    throw new IllegalStateException("Invalid IoT Hub message result.");
+            }
+        }
+        catch (Exception e)
+        {
+            // Codes_SRS_AMQPSDEVICESESSION_21_014: [The reactor thread shall log the error if message acknowledge throws exception.]
+            logger.LogError(e);
+        }
+    }
+
+    /**
+     * Queues a single task on the shared connection that processes the outbound queue, and wakes up its reactor.
+     */
+    private void scheduleProcess()
+    {
+        AmqpsSharedConnection connection = this.sharedConnection;
+        if (connection != null && this.isProcessScheduled.compareAndSet(false, true))
+        {
+            connection.runOnReactor(this.processTask);
+        }
+    }
+
+    /**
+     * Runs the queued acknowledgements and sends the queued messages up to the link credit. Shall be called on the reactor thread.
+     */
+    private void processOutboundQueue()
+    {
+        this.outboundQueue.runTasks();
+        if (this.state == State.OPEN && this.linkCredit > 0)
+        {
+            this.linkCredit -= this.outboundQueue.sendMessages(this.amqpsDeviceOperationsList, this.linkCredit, this.listeners);
+        }
+    }
+
+    /**
+     * Subscribe a listener to the list of listeners.
+     * @param listener the listener to be subscribed.
+     */
+    public void addListener(ServerListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    DeviceClientConfig getConfig()
+    {
+        return this.config;
+    }
+
+    /**
+     * Getter for the resource that the SAS token of this device grants access to.
+     * @return the $cbs audience of the device.
+     */
+    String getCbsAudience()
+    {
+        return String.format(CBS_AUDIENCE_FORMAT, this.config.getIotHubHostname(), this.config.getDeviceId());
+    }
+
+    String getSasToken()
+    {
+        return this.config.getSasTokenAuthentication().getRenewedSasToken();
+    }
+
+    String getLastSentSasToken()
+    {
+        return this.lastSentSasToken;
+    }
+
+    void setLastSentSasToken(String lastSentSasToken)
+    {
+        this.lastSentSasToken = lastSentSasToken;
+    }
+
+    boolean isAuthenticated()
+    {
+        return this.isAuthenticated;
+    }
+
+    /**
+     * Opens the session and links of the device once its SAS token was accepted.
+     * @param connection the shared connection.
+     * @return the new session, or null if the session was already open.
+     */
+    Session onAuthenticated(Connection connection)
+    {
+        this.isAuthenticated = true;
+        if (this.session != null)
+        {
+            return null;
+        }
+
+        // Codes_SRS_AMQPSDEVICESESSION_21_015: [Once authenticated, the device session shall create and open its own session, and open the links of all device operation objects on it.]
+        this.session = connection.session();
+        this.session.open();
+        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
+        {
+            try
+            {
+                amqpsDeviceOperationsList.get(i).openLinks(this.session);
+            }
+            catch (Exception e)
+            {
+                logger.LogDebug("openLinks has thrown exception: %s", e.getMessage());
+            }
+        }
+        return this.session;
+    }
+
+    /**
+     * Closes the links and session of the device.
+     * @return the closed session, or null if there was none.
+     */
+    Session closeSession()
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_016: [The function shall close the links of all device operation objects and the session.]
+        this.isAuthenticated = false;
+        this.linkCredit = -1;
+        this.outboundQueue.clear();
+        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
+        {
+            amqpsDeviceOperationsList.get(i).closeLinks();
+        }
+
+        Session closedSession = this.session;
+        if (closedSession != null)
+        {
+            closedSession.close();
+            this.session = null;
+        }
+        return closedSession;
+    }
+
+    void initLink(Link link)
+    {
+        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
+        {
+            try
+            {
+                amqpsDeviceOperationsList.get(i).initLink(link);
+            }
+            catch (Exception e)
+            {
+                logger.LogDebug("Exception in onLinkInit: %s", e.getMessage());
+            }
+        }
+    }
+
+    void onLinkFlow(Event event)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_023: [The function shall save the link credit and send the queued messages the new credit allows.]
+        this.linkCredit = event.getLink().getCredit();
+        processOutboundQueue();
+    }
+
+    void onLinkRemoteOpen(Event event)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_017: [The device session shall be OPEN when one of its receiver links is open remotely, and shall notify the listeners and the open lock.]
+        if (isReceiverLink(event.getLink().getName()))
+        {
+            this.state = State.OPEN;
+            for (ServerListener listener : listeners)
+            {
+                listener.connectionEstablished();
+            }
+            synchronized (openLock)
+            {
+                openLock.notifyLock();
+            }
+        }
+    }
+
+    /**
+     * Handles the remote close of a device link.
+     * @param event The Proton Event object.
+     * @return true if the device lost its links, false otherwise.
+     */
+    boolean onLinkRemoteClose(Event event)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_018: [If one of its receiver links is closed remotely, the device session shall be CLOSED and shall notify the listeners that the connection was lost.]
+        if (isReceiverLink(event.getLink().getName()))
+        {
+            connectionLost();
+            return true;
+        }
+        return false;
+    }
+
+    void onConnectionLost()
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_019: [If the shared connection is lost, the device session shall close its session, be CLOSED and notify the listeners that the connection was lost.]
+        closeSession();
+        connectionLost();
+    }
+
+    void onRemoved()
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_020: [Once removed from the shared connection, the device session shall notify the close lock.]
+        synchronized (closeLock)
+        {
+            this.isRemoved = true;
+            closeLock.notifyLock();
+        }
+    }
+
+    /**
+     * Event handler for the delivery event. This method handles both sending and receiving a message.
+     * @param event The Proton Event object.
+     */
+    void onDelivery(Event event)
+    {
+        // Codes_SRS_AMQPSDEVICESESSION_21_021: [The function shall call getMessageFromReceiverLink on the device operation object that owns the receiver link of the event, and notify the listeners of the received message.]
+        String linkName = event.getLink().getName();
+        AmqpsDeviceOperations receiverDeviceOperation = this.receiverLinkOperations.get(linkName);
+        if (receiverDeviceOperation != null)
+        {
+            try
+            {
+                AmqpsMessage amqpsMessage = receiverDeviceOperation.getMessageFromReceiverLink(linkName);
+                if (amqpsMessage != null)
+                {
+                    for (ServerListener listener : listeners)
+                    {
+                        listener.messageReceived(amqpsMessage);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                logger.LogDebug("onDelivery has thrown exception: %s", e.getMessage());
+            }
+        }
+        else if (event.getType() == Event.Type.DELIVERY)
+        {
+            // Codes_SRS_AMQPSDEVICESESSION_21_022: [If the delivery is on a sender link, the function shall notify the listeners of the remote delivery state and release the delivery.]
+            Delivery delivery = event.getDelivery();
+            DeliveryState remoteState = delivery.getRemoteState();
+            boolean isAccepted = remoteState != null && remoteState.equals(Accepted.getInstance());
+            Integer messageId = this.outboundQueue.getMessageId(delivery);
+            if (messageId != null)
+            {
+                for (ServerListener listener : listeners)
+                {
+                    listener.messageSent(messageId, isAccepted);
+                }
+            }
+            delivery.free();
+        }
+    }
+
+    private void connectionLost()
+    {
+        this.state = State.CLOSED;
+        for (ServerListener listener : listeners)
+        {
+            listener.connectionLost();
+        }
+    }
+
+    private boolean isReceiverLink(String linkName)
+    {
+        return this.receiverLinkOperations.containsKey(linkName);
+    }
+}
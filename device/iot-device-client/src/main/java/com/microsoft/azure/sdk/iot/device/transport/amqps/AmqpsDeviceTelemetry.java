@@ -224,11 +224,13 @@ public final class AmqpsDeviceTelemetry extends AmqpsDeviceOperations
         outgoingMessage.setProperties(properties);
 
         // Codes_SRS_AMQPSDEVICETELEMETRY_12_017: [The function shall copy the user properties to Proton message application properties excluding the reserved property names.]
-        if (message.getProperties().length > 0)
+        int propertyCount = message.getPropertyCount();
+        if (propertyCount > 0)
         {
-            Map<String, String> userProperties = new HashMap<>(message.getProperties().length);
-            for(MessageProperty messageProperty : message.getProperties())
+            Map<String, String> userProperties = new HashMap<>(propertyCount);
+            for(int propertyIndex = 0; propertyIndex < propertyCount; propertyIndex++)
             {
+                MessageProperty messageProperty = message.getPropertyAt(propertyIndex);
                 if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(messageProperty.getName()))
                 {
                     userProperties.put(messageProperty.getName(), messageProperty.getValue());
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.State;
@@ -21,9 +22,10 @@ import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.ReactorOptions;
 
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -33,15 +35,13 @@ import java.util.concurrent.TimeUnit;
  * An AMQPS IotHub connection between a device and an IoTHub. This class contains functionality for sending/receiving
  * a message, and logic to re-establish the connection with the IoTHub in case it gets lost.
  */
-public final class AmqpsIotHubConnection extends BaseHandler
+public final class AmqpsIotHubConnection extends BaseHandler implements AmqpsDeviceConnection
 {
     private static final int MAX_WAIT_TO_OPEN_CLOSE_CONNECTION = 1*60*1000; // 1 minute timeout
     private static final int MAX_WAIT_TO_TERMINATE_EXECUTOR = 30;
     private State state;
 
     private int linkCredit = -1;
-    /** The {@link Delivery} tag. */
-    private long nextTag = 0;
     private static final String WEB_SOCKET_PATH = "/$iothub/websocket";
     private static final String WEB_SOCKET_SUB_PROTOCOL = "AMQPWSB10";
     private static final int AMQP_PORT = 5671;
@@ -63,13 +63,18 @@ public final class AmqpsIotHubConnection extends BaseHandler
     private final ObjectLock openLock = new ObjectLock();
     private final ObjectLock closeLock = new ObjectLock();
 
-    private Reactor reactor;
+    private volatile Reactor reactor;
+
+    /** Messages and dispositions waiting for the reactor thread. */
+    private final AmqpsOutboundQueue outboundQueue = new AmqpsOutboundQueue();
 
     private Boolean reconnectCall = false;
     private int currentReconnectionAttempt = 1;
     private CustomLogger logger;
 
     private ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList;
+    /** The device operations by the name of their receiver link, only used on the reactor thread. */
+    private final Map<String, AmqpsDeviceOperations> receiverLinkOperations = new HashMap<>();
 
     /**
      * Constructor to set up connection parameters using the {@link DeviceClientConfig}.
@@ -121,6 +126,12 @@ public final class AmqpsIotHubConnection extends BaseHandler
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_001: [The constructor shall save the device operation list to private member variable.]
         this.amqpsDeviceOperationsList = amqpsDeviceOperationsList;
 
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_058: [The constructor shall index the device operation objects by the name of their receiver link.]
+        for (AmqpsDeviceOperations amqpsDeviceOperations : amqpsDeviceOperationsList)
+        {
+            this.receiverLinkOperations.put(amqpsDeviceOperations.getReceiverLinkTag(), amqpsDeviceOperations);
+        }
+
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_002: [The constructor shall save the configuration into private member variables.]
         this.config = config;
 
@@ -161,7 +172,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             logger.LogError(e);
             throw new IOException("Could not create Proton reactor");
         }
-        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, logger.getMethodName());
+        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -237,7 +248,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
 
         if (this.executorService != null) {
-            logger.LogInfo("Shutdown of executor service has started, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service has started, method name is %s ", CustomLogger.METHOD_NAME);
             this.executorService.shutdown();
             try
             {
@@ -256,7 +267,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 // (Re-)Cancel if current thread also interrupted
                 this.executorService.shutdownNow();
             }
-            logger.LogInfo("Shutdown of executor service completed, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service completed, method name is %s ", CustomLogger.METHOD_NAME);
         }
     }
 
@@ -284,7 +295,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         IotHubReactor iotHubReactor = new IotHubReactor(reactor);
         ReactorRunner reactorRunner = new ReactorRunner(iotHubReactor);
         executorService.submit(reactorRunner);
-        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     private void closeAsync()
@@ -292,6 +303,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_048 [If the AMQPS connection is already closed, the function shall do nothing.]
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_012: [The function shall set the status of the AMQPS connection to CLOSED.]
         this.state = State.CLOSED;
+        this.outboundQueue.clear();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_013: [The function shall close the AMQPS sender and receiver links,
         // the AMQPS session and the AMQPS connection.]
@@ -311,74 +323,46 @@ public final class AmqpsIotHubConnection extends BaseHandler
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_014: [The function shall stop the Proton reactor.]
 
         this.reactor.stop();
-        logger.LogInfo("Proton reactor has been stopped, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Proton reactor has been stopped, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
-     * Creates a binary message using the given content and messageId. Sends the created message using the sender link.
+     * Reserves the id of the next message to send.
+     * @return An {@link Integer} that identifies the message when it is acknowledged.
+     */
+    public int nextMessageId()
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_059: [The function shall return a new id from the outbound queue.]
+        return this.outboundQueue.nextMessageId();
+    }
+
+    /**
+     * Encodes the message and queues it to be sent by the reactor thread using the sender link.
+     * @param messageId the id reserved for the message with {@link #nextMessageId()}.
      * @param message The message to be sent.
      * @param messageType the type of the message being sent
      * @throws IOException if send message fails
-     * @return An {@link Integer} representing the hash of the message, or -1 if the connection is closed.
+     * @return true if the message was queued, or false if the connection is closed.
      */
-    public Integer sendMessage(Message message, MessageType messageType) throws IOException
+    public Boolean sendMessage(int messageId, Message message, MessageType messageType) throws IOException
     {
-        Integer deliveryHash;
+        Boolean isQueued = false;
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
-        // credit, the function shall return -1.]
-        if (this.state == State.CLOSED || this.linkCredit <= 0)
-        {
-            deliveryHash = -1;
-        }
-        else
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED, the function shall return false.]
+        if (this.state != State.CLOSED)
         {
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message and copy the contents to the byte buffer.]
-            byte[] msgData = new byte[1024];
-            int length;
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes.]
+            byte[] msgData = AmqpMessageEncoder.encode(message);
 
-            logger.LogInfo("Started encoding of message - entering in while loop, method name is %s ", logger.getMethodName());
-            while (true)
-            {
-                try
-                {
-                    length = message.encode(msgData, 0, msgData.length);
-                    logger.LogInfo("Completed encoding of message, length is %s - breaking the while loop to come out, method name is %s ", length, logger.getMethodName());
-                    break;
-                }
-                catch (BufferOverflowException e)
-                {
-                    // Codes_SRS_AMQPSIOTHUBCONNECTION_12_007: [The function shall doubles the buffer if encode throws BufferOverflowException.]
-                    logger.LogError(e);
-                    msgData = new byte[msgData.length * 2];
-                }
-            }
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_017: [The function shall set the delivery tag for the sender.]
-            byte[] tag = String.valueOf(this.nextTag++).getBytes();
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_052: [The function shall queue the encoded message with the given id for the reactor thread, and wake up the reactor.]
+            this.outboundQueue.addMessage(messageId, messageType, msgData);
+            wakeupReactor();
 
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_12_006: [The function shall call sendMessageAndGetDeliveryHash on all device operation objects.]
-            deliveryHash = -1;
-            for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
-            {
-                AmqpsSendReturnValue amqpsSendReturnValue = null;
-                try
-                {
-                    amqpsSendReturnValue = amqpsDeviceOperationsList.get(i).sendMessageAndGetDeliveryHash(messageType, msgData, 0, length, tag);
-                    if (amqpsSendReturnValue.isDeliverySuccessful())
-                    {
-                        deliveryHash = amqpsSendReturnValue.getDeliveryHash();
-                        break;
-                    }
-                }
-                catch (Exception e)
-                {
-                    throw new IOException("sendMessage failed!");
-                }
-            }
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return true after the message was queued.]
+            isQueued = true;
         }
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
-        return deliveryHash;
+        return isQueued;
     }
 
     /**
@@ -389,45 +373,58 @@ public final class AmqpsIotHubConnection extends BaseHandler
      *               {@link IotHubMessageResult#ABANDON}, or {@link IotHubMessageResult#REJECT}).
      * @return a boolean true if sent message was received with success, or false on fail.
      */
-    public Boolean sendMessageResult(AmqpsMessage message, IotHubMessageResult result)
+    public Boolean sendMessageResult(final AmqpsMessage message, final IotHubMessageResult result)
     {
         Boolean ackResult = false;
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_022: [If the AMQPS Connection is closed, the function shall return false.]
         if(this.state != State.CLOSED)
         {
-            try
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_053: [The function shall queue the acknowledgement for the reactor thread, and wake up the reactor.]
+            this.outboundQueue.addTask(new Runnable()
             {
-                logger.LogInfo("Acknowledgement for received message is %s, method name is %s ", result.name(), logger.getMethodName());
-                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_023: [If the message result is COMPLETE, ABANDON, or REJECT,
-                // the function shall acknowledge the last message with acknowledgement type COMPLETE, ABANDON, or REJECT respectively.]
-                switch (result)
+                @Override
+                public void run()
                 {
-                    case COMPLETE:
-                        message.acknowledge(AmqpsMessage.ACK_TYPE.COMPLETE);
-                        break;
-                    case REJECT:
-                        message.acknowledge(AmqpsMessage.ACK_TYPE.REJECT);
-                        break;
-                    case ABANDON:
-                        message.acknowledge(AmqpsMessage.ACK_TYPE.ABANDON);
-                        break;
-                    default:
-                        // should never happen.
-                        logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), logger.getMethodName());
-                        throw new IllegalStateException("Invalid IoT Hub message result.");
+                    acknowledge(message, result);
                 }
+            });
+            wakeupReactor();
 
-                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_024: [The function shall return true after the message was acknowledged.]
-                ackResult = true;
-            }
-            catch (Exception e)
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_024: [The function shall return true after the acknowledgement was queued.]
+            ackResult = true;
+        }
+        return ackResult;
+    }
+
+    private void acknowledge(AmqpsMessage message, IotHubMessageResult result)
+    {
+        try
+        {
+            logger.LogInfo("Acknowledgement for received message is %s, method name is %s ", result.name(), CustomLogger.METHOD_NAME);
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_023: [If the message result is COMPLETE, ABANDON, or REJECT,
+            // the function shall acknowledge the last message with acknowledgement type COMPLETE, ABANDON, or REJECT respectively.]
+            switch (result)
             {
-                // Codes_SRS_AMQPSIOTHUBCONNECTION_12_008: [The function shall return false if message acknowledge throws exception.]
-                logger.LogError(e);
-                //do nothing, since ackResult is already false
+                case COMPLETE:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.COMPLETE);
+                    break;
+                case REJECT:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.REJECT);
+                    break;
+                case ABANDON:
+                    message.acknowledge(AmqpsMessage.ACK_TYPE.ABANDON);
+                    break;
+                default:
+                    // should never happen.
+                    logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), CustomLogger.METHOD_NAME);
+                    throw new IllegalStateException("Invalid IoT Hub message result.");
             }
         }
-        return ackResult;
+        catch (Exception e)
+        {
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_12_008: [The reactor thread shall log the error if message acknowledge throws exception.]
+            logger.LogError(e);
+        }
     }
 
     /**
@@ -437,7 +434,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onConnectionInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_025: [The event handler shall get the Connection (Proton) object from the event handler and set the host name on the connection.]
         this.connection = event.getConnection();
         this.connection.setHostname(this.hostName);
@@ -462,7 +459,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -472,7 +469,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onConnectionBound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_030: [The event handler shall get the Transport (Proton) object from the event.]
         Transport transport = event.getConnection().getTransport();
         if(transport != null){
@@ -501,16 +498,16 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 logger.LogDebug("onConnectionBound has thrown exception while creating ssl context: %s", e.getMessage());
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     @Override
     public void onConnectionUnbound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_010: [The function sets the state to closed.]
         this.state = State.CLOSED;
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -520,7 +517,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onReactorInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_033: [The event handler shall set the current handler to handle the connection events.]
         if(this.useWebSockets)
         {
@@ -530,13 +527,13 @@ public final class AmqpsIotHubConnection extends BaseHandler
         {
             event.getReactor().connectionToHost(this.config.getIotHubHostname(), AMQP_PORT, this);
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     @Override
     public void onReactorFinal(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_011: [The function shall call notify lock on close lock.]
         synchronized (closeLock)
@@ -560,7 +557,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 logger.LogDebug("onReactorFinal has thrown exception: %s", e.getMessage());
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -570,56 +567,56 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onDelivery(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call getMessageFromReceiverLink on all device operation objects.]
-        AmqpsDeviceOperations receiverDeviceOperation = null;
-        AmqpsMessage amqpsMessage = null;
-        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call getMessageFromReceiverLink on the device operation object that owns the receiver link of the event.]
+        String linkName = event.getLink().getName();
+        AmqpsDeviceOperations receiverDeviceOperation = this.receiverLinkOperations.get(linkName);
+        if (receiverDeviceOperation != null)
         {
             try
             {
-                amqpsMessage = amqpsDeviceOperationsList.get(i).getMessageFromReceiverLink(event.getLink().getName());
+                AmqpsMessage amqpsMessage = receiverDeviceOperation.getMessageFromReceiverLink(linkName);
                 if (amqpsMessage != null)
                 {
-                    receiverDeviceOperation = amqpsDeviceOperationsList.get(i);
-                    break;
+                    // Codes_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
+                    this.messageReceivedFromServer(amqpsMessage);
                 }
-            } catch (IOException e)
+            }
+            catch (IOException e)
             {
                 logger.LogDebug("onDelivery has thrown exception: %s", e.getMessage());
             }
         }
-
-        if (receiverDeviceOperation != null)
-        {
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
-            this.messageReceivedFromServer(amqpsMessage);
-        }
         else
         {
             //Sender specific section for dispositions it receives
             if(event.getType() == Event.Type.DELIVERY)
             {
-                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", CustomLogger.METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
                 Delivery d = event.getDelivery();
                 DeliveryState remoteState = d.getRemoteState();
 
-                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) hash code to inform the AmqpsIotHubConnection of the message receipt.]
+                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) tag to inform the AmqpsIotHubConnection of the message receipt.]
                 boolean state = remoteState.equals(Accepted.getInstance());
-                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getMethodName());
-                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, CustomLogger.METHOD_NAME);
+                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", CustomLogger.METHOD_NAME);
                 //let any listener know that the message was received by the server
-                for(ServerListener listener : listeners)
+                // Codes_SRS_AMQPSIOTHUBCONNECTION_21_054: [The event handler shall identify the message by the id reserved by nextMessageId.]
+                Integer messageId = this.outboundQueue.getMessageId(d);
+                if (messageId != null)
                 {
-                    listener.messageSent(d.hashCode(), state);
+                    for(ServerListener listener : listeners)
+                    {
+                        listener.messageSent(messageId, state);
+                    }
                 }
 		        // release the delivery object which created in sendMessage().
 		        d.free();
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -629,11 +626,26 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
         this.linkCredit = event.getLink().getCredit();
-		logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+		logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, CustomLogger.METHOD_NAME);
+
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_055: [The event handler shall send the queued messages the new credit allows.]
+        processOutboundQueue();
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, raised on every reactor loop before it waits for I/O.
+     * Runs the work queued by the client threads.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_056: [The event handler shall run the queued acknowledgements, and send the queued messages up to the link credit.]
+        processOutboundQueue();
     }
 
     /**
@@ -644,18 +656,9 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_041: [The connection state shall be considered OPEN when the sender link is open remotely.]
-        boolean senderFound = false;
-        String linkName = event.getLink().getName();
-        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
-        {
-            if (linkName.equals(amqpsDeviceOperationsList.get(i).getReceiverLinkTag()))
-            {
-                senderFound = true;
-                break;
-            }
-        }
+        boolean senderFound = this.receiverLinkOperations.containsKey(event.getLink().getName());
 
         if (senderFound)
         {
@@ -671,7 +674,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 openLock.notifyLock();
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -683,28 +686,19 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkRemoteClose(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         this.state = State.CLOSED;
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_042 [The event handler shall attempt to startReconnect to the IoTHub.]
-        boolean senderFound = false;
-        String linkName = event.getLink().getName();
-        for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
-        {
-            if (linkName.equals(amqpsDeviceOperationsList.get(i).getReceiverLinkTag()))
-            {
-                senderFound = true;
-                break;
-            }
-        }
+        boolean senderFound = this.receiverLinkOperations.containsKey(event.getLink().getName());
 
         if (senderFound)
         {
-            logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", CustomLogger.METHOD_NAME);
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_048: [The event handler shall attempt to startReconnect to IoTHub.]
             startReconnect();
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -714,7 +708,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_016: [The function shall get the link from the event and call device operation objects with it.]
         Link link = event.getLink();
@@ -730,7 +724,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -740,12 +734,12 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onTransportError(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.METHOD_NAME);
         this.state = State.CLOSED;
-        logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_048: [The event handler shall attempt to startReconnect to IoTHub.]
         startReconnect();
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.METHOD_NAME);
     }
     
     /**
@@ -765,6 +759,9 @@ public final class AmqpsIotHubConnection extends BaseHandler
     {
         reconnectCall = true;
 
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_057: [The queued messages and acknowledgements shall be dropped when the connection is lost, the transport sends the messages in progress again.]
+        this.outboundQueue.clear();
+
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_007: [The event handler shall notify all server listeners when that the connection has been lost.]
         for(ServerListener listener : listeners)
         {
@@ -775,7 +772,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             currentReconnectionAttempt = 0;
 
         System.out.println("Lost connection to the server. Reconnection attempt " + currentReconnectionAttempt++ + "...");
-        logger.LogInfo("Lost connection to the server. Reconnection attempt %s, method name is %s ", currentReconnectionAttempt, logger.getMethodName());
+        logger.LogInfo("Lost connection to the server. Reconnection attempt %s, method name is %s ", currentReconnectionAttempt, CustomLogger.METHOD_NAME);
         try
         {
             Thread.sleep(TransportUtils.generateSleepInterval(currentReconnectionAttempt));
@@ -794,7 +791,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
      */
     private void messageReceivedFromServer(AmqpsMessage msg)
     {
-        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getMethodName());
+        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", CustomLogger.METHOD_NAME);
         for(ServerListener listener : listeners)
         {
             listener.messageReceived(msg);
@@ -846,6 +843,40 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
     }
 
+    private void processOutboundQueue()
+    {
+        this.outboundQueue.runTasks();
+        if (this.state == State.OPEN && this.linkCredit > 0)
+        {
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_017: [The reactor thread shall set the delivery tag for the sender.]
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_12_006: [The reactor thread shall call sendMessageAndGetDeliveryHash on all device operation objects.]
+            int sentCount = this.outboundQueue.sendMessages(this.amqpsDeviceOperationsList, this.linkCredit, this.listeners);
+            if (sentCount > 0)
+            {
+                this.linkCredit -= sentCount;
+                // let the reactor write the new deliveries instead of waiting for its I/O timeout.
+                wakeupReactor();
+            }
+        }
+    }
+
+    private void wakeupReactor()
+    {
+        Reactor currentReactor = this.reactor;
+        if (currentReactor != null)
+        {
+            try
+            {
+                currentReactor.wakeup();
+            }
+            catch (Exception e)
+            {
+                // the reactor is stopping, the queue is dropped on reconnection.
+                logger.LogDebug("wakeup has thrown exception: %s", e.getMessage());
+            }
+        }
+    }
+
     private Reactor createReactor() throws IOException
     {
         if (this.config.getAuthenticationType() == DeviceClientConfig.AuthType.X509_CERTIFICATE)
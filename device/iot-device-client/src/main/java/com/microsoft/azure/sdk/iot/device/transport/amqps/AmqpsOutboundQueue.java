@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import org.apache.qpid.proton.engine.Delivery;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the outbound messages and the dispositions of the received messages from the client threads
+ * to the Proton reactor thread, which is the only thread that can use the Proton engine. The client
+ * threads add work to lock free queues, and the reactor thread drains them.
+ */
+final class AmqpsOutboundQueue
+{
+    private final Queue<PendingMessage> pendingMessages = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    /** The id of the next message, which is also the tag of its {@link Delivery}. */
+    private final AtomicInteger nextMessageId = new AtomicInteger(0);
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    private static final class PendingMessage
+    {
+        private final int messageId;
+        private final MessageType messageType;
+        private final byte[] data;
+
+        private PendingMessage(int messageId, MessageType messageType, byte[] data)
+        {
+            this.messageId = messageId;
+            this.messageType = messageType;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Reserves the id of a message to add. Can be called from any thread.
+     *
+     * @return the id that identifies the message in {@link ServerListener#messageSent(Integer, Boolean)}.
+     */
+    int nextMessageId()
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_010: [The function shall return a new non negative id.]
+        return this.nextMessageId.getAndIncrement() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Adds an encoded message to the queue. Can be called from any thread.
+     *
+     * @param messageId the id reserved for the message with {@link #nextMessageId()}.
+     * @param messageType the type of the message.
+     * @param data the encoded message, with no spare bytes.
+     */
+    void addMessage(int messageId, MessageType messageType, byte[] data)
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_001: [The function shall add the message to the queue with the given id.]
+        this.pendingMessages.add(new PendingMessage(messageId, messageType, data));
+    }
+
+    /**
+     * Adds a task to run on the reactor thread. Can be called from any thread.
+     *
+     * @param task the task to run.
+     */
+    void addTask(Runnable task)
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_002: [The function shall add the task to the queue.]
+        this.pendingTasks.add(task);
+    }
+
+    /**
+     * Runs the queued tasks. Shall be called on the reactor thread.
+     */
+    void runTasks()
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_003: [The function shall run all the queued tasks in order.]
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+
+    /**
+     * Sends the queued messages, up to the given link credit. Shall be called on the reactor thread.
+     *
+     * @param amqpsDeviceOperationsList the device operations that own the sender links.
+     * @param linkCredit the maximum number of messages to send.
+     * @param listeners the listeners to notify of the messages that no link could send.
+     * @return the number of messages sent.
+     */
+    int sendMessages(List<AmqpsDeviceOperations> amqpsDeviceOperationsList, int linkCredit, List<ServerListener> listeners)
+    {
+        int sentCount = 0;
+        PendingMessage pendingMessage;
+        while (sentCount < linkCredit && (pendingMessage = this.pendingMessages.peek()) != null)
+        {
+            // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_004: [The function shall send each message using the first device operation object that accepts its type, with the id of the message as delivery tag.]
+            byte[] tag = AmqpMessageEncoder.deliveryTag(pendingMessage.messageId);
+            AmqpsSendReturnValue amqpsSendReturnValue = null;
+            try
+            {
+                for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
+                {
+                    amqpsSendReturnValue = amqpsDeviceOperationsList.get(i).sendMessageAndGetDeliveryHash(
+                            pendingMessage.messageType, pendingMessage.data, 0, pendingMessage.data.length, tag);
+                    if (amqpsSendReturnValue.isDeliverySuccessful())
+                    {
+                        break;
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_005: [If the links are not ready, the function shall keep the message in the queue and stop sending.]
+                logger.LogDebug("sendMessages has thrown exception: %s", e.getMessage());
+                break;
+            }
+
+            this.pendingMessages.poll();
+            if (amqpsSendReturnValue != null && amqpsSendReturnValue.isDeliverySuccessful())
+            {
+                sentCount++;
+            }
+            else
+            {
+                // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_007: [If no device operation object could send the message, the function shall notify the listeners that the message was not delivered.]
+                for (ServerListener listener : listeners)
+                {
+                    listener.messageSent(pendingMessage.messageId, false);
+                }
+            }
+        }
+
+        return sentCount;
+    }
+
+    /**
+     * Gets the id of a message sent by this queue from the tag of its delivery.
+     *
+     * @param delivery the delivery of the message.
+     * @return the id of the message, or null if the delivery tag is not a message id.
+     */
+    Integer getMessageId(Delivery delivery)
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_008: [The function shall return the id of the message sent with the given delivery, read from its delivery tag, or null if the tag is not a message id.]
+        try
+        {
+            long messageId = AmqpMessageEncoder.sequenceNumber(delivery.getTag());
+            if (messageId <= Integer.MAX_VALUE)
+            {
+                return (int)messageId;
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.LogDebug("getMessageId found a delivery tag that is not a message id: %s", e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops all the queued work, once the connection is lost. The transport sends the messages in
+     * progress again once the connection is established.
+     */
+    void clear()
+    {
+        // Codes_SRS_AMQPSOUTBOUNDQUEUE_21_009: [The function shall drop all the queued messages and tasks.]
+        this.pendingMessages.clear();
+        this.pendingTasks.clear();
+    }
+}
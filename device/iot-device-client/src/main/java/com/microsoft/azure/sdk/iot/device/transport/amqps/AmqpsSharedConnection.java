@@ -0,0 +1,737 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.engine.impl.TransportInternal;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.FlowController;
+import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Reactor;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One AMQPS connection of an {@link AmqpsConnectionPool}. The connection is authenticated anonymously,
+ * and each device on it authenticates its own session with a put-token request on the claims based
+ * security ($cbs) node. A single reactor thread owns all the Proton objects of the connection; device
+ * sessions are added and removed by queueing tasks that run on it.
+ */
+final class AmqpsSharedConnection extends BaseHandler
+{
+    private static final int AMQP_PORT = 5671;
+    private static final int AMQP_WEB_SOCKET_PORT = 443;
+    private static final String WEB_SOCKET_PATH = "/$iothub/websocket";
+    private static final String WEB_SOCKET_SUB_PROTOCOL = "AMQPWSB10";
+    private static final String SASL_ANONYMOUS = "ANONYMOUS";
+
+    private static final int REACTOR_TIMEOUT = 10;
+    private static final int TIMER_PERIOD_MILLISECS = 1000;
+    private static final long TOKEN_CHECK_PERIOD_MILLISECS = 60 * 1000;
+    private static final long AUTHENTICATION_RETRY_DELAY_MILLISECS = 5000;
+    private static final int MAX_WAIT_TO_TERMINATE_EXECUTOR = 60;
+
+    private static final String CBS_ADDRESS = "$cbs";
+    private static final String CBS_REPLY_ADDRESS = "cbs";
+    private static final String CBS_SENDER_LINK_TAG = "cbs_sender_link";
+    private static final String CBS_RECEIVER_LINK_TAG = "cbs_receiver_link";
+    private static final String CBS_OPERATION_KEY = "operation";
+    private static final String CBS_OPERATION_PUT_TOKEN = "put-token";
+    private static final String CBS_TYPE_KEY = "type";
+    private static final String CBS_TYPE_SAS_TOKEN = "azure-devices.net:sastoken";
+    private static final String CBS_NAME_KEY = "name";
+    private static final String CBS_STATUS_CODE_KEY = "status-code";
+    private static final int CBS_STATUS_OK = 200;
+
+    /** The configuration of the first device, that provides the IoT Hub address and the SSL context. */
+    private final DeviceClientConfig config;
+    private final String hostName;
+    private final boolean useWebSockets;
+
+    /** Guarded by this. */
+    private int deviceSessionCount = 0;
+    private ExecutorService executorService;
+    private volatile Reactor reactor;
+
+    /** Work requested by other threads, run on the reactor thread. */
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    /* Only used on the reactor thread. */
+    private Connection connection;
+    private Sender cbsSender;
+    private boolean isCbsReady = false;
+    private boolean isClosing = false;
+    private long nextCbsTag = 0;
+    private long nextCbsMessageId = 0;
+    private long nextConnectTime = 0;
+    private long nextTokenCheckTime = 0;
+    private int currentReconnectionAttempt = 0;
+    private final List<AmqpsDeviceSession> deviceSessions = new ArrayList<>();
+    private final Map<Session, AmqpsDeviceSession> sessionOwners = new HashMap<>();
+    private final Map<String, AmqpsDeviceSession> pendingCbsRequests = new HashMap<>();
+    private final Map<AmqpsDeviceSession, Long> authenticationDueTimes = new HashMap<>();
+
+    private final CustomLogger logger;
+
+    /**
+     * Creates a shared connection to the IoT Hub of the given device. The connection is only
+     * opened when the first device session is added.
+     *
+     * @param config the configuration of the first device of the connection.
+     */
+    AmqpsSharedConnection(DeviceClientConfig config)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_001: [The constructor shall save the configuration of the first device, and compute the host name and port from it.]
+        this.config = config;
+        this.useWebSockets = config.isUseWebsocket();
+        this.hostName = String.format("%s:%d", config.getIotHubHostname(), this.useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT);
+
+        this.logger = new CustomLogger(this.getClass());
+
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_002: [The constructor shall add a Handshaker and a FlowController (Proton) to handle the handshake and grant link credit.]
+        add(new Handshaker());
+        add(new FlowController());
+    }
+
+    /**
+     * Getter for the number of devices on this connection.
+     *
+     * @return the number of device sessions added and not removed yet.
+     */
+    synchronized int getDeviceSessionCount()
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_003: [The function shall return the number of device sessions added and not removed yet.]
+        return this.deviceSessionCount;
+    }
+
+    /**
+     * Adds a device to this connection. The device session is authenticated and its links are
+     * opened as soon as the connection is ready.
+     *
+     * @param deviceSession the device session to add.
+     * @throws IllegalStateException if the reactor cannot be created.
+     */
+    synchronized void addDeviceSession(final AmqpsDeviceSession deviceSession)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_004: [If the reactor thread is not running, the function shall create a Proton reactor and run it on a new single thread executor.]
+        if (this.executorService == null)
+        {
+            startReactor();
+        }
+        this.deviceSessionCount++;
+
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_005: [The function shall queue a task that adds the device session to the connection, and authenticates it if the $cbs node is ready.]
+        runOnReactor(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deviceSessions.add(deviceSession);
+                if (isCbsReady)
+                {
+                    authenticate(deviceSession);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes a device from this connection, closing its links and session. The device session is
+     * notified once it has been removed.
+     *
+     * @param deviceSession the device session to remove.
+     */
+    synchronized void removeDeviceSession(final AmqpsDeviceSession deviceSession)
+    {
+        this.deviceSessionCount--;
+
+        Runnable removeTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deviceSessions.remove(deviceSession);
+                authenticationDueTimes.remove(deviceSession);
+                pendingCbsRequests.values().removeAll(Collections.singleton(deviceSession));
+                sessionOwners.remove(deviceSession.closeSession());
+                deviceSession.onRemoved();
+            }
+        };
+
+        if (this.executorService == null)
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_007: [If the reactor thread is not running, the function shall remove the device session on the caller thread.]
+            removeTask.run();
+        }
+        else
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_006: [The function shall queue a task that closes the device session and removes it from the connection.]
+            runOnReactor(removeTask);
+        }
+    }
+
+    /**
+     * Closes the connection and stops its reactor thread.
+     *
+     * @throws IOException if the reactor thread does not stop in time.
+     */
+    synchronized void close() throws IOException
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_008: [If the reactor thread is not running, the function shall do nothing.]
+        if (this.executorService == null)
+        {
+            return;
+        }
+
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_009: [The function shall queue a task that notifies all device sessions that the connection was lost, and closes the connection without reconnecting.]
+        runOnReactor(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                isClosing = true;
+                closeConnection();
+            }
+        });
+
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_010: [The function shall wait for the reactor thread to finish, and throw IOException if it does not finish in time.]
+        this.executorService.shutdown();
+        try
+        {
+            if (!this.executorService.awaitTermination(MAX_WAIT_TO_TERMINATE_EXECUTOR, TimeUnit.SECONDS))
+            {
+                this.executorService.shutdownNow();
+                throw new IOException("Waited too long for the shared connection to close.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            this.executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the shared connection.");
+        }
+        finally
+        {
+            this.executorService = null;
+        }
+    }
+
+    /**
+     * Queues a task to run on the reactor thread, and wakes up the reactor so the task does not wait
+     * for the I/O timeout. Can be called from any thread.
+     *
+     * @param task the task to run.
+     */
+    void runOnReactor(Runnable task)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_027: [The function shall queue the task for the reactor thread, and wake up the reactor.]
+        this.pendingTasks.add(task);
+        Reactor currentReactor = this.reactor;
+        if (currentReactor != null)
+        {
+            try
+            {
+                currentReactor.wakeup();
+            }
+            catch (Exception e)
+            {
+                // the reactor is stopping, the pending tasks are not needed anymore.
+                logger.LogDebug("wakeup has thrown exception: %s", e.getMessage());
+            }
+        }
+    }
+
+    private void startReactor()
+    {
+        final Reactor reactor;
+        try
+        {
+            reactor = Proton.reactor(this);
+        }
+        catch (IOException e)
+        {
+            logger.LogError(e);
+            throw new IllegalStateException("Could not create Proton reactor");
+        }
+
+        this.reactor = reactor;
+        this.executorService = Executors.newFixedThreadPool(1);
+        this.executorService.submit(new Callable<Object>()
+        {
+            @Override
+            public Object call()
+            {
+                runReactor(reactor);
+                return null;
+            }
+        });
+        logger.LogInfo("Shared connection reactor is assigned to executor service, method name is %s ", CustomLogger.METHOD_NAME);
+    }
+
+    private void runReactor(Reactor reactor)
+    {
+        reactor.setTimeout(REACTOR_TIMEOUT);
+        reactor.start();
+        try
+        {
+            while (reactor.process())
+            {
+                runPendingTasks();
+            }
+            reactor.stop();
+            reactor.process();
+        }
+        catch (HandlerException e)
+        {
+            logger.LogError(e);
+        }
+        finally
+        {
+            this.reactor = null;
+            reactor.free();
+        }
+    }
+
+    private void runPendingTasks()
+    {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+
+    /**
+     * Event handler for reactor init event.
+     * @param event Proton Event object
+     */
+    @Override
+    public void onReactorInit(Event event)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_011: [The event handler shall open the connection to the IoT Hub and schedule the connection timer.]
+        connect(event.getReactor());
+        event.getReactor().schedule(TIMER_PERIOD_MILLISECS, this);
+    }
+
+    /**
+     * Event handler for the connection timer. Reconnects, retries the failed authentications and
+     * renews the SAS tokens that changed.
+     * @param event Proton Event object
+     */
+    @Override
+    public void onTimerTask(Event event)
+    {
+        if (this.isClosing)
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (this.connection == null)
+        {
+            if (now >= this.nextConnectTime)
+            {
+                // Codes_SRS_AMQPSSHAREDCONNECTION_21_012: [If the connection was lost, the timer shall reconnect once the reconnection interval has passed.]
+                connect(event.getReactor());
+            }
+        }
+        else if (this.isCbsReady)
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_013: [The timer shall authenticate again the device sessions whose authentication failed or whose links were closed by the IoT Hub, once the retry delay has passed.]
+            authenticateDueSessions(now);
+
+            if (now >= this.nextTokenCheckTime)
+            {
+                // Codes_SRS_AMQPSSHAREDCONNECTION_21_014: [Every minute, the timer shall send a put-token request for each authenticated device whose SAS token was renewed.]
+                this.nextTokenCheckTime = now + TOKEN_CHECK_PERIOD_MILLISECS;
+                for (AmqpsDeviceSession deviceSession : this.deviceSessions)
+                {
+                    if (deviceSession.isAuthenticated() && !deviceSession.getSasToken().equals(deviceSession.getLastSentSasToken()))
+                    {
+                        authenticate(deviceSession);
+                    }
+                }
+            }
+        }
+
+        event.getReactor().schedule(TIMER_PERIOD_MILLISECS, this);
+    }
+
+    /**
+     * Event handler for the connection init event.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onConnectionInit(Event event)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_015: [The event handler shall set the host name on the connection, open it, and open a session with the $cbs sender and receiver links.]
+        this.connection = event.getConnection();
+        this.connection.setHostname(this.hostName);
+        this.connection.open();
+
+        Session cbsSession = this.connection.session();
+        cbsSession.open();
+        this.cbsSender = cbsSession.sender(CBS_SENDER_LINK_TAG);
+        Receiver cbsReceiver = cbsSession.receiver(CBS_RECEIVER_LINK_TAG);
+        this.cbsSender.open();
+        cbsReceiver.open();
+    }
+
+    /**
+     * Event handler for the connection bound event. Sets anonymous Sasl authentication and the SSL domain.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onConnectionBound(Event event)
+    {
+        Transport transport = event.getConnection().getTransport();
+        if (transport != null)
+        {
+            if (this.useWebSockets)
+            {
+                WebSocketImpl webSocket = new WebSocketImpl();
+                webSocket.configure(this.hostName, WEB_SOCKET_PATH, 0, WEB_SOCKET_SUB_PROTOCOL, null, null);
+                ((TransportInternal)transport).addTransportLayer(webSocket);
+            }
+
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_016: [The event handler shall set the SASL ANONYMOUS mechanism on the transport, because each device authenticates on the $cbs node.]
+            Sasl sasl = transport.sasl();
+            sasl.setMechanisms(SASL_ANONYMOUS);
+
+            try
+            {
+                SslDomain domain = Proton.sslDomain();
+                domain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
+                domain.init(SslDomain.Mode.CLIENT);
+                domain.setSslContext(this.config.getSasTokenAuthentication().getSSLContext());
+                transport.ssl(domain);
+            }
+            catch (IOException e)
+            {
+                logger.LogDebug("onConnectionBound has thrown exception while creating ssl context: %s", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link init event. Sets the $cbs addresses on the $cbs links, and lets
+     * the device owning the session initialize the others.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkInit(Event event)
+    {
+        Link link = event.getLink();
+        if (CBS_SENDER_LINK_TAG.equals(link.getName()))
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_017: [The event handler shall set the target of the $cbs sender link, and the source and reply target of the $cbs receiver link.]
+            Target target = new Target();
+            target.setAddress(CBS_ADDRESS);
+            link.setTarget(target);
+            link.setSenderSettleMode(SenderSettleMode.UNSETTLED);
+        }
+        else if (CBS_RECEIVER_LINK_TAG.equals(link.getName()))
+        {
+            Source source = new Source();
+            source.setAddress(CBS_ADDRESS);
+            link.setSource(source);
+            Target target = new Target();
+            target.setAddress(CBS_REPLY_ADDRESS);
+            link.setTarget(target);
+        }
+        else
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_018: [The event handler shall pass the events of the device links to the device session that owns the link session.]
+            AmqpsDeviceSession owner = this.sessionOwners.get(link.getSession());
+            if (owner != null)
+            {
+                owner.initLink(link);
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link remote open event. Authenticates all the devices once the $cbs
+     * node is ready.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        Link link = event.getLink();
+        if (CBS_RECEIVER_LINK_TAG.equals(link.getName()))
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_019: [When the $cbs receiver link is open, the event handler shall authenticate all the device sessions.]
+            this.isCbsReady = true;
+            this.currentReconnectionAttempt = 0;
+            this.nextTokenCheckTime = System.currentTimeMillis() + TOKEN_CHECK_PERIOD_MILLISECS;
+            for (AmqpsDeviceSession deviceSession : this.deviceSessions)
+            {
+                authenticate(deviceSession);
+            }
+        }
+        else
+        {
+            AmqpsDeviceSession owner = this.sessionOwners.get(link.getSession());
+            if (owner != null)
+            {
+                owner.onLinkRemoteOpen(event);
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link flow event.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkFlow(Event event)
+    {
+        AmqpsDeviceSession owner = this.sessionOwners.get(event.getLink().getSession());
+        if (owner != null)
+        {
+            owner.onLinkFlow(event);
+        }
+    }
+
+    /**
+     * Event handler for the delivery event. Handles the $cbs responses, and lets the device owning
+     * the session handle the others.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Link link = event.getLink();
+        if (CBS_RECEIVER_LINK_TAG.equals(link.getName()))
+        {
+            handleCbsResponse((Receiver)link);
+        }
+        else if (CBS_SENDER_LINK_TAG.equals(link.getName()))
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_020: [The event handler shall release the put-token deliveries once the IoT Hub settled them.]
+            Delivery delivery = event.getDelivery();
+            if (delivery != null && delivery.remotelySettled())
+            {
+                delivery.settle();
+            }
+        }
+        else
+        {
+            AmqpsDeviceSession owner = this.sessionOwners.get(link.getSession());
+            if (owner != null)
+            {
+                owner.onDelivery(event);
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link remote close event. The links of one device are closed by the
+     * IoT Hub when its SAS token expires, so the device is authenticated again after a delay.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        Link link = event.getLink();
+        if (CBS_SENDER_LINK_TAG.equals(link.getName()) || CBS_RECEIVER_LINK_TAG.equals(link.getName()))
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_021: [If a $cbs link is closed by the IoT Hub, the event handler shall close the connection and reconnect.]
+            connectionLost();
+            return;
+        }
+
+        AmqpsDeviceSession owner = this.sessionOwners.get(link.getSession());
+        if (owner != null && owner.onLinkRemoteClose(event))
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_022: [If a device link is closed by the IoT Hub, the event handler shall close the device session and authenticate it again after the retry delay.]
+            this.sessionOwners.remove(owner.closeSession());
+            this.authenticationDueTimes.put(owner, System.currentTimeMillis() + AUTHENTICATION_RETRY_DELAY_MILLISECS);
+        }
+    }
+
+    /**
+     * Event handler for the transport error event.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onTransportError(Event event)
+    {
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_023: [If the connection is lost, the event handler shall notify all device sessions, and reconnect using an exponential backoff interval.]
+        connectionLost();
+    }
+
+    /**
+     * Event handler for the connection remote close event.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        connectionLost();
+    }
+
+    private void connect(Reactor reactor)
+    {
+        logger.LogInfo("Opening shared connection to %s, method name is %s ", this.hostName, CustomLogger.METHOD_NAME);
+        reactor.connectionToHost(this.config.getIotHubHostname(), this.useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, this);
+    }
+
+    private void connectionLost()
+    {
+        if (this.connection == null || this.isClosing)
+        {
+            return;
+        }
+
+        closeConnection();
+
+        if (this.currentReconnectionAttempt < Integer.MAX_VALUE)
+        {
+            this.currentReconnectionAttempt++;
+        }
+        this.nextConnectTime = System.currentTimeMillis() + TransportUtils.generateSleepInterval(this.currentReconnectionAttempt);
+        logger.LogInfo("Lost shared connection to the server. Reconnection attempt %s, method name is %s ", this.currentReconnectionAttempt, CustomLogger.METHOD_NAME);
+    }
+
+    private void closeConnection()
+    {
+        this.isCbsReady = false;
+        this.pendingCbsRequests.clear();
+        this.authenticationDueTimes.clear();
+        this.sessionOwners.clear();
+
+        for (AmqpsDeviceSession deviceSession : this.deviceSessions)
+        {
+            deviceSession.onConnectionLost();
+        }
+
+        if (this.connection != null)
+        {
+            this.connection.close();
+            this.connection = null;
+        }
+        this.cbsSender = null;
+    }
+
+    private void authenticateDueSessions(long now)
+    {
+        Iterator<Map.Entry<AmqpsDeviceSession, Long>> iterator = this.authenticationDueTimes.entrySet().iterator();
+        List<AmqpsDeviceSession> dueSessions = new ArrayList<>();
+        while (iterator.hasNext())
+        {
+            Map.Entry<AmqpsDeviceSession, Long> entry = iterator.next();
+            if (entry.getValue() <= now)
+            {
+                dueSessions.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        for (AmqpsDeviceSession deviceSession : dueSessions)
+        {
+            authenticate(deviceSession);
+        }
+    }
+
+    /**
+     * Sends a put-token request with the SAS token of the device to the $cbs node.
+     * @param deviceSession the device session to authenticate.
+     */
+    private void authenticate(AmqpsDeviceSession deviceSession)
+    {
+        String sasToken = deviceSession.getSasToken();
+        String messageId = String.valueOf(this.nextCbsMessageId++);
+
+        // Codes_SRS_AMQPSSHAREDCONNECTION_21_024: [The put-token request shall carry the operation, the token type and the device audience as application properties, and the SAS token as body.]
+        Message message = Proton.message();
+        Properties properties = new Properties();
+        properties.setMessageId(messageId);
+        properties.setTo(CBS_ADDRESS);
+        properties.setReplyTo(CBS_REPLY_ADDRESS);
+        message.setProperties(properties);
+
+        Map<String, Object> applicationProperties = new HashMap<>();
+        applicationProperties.put(CBS_OPERATION_KEY, CBS_OPERATION_PUT_TOKEN);
+        applicationProperties.put(CBS_TYPE_KEY, CBS_TYPE_SAS_TOKEN);
+        applicationProperties.put(CBS_NAME_KEY, deviceSession.getCbsAudience());
+        message.setApplicationProperties(new ApplicationProperties(applicationProperties));
+        message.setBody(new AmqpValue(sasToken));
+
+        byte[] msgData = AmqpMessageEncoder.encode(message);
+        this.cbsSender.delivery(AmqpMessageEncoder.deliveryTag(this.nextCbsTag++));
+        this.cbsSender.send(msgData, 0, msgData.length);
+        this.cbsSender.advance();
+
+        this.pendingCbsRequests.put(messageId, deviceSession);
+        deviceSession.setLastSentSasToken(sasToken);
+    }
+
+    private void handleCbsResponse(Receiver cbsReceiver)
+    {
+        Delivery delivery = cbsReceiver.current();
+        if (delivery == null || !delivery.isReadable() || delivery.isPartial())
+        {
+            return;
+        }
+
+        byte[] buffer = new byte[delivery.pending()];
+        int read = cbsReceiver.recv(buffer, 0, buffer.length);
+        cbsReceiver.advance();
+        delivery.disposition(Accepted.getInstance());
+        delivery.settle();
+
+        Message response = Proton.message();
+        response.decode(buffer, 0, read);
+        if (response.getProperties() == null || response.getApplicationProperties() == null)
+        {
+            return;
+        }
+
+        AmqpsDeviceSession deviceSession = this.pendingCbsRequests.remove(String.valueOf(response.getProperties().getCorrelationId()));
+        if (deviceSession == null)
+        {
+            return;
+        }
+
+        Object statusCode = response.getApplicationProperties().getValue().get(CBS_STATUS_CODE_KEY);
+        if (statusCode instanceof Number && ((Number)statusCode).intValue() == CBS_STATUS_OK)
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_025: [If the put-token request succeeded, the device session shall open its session and links, if they are not open yet.]
+            Session session = deviceSession.onAuthenticated(this.connection);
+            if (session != null)
+            {
+                this.sessionOwners.put(session, deviceSession);
+            }
+        }
+        else
+        {
+            // Codes_SRS_AMQPSSHAREDCONNECTION_21_026: [If the put-token request failed, the device session shall be authenticated again after the retry delay.]
+            logger.LogError("Put-token request for %s failed with status %s, method name is %s ", deviceSession.getCbsAudience(), statusCode, CustomLogger.METHOD_NAME);
+            this.authenticationDueTimes.put(deviceSession, System.currentTimeMillis() + AUTHENTICATION_RETRY_DELAY_MILLISECS);
+        }
+    }
+}
@@ -7,6 +7,8 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 
 import java.io.IOException;
@@ -30,11 +32,14 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
     /** The state of the AMQPS transport. */
     private State state;
 
-    /** The {@link AmqpsIotHubConnection} underlying this transport. */
-    private AmqpsIotHubConnection connection;
+    /** The {@link AmqpsDeviceConnection} underlying this transport. */
+    private AmqpsDeviceConnection connection;
+
+    /** The pool that provides a shared connection, or null if this transport owns its connection. */
+    private AmqpsConnectionPool connectionPool;
 
     /** Messages waiting to be sent to the IoT Hub. */
-    private final Queue<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
+    private final OutboundPacketQueue waitingMessages;
 
     /** Messages which are sent to the IoT Hub but did not receive ack yet. */
     private final Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
@@ -49,6 +54,9 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
     private IotHubConnectionStateCallback stateCallback;
     private Object stateCallbackContext;
 
+    /** Listener notified when there is work for the send or receive tasks */
+    private volatile IotHubTransportListener transportListener;
+
     private final DeviceClientConfig config;
     private final CustomLogger logger;
 
@@ -65,6 +73,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
     {
         // Codes_SRS_AMQPSTRANSPORT_15_001: [The constructor shall save the input parameters into instance variables.]
         this.config = config;
+        this.waitingMessages = new OutboundPacketQueue(config, this.callbackList);
 
         // Codes_SRS_AMQPSTRANSPORT_15_002: [The constructor shall set the transport state to CLOSED.]
         this.state = State.CLOSED;
@@ -78,6 +87,24 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         amqpsDeviceOperationsList.add(new AmqpsDeviceTwin(this.config.getDeviceId()));
     }
 
+    /**
+     * Sets the pool that provides the connection of this transport. Once set, the transport opens
+     * its own session on a connection shared with the other devices of the pool instead of
+     * opening a dedicated connection.
+     *
+     * @param connectionPool the pool to use, or null to use a dedicated connection.
+     * @throws IllegalStateException if the transport is open.
+     */
+    public void setConnectionPool(AmqpsConnectionPool connectionPool)
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_048: [If the transport is open, the function shall throw IllegalStateException.]
+        if (this.state == State.OPEN)
+        {
+            throw new IllegalStateException("The connection pool cannot be changed while the transport is open.");
+        }
+        this.connectionPool = connectionPool;
+    }
+
     /**
      * Establishes a communication channel with an IoT Hub. If a channel is
      * already open, the function shall do nothing.
@@ -91,9 +118,17 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         {
             return;
         }
-        logger.LogInfo("Opening the connection..., method name is %s ", logger.getMethodName());
-        // Codes_SRS_AMQPSTRANSPORT_15_004: [The function shall open an AMQPS connection with the IoT Hub given in the configuration.]
-        this.connection = new AmqpsIotHubConnection(this.config, amqpsDeviceOperationsList);
+        logger.LogInfo("Opening the connection..., method name is %s ", CustomLogger.METHOD_NAME);
+        if (this.connectionPool == null)
+        {
+            // Codes_SRS_AMQPSTRANSPORT_15_004: [The function shall open an AMQPS connection with the IoT Hub given in the configuration.]
+            this.connection = new AmqpsIotHubConnection(this.config, amqpsDeviceOperationsList);
+        }
+        else
+        {
+            // Codes_SRS_AMQPSTRANSPORT_21_049: [If a connection pool was set, the function shall open a device session on a shared connection of the pool instead.]
+            this.connection = new AmqpsDeviceSession(this.config, amqpsDeviceOperationsList, this.connectionPool);
+        }
 
         try
         {
@@ -111,7 +146,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
 
         // Codes_SRS_AMQPSTRANSPORT_15_006: [If the connection was opened successfully, the transport state shall be set to OPEN.]
         this.state = State.OPEN;
-        logger.LogInfo("Connection has been opened, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection has been opened, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -126,7 +161,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_007: [If the AMQPS connection is closed, the function shall do nothing.]
         if (this.state == State.CLOSED)
         {
-            logger.LogInfo("The connection is already in closed state, method name is %s ", logger.getMethodName());
+            logger.LogInfo("The connection is already in closed state, method name is %s ", CustomLogger.METHOD_NAME);
             return;
         }
         
@@ -159,14 +194,14 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_033: [The map of messages in progress is cleared.]
         inProgressMessages.clear();
                        
-        logger.LogInfo("Starting to close the connection..., method name is %s ", logger.getMethodName());
+        logger.LogInfo("Starting to close the connection..., method name is %s ", CustomLogger.METHOD_NAME);
        
         // Codes_SRS_AMQPSTRANSPORT_15_008: [The function shall close an AMQPS connection with the IoT Hub given in the configuration.]
         this.connection.close();
 
         // Codes_SRS_AMQPSTRANSPORT_15_009: [The function shall set the transport state to CLOSED.]
         this.state = State.CLOSED;
-        logger.LogInfo("Connection has been closed, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection has been closed, method name is %s ", CustomLogger.METHOD_NAME);
     }
 
     /**
@@ -183,7 +218,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_010: [If the AMQPS session is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot add a message when the AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot add a message when the AMQPS transport is closed, method name is %s ", CustomLogger.METHOD_NAME);
             throw new IllegalStateException("Cannot add a message when the AMQPS transport is closed.");
         }
 
@@ -224,7 +259,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_012: [If the AMQPS session is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot send messages when the AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot send messages when the AMQPS transport is closed, method name is %s ", CustomLogger.METHOD_NAME);
             throw new IllegalStateException("Cannot send messages when the AMQPS transport is closed.");
         }
 
@@ -239,7 +274,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_014: [The function shall attempt to send every message on its waiting list, one at a time.]
         while (!this.waitingMessages.isEmpty())
         {
-            logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ", CustomLogger.METHOD_NAME);
             IotHubOutboundPacket packet = this.waitingMessages.remove();
 
             Message message = packet.getMessage();
@@ -251,13 +286,13 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
                 // with the MESSAGE_EXPIRED status and add it to the callback list.]
                 if (message.isExpired())
                 {
-                    logger.LogInfo("Creating a callback for the expired message with MESSAGE_EXPIRED status, method name is %s ", logger.getMethodName());
+                    logger.LogInfo("Creating a callback for the expired message with MESSAGE_EXPIRED status, method name is %s ", CustomLogger.METHOD_NAME);
                     IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_EXPIRED, packet.getCallback(), packet.getContext());
                     this.callbackList.add(callbackPacket);
                 }
                 else
                 {
-                    logger.LogInfo("Converting the IoT Hub message into AmqpsMessage, method name is %s ", logger.getMethodName());
+                    logger.LogInfo("Converting the IoT Hub message into AmqpsMessage, method name is %s ", CustomLogger.METHOD_NAME);
 
                     // Codes_SRS_AMQPSTRANSPORT_12_002: [The function shall call device operation objects to convert the IoTHubMessage to Proton message.]
                     AmqpsConvertToProtonReturnValue amqpsConvertToProtonReturnValue = null;
@@ -284,7 +319,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
                     {
                         //Codes_SRS_AMQPSTRANSPORT_34_041: [If the config is using sas token authentication and its sas token has expired and cannot be renewed, the message shall not be sent, an UNAUTHORIZED message callback shall be added to the callback queue and SAS_TOKEN_EXPIRED state callback shall be fired.]
                         failedMessages.add(packet);
-                        logger.LogInfo("Creating a callback for the message with expired sas token with UNAUTHORIZED status, method name is %s ", logger.getMethodName());
+                        logger.LogInfo("Creating a callback for the message with expired sas token with UNAUTHORIZED status, method name is %s ", CustomLogger.METHOD_NAME);
                         IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.UNAUTHORIZED, packet.getCallback(), packet.getContext());
                         this.callbackList.add(callbackPacket);
 
@@ -295,25 +330,32 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
                     }
                     else
                     {
-                        // Codes_SRS_AMQPSTRANSPORT_15_037: [The function shall attempt to send the Proton message to IoTHub using the underlying AMQPS connection.]
-                        Integer sendHash = connection.sendMessage(amqpsConvertToProtonReturnValue.getMessageImpl(), amqpsConvertToProtonReturnValue.getMessageType());
+                        // Codes_SRS_AMQPSTRANSPORT_15_016: [The message shall be added to the in progress map under the id reserved by the connection, before it is handed to the connection.]
+                        // The reactor thread can settle the message as soon as it is queued, so it must be in progress by then.
+                        int messageId = connection.nextMessageId();
+                        this.inProgressMessages.put(messageId, packet);
 
-                        // Codes_SRS_AMQPSTRANSPORT_15_016: [If the sent message hash is valid, it shall be added to the in progress map.]
-                        if (sendHash != -1)
+                        Boolean isQueued = false;
+                        try
                         {
-                            this.inProgressMessages.put(sendHash, packet);
+                            // Codes_SRS_AMQPSTRANSPORT_15_037: [The function shall attempt to send the Proton message to IoTHub using the underlying AMQPS connection.]
+                            isQueued = connection.sendMessage(messageId, amqpsConvertToProtonReturnValue.getMessageImpl(), amqpsConvertToProtonReturnValue.getMessageType());
                         }
-                        // Codes_SRS_AMQPSTRANSPORT_15_017: [If the sent message hash is not valid, it shall be buffered to be sent in a subsequent attempt.]
-                        else
+                        finally
                         {
-                            failedMessages.add(packet);
+                            // Codes_SRS_AMQPSTRANSPORT_15_017: [If the message could not be queued, it shall be removed from the in progress map and buffered to be sent in a subsequent attempt.]
+                            if (!isQueued)
+                            {
+                                this.inProgressMessages.remove(messageId);
+                                failedMessages.add(packet);
+                            }
                         }
                     }
                 }
             }
         }
 
-        this.waitingMessages.addAll(failedMessages);
+        this.waitingMessages.requeue(failedMessages);
     }
 
     /**
@@ -326,7 +368,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_019: [If the transport closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot invoke callbacks when AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot invoke callbacks when AMQPS transport is closed, method name is %s ", CustomLogger.METHOD_NAME);
             throw new IllegalStateException("Cannot invoke callbacks when AMQPS transport is closed.");
         }
 
@@ -339,7 +381,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
             IotHubEventCallback callback = packet.getCallback();
             Object context = packet.getContext();
 
-            logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with status %s, method name is %s ", status.name(), logger.getMethodName());
+            logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with status %s, method name is %s ", status.name(), CustomLogger.METHOD_NAME);
             callback.execute(status, context);
         }
     }
@@ -359,22 +401,22 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_021: [If the transport is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot handle messages when AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot handle messages when AMQPS transport is closed, method name is %s ", CustomLogger.METHOD_NAME);
             throw new IllegalStateException("Cannot handle messages when AMQPS transport is closed.");
         }
         
-        logger.LogInfo("Get the callback function for the received message, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Get the callback function for the received message, method name is %s ", CustomLogger.METHOD_NAME);
 
         // Codes_SRS_AMQPSTRANSPORT_15_023: [The function shall attempt to consume a message from the IoT Hub.]
         // Codes_SRS_AMQPSTRANSPORT_15_024: [If no message was received from IotHub, the function shall return.]
         if (this.receivedMessages.size() > 0)
         {
-            logger.LogInfo("Consuming a message received from IoT Hub using receive message queue, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Consuming a message received from IoT Hub using receive message queue, method name is %s ", CustomLogger.METHOD_NAME);
             AmqpsMessage receivedMessage = this.receivedMessages.remove();
 
             AmqpsConvertFromProtonReturnValue amqpsHandleMessageReturnValue = null;
 
-            logger.LogInfo("Converting the AmqpsMessage to IoT Hub message, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Converting the AmqpsMessage to IoT Hub message, method name is %s ", CustomLogger.METHOD_NAME);
 
             // Codes_SRS_AMQPSTRANSPORT_12_006: [The function shall call device operation objects to convert the Proton message to IoTHubMessage.]
             if (amqpsDeviceOperationsList != null)
@@ -399,21 +441,20 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
             // Codes_SRS_AMQPSTRANSPORT_12_008: [The function shall return if there is no message callback defined.]
             if (amqpsHandleMessageReturnValue.getMessageCallback() == null)
             {
-                logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", logger.getMethodName());
+                logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", CustomLogger.METHOD_NAME);
                 return;
             }
 
-            logger.LogInfo("Executing the callback function for received message, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Executing the callback function for received message, method name is %s ", CustomLogger.METHOD_NAME);
             // Codes_SRS_AMQPSTRANSPORT_15_026: [The function shall invoke the callback on the message.]
             IotHubMessageResult result = amqpsHandleMessageReturnValue.getMessageCallback().execute(amqpsHandleMessageReturnValue.getMessage(), amqpsHandleMessageReturnValue.getMessageContext());
 
             // Codes_SRS_AMQPSTRANSPORT_15_027: [The function shall return the message result (one of COMPLETE, ABANDON, or REJECT) to the IoT Hub.]
-            Boolean ackResult = this.connection.sendMessageResult(receivedMessage, result);
-            // Codes_SRS_AMQPSTRANSPORT_15_028: [If the result could not be sent to IoTHub, the message shall be put back in the received messages queue to be processed again.]
-            if (!ackResult)
+            // The result is only refused when the connection is closed, and the IoT Hub delivers the unsettled
+            // message again on the next receive link, so it is not processed again here.
+            if (!this.connection.sendMessageResult(receivedMessage, result))
             {
-                logger.LogWarn("Callback did not return a response for IoT Hub. Message has been added in the queue to be processed again, method name is %s", logger.getMethodName());
-                receivedMessages.add(receivedMessage);
+                logger.LogWarn("The connection is closed and the result for the received message was dropped, method name is %s", CustomLogger.METHOD_NAME);
             }
         }
     }
@@ -422,28 +463,31 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      * When a message is acknowledged by IoTHub, it is removed from the list of in progress messages and its callback
      * is added to the list of callbacks to be executed. If the message was not successfully delivered, it is buffered
      * to be sent again.
-     * @param messageHash The hash of the message.
+     * @param messageId The id returned by the connection when the message was sent.
      * @param deliveryState The state of the delivery.
      */
-    public void messageSent(Integer messageHash, Boolean deliveryState)
+    public void messageSent(Integer messageId, Boolean deliveryState)
     {
         // Codes_SRS_AMQPSTRANSPORT_15_029: [If the hash cannot be found in the list of keys for the messages in progress, the method returns.]
-        if (inProgressMessages.containsKey(messageHash))
+        IotHubOutboundPacket packet = inProgressMessages.remove(messageId);
+        if (packet != null)
         {
-            IotHubOutboundPacket packet = inProgressMessages.remove(messageHash);
             if (deliveryState)
             {
-                logger.LogInfo("Message with messageid %s has been successfully delivered to IoTHub, adding a callback to callbacklist with IotHubStatusCode.OK_EMPTY, method name is %s ", packet.getMessage().getMessageId(), logger.getMethodName());
+                logger.LogInfo("Message with messageid %s has been successfully delivered to IoTHub, adding a callback to callbacklist with IotHubStatusCode.OK_EMPTY, method name is %s ", packet.getMessage().getMessageId(), CustomLogger.METHOD_NAME);
                 // Codes_SRS_AMQPSTRANSPORT_15_030: [If the message was successfully delivered,
                 // its callback is added to the list of callbacks to be executed.]
                 IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, packet.getCallback(), packet.getContext());
                 this.callbackList.add(callbackPacket);
             } else
             {
-                logger.LogInfo("Message with messageid %s was not delivered to IoTHub, it is buffered to be sent again, method name is %s ", packet.getMessage().getMessageId(), logger.getMethodName());
+                logger.LogInfo("Message with messageid %s was not delivered to IoTHub, it is buffered to be sent again, method name is %s ", packet.getMessage().getMessageId(), CustomLogger.METHOD_NAME);
                 // Codes_SRS_AMQPSTRANSPORT_15_031: [If the message was not delivered successfully, it is buffered to be sent again.]
-                waitingMessages.add(packet);
+                waitingMessages.requeue(Collections.singletonList(packet));
             }
+
+            // Codes_SRS_AMQPSTRANSPORT_21_043: [If a transport listener is registered, it shall be notified that there is send work available.]
+            this.notifySendWorkAvailable();
         }
     }
 
@@ -452,16 +496,16 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     public void connectionLost()
     {
-        logger.LogInfo("The messages in progress are buffered to be sent again due to a connection loss, method name is %s ", logger.getMethodName());
+        logger.LogInfo("The messages in progress are buffered to be sent again due to a connection loss, method name is %s ", CustomLogger.METHOD_NAME);
         // Codes_SRS_AMQPSTRANSPORT_15_032: [The messages in progress are buffered to be sent again.]
-        for (Map.Entry<Integer, IotHubOutboundPacket> entry : inProgressMessages.entrySet())
-        {
-            this.waitingMessages.add(entry.getValue());
-        }
+        this.waitingMessages.requeue(inProgressMessages.values());
 
         // Codes_SRS_AMQPSTRANSPORT_15_033: [The map of messages in progress is cleared.]
         inProgressMessages.clear();
 
+        // Codes_SRS_AMQPSTRANSPORT_21_044: [If a transport listener is registered, it shall be notified that there is send work available.]
+        this.notifySendWorkAvailable();
+
         // Notify the listener that the connection is down
         // Codes_SRS_AMQPSTRANSPORT_99_001: [Registered connection state callback is notified that the connection has been lost.]
         if (this.stateCallback != null) {
@@ -474,12 +518,19 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     public void connectionEstablished()
     {
-        logger.LogInfo("The connection to the IoT Hub has been established, method name is %s ", logger.getMethodName());
+        logger.LogInfo("The connection to the IoT Hub has been established, method name is %s ", CustomLogger.METHOD_NAME);
         // Notify listener that the connection is up
         // Codes_SRS_AMQPSTRANSPORT_99_002: [Registered connection state callback is notified that the connection has been established.]
         if (this.stateCallback != null) {
             this.stateCallback.execute(IotHubConnectionState.CONNECTION_SUCCESS, this.stateCallbackContext);
         }
+
+        // Codes_SRS_AMQPSTRANSPORT_21_045: [If a transport listener is registered, it shall be notified that there is send work available, and receive work available if the received messages queue is not empty.]
+        this.notifySendWorkAvailable();
+        if (!this.receivedMessages.isEmpty())
+        {
+            this.notifyReceiveWorkAvailable();
+        }
     }
 
     /**
@@ -488,9 +539,15 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     public void messageReceived(AmqpsMessage message)
     {
-        logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ", message.hashCode(), new Date(), logger.getMethodName());
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ", message.hashCode(), new Date(), CustomLogger.METHOD_NAME);
+        }
         // Codes_SRS_AMQPSTRANSPORT_15_034: [The message received is added to the list of messages to be processed.]
         this.receivedMessages.add(message);
+
+        // Codes_SRS_AMQPSTRANSPORT_21_046: [If a transport listener is registered, it shall be notified that there is receive work available.]
+        this.notifyReceiveWorkAvailable();
     }
 
     /**
@@ -508,6 +565,17 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
 
     }
 
+    /**
+     * Returns the number of messages waiting in the transport to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getOutboundQueueSize()
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_050: [The function shall return the number of messages in the queue of messages waiting to be sent.]
+        return this.waitingMessages.size();
+    }
+
     /**
      * Registers a callback to be executed whenever the amqps connection is lost or established.
      * 
@@ -527,4 +595,34 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         this.stateCallback = callback;
         this.stateCallbackContext = callbackContext;
     }
-}
\ No newline at end of file
+
+    /**
+     * Registers a listener to be notified whenever this transport has messages to send,
+     * callbacks to invoke, or received messages to handle.
+     *
+     * @param listener the listener to be notified. Can be {@code null} to stop the notifications.
+     */
+    public void registerTransportListener(IotHubTransportListener listener)
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_047: [The registerTransportListener shall register the transport listener.]
+        this.transportListener = listener;
+    }
+
+    private void notifySendWorkAvailable()
+    {
+        IotHubTransportListener listener = this.transportListener;
+        if (listener != null)
+        {
+            listener.onSendWorkAvailable();
+        }
+    }
+
+    private void notifyReceiveWorkAvailable()
+    {
+        IotHubTransportListener listener = this.transportListener;
+        if (listener != null)
+        {
+            listener.onReceiveWorkAvailable();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.device.MessageProperty;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import com.microsoft.azure.sdk.iot.deps.util.Base64;
@@ -34,8 +35,18 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     private static final Charset BATCH_CHARSET = StandardCharsets.UTF_8;
 
-    /** The current batched message body. */
-    private String batchBody;
+    /** The initial capacity of the batch body buffer. It grows as messages are added. */
+    private static final int INITIAL_BATCH_BUFFER_SIZE = 1024;
+
+    /**
+     * The UTF-8 encoded batch body built so far: the opening bracket of the JSON
+     * array followed by the comma-separated messages. The closing bracket is only
+     * added by {@link #getBody()}.
+     */
+    private byte[] batchBody;
+
+    /** The number of bytes used in {@code batchBody}. */
+    private int batchBodyLength;
 
     /** The current number of messages in the batch. */
     private int numMsgs;
@@ -44,7 +55,9 @@ public final class HttpsBatchMessage implements HttpsMessage
     public HttpsBatchMessage()
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_001: [The constructor shall initialize the batch message with the body as an empty JSON array.]
-        this.batchBody = "[]";
+        this.batchBody = new byte[INITIAL_BATCH_BUFFER_SIZE];
+        this.batchBody[0] = '[';
+        this.batchBodyLength = 1;
         this.numMsgs = 0;
     }
 
@@ -60,22 +73,31 @@ public final class HttpsBatchMessage implements HttpsMessage
     public void addMessage(HttpsSingleMessage msg)
             throws IotHubSizeExceededException
     {
-        String jsonMsg = msgToJson(msg);
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
-        String newBatchBody = addJsonObjToArray(jsonMsg, this.batchBody);
+        // Only the new message is encoded; the messages already in the batch are
+        // never serialized again, so building a batch is linear in its size.
+        byte[] jsonMsg = msgToJson(msg).getBytes(BATCH_CHARSET);
+        int separatorLength = (this.numMsgs > 0) ? 1 : 0;
 
         // Codes_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a IotHubSizeExceededException.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
-        byte[] newBatchBodyBytes = newBatchBody.getBytes(BATCH_CHARSET);
-
-        if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        // Codes_SRS_HTTPSBATCHMESSAGE_21_014: [The function shall compute the size of the batched message from the size of the current batch and the size of the new message, without encoding the current batch again.]
+        // the new size includes the closing bracket of the JSON array.
+        int newBatchBodySize = this.batchBodyLength + separatorLength + jsonMsg.length + 1;
+        if (newBatchBodySize > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
         {
             String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.",
-                    newBatchBodyBytes.length, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+                    newBatchBodySize, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
             throw new IotHubSizeExceededException(errMsg);
         }
 
-        this.batchBody = newBatchBody;
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+        ensureCapacity(newBatchBodySize);
+        if (separatorLength > 0)
+        {
+            this.batchBody[this.batchBodyLength++] = ',';
+        }
+        System.arraycopy(jsonMsg, 0, this.batchBody, this.batchBodyLength, jsonMsg.length);
+        this.batchBodyLength += jsonMsg.length;
         this.numMsgs++;
     }
 
@@ -88,7 +110,10 @@ public final class HttpsBatchMessage implements HttpsMessage
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_006: [The function shall return the current batch message body.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
-        return this.batchBody.getBytes(BATCH_CHARSET);
+        byte[] body = new byte[this.batchBodyLength + 1];
+        System.arraycopy(this.batchBody, 0, body, 0, this.batchBodyLength);
+        body[this.batchBodyLength] = ']';
+        return body;
     }
 
     /**
@@ -185,24 +210,17 @@ public final class HttpsBatchMessage implements HttpsMessage
     }
 
     /**
-     * Adds a JSON object to a JSON array.
+     * Grows the batch body buffer, if needed, so it can hold at least the given
+     * number of bytes.
      *
-     * @param jsonObj the object to be added to the JSON array.
-     * @param jsonArray the JSON array.
-     *
-     * @return the JSON string representation of the JSON array with the object
-     * added.
+     * @param capacity the number of bytes the buffer must be able to hold.
      */
-    private static String addJsonObjToArray(String jsonObj, String jsonArray)
+    private void ensureCapacity(int capacity)
     {
-        if (jsonArray.equals("[]"))
+        if (capacity > this.batchBody.length)
         {
-            return "[" + jsonObj + "]";
+            int newCapacity = Math.max(capacity, this.batchBody.length * 2);
+            this.batchBody = Arrays.copyOf(this.batchBody, Math.min(newCapacity, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES));
         }
-
-        // removes the closing brace of the JSON array.
-        String openJsonArray = jsonArray.substring(0, jsonArray.length() - 1);
-
-        return openJsonArray + "," + jsonObj + "]";
     }
 }
@@ -9,7 +9,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.ProtocolException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +29,11 @@ import java.util.Map;
  */
 public class HttpsConnection
 {
+    /** The size of the read buffer used when the response has no Content-Length. */
+    private static final int DEFAULT_READ_BUFFER_SIZE = 4096;
+    /** The largest read buffer allocated upfront from the Content-Length; bigger responses grow it as they arrive. */
+    private static final int MAX_INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
     /** The underlying HTTPS connection. */
     private final HttpsURLConnection connection;
 
@@ -191,7 +195,8 @@ public class HttpsConnection
         // Codes_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
         // Codes_SRS_HTTPSCONNECTION_11_012: [The function shall throw an IOException if the input stream could not be accessed.]
         InputStream inputStream = this.connection.getInputStream();
-        byte[] input = readInputStream(inputStream);
+        // Codes_SRS_HTTPSCONNECTION_21_026: [The function shall read the input stream in bulk into a buffer sized from the response Content-Length, if the server sent one.]
+        byte[] input = readInputStream(inputStream, this.connection.getContentLength());
         // Codes_SRS_HTTPSCONNECTION_11_019: [The function shall close the input stream after it has been completely read.]
         inputStream.close();
 
@@ -216,7 +221,7 @@ public class HttpsConnection
         // if there is no error reason, getErrorStream() returns null.
         if (errorStream != null)
         {
-            error = readInputStream(errorStream);
+            error = readInputStream(errorStream, this.connection.getContentLength());
             // Codes_SRS_HTTPSCONNECTION_11_020: [The function shall close the error stream after it has been completely read.]
             errorStream.close();
         }
@@ -254,34 +259,48 @@ public class HttpsConnection
     }
 
     /**
-     * Reads the input stream until the stream is empty.
+     * Reads the input stream until the stream is empty, in blocks instead of
+     * one byte at a time.
      *
      * @param stream the input stream.
+     * @param contentLength the expected length of the content, or a negative
+     * value if it is not known. It is only used to size the first buffer, up
+     * to 64 KB; the stream is always read to the end.
      *
      * @return the content of the input stream.
      *
      * @throws IOException if the input stream could not be read from.
      */
-    private static byte[] readInputStream(InputStream stream)
+    private static byte[] readInputStream(InputStream stream, int contentLength)
             throws IOException
     {
-        ArrayList<Byte> byteBuffer = new ArrayList<>();
-        int nextByte = -1;
-        // read(byte[]) reads the byte into the buffer and returns the number
-        // of bytes read, or -1 if the end of the stream has been reached.
-        while ((nextByte = stream.read()) > -1)
+        // Codes_SRS_HTTPSCONNECTION_21_027: [If the Content-Length is not known, the function shall start with a default buffer and grow it until the end of the stream is reached.]
+        // Codes_SRS_HTTPSCONNECTION_21_030: [The buffer sized from the Content-Length shall not be bigger than 64 KB; a longer content shall grow the buffer as it arrives.]
+        byte[] buffer = new byte[contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_READ_BUFFER_SIZE) : DEFAULT_READ_BUFFER_SIZE];
+        int totalRead = 0;
+        while (true)
         {
-            byteBuffer.add((byte) nextByte);
-        }
+            if (totalRead == buffer.length)
+            {
+                // The buffer is full; only grow it if there is really more content.
+                int nextByte = stream.read();
+                if (nextByte == -1)
+                {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[totalRead++] = (byte) nextByte;
+            }
 
-        int bufferSize = byteBuffer.size();
-        byte[] byteArray = new byte[bufferSize];
-        for (int i = 0; i < bufferSize; ++i)
-        {
-            byteArray[i] = byteBuffer.get(i);
+            int bytesRead = stream.read(buffer, totalRead, buffer.length - totalRead);
+            if (bytesRead == -1)
+            {
+                break;
+            }
+            totalRead += bytesRead;
         }
 
-        return byteArray;
+        return (totalRead == buffer.length) ? buffer : Arrays.copyOf(buffer, totalRead);
     }
 
     void setSSLContext(SSLContext sslContext) throws IllegalArgumentException
@@ -8,6 +8,8 @@ import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 
 import java.io.IOException;
 import java.util.NoSuchElementException;
@@ -44,9 +46,14 @@ public final class HttpsTransport implements IotHubTransport
     private HttpsIotHubConnection connection;
 
     /** Messages waiting to be sent to an IoT Hub. */
-    private final Queue<IotHubOutboundPacket> waitingList;
+    private final OutboundPacketQueue waitingList;
     /** Messages that are waiting for a response from an IoT Hub. */
     private final Queue<IotHubOutboundPacket> inProgressList;
+    /**
+     * The request built from the messages in the in progress list, kept so the
+     * messages are serialized only once, even if the request must be resent.
+     */
+    private HttpsMessage inProgressMessage;
     /** Messages whose callbacks that are waiting to be invoked. */
     private final Queue<IotHubCallbackPacket> callbackList;
 
@@ -60,11 +67,11 @@ public final class HttpsTransport implements IotHubTransport
      */
     public HttpsTransport(DeviceClientConfig config)
     {
-        // Codes_SRS_HTTPSTRANSPORT_11_001: [The constructor shall initialize an empty transport queue for adding messages to be sent as a batch.]
-        this.waitingList = new LinkedBlockingDeque<>();
-        this.inProgressList = new LinkedBlockingDeque<>();
         // Codes_SRS_HTTPSTRANSPORT_11_002: [The constructor shall initialize an empty queue for adding callbacks waiting to be invoked.]
         this.callbackList = new LinkedBlockingDeque<>();
+        // Codes_SRS_HTTPSTRANSPORT_11_001: [The constructor shall initialize an empty transport queue for adding messages to be sent as a batch.]
+        this.waitingList = new OutboundPacketQueue(config, this.callbackList);
+        this.inProgressList = new LinkedBlockingDeque<>();
 
         this.config = config;
 
@@ -118,6 +125,9 @@ public final class HttpsTransport implements IotHubTransport
        
         // Codes_SRS_HTTPSTRANSPORT_99_037: [The method will invoke all the callbacks]
         invokeCallbacks(); 
+
+        // Codes_SRS_HTTPSTRANSPORT_21_045: [The method shall discard the message kept for the messages in progress.]
+        this.inProgressMessage = null;
         
         // the HTTPS connection does not contain state
         // that needs to be explicitly destroyed.
@@ -354,6 +364,17 @@ public final class HttpsTransport implements IotHubTransport
         return this.waitingList.isEmpty() && this.inProgressList.isEmpty() && this.callbackList.isEmpty();
     }
 
+    /**
+     * Returns the number of messages waiting in the transport to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getOutboundQueueSize()
+    {
+        // Codes_SRS_HTTPSTRANSPORT_21_044: [The function shall return the number of messages in the waiting list.]
+        return this.waitingList.size();
+    }
+
     /**
      * Registers a callback to be executed whenever the https connection is lost or established.
      *
@@ -374,6 +395,17 @@ public final class HttpsTransport implements IotHubTransport
         this.stateCallbackContext = callbackContext;
     }
 
+    /**
+     * HTTPS requests are completed synchronously by {@link #sendMessages()} and received
+     * messages can only be found by polling, so this transport never notifies the listener.
+     *
+     * @param listener the listener to be notified. Ignored.
+     */
+    public void registerTransportListener(IotHubTransportListener listener)
+    {
+        // Codes_SRS_HTTPSTRANSPORT_21_042: [The function shall do nothing.]
+    }
+
     /**
      * Triggers the callbacks notifying the user that the sas token in this transport has expired
      */
@@ -393,7 +425,11 @@ public final class HttpsTransport implements IotHubTransport
      */
     private void moveWaitingListToInProgressList()
     {
+        // Codes_SRS_HTTPSTRANSPORT_21_046: [When the function moves new messages to the in progress list, it shall discard the message kept for the previous messages in progress.]
+        this.inProgressMessage = null;
+
         HttpsBatchMessage batch = new HttpsBatchMessage();
+        HttpsSingleMessage firstHttpsMsg = null;
         while (!this.waitingList.isEmpty())
         {
             IotHubOutboundPacket packet = this.waitingList.peek();
@@ -403,6 +439,10 @@ public final class HttpsTransport implements IotHubTransport
                         HttpsSingleMessage.parseHttpsMessage(
                                 packet.getMessage());
                 batch.addMessage(httpsMsg);
+                if (firstHttpsMsg == null)
+                {
+                    firstHttpsMsg = httpsMsg;
+                }
             }
             catch (IotHubSizeExceededException e)
             {
@@ -418,6 +458,16 @@ public final class HttpsTransport implements IotHubTransport
             IotHubOutboundPacket packet = this.waitingList.remove();
             this.inProgressList.add(packet);
         }
+
+        // Codes_SRS_HTTPSTRANSPORT_21_043: [The function shall keep the message built while batching, so the messages in progress are not serialized again to be sent or resent.]
+        if (this.inProgressList.size() > 1)
+        {
+            this.inProgressMessage = batch;
+        }
+        else if (firstHttpsMsg != null)
+        {
+            this.inProgressMessage = firstHttpsMsg;
+        }
     }
 
     /**
@@ -433,6 +483,11 @@ public final class HttpsTransport implements IotHubTransport
     private HttpsMessage inProgressListToMessage()
             throws IotHubSizeExceededException
     {
+        if (this.inProgressMessage != null)
+        {
+            return this.inProgressMessage;
+        }
+
         HttpsMessage msg = null;
         int inProgressListSize = this.inProgressList.size();
         if (inProgressListSize < 1)
@@ -459,6 +514,7 @@ public final class HttpsTransport implements IotHubTransport
             msg = batch;
         }
 
+        this.inProgressMessage = msg;
         return msg;
     }
 
@@ -470,6 +526,7 @@ public final class HttpsTransport implements IotHubTransport
      */
     private void moveInProgressListToCallbackList(ResponseMessage responseMessage)
     {
+        this.inProgressMessage = null;
         while (!this.inProgressList.isEmpty())
         {
             IotHubOutboundPacket packet = this.inProgressList.remove();
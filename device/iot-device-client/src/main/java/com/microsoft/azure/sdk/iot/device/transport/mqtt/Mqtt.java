@@ -6,15 +6,13 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.paho.client.mqttv3.*;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -24,6 +22,7 @@ abstract public class Mqtt implements MqttCallback
     private DeviceClientConfig deviceClientConfig = null;
     ConcurrentLinkedQueue<Pair<String, byte[]>> allReceivedMessages;
     Object mqttLock = null;
+    private final int maxInFlightCount;
 
     // SAS token expiration check on retry
     private boolean userSpecifiedSASTokenExpiredOnRetry = false;
@@ -33,8 +32,6 @@ abstract public class Mqtt implements MqttCallback
     private final static String MESSAGE_SYSTEM_PROPERTY_IDENTIFIER_ENCODED = "%24";
     private final static char MESSAGE_SYSTEM_PROPERTY_IDENTIFIER_DECODED = '$';
     final static char MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR = '=';
-    private final static int PROPERTY_KEY_INDEX = 0;
-    private final static int PROPERTY_VALUE_INDEX = 1;
 
     /* The system property keys expected in a message */
     //This may be common with amqp as well
@@ -61,6 +58,7 @@ abstract public class Mqtt implements MqttCallback
         this.mqttConnection = mqttConnection;
         this.allReceivedMessages = mqttConnection.getAllReceivedMessages();
         this.mqttLock = mqttConnection.getMqttLock();
+        this.maxInFlightCount = mqttConnection.getMaxInFlightCount();
         this.userSpecifiedSASTokenExpiredOnRetry = false;
     }
 
@@ -138,7 +136,8 @@ abstract public class Mqtt implements MqttCallback
     }
 
     /**
-     * Method to publish to mqtt broker connection.
+     * Method to publish to mqtt broker connection. If the in flight window is full, this method
+     * waits for the oldest pending delivery to complete before publishing.
      *
      * @param publishTopic the topic to publish on mqtt broker connection.
      * @param payload   the payload to publish on publishTopic of mqtt broker connection.
@@ -150,73 +149,103 @@ abstract public class Mqtt implements MqttCallback
         {
             try
             {
-                if (this.mqttConnection == null)
-                {
-                    throw new InvalidParameterException();
-                }
-
-                if (this.userSpecifiedSASTokenExpiredOnRetry)
-                {
-                    /*
-                    ** Codes_SRS_Mqtt_99_049: [**If the user supplied SAS token has expired, the function shall throw an IOException.**]**
-                     */
-                    throw new IOException("Cannot publish when user supplied SAS token has expired");
-                }
-
-                if (!this.mqttConnection.getMqttAsyncClient().isConnected())
-                {
-                    /*
-                    ** Codes_SRS_Mqtt_25_012: [**If the MQTT connection is closed, the function shall throw an IOException.**]**
-                     */
-                    throw new IOException("Cannot publish when mqtt client is disconnected");
-                }
-
-                if (publishTopic == null || publishTopic.length() == 0 || payload == null)
-                {
-                    /*
-                    **Codes_SRS_Mqtt_25_013: [**If the either publishTopic is null or empty or if payload is null, the function shall throw an IOException.**]**
-                    */
-                    throw new IOException("Cannot publish on null or empty publish topic");
-                }
+                this.checkPublishPreconditions(publishTopic, payload);
 
-                while (this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens().length >= MqttConnection.MAX_IN_FLIGHT_COUNT)
+                IMqttDeliveryToken[] pendingDeliveryTokens = this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens();
+                while (pendingDeliveryTokens.length >= this.maxInFlightCount)
                 {
                     /*
                     **Codes_SRS_Mqtt_25_048: [**publish shall check for pending publish tokens by calling getPendingDeliveryTokens.
-                    * And if there are pending tokens publish shall sleep until the number of pending tokens are less than 10 as per paho limitations**]**
+                    * And if the in flight window is full, publish shall wait for the oldest pending token to complete before checking again.**]**
                     */
-                    Thread.sleep(10);
+                    this.waitForDelivery(pendingDeliveryTokens[0]);
 
                     if (!this.mqttConnection.getMqttAsyncClient().isConnected())
                     {
                     /*
                     ** Codes_SRS_Mqtt_25_012: [**If the MQTT connection is closed, the function shall throw an IOException.**]**
                      */
-                        throw new IOException("Cannot publish when mqtt client is holding 10 tokens and  is disconnected");
+                        throw new IOException("Cannot publish when mqtt client in flight window is full and is disconnected");
                     }
+
+                    pendingDeliveryTokens = this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens();
                 }
 
-                MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
+                /*
+                **Codes_SRS_Mqtt_25_014: [**The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.**]**
+                 */
+                IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, this.createMqttMessage(payload));
 
-                mqttMessage.setQos(MqttConnection.QOS);
+            }
+            catch (MqttException e)
+            {
+                /*
+                **Codes_SRS_Mqtt_25_047: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
+                 */
+                throw new IOException("Unable to publish message on topic : " + publishTopic + " because " + e.getCause() + e.getMessage());
+            }
+            catch (Exception e)
+            {
+                throw new IOException("Unable to publish message on topic : " + publishTopic + " " + e.getCause() + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to publish to mqtt broker connection without waiting for the IoT Hub to acknowledge
+     * the message. The acknowledgement, or the failure to deliver the message, is reported to
+     * the provided action listener.
+     *
+     * @param publishTopic the topic to publish on mqtt broker connection.
+     * @param payload the payload to publish on publishTopic of mqtt broker connection.
+     * @param actionListener the listener to be notified when the publish completes.
+     * @return {@code true} if the message was published, or {@code false} if the in flight
+     * window is full and the message shall be published later.
+     * @throws IOException if failed to publish the mqtt topic.
+     */
+    protected boolean tryPublish(String publishTopic, byte[] payload, IMqttActionListener actionListener) throws IOException
+    {
+        synchronized (this.mqttLock)
+        {
+            try
+            {
+                if (actionListener == null)
+                {
+                    /*
+                    **Codes_SRS_Mqtt_21_056: [**If the actionListener is null, the function shall throw an IOException.**]**
+                     */
+                    throw new IOException("Cannot publish without an action listener");
+                }
 
                 /*
-                **Codes_SRS_Mqtt_25_014: [**The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.**]**
+                **Codes_SRS_Mqtt_21_057: [**The function shall check the SAS token, the connection, the publishTopic and the payload in the same way as publish.**]**
                  */
+                this.checkPublishPreconditions(publishTopic, payload);
 
-                IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, mqttMessage);
+                if (this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens().length >= this.maxInFlightCount)
+                {
+                    /*
+                    **Codes_SRS_Mqtt_21_058: [**If the number of pending delivery tokens reached the in flight window, the function shall return false without publishing.**]**
+                     */
+                    return false;
+                }
 
+                /*
+                **Codes_SRS_Mqtt_21_059: [**The function shall publish message payload on the publishTopic with the provided actionListener, and return true without waiting for the acknowledgement.**]**
+                 */
+                this.mqttConnection.getMqttAsyncClient().publish(publishTopic, this.createMqttMessage(payload), null, actionListener);
+                return true;
             }
             catch (MqttException e)
             {
                 /*
-                **Codes_SRS_Mqtt_25_047: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
+                **Codes_SRS_Mqtt_21_060: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
                  */
                 throw new IOException("Unable to publish message on topic : " + publishTopic + " because " + e.getCause() + e.getMessage());
             }
-            catch (InterruptedException e)
+            catch (IOException e)
             {
-                throw new IOException("Interrupted, Unable to publish message on topic : " + publishTopic);
+                throw e;
             }
             catch (Exception e)
             {
@@ -225,6 +254,57 @@ abstract public class Mqtt implements MqttCallback
         }
     }
 
+    private void checkPublishPreconditions(String publishTopic, byte[] payload) throws IOException
+    {
+        if (this.mqttConnection == null)
+        {
+            throw new InvalidParameterException();
+        }
+
+        if (this.userSpecifiedSASTokenExpiredOnRetry)
+        {
+            /*
+            ** Codes_SRS_Mqtt_99_049: [**If the user supplied SAS token has expired, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Cannot publish when user supplied SAS token has expired");
+        }
+
+        if (!this.mqttConnection.getMqttAsyncClient().isConnected())
+        {
+            /*
+            ** Codes_SRS_Mqtt_25_012: [**If the MQTT connection is closed, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Cannot publish when mqtt client is disconnected");
+        }
+
+        if (publishTopic == null || publishTopic.length() == 0 || payload == null)
+        {
+            /*
+            **Codes_SRS_Mqtt_25_013: [**If the either publishTopic is null or empty or if payload is null, the function shall throw an IOException.**]**
+            */
+            throw new IOException("Cannot publish on null or empty publish topic");
+        }
+    }
+
+    private MqttMessage createMqttMessage(byte[] payload)
+    {
+        MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
+        mqttMessage.setQos(MqttConnection.QOS);
+        return mqttMessage;
+    }
+
+    private void waitForDelivery(IMqttDeliveryToken deliveryToken)
+    {
+        try
+        {
+            deliveryToken.waitForCompletion(MqttConnection.MAX_WAIT_TIME);
+        }
+        catch (MqttException e)
+        {
+            // The delivery failed or did not complete in time, the caller checks the connection and the window again.
+        }
+    }
+
     /**
      * Method to subscribe to mqtt broker connection.
      *
@@ -478,6 +558,15 @@ abstract public class Mqtt implements MqttCallback
         **Codes_SRS_Mqtt_25_030: [**The payload of the message and the topic is added to the received messages queue .**]**
          */
         this.mqttConnection.getAllReceivedMessages().add(new MutablePair<>(topic, mqttMessage.getPayload()));
+
+        /*
+        **Codes_SRS_Mqtt_21_055: [**If a transport listener is set on the connection, it shall be notified that there is receive work available.**]**
+         */
+        IotHubTransportListener transportListener = this.mqttConnection.getTransportListener();
+        if (transportListener != null)
+        {
+            transportListener.onReceiveWorkAvailable();
+        }
     }
 
     /**
@@ -518,83 +607,82 @@ abstract public class Mqtt implements MqttCallback
         int propertiesStringStartingIndex = topic.indexOf(MESSAGE_SYSTEM_PROPERTY_IDENTIFIER_ENCODED);
         if (propertiesStringStartingIndex != -1)
         {
-            String propertiesString = topic.substring(propertiesStringStartingIndex);
-
             /*
             **Codes_SRS_Mqtt_34_041: [**This method shall call assignPropertiesToMessage so that all properties from the topic string can be assigned to the message**]**
             */
-            assignPropertiesToMessage(message, propertiesString);
+            assignPropertiesToMessage(message, topic, propertiesStringStartingIndex);
         }
 
         return message;
     }
 
     /**
-     * Takes propertiesString and parses it for all the properties it holds and then assigns them to the provided message
-     * @param propertiesString the string to parse containing all the properties
+     * Parses all the properties in the topic, from the provided index, and assigns them to the provided message.
+     * The properties are scanned in a single pass, and only the keys and values with escapes are decoded.
      * @param message the message to add the parsed properties to
-     * @throws IllegalArgumentException if a property's key and value are not separated by the '=' symbol
-     * @throws NumberFormatException if the property for expiry time is present, but the value cannot be parsed as a Long
+     * @param topic the topic string containing the properties
+     * @param propertiesStringStartingIndex the index of the first property in the topic
+     * @throws IllegalArgumentException if a property's key and value are not separated by the '=' symbol, or have an invalid escape
      * */
-    private void assignPropertiesToMessage(Message message, String propertiesString) throws IllegalArgumentException, NumberFormatException
+    private void assignPropertiesToMessage(Message message, String topic, int propertiesStringStartingIndex) throws IllegalArgumentException
     {
         /*
         **Codes_SRS_Mqtt_34_054: [**A message may have 0 to many custom properties**]**
         */
         //expected format is <key>=<value><MESSAGE_PROPERTY_SEPARATOR><key>=<value><MESSAGE_PROPERTY_SEPARATOR>...
-        for (String propertyString : propertiesString.split(String.valueOf(MESSAGE_PROPERTY_SEPARATOR)))
+        int topicLength = topic.length();
+        int propertyStartIndex = propertiesStringStartingIndex;
+        while (propertyStartIndex < topicLength)
         {
-            if (propertyString.contains("="))
+            int propertyEndIndex = topic.indexOf(MESSAGE_PROPERTY_SEPARATOR, propertyStartIndex);
+            if (propertyEndIndex == -1)
             {
-                //Expected format is <key>=<value> where both key and value may be encoded
-                String key = propertyString.split("=")[PROPERTY_KEY_INDEX];
-                String value = propertyString.split("=")[PROPERTY_VALUE_INDEX];
-                try
-                {
-                    /*
-                    **Codes_SRS_Mqtt_34_053: [**A property's key and value may include unusual characters such as &, %, $**]**
-                    */
-                    key = URLDecoder.decode(key, StandardCharsets.UTF_8.name());
-                    value = URLDecoder.decode(value, StandardCharsets.UTF_8.name());
-                }
-                catch (UnsupportedEncodingException e)
-                {
-                    // should never happen, since the encoding is hard-coded.
-                    throw new IllegalStateException(e);
-                }
-
-                //Some properties are reserved system properties and must be saved in the message differently
-                switch (key)
-                {
-                    case TO:
-                        //do nothing
-                        break;
-                    case MESSAGE_ID:
-                        message.setMessageId(value);
-                        break;
-                    case IOTHUB_ACK:
-                        //do nothing
-                        break;
-                    case CORRELATION_ID:
-                        message.setCorrelationId(value);
-                        break;
-                    case USER_ID:
-                        //do nothing
-                        break;
-                    case ABSOLUTE_EXPIRY_TIME:
-                        //do nothing
-                        break;
-                    default:
-                        message.setProperty(key, value);
-                }
+                propertyEndIndex = topicLength;
             }
-            else
+
+            int keyValueSeparatorIndex = topic.indexOf(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR, propertyStartIndex);
+            if ((keyValueSeparatorIndex == -1) || (keyValueSeparatorIndex > propertyEndIndex))
             {
                 /*
                  **Codes_SRS_Mqtt_34_051: [**If a topic string's property's key and value are not separated by the '=' symbol, an IllegalArgumentException shall be thrown**]**
                  */
-                throw new IllegalArgumentException("Unexpected property string provided. Expected '=' symbol between key and value of the property in string: " + propertyString);
+                throw new IllegalArgumentException("Unexpected property string provided. Expected '=' symbol between key and value of the property in string: " +
+                        topic.substring(propertyStartIndex, propertyEndIndex));
             }
+
+            //Expected format is <key>=<value> where both key and value may be encoded
+            /*
+            **Codes_SRS_Mqtt_34_053: [**A property's key and value may include unusual characters such as &, %, $**]**
+            */
+            String key = TopicCodec.decode(topic, propertyStartIndex, keyValueSeparatorIndex);
+            String value = TopicCodec.decode(topic, keyValueSeparatorIndex + 1, propertyEndIndex);
+
+            //Some properties are reserved system properties and must be saved in the message differently
+            switch (key)
+            {
+                case TO:
+                    //do nothing
+                    break;
+                case MESSAGE_ID:
+                    message.setMessageId(value);
+                    break;
+                case IOTHUB_ACK:
+                    //do nothing
+                    break;
+                case CORRELATION_ID:
+                    message.setCorrelationId(value);
+                    break;
+                case USER_ID:
+                    //do nothing
+                    break;
+                case ABSOLUTE_EXPIRY_TIME:
+                    //do nothing
+                    break;
+                default:
+                    message.setProperty(key, value);
+            }
+
+            propertyStartIndex = propertyEndIndex + 1;
         }
     }
 
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
@@ -23,6 +24,8 @@ public class MqttConnection
     private ConcurrentLinkedQueue<Pair<String, byte[]>> allReceivedMessages;
     private Object mqttLock;
     private MqttCallback mqttCallback;
+    private volatile IotHubTransportListener transportListener;
+    private final int maxInFlightCount;
 
     //mqtt connection options
     private static final int KEEP_ALIVE_INTERVAL = 230;
@@ -31,7 +34,7 @@ public class MqttConnection
     static final int QOS = 1;
     static final int MAX_WAIT_TIME = 1000;
 
-    // paho mqtt only supports 10 messages in flight at the same time
+    // default number of messages in flight at the same time, it is the paho default
     static final int MAX_IN_FLIGHT_COUNT = 10;
 
     /**
@@ -45,6 +48,30 @@ public class MqttConnection
      */
     MqttConnection(String serverURI, String clientId, String userName, String password, SSLContext iotHubSSLContext) throws IOException
     {
+        this(serverURI, clientId, userName, password, iotHubSSLContext, MAX_IN_FLIGHT_COUNT);
+    }
+
+    /**
+     * Constructor to create MqttAsync Client with Paho and a custom in flight window
+     * @param serverURI Uri to connect to
+     * @param clientId Client Id to connect to
+     * @param userName Username
+     * @param password password
+     * @param iotHubSSLContext SSLContext for the connection
+     * @param maxInFlightCount maximum number of messages published and not acknowledged yet
+     * @throws IOException is thrown if any of the parameters are null or empty or client cannot be instantiated
+     */
+    MqttConnection(String serverURI, String clientId, String userName, String password, SSLContext iotHubSSLContext, int maxInFlightCount) throws IOException
+    {
+        if (maxInFlightCount < 1)
+        {
+            //Codes_SRS_MQTTCONNECTION_21_014: [The constructor shall throw IllegalArgumentException if maxInFlightCount is smaller than 1.]
+            throw new IllegalArgumentException("maxInFlightCount shall be at least 1");
+        }
+
+        //Codes_SRS_MQTTCONNECTION_21_015: [The constructor shall save maxInFlightCount and use it as the in flight window of the connection options.]
+        this.maxInFlightCount = maxInFlightCount;
+
         if (serverURI == null || clientId == null || userName == null || iotHubSSLContext == null)
         {
             //Codes_SRS_MQTTCONNECTION_25_001: [The constructor shall throw InvalidParameter Exception if any of the input parameters are null other than password.]
@@ -87,6 +114,7 @@ public class MqttConnection
         this.connectionOptions.setKeepAliveInterval(KEEP_ALIVE_INTERVAL);
         this.connectionOptions.setCleanSession(SET_CLEAN_SESSION);
         this.connectionOptions.setMqttVersion(MQTT_VERSION);
+        this.connectionOptions.setMaxInflight(this.maxInFlightCount);
         this.connectionOptions.setUserName(userName);
         this.connectionOptions.setSocketFactory(iotHubSSLContext.getSocketFactory());
 
@@ -163,4 +191,34 @@ public class MqttConnection
         //Codes_SRS_MQTTCONNECTION_25_011: [Setter for the MqttAsyncClient which can be null.]
         this.mqttAsyncClient = mqttAsyncClient;
     }
+
+    /**
+     * Getter for the in flight window
+     * @return the maximum number of messages published and not acknowledged yet
+     */
+    int getMaxInFlightCount()
+    {
+        //Codes_SRS_MQTTCONNECTION_21_016: [Getter for the in flight window.]
+        return maxInFlightCount;
+    }
+
+    /**
+     * Setter for the listener notified when a message is added to the received messages queue.
+     * @param transportListener the listener to be notified. Can be {@code null}.
+     */
+    void setTransportListener(IotHubTransportListener transportListener)
+    {
+        //Codes_SRS_MQTTCONNECTION_21_012: [Setter for the transport listener which can be null.]
+        this.transportListener = transportListener;
+    }
+
+    /**
+     * Getter for the listener notified when a message is added to the received messages queue.
+     * @return the transport listener. It can be {@code null}.
+     */
+    IotHubTransportListener getTransportListener()
+    {
+        //Codes_SRS_MQTTCONNECTION_21_013: [Getter for the transport listener.]
+        return transportListener;
+    }
 }
@@ -87,7 +87,7 @@ public class MqttDeviceTwin extends Mqtt
 
         if (!requestMap.isEmpty())
         {
-            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), logger.getMethodName());
+            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), CustomLogger.METHOD_NAME);
         }
     }
 
@@ -427,7 +427,7 @@ public class MqttDeviceTwin extends Mqtt
                                     messsage.setVersion(getVersion(topicTokens[PATCH_VERSION_TOKEN]));
                                 }
 
-                                logger.LogInfo("Message received on DT " + messsage.getDeviceOperationType());
+                                logger.LogInfo("Message received on DT %s", messsage.getDeviceOperationType());
                             }
                             else
                             {
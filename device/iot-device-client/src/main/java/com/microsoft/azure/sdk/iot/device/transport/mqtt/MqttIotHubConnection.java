@@ -7,9 +7,12 @@ import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageType;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
@@ -26,6 +29,7 @@ public class MqttIotHubConnection
     private String iotHubUserName;
     private String iotHubUserPassword;
     private MqttConnection mqttConnection;
+    private IotHubTransportListener transportListener;
 
     //string constants
     private static final String WS_SSL_PREFIX = "wss://";
@@ -39,6 +43,10 @@ public class MqttIotHubConnection
 
     private static final String TWIN_API_VERSION = "api-version=2016-11-14";
 
+    /* The topic prefixes that route a received message to its messaging client. */
+    private static final String METHOD_REQUEST_TOPIC_PREFIX = "$iothub/methods/POST/";
+    private static final String TWIN_TOPIC_PREFIX = "$iothub/twin/";
+
     //Messaging clients
     private MqttMessaging deviceMessaging;
     private MqttDeviceTwin deviceTwin;
@@ -139,17 +147,23 @@ public class MqttIotHubConnection
                 {
                     //Codes_SRS_MQTTIOTHUBCONNECTION_25_018: [The function shall establish an MQTT WS connection with a server uri as wss://<hostName>/$iothub/websocket?iothub-no-client-cert=true if websocket was enabled.]
                     final String wsServerUri = WS_SSL_PREFIX + this.config.getIotHubHostname() + WEBSOCKET_RAW_PATH + WEBSOCKET_QUERY ;
+                    // Codes_SRS_MQTTIOTHUBCONNECTION_21_022: [The function shall create the MQTT connection with the in flight window provided by the configuration.]
                     mqttConnection = new MqttConnection(wsServerUri,
-                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext);
+                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext,
+                            this.config.getMqttMaxInFlightCount());
                 }
                 else
                 {
                     //Codes_SRS_MQTTIOTHUBCONNECTION_25_019: [The function shall establish an MQTT connection with a server uri as ssl://<hostName>:8883 if websocket was not enabled.]
                     final String serverUri = SSL_PREFIX + this.config.getIotHubHostname() + SSL_PORT_SUFFIX;
+                    // Codes_SRS_MQTTIOTHUBCONNECTION_21_022: [The function shall create the MQTT connection with the in flight window provided by the configuration.]
                     mqttConnection = new MqttConnection(serverUri,
-                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext);
+                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext,
+                            this.config.getMqttMaxInFlightCount());
                 }
 
+                mqttConnection.setTransportListener(this.transportListener);
+
                 this.deviceMessaging = new MqttMessaging(mqttConnection, this.config.getDeviceId());
                 mqttConnection.setMqttCallback(this.deviceMessaging);
                 this.deviceMethod = new MqttDeviceMethod(mqttConnection);
@@ -283,6 +297,50 @@ public class MqttIotHubConnection
         }
     }
 
+    /**
+     * Sends a telemetry message without waiting for the IoT Hub to acknowledge it. The
+     * acknowledgement, or the failure to deliver the message, is reported to the provided
+     * action listener.
+     *
+     * @param message the telemetry message.
+     * @param actionListener the listener to be notified when the send completes.
+     *
+     * @return {@code true} if the message was published, or {@code false} if the in flight
+     * window is full and the message shall be sent later.
+     *
+     * @throws IllegalArgumentException if the message is null or empty, or if the listener is null.
+     * @throws IllegalStateException if the MqttIotHubConnection is not open.
+     * @throws IOException if the message could not be published.
+     */
+    public boolean sendEventAsync(Message message, IMqttActionListener actionListener)
+            throws IllegalArgumentException, IllegalStateException, IOException
+    {
+        synchronized (MQTT_CONNECTION_LOCK)
+        {
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_023: [If the message is null or empty, or the actionListener is null,
+            // the function shall throw an IllegalArgumentException.]
+            if (message == null || message.getBytes() == null || message.getBytes().length == 0)
+            {
+                throw new IllegalArgumentException("message cannot be null or empty.");
+            }
+            if (actionListener == null)
+            {
+                throw new IllegalArgumentException("actionListener cannot be null.");
+            }
+
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_024: [If the MQTT connection is closed,
+            // the function shall throw an IllegalStateException.]
+            if (this.state == State.CLOSED)
+            {
+                throw new IllegalStateException("Cannot send event using a closed MQTT connection");
+            }
+
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_025: [The function shall publish the message using the messaging
+            // client with the provided actionListener, and return the result of the publish.]
+            return this.deviceMessaging.sendAsync(message, actionListener);
+        }
+    }
+
     /**
      * Receives a message, if one exists.
      *
@@ -301,22 +359,53 @@ public class MqttIotHubConnection
                     "to receive a message.");
         }
 
-        Message message = null;
+        // Codes_SRS_MQTTIOTHUBCONNECTION_21_026: [The function shall peek the topic of the oldest received message once, and return null if there is none.]
+        Pair<String, byte[]> messagePair = this.deviceMessaging.peekMessage();
+        if (messagePair == null || messagePair.getKey() == null)
+        {
+            return null;
+        }
 
         // Codes_SRS_MQTTIOTHUBCONNECTION_15_014: [The function shall attempt to consume a message
         // from various messaging clients.]
         // Codes_SRS__MQTTIOTHUBCONNECTION_34_016: [If any of the messaging clients throw an exception, The associated message will be removed from the queue and the exception will be propagated up to the receive task.]
-
-        message = this.deviceMethod.receive();
-        if (message == null)
+        // Codes_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall consume the message only with the messaging client of its topic: device methods for method requests, device twin for twin topics, and messaging otherwise.]
+        Message message;
+        String topic = messagePair.getKey();
+        if (topic.startsWith(METHOD_REQUEST_TOPIC_PREFIX))
+        {
+            message = this.deviceMethod.receive();
+        }
+        else if (topic.startsWith(TWIN_TOPIC_PREFIX))
+        {
+            message = this.deviceTwin.receive();
+        }
+        else
         {
-            message = deviceTwin.receive();
+            message = null;
         }
 
         if (message == null)
         {
-            message = deviceMessaging.receive();
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_028: [If the messaging client of the topic does not consume the message, the function shall consume it with the messaging client.]
+            message = this.deviceMessaging.receive();
         }
+
         return message;
     }
+
+    /**
+     * Setter for the listener to be notified when a message arrives from the IoT Hub.
+     *
+     * @param transportListener the listener to be notified. Can be {@code null}.
+     */
+    public void setTransportListener(IotHubTransportListener transportListener)
+    {
+        // Codes_SRS_MQTTIOTHUBCONNECTION_21_021: [The function shall save the listener and set it on the current MQTT connection, if any.]
+        this.transportListener = transportListener;
+        if (this.mqttConnection != null)
+        {
+            this.mqttConnection.setTransportListener(transportListener);
+        }
+    }
 }
@@ -5,6 +5,7 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
 import java.io.IOException;
 
@@ -14,6 +15,9 @@ public class MqttMessaging extends Mqtt
     private String publishTopic;
     private String parseTopic;
 
+    /* The initial capacity reserved in the publish topic for each property. */
+    private static final int PROPERTY_CAPACITY = 32;
+
     public MqttMessaging(MqttConnection mqttConnection, String deviceId) throws IOException
     {
         /*
@@ -67,11 +71,44 @@ public class MqttMessaging extends Mqtt
             throw new IOException("Message cannot be null");
         }
 
-        MessageProperty[] messageProperties = message.getProperties();
+        //Codes_SRS_MqttMessaging_25_024: [send method shall publish a message to the IOT Hub on the publish topic by calling method publish().]
+        this.publish(this.buildPublishTopic(message), message.getBytes());
+    }
+
+    /**
+     * Publishes the message without waiting for the IoT Hub to acknowledge it.
+     *
+     * @param message the message to publish.
+     * @param actionListener the listener to be notified when the IoT Hub acknowledges the message, or when it fails.
+     * @return {@code true} if the message was published, or {@code false} if the in flight window is full.
+     * @throws IOException if the message is null or cannot be published.
+     */
+    public boolean sendAsync(Message message, IMqttActionListener actionListener) throws IOException
+    {
+        if (message == null || message.getBytes() == null)
+        {
+            /*
+            **Codes_SRS_MqttMessaging_21_028: [**sendAsync method shall throw an IOException if the message is null.**]**
+             */
+            throw new IOException("Message cannot be null");
+        }
+
+        /*
+        **Codes_SRS_MqttMessaging_21_029: [**sendAsync method shall build the publish topic in the same way as send, and publish the message by calling tryPublish() with the provided actionListener.**]**
+         */
+        return this.tryPublish(this.buildPublishTopic(message), message.getBytes(), actionListener);
+    }
+
+    private String buildPublishTopic(Message message)
+    {
+        int propertyCount = message.getPropertyCount();
         String messagePublishTopic;
-        if(messageProperties.length > 0)
+        if(propertyCount > 0)
         {
-            StringBuilder stringBuilder = new StringBuilder();
+            /*
+            **Codes_SRS_MqttMessaging_21_030: [**The publish topic shall start with the publishTopic of the device, and the system and custom property keys and values shall be percent-encoded.**]**
+             */
+            StringBuilder stringBuilder = new StringBuilder(this.publishTopic.length() + (propertyCount + 2) * PROPERTY_CAPACITY);
             stringBuilder.append(this.publishTopic);
 
             boolean separatorNeeded = false;
@@ -83,7 +120,7 @@ public class MqttMessaging extends Mqtt
             {
                 stringBuilder.append(MESSAGE_ID);
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(message.getMessageId());
+                TopicCodec.appendEncoded(stringBuilder, message.getMessageId());
 
                 separatorNeeded = true;
             }
@@ -97,7 +134,7 @@ public class MqttMessaging extends Mqtt
 
                 stringBuilder.append(CORRELATION_ID);
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(message.getCorrelationId());
+                TopicCodec.appendEncoded(stringBuilder, message.getCorrelationId());
 
                 separatorNeeded = true;
             }
@@ -111,7 +148,7 @@ public class MqttMessaging extends Mqtt
 
                 stringBuilder.append(USER_ID);
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(message.getUserId());
+                TopicCodec.appendEncoded(stringBuilder, message.getUserId());
 
                 separatorNeeded = true;
             }
@@ -125,13 +162,14 @@ public class MqttMessaging extends Mqtt
 
                 stringBuilder.append(TO);
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(message.getTo());
+                TopicCodec.appendEncoded(stringBuilder, message.getTo());
 
                 separatorNeeded = true;
             }
 
-            for(MessageProperty property : message.getProperties())
+            for(int propertyIndex = 0; propertyIndex < propertyCount; propertyIndex++)
             {
+                MessageProperty property = message.getPropertyAt(propertyIndex);
                 if (separatorNeeded)
                 {
                     stringBuilder.append(MESSAGE_PROPERTY_SEPARATOR);
@@ -140,9 +178,9 @@ public class MqttMessaging extends Mqtt
                 /*
                 **Codes_SRS_MqttMessaging_25_026: [send method shall append the message properties to publishTopic before publishing.]
                  */
-                stringBuilder.append(property.getName());
+                TopicCodec.appendEncoded(stringBuilder, property.getName());
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(property.getValue());
+                TopicCodec.appendEncoded(stringBuilder, property.getValue());
 
                 separatorNeeded = true;
             }
@@ -154,7 +192,6 @@ public class MqttMessaging extends Mqtt
             messagePublishTopic = this.publishTopic;
         }
 
-        //Codes_SRS_MqttMessaging_25_024: [send method shall publish a message to the IOT Hub on the publish topic by calling method publish().]
-        this.publish(messagePublishTopic, message.getBytes());
+        return messagePublishTopic;
     }
 }
@@ -7,11 +7,22 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <p>
@@ -21,6 +32,11 @@ import java.util.concurrent.LinkedBlockingDeque;
  * parameters: IoT Hub name, device ID, device key, and message valid seconds.
  * </p>
  * <p>
+ * Telemetry messages are pipelined: up to the configured in flight window of
+ * messages are published without waiting for each other, and the callback of
+ * each message is queued when the IoT Hub acknowledges it.
+ * </p>
+ * <p>
  * The transport can also poll an IoT Hub for messages and invoke a
  * user-defined message callback if a message and callback is found.
  * </p>
@@ -38,7 +54,10 @@ public final class MqttTransport implements IotHubTransport
     private MqttIotHubConnection mqttIotHubConnection;
 
     /** Messages waiting to be sent. */
-    private final Queue<IotHubOutboundPacket> waitingList;
+    private final OutboundPacketQueue waitingList;
+
+    /** Messages published and waiting to be acknowledged by the IoT Hub. */
+    private final Set<IotHubOutboundPacket> inProgressPackets;
 
     /** Messages whose callbacks that are waiting to be invoked. */
     private final Queue<IotHubCallbackPacket> callbackList;
@@ -46,6 +65,9 @@ public final class MqttTransport implements IotHubTransport
     private IotHubConnectionStateCallback stateCallback;
     private Object stateCallbackContext;
 
+    /** Listener notified when there is work for the send or receive tasks */
+    private volatile IotHubTransportListener transportListener;
+
     private final DeviceClientConfig config;
 
     /**
@@ -56,12 +78,15 @@ public final class MqttTransport implements IotHubTransport
      */
     public MqttTransport(DeviceClientConfig config)
     {
-        // Codes_SRS_MQTTTRANSPORT_15_001: [The constructor shall initialize an empty transport queue
-        // for adding messages to be sent as a batch.]
-        this.waitingList = new LinkedBlockingDeque<>();
         // Codes_SRS_MQTTTRANSPORT_15_002: [The constructor shall initialize an empty queue
         // for completed messages whose callbacks are waiting to be invoked.]
         this.callbackList = new LinkedBlockingDeque<>();
+        // Codes_SRS_MQTTTRANSPORT_15_001: [The constructor shall initialize an empty transport queue
+        // for adding messages to be sent as a batch.]
+        this.waitingList = new OutboundPacketQueue(config, this.callbackList);
+        // Codes_SRS_MQTTTRANSPORT_21_029: [The constructor shall initialize an empty set
+        // for published messages that are waiting to be acknowledged.]
+        this.inProgressPackets = Collections.newSetFromMap(new ConcurrentHashMap<IotHubOutboundPacket, Boolean>());
         this.config = config;
         this.state = State.CLOSED;
     }
@@ -83,6 +108,9 @@ public final class MqttTransport implements IotHubTransport
         // Codes_SRS_MQTTTRANSPORT_15_003: [The function shall establish an MQTT connection
         // with the IoT Hub given in the configuration.]
         this.mqttIotHubConnection = new MqttIotHubConnection(this.config);
+
+        // Codes_SRS_MQTTTRANSPORT_21_027: [The function shall forward the registered transport listener to the MQTT connection.]
+        this.mqttIotHubConnection.setTransportListener(this.transportListener);
         this.mqttIotHubConnection.open();
 
         this.state = State.OPEN;
@@ -109,7 +137,16 @@ public final class MqttTransport implements IotHubTransport
             IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, packet.getCallback(), packet.getContext());
             this.callbackList.add(callbackPacket);
         }
-       
+
+        for (IotHubOutboundPacket packet : new ArrayList<>(this.inProgressPackets))
+        {
+            if (this.inProgressPackets.remove(packet))
+            {
+                IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, packet.getCallback(), packet.getContext());
+                this.callbackList.add(callbackPacket);
+            }
+        }
+
         // Codes_SRS_MQTTTRANSPORT_99_021: [The method will invoke the callback list]
         invokeCallbacks(); 
 
@@ -135,20 +172,18 @@ public final class MqttTransport implements IotHubTransport
             IotHubEventCallback callback,
             Object callbackContext) throws IllegalStateException
     {
-        synchronized (sendMessagesLock)
+        // Codes_SRS_MQTTTRANSPORT_15_008: [If the transport is closed,
+        // the function shall throw an IllegalStateException.]
+        if (this.state == State.CLOSED)
         {
-            // Codes_SRS_MQTTTRANSPORT_15_008: [If the transport is closed,
-            // the function shall throw an IllegalStateException.]
-            if (this.state == State.CLOSED)
-            {
-                throw new IllegalStateException("Cannot add a message to an MQTT transport that is closed.");
-            }
-
-            //Codes_SRS_MQTTTRANSPORT_15_007: [The function shall add a packet containing the message, callback,
-            // and callback context to the transport queue.]
-            IotHubOutboundPacket packet = new IotHubOutboundPacket(message, callback, callbackContext);
-            this.waitingList.add(packet);
+            throw new IllegalStateException("Cannot add a message to an MQTT transport that is closed.");
         }
+
+        //Codes_SRS_MQTTTRANSPORT_15_007: [The function shall add a packet containing the message, callback,
+        // and callback context to the transport queue.]
+        // The packet is added out of the send lock, because a full queue may wait for sendMessages to drain it.
+        IotHubOutboundPacket packet = new IotHubOutboundPacket(message, callback, callbackContext);
+        this.waitingList.add(packet);
     }
 
     /**
@@ -178,6 +213,11 @@ public final class MqttTransport implements IotHubTransport
      * send attempt had failed, the function will attempt to resend the messages
      * in the previous attempt.
      * </p>
+     * <p>
+     * Telemetry messages are published without waiting for the IoT Hub to
+     * acknowledge them. If the in flight window is full, the remaining messages
+     * stay in the transport queue until an acknowledgement frees the window.
+     * </p>
      * If one has not already been created, the function will initialize an
      * MQTT connection with the IoT Hub specified in the configuration.
      *
@@ -217,6 +257,13 @@ public final class MqttTransport implements IotHubTransport
                         this.stateCallback.execute(IotHubConnectionState.SAS_TOKEN_EXPIRED, this.stateCallbackContext);
                     }
                 }
+                else if (isTelemetry(packet.getMessage()))
+                {
+                    if (!this.publishTelemetry(packet))
+                    {
+                        break;
+                    }
+                }
                 else
                 {
                     try
@@ -232,13 +279,118 @@ public final class MqttTransport implements IotHubTransport
                     // shall be buffered to be sent again next time.]
                     catch (IllegalStateException e)
                     {
-                        this.waitingList.add(packet);
+                        this.waitingList.addFirst(packet);
+                        break;
                     }
                 }
             }
         }
     }
 
+    private static boolean isTelemetry(Message message)
+    {
+        return message.getMessageType() != MessageType.DEVICE_TWIN && message.getMessageType() != MessageType.DEVICE_METHODS;
+    }
+
+    /**
+     * Publishes a telemetry message without waiting for the IoT Hub to acknowledge it.
+     *
+     * @param packet the packet with the message to publish.
+     * @return {@code true} if the packet left the waiting list, or {@code false} if it was
+     * buffered again and the remaining messages shall wait for the next send.
+     */
+    private boolean publishTelemetry(IotHubOutboundPacket packet)
+    {
+        // The packet is tracked before the publish because the acknowledgement may arrive before the publish returns.
+        this.inProgressPackets.add(packet);
+        try
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_030: [The function shall publish each telemetry message without waiting
+            // for the IoT Hub acknowledgement, and track it as in progress.]
+            if (this.mqttIotHubConnection.sendEventAsync(packet.getMessage(), new MessageDeliveryListener(packet)))
+            {
+                return true;
+            }
+
+            // Codes_SRS_MQTTTRANSPORT_21_031: [If the in flight window is full, the function shall put the message
+            // back at the head of the waiting list and stop sending.]
+            this.inProgressPackets.remove(packet);
+            this.waitingList.addFirst(packet);
+            return false;
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_032: [If the message is null or empty, the function shall add
+            // the status code BAD_FORMAT along with the callback and context to the callback list.]
+            this.inProgressPackets.remove(packet);
+            this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.BAD_FORMAT, packet.getCallback(), packet.getContext()));
+            return true;
+        }
+        catch (IllegalStateException e)
+        {
+            // Codes_SRS_MQTTTRANSPORT_15_011: [If the IoT Hub could not be reached, the message
+            // shall be buffered to be sent again next time.]
+            this.inProgressPackets.remove(packet);
+            this.waitingList.addFirst(packet);
+            return false;
+        }
+        catch (IOException e)
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_033: [If the message cannot be published, the function shall add
+            // the status code ERROR along with the callback and context to the callback list.]
+            this.inProgressPackets.remove(packet);
+            this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.ERROR, packet.getCallback(), packet.getContext()));
+            return true;
+        }
+    }
+
+    /**
+     * Moves an in progress packet to the callback list once the IoT Hub acknowledged it, or
+     * once the publish failed, and notifies the transport listener that there are callbacks to invoke.
+     */
+    private void completeInProgressPacket(IotHubOutboundPacket packet, IotHubStatusCode status)
+    {
+        // A packet cancelled by close is not in progress anymore, and its late acknowledgement is ignored.
+        if (this.inProgressPackets.remove(packet))
+        {
+            this.callbackList.add(new IotHubCallbackPacket(status, packet.getCallback(), packet.getContext()));
+
+            IotHubTransportListener listener = this.transportListener;
+            if (listener != null)
+            {
+                listener.onSendWorkAvailable();
+            }
+        }
+    }
+
+    /** Completes an in progress telemetry packet when its publish completes. */
+    private final class MessageDeliveryListener implements IMqttActionListener
+    {
+        private final IotHubOutboundPacket packet;
+
+        MessageDeliveryListener(IotHubOutboundPacket packet)
+        {
+            this.packet = packet;
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken)
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_034: [When the IoT Hub acknowledges a message, the transport shall add
+            // the status code OK_EMPTY along with the callback and context to the callback list, and notify
+            // the transport listener.]
+            completeInProgressPacket(this.packet, IotHubStatusCode.OK_EMPTY);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception)
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_035: [If a published message fails, the transport shall add the status
+            // code ERROR along with the callback and context to the callback list, and notify the transport listener.]
+            completeInProgressPacket(this.packet, IotHubStatusCode.ERROR);
+        }
+    }
+
     /**
      * Invokes the callbacks for all completed requests.
      *
@@ -273,9 +425,10 @@ public final class MqttTransport implements IotHubTransport
 
     /**
      * <p>
-     * Invokes the message callback every time a message arrives from the server.
-     * responds to the IoT Hub on how the processed message should be
-     * handled by the IoT Hub.
+     * Invokes the message callback for each message that arrived from the server,
+     * until there are no more messages to handle. If an executor is set in the
+     * configuration, the callbacks are handed off to it instead of running in the
+     * calling thread.
      * </p>
      * If no message callback is set, the function will do nothing.
      *
@@ -306,36 +459,60 @@ public final class MqttTransport implements IotHubTransport
                 return;
             }
 
-            // Codes_SRS_MQTTTRANSPORT_15_016: [The function shall attempt to consume a message from the IoT Hub.]
-            Message message = this.mqttIotHubConnection.receiveMessage();
+            Executor callbackExecutor = this.config.getMqttCallbackExecutor();
 
-            // Codes_SRS_MQTTTRANSPORT_15_017: [If a message is found and a message callback is registered,
-            // the function shall invoke the callback on the message.]
-            if (message != null)
+            // Codes_SRS_MQTTTRANSPORT_15_016: [The function shall attempt to consume a message from the IoT Hub.]
+            // Codes_SRS_MQTTTRANSPORT_21_037: [The function shall keep consuming messages until there are no more messages, or the transport is closed.]
+            Message message;
+            while ((this.state == State.OPEN) && ((message = this.mqttIotHubConnection.receiveMessage()) != null))
             {
+                // Codes_SRS_MQTTTRANSPORT_15_017: [If a message is found and a message callback is registered,
+                // the function shall invoke the callback on the message.]
                 if (message.getMessageType() == MessageType.DEVICE_METHODS)
                 {
-                    if (deviceMethodMessageCallback != null)
-                    {
-                        deviceMethodMessageCallback.execute(message, deviceMethodContext);
-                    }
+                    this.dispatchMessage(callbackExecutor, deviceMethodMessageCallback, message, deviceMethodContext);
                 }
                 else if (message.getMessageType() == MessageType.DEVICE_TWIN)
                 {
-                    if (deviceTwinMessageCallback != null)
-                    {
-                        deviceTwinMessageCallback.execute(message, deviceTwinContext);
-                    }
+                    this.dispatchMessage(callbackExecutor, deviceTwinMessageCallback, message, deviceTwinContext);
                 }
                 else
                 {
-                    if (callback != null)
+                    this.dispatchMessage(callbackExecutor, callback, message, context);
+                }
+            }
+        }
+    }
+
+    private void dispatchMessage(Executor callbackExecutor, final MessageCallback callback, final Message message, final Object context)
+    {
+        if (callback == null)
+        {
+            return;
+        }
+
+        if (callbackExecutor != null)
+        {
+            // Codes_SRS_MQTTTRANSPORT_21_038: [If an executor is set in the configuration, the function shall invoke the callback on the executor.]
+            try
+            {
+                callbackExecutor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
                     {
                         callback.execute(message, context);
                     }
-                }
+                });
+                return;
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Codes_SRS_MQTTTRANSPORT_21_039: [If the executor rejects the callback, the function shall invoke it in the calling thread.]
             }
         }
+
+        callback.execute(message, context);
     }
 
     /**
@@ -349,9 +526,9 @@ public final class MqttTransport implements IotHubTransport
     {
         synchronized (sendMessagesLock)
         {
-            // Codes_SRS_MQTTTRANSPORT_15_019: [The function shall return true if the waiting list
-            // and callback list are all empty, and false otherwise.]
-            if (this.waitingList.isEmpty() && this.callbackList.isEmpty())
+            // Codes_SRS_MQTTTRANSPORT_15_019: [The function shall return true if the waiting list,
+            // in progress set and callback list are all empty, and false otherwise.]
+            if (this.waitingList.isEmpty() && this.inProgressPackets.isEmpty() && this.callbackList.isEmpty())
             {
                 return true;
             }
@@ -360,6 +537,17 @@ public final class MqttTransport implements IotHubTransport
         return false;
     }
 
+    /**
+     * Returns the number of messages waiting in the transport to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getOutboundQueueSize()
+    {
+        // Codes_SRS_MQTTTRANSPORT_21_036: [The function shall return the number of messages in the waiting list.]
+        return this.waitingList.size();
+    }
+
     /**
      * Registers a callback to be executed whenever the mqtt connection is lost or established.
      * 
@@ -380,4 +568,21 @@ public final class MqttTransport implements IotHubTransport
         this.stateCallback = callback;
         this.stateCallbackContext = callbackContext;
     }
-}
\ No newline at end of file
+
+    /**
+     * Registers a listener to be notified whenever a message arrives from the IoT Hub, or
+     * whenever the IoT Hub acknowledges a telemetry message, so its callback can be invoked
+     * and the next messages can use the freed in flight window.
+     *
+     * @param listener the listener to be notified. Can be {@code null} to stop the notifications.
+     */
+    public void registerTransportListener(IotHubTransportListener listener)
+    {
+        // Codes_SRS_MQTTTRANSPORT_21_028: [The function shall register the transport listener, and forward it to the MQTT connection if one is open.]
+        this.transportListener = listener;
+        if (this.mqttIotHubConnection != null)
+        {
+            this.mqttIotHubConnection.setTransportListener(listener);
+        }
+    }
+}
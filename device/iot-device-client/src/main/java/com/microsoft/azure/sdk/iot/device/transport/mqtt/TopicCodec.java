@@ -0,0 +1,160 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Percent-encoding of the property keys and values in the IoT Hub MQTT topics.
+ * </p>
+ * <p>
+ * Both directions scan the text once, without splitting it, and return it untouched
+ * when there is nothing to encode or decode, which is the case of most keys and values.
+ * </p>
+ */
+public final class TopicCodec
+{
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char ESCAPE = '%';
+    private static final char ENCODED_SPACE = '+';
+
+    private TopicCodec()
+    {
+    }
+
+    /**
+     * Appends the percent-encoded UTF-8 form of the value to the builder. All the
+     * characters except the unreserved ones (letters, digits, '-', '.', '_' and '~')
+     * are encoded.
+     *
+     * @param builder the builder to append to.
+     * @param value the value to encode.
+     * @throws IllegalArgumentException if the builder or the value is null.
+     */
+    public static void appendEncoded(StringBuilder builder, String value) throws IllegalArgumentException
+    {
+        if ((builder == null) || (value == null))
+        {
+            // Codes_SRS_TOPICCODEC_21_001: [If the provided builder or value is null, the appendEncoded shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("builder and value cannot be null");
+        }
+
+        int length = value.length();
+        int index = 0;
+        while ((index < length) && isUnreserved(value.charAt(index)))
+        {
+            index++;
+        }
+
+        if (index == length)
+        {
+            // Codes_SRS_TOPICCODEC_21_002: [If the value has only unreserved characters, the appendEncoded shall append it as is.]
+            builder.append(value);
+            return;
+        }
+
+        // Codes_SRS_TOPICCODEC_21_003: [The appendEncoded shall append the other characters as the '%' escape of each byte of their UTF-8 encoding.]
+        builder.append(value, 0, index);
+        for (byte octet : value.substring(index).getBytes(StandardCharsets.UTF_8))
+        {
+            int unsignedOctet = octet & 0xFF;
+            if ((unsignedOctet < 0x80) && isUnreserved((char)unsignedOctet))
+            {
+                builder.append((char)unsignedOctet);
+            }
+            else
+            {
+                builder.append(ESCAPE);
+                builder.append(HEX_DIGITS[unsignedOctet >> 4]);
+                builder.append(HEX_DIGITS[unsignedOctet & 0x0F]);
+            }
+        }
+    }
+
+    /**
+     * Decodes a percent-encoded UTF-8 range of a topic, in the same way as
+     * {@link java.net.URLDecoder}, where '+' is a space.
+     *
+     * @param topic the topic with the encoded text.
+     * @param beginIndex the index of the first character of the encoded text.
+     * @param endIndex the index after the last character of the encoded text.
+     * @return the decoded text.
+     * @throws IllegalArgumentException if the topic is null, the range is out of the topic,
+     * or the text has an invalid escape.
+     */
+    public static String decode(String topic, int beginIndex, int endIndex) throws IllegalArgumentException
+    {
+        if ((topic == null) || (beginIndex < 0) || (endIndex > topic.length()) || (beginIndex > endIndex))
+        {
+            // Codes_SRS_TOPICCODEC_21_004: [If the provided topic is null, or the range is out of the topic, the decode shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("topic cannot be null and the range shall be in the topic");
+        }
+
+        int index = beginIndex;
+        while ((index < endIndex) && (topic.charAt(index) != ESCAPE) && (topic.charAt(index) != ENCODED_SPACE))
+        {
+            index++;
+        }
+
+        if (index == endIndex)
+        {
+            // Codes_SRS_TOPICCODEC_21_005: [If the range has no '%' and no '+', the decode shall return it as is.]
+            return topic.substring(beginIndex, endIndex);
+        }
+
+        // Codes_SRS_TOPICCODEC_21_006: [The decode shall replace '+' by a space, and each sequence of '%' escapes by the UTF-8 text of their bytes.]
+        StringBuilder builder = new StringBuilder(endIndex - beginIndex);
+        builder.append(topic, beginIndex, index);
+        byte[] octets = null;
+        while (index < endIndex)
+        {
+            char character = topic.charAt(index);
+            if (character == ESCAPE)
+            {
+                if (octets == null)
+                {
+                    octets = new byte[(endIndex - index) / 3];
+                }
+
+                int count = 0;
+                while ((index < endIndex) && (topic.charAt(index) == ESCAPE))
+                {
+                    if (index + 2 >= endIndex)
+                    {
+                        // Codes_SRS_TOPICCODEC_21_007: [If an escape is incomplete or is not hexadecimal, the decode shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("Incomplete escape in topic: " + topic.substring(beginIndex, endIndex));
+                    }
+
+                    int high = Character.digit(topic.charAt(index + 1), 16);
+                    int low = Character.digit(topic.charAt(index + 2), 16);
+                    if ((high < 0) || (low < 0))
+                    {
+                        throw new IllegalArgumentException("Invalid escape in topic: " + topic.substring(beginIndex, endIndex));
+                    }
+
+                    octets[count++] = (byte)((high << 4) | low);
+                    index += 3;
+                }
+
+                builder.append(new String(octets, 0, count, StandardCharsets.UTF_8));
+            }
+            else
+            {
+                builder.append((character == ENCODED_SPACE) ? ' ' : character);
+                index++;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean isUnreserved(char character)
+    {
+        return ((character >= 'a') && (character <= 'z')) ||
+                ((character >= 'A') && (character <= 'Z')) ||
+                ((character >= '0') && (character <= '9')) ||
+                (character == '-') || (character == '.') || (character == '_') || (character == '~');
+    }
+}
@@ -235,4 +235,118 @@ public class CustomLoggerTest
             }
         };
     }
+
+    // Tests_SRS_CUSTOMLOGGER_21_021: [If the log level is not enabled, the function shall not format the message nor resolve the method name.]
+    @Test
+    public void disabledLevelDoesNotRecordMessage(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor((Level)any);
+                result = false;
+            }
+        };
+        CustomLogger logger = new CustomLogger(this.getClass());
+
+        logger.LogInfo("info %s", CustomLogger.METHOD_NAME);
+        logger.LogDebug("debug %s %s", "param", CustomLogger.METHOD_NAME);
+        logger.LogTrace("trace %s %s %s", "param", "param", CustomLogger.METHOD_NAME);
+        logger.LogWarn("warn %s %s %s %s", "param", "param", "param", CustomLogger.METHOD_NAME);
+        logger.LogFatal("fatal");
+        logger.LogError("error %s", CustomLogger.METHOD_NAME);
+
+        new Verifications()
+        {
+            {
+                mockLogger.info(any);
+                times = 0;
+                mockLogger.debug(any);
+                times = 0;
+                mockLogger.trace(any);
+                times = 0;
+                mockLogger.warn(any);
+                times = 0;
+                mockLogger.fatal(any);
+                times = 0;
+                mockLogger.error(any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_CUSTOMLOGGER_21_022: [If the log level is enabled, the function shall replace each METHOD_NAME argument by the name of the calling method.]
+    @Test
+    public void methodNamePlaceholderIsResolvedToCallingMethod(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor(Level.INFO);
+                result = true;
+            }
+        };
+
+        new CustomLogger(this.getClass()).LogInfo("value is %s, method name is %s", 5, CustomLogger.METHOD_NAME);
+
+        new Verifications()
+        {
+            {
+                mockLogger.info("value is 5, method name is methodNamePlaceholderIsResolvedToCallingMethod");
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_CUSTOMLOGGER_21_022: [If the log level is enabled, the function shall replace each METHOD_NAME argument by the name of the calling method.]
+    @Test
+    public void methodNamePlaceholderDoesNotChangeCallerArray(@Mocked final Logger mockLogger)
+    {
+        final Object[] params = new Object[] { "a", "b", "c", CustomLogger.METHOD_NAME };
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor(Level.ERROR);
+                result = true;
+            }
+        };
+
+        new CustomLogger(this.getClass()).LogError("%s%s%s %s", params);
+
+        assertThat(params[3], is(CustomLogger.METHOD_NAME));
+        new Verifications()
+        {
+            {
+                mockLogger.error("abc methodNamePlaceholderDoesNotChangeCallerArray");
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_CUSTOMLOGGER_21_023: [The isEnabled functions shall return whether the log level is enabled in the underlying logger.]
+    @Test
+    public void isEnabledReturnsLoggerLevel(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor(Level.INFO);
+                result = true;
+                mockLogger.isEnabledFor(Level.DEBUG);
+                result = false;
+            }
+        };
+        CustomLogger logger = new CustomLogger(this.getClass());
+
+        assertThat(logger.isInfoEnabled(), is(true));
+        assertThat(logger.isDebugEnabled(), is(false));
+    }
 }
@@ -6,6 +6,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.device.MessageCallback;
+import com.microsoft.azure.sdk.iot.device.OutboundQueuePolicy;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubX509Authentication;
 import mockit.Deencapsulation;
@@ -20,6 +21,7 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
@@ -359,6 +361,237 @@ public class DeviceClientConfigTest
         assertTrue(config.isUseWebsocket());
     }
 
+    // Tests_SRS_DEVICECLIENTCONFIG_21_035: [The function shall return the saved MQTT in flight window, which is 10 by default.]
+    @Test
+    public void getMqttMaxInFlightCountReturnsDefault() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        assertThat(config.getMqttMaxInFlightCount(), is(10));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_037: [The function shall save the MQTT in flight window.]
+    @Test
+    public void setMqttMaxInFlightCountSets() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setMqttMaxInFlightCount(50);
+        assertThat(config.getMqttMaxInFlightCount(), is(50));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_036: [If the provided value is smaller than 1, the function shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMqttMaxInFlightCountThrowsOnZero() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setMqttMaxInFlightCount(0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_044: [The function shall return the saved MQTT callback executor, which is null by default.]
+    @Test
+    public void getMqttCallbackExecutorReturnsDefault() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        assertNull(config.getMqttCallbackExecutor());
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_045: [The function shall save the MQTT callback executor.]
+    @Test
+    public void setMqttCallbackExecutorSets(@Mocked final Executor mockExecutor) throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setMqttCallbackExecutor(mockExecutor);
+        assertThat(config.getMqttCallbackExecutor(), is(mockExecutor));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_046: [The function shall return the saved coalescing window, which is 0 by default.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_048: [The function shall save the coalescing window.]
+    @Test
+    public void setReportedPropertiesCoalescingWindowMillisSets() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        assertThat(config.getReportedPropertiesCoalescingWindowMillis(), is(0L));
+        config.setReportedPropertiesCoalescingWindowMillis(500L);
+        assertThat(config.getReportedPropertiesCoalescingWindowMillis(), is(500L));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_047: [If the provided value is negative, the function shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setReportedPropertiesCoalescingWindowMillisNegativeThrows() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setReportedPropertiesCoalescingWindowMillis(-1L);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_038: [The function shall return the saved outbound queue capacity, which is Integer.MAX_VALUE by default.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_041: [The function shall return the saved outbound queue policy, which is FAIL_FAST by default.]
+    @Test
+    public void getOutboundQueueCapacityAndPolicyReturnDefaults() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        assertThat(config.getOutboundQueueCapacity(), is(Integer.MAX_VALUE));
+        assertThat(config.getOutboundQueuePolicy(), is(OutboundQueuePolicy.FAIL_FAST));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_040: [The function shall save the outbound queue capacity.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_043: [The function shall save the outbound queue policy.]
+    @Test
+    public void setOutboundQueueCapacityAndPolicySets() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setOutboundQueueCapacity(100);
+        config.setOutboundQueuePolicy(OutboundQueuePolicy.DROP_EXPIRED);
+        assertThat(config.getOutboundQueueCapacity(), is(100));
+        assertThat(config.getOutboundQueuePolicy(), is(OutboundQueuePolicy.DROP_EXPIRED));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_039: [If the provided value is smaller than 1, the function shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueueCapacityThrowsOnZero() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setOutboundQueueCapacity(0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_042: [If the provided policy is null, the function shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueuePolicyThrowsOnNull() throws URISyntaxException, IOException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                                            new Class[] {String.class, String.class, String.class, String.class},
+                                            iotHubHostname,
+                                            deviceId,
+                                            deviceKey,
+                                            sharedAccessToken);
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubConnectionString);
+        config.setOutboundQueuePolicy(null);
+    }
+
     // Tests_SRS_DEVICECLIENTCONFIG_11_013: [The function shall return 180s.]
     @Test
     public void getMessageLockTimeoutSecsReturnsConstant()
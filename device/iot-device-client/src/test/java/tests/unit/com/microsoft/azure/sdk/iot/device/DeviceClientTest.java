@@ -5,11 +5,15 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
+import com.microsoft.azure.sdk.iot.device.store.FileMessageStore;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
 import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
+import mockit.VerificationsInOrder;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -18,6 +22,10 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for DeviceClient.
@@ -1045,6 +1053,148 @@ public class DeviceClientTest
         };
     }
 
+    /*
+    **Tests_SRS_DEVICECLIENT_21_097: [**The function shall send the pending reported properties by calling flushReportedProperties on the twin object.**]**
+     */
+    @Test
+    public void flushRPSucceeds(@Mocked final DeviceTwin mockedDeviceTwin,
+                                @Mocked final IotHubEventCallback mockedStatusCB,
+                                @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        client.flushReportedProperties();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.flushReportedProperties();
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICECLIENT_21_095: [**If the client has not started twin before calling this method, the function shall throw an IOException.**]**
+     */
+    @Test (expected = IOException.class)
+    public void flushRPThrowsIfCalledBeforeStartingTwin(@Mocked final DeviceTwin mockedDeviceTwin) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        //act
+        client.flushReportedProperties();
+    }
+
+    /*
+    **Tests_SRS_DEVICECLIENT_21_096: [**If the client has not been open, the function shall throw an IOException.**]**
+     */
+    @Test
+    public void flushRPThrowsIfCalledWhenClientNotOpen(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                       @Mocked final IotHubEventCallback mockedStatusCB,
+                                                       @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                returns(true, false);
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        try
+        {
+            client.flushReportedProperties();
+            fail("flushReportedProperties shall throw IOException");
+        }
+        catch (IOException expected)
+        {
+            // Don't do anything, throw expected.
+        }
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.flushReportedProperties();
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICECLIENT_21_098: [**If the deviceTwin is not null, the closeNow shall call close on deviceTwin before closing the deviceIO connection.**]**
+     */
+    @Test
+    public void closeNowClosesTwinBeforeTransport(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                  @Mocked final IotHubEventCallback mockedStatusCB,
+                                                  @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        client.closeNow();
+
+        //assert
+        new VerificationsInOrder()
+        {
+            {
+                mockedDeviceTwin.close();
+                times = 1;
+                mockDeviceIO.close();
+                times = 1;
+            }
+        };
+    }
+
     /*
     **Tests_SRS_DEVICECLIENT_25_032: [**If the client has not started twin before calling this method, the function shall throw an IOException.**]**
      */
@@ -1530,6 +1680,588 @@ public class DeviceClientTest
         client.setOption("SetSendInterval", "thisIsNotALong");
     }
 
+    // Tests_SRS_DEVICECLIENT_21_070: ["SetMqttMaxInFlightCount" - maximum number of MQTT messages published and not acknowledged yet.]
+    @Test
+    public void setOptionMqttMaxInFlightCountSucceeds()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        final int value = 50;
+
+        // act
+        client.setOption("SetMqttMaxInFlightCount", value);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setMqttMaxInFlightCount(value);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_071: ["SetMqttMaxInFlightCount" only works when the transport is closed.]
+    @Test(expected = IllegalStateException.class)
+    public void setOptionMqttMaxInFlightCountAfterOpenFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        // act
+        client.setOption("SetMqttMaxInFlightCount", 50);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_072: ["SetMqttMaxInFlightCount" needs to have value type integer.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMqttMaxInFlightCountWithLongInsteadOfIntFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMqttMaxInFlightCount", 50L);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_073: ["SetMqttMaxInFlightCount" is available only for MQTT and MQTT_WS.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMqttMaxInFlightCountWithAMQPFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMqttMaxInFlightCount", 50);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_078: ["SetOutboundQueueCapacity" - maximum number of messages waiting to be sent.]
+    @Test
+    public void setOptionOutboundQueueCapacitySucceeds()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+        DeviceClient client = new DeviceClient(connString, protocol);
+        final int value = 100;
+
+        // act
+        client.setOption("SetOutboundQueueCapacity", value);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setOutboundQueueCapacity(value);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_079: ["SetOutboundQueueCapacity" needs to have value type integer.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionOutboundQueueCapacityWithLongInsteadOfIntFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetOutboundQueueCapacity", 100L);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_080: ["SetOutboundQueuePolicy" - what happens to a new message when the outbound queue is full.]
+    @Test
+    public void setOptionOutboundQueuePolicySucceeds()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        // act
+        client.setOption("SetOutboundQueuePolicy", OutboundQueuePolicy.DROP_OLDEST);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setOutboundQueuePolicy(OutboundQueuePolicy.DROP_OLDEST);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_081: ["SetOutboundQueuePolicy" needs to have value type OutboundQueuePolicy.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionOutboundQueuePolicyWithStringFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetOutboundQueuePolicy", "DROP_OLDEST");
+    }
+
+    /* Tests_SRS_DEVICECLIENT_21_084: [The getOutboundQueueSize shall return the number of messages waiting in the deviceIO to be sent.] */
+    @Test
+    public void getOutboundQueueSizeReturnsDeviceIOQueueSize()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.getOutboundQueueSize();
+                result = 7;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        int size = client.getOutboundQueueSize();
+
+        // assert
+        assertEquals(7, size);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_085: ["SetMessageStore" - durable store for the telemetry waiting to be acknowledged.]
+    @Test
+    public void setOptionMessageStoreSucceeds(@Mocked final FileMessageStore mockMessageStore)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMessageStore", mockMessageStore);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceIO.setMessageStore(mockMessageStore);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_086: ["SetMessageStore" only works when the transport is closed.]
+    @Test(expected = IllegalStateException.class)
+    public void setOptionMessageStoreAfterOpenFails(@Mocked final FileMessageStore mockMessageStore)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        // act
+        client.setOption("SetMessageStore", mockMessageStore);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_087: ["SetMessageStore" needs to have value type FileMessageStore.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMessageStoreWithStringFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMessageStore", "/tmp/store");
+    }
+
+    // Tests_SRS_DEVICECLIENT_25_019: ["SetCertificatePath" - path to the certificate to verify peer.]
+    // Tests_SRS_DEVICECLIENT_21_092: ["SetCertificatePath" is available for HTTPS/AMQPS/AMQPS_WS/MQTT/MQTT_WS.]
+    @Test
+    public void setOptionCertificatePathWithMQTTSucceeds(@Mocked final IotHubSasTokenAuthentication mockSasTokenAuthentication)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+                mockConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockConfig.getSasTokenAuthentication();
+                result = mockSasTokenAuthentication;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetCertificatePath", "/tmp/fakehub.pem");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockSasTokenAuthentication.setPathToIotHubTrustedCert("/tmp/fakehub.pem");
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_088: ["SetMqttCallbackExecutor" - executor of the callbacks of the MQTT received messages.]
+    @Test
+    public void setOptionMqttCallbackExecutorSucceeds(@Mocked final Executor mockExecutor)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMqttCallbackExecutor", mockExecutor);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setMqttCallbackExecutor(mockExecutor);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_089: ["SetMqttCallbackExecutor" is available only for MQTT and MQTT_WS.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMqttCallbackExecutorWithAMQPFails(@Mocked final Executor mockExecutor)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMqttCallbackExecutor", mockExecutor);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_090: ["SetMqttCallbackExecutor" only works when the transport is closed.]
+    @Test(expected = IllegalStateException.class)
+    public void setOptionMqttCallbackExecutorAfterOpenFails(@Mocked final Executor mockExecutor)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        // act
+        client.setOption("SetMqttCallbackExecutor", mockExecutor);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_091: ["SetMqttCallbackExecutor" needs to have value type Executor.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMqttCallbackExecutorWithWrongTypeFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT_WS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT_WS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetMqttCallbackExecutor", "executor");
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_093: ["SetReportedPropertiesCoalescingWindow" - time in milliseconds that reported properties wait to be merged with later ones.]
+    @Test
+    public void setOptionReportedPropertiesCoalescingWindowSucceeds() throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetReportedPropertiesCoalescingWindow", 500L);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setReportedPropertiesCoalescingWindowMillis(500L);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_094: ["SetReportedPropertiesCoalescingWindow" needs to have value type long.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionReportedPropertiesCoalescingWindowWithWrongTypeFails() throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetReportedPropertiesCoalescingWindow", 500);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_074: ["SetAmqpsConnectionPool" - pool of AMQPS connections shared with other clients.]
+    @Test
+    public void setOptionAmqpsConnectionPoolSucceeds(@Mocked final AmqpsConnectionPool mockConnectionPool)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetAmqpsConnectionPool", mockConnectionPool);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceIO.setAmqpsConnectionPool(mockConnectionPool);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_076: ["SetAmqpsConnectionPool" only works when the transport is closed.]
+    @Test(expected = IllegalStateException.class)
+    public void setOptionAmqpsConnectionPoolAfterOpenFails(@Mocked final AmqpsConnectionPool mockConnectionPool)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        // act
+        client.setOption("SetAmqpsConnectionPool", mockConnectionPool);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_077: ["SetAmqpsConnectionPool" needs to have value type AmqpsConnectionPool.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionAmqpsConnectionPoolWithIntFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetAmqpsConnectionPool", 2);
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_075: ["SetAmqpsConnectionPool" is available only for AMQPS and AMQPS_WS.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionAmqpsConnectionPoolWithMQTTFails(@Mocked final AmqpsConnectionPool mockConnectionPool)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+
+        // act
+        client.setOption("SetAmqpsConnectionPool", mockConnectionPool);
+    }
+
     //Tests_SRS_DEVICECLIENT_25_022: [**"SetSASTokenExpiryTime" should have value type long.]
     @Test(expected = IllegalArgumentException.class)
     public void setOptionSASTokenExpiryTimeWithStringInsteadOfLongFails()
@@ -4,9 +4,12 @@
 package tests.unit.com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.store.FileMessageStore;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
@@ -18,8 +21,12 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -1013,6 +1020,28 @@ public class DeviceIOTest
         assertFalse(isOpen);
     }
 
+    /* Tests_SRS_DEVICE_IO_21_055: [The getOutboundQueueSize shall return the number of messages waiting in the transport to be sent.] */
+    @Test
+    public void getOutboundQueueSizeReturnsTransportQueueSize()
+            throws URISyntaxException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        new NonStrictExpectations()
+        {
+            {
+                mockAmqpsTransport.getOutboundQueueSize();
+                result = 3;
+            }
+        };
+
+        // act
+        int size = Deencapsulation.invoke(deviceIO, "getOutboundQueueSize");
+
+        // assert
+        assertEquals(3, size);
+    }
+
     /* Tests_SRS_DEVICE_IO_99_001: [The registerConnectionStateCallback shall register the callback with the transport.] */
     @Test
     public void registerConnectionStateCallbackSuccess(@Mocked final IotHubConnectionStateCallback mockedStateCB)
@@ -1032,4 +1061,475 @@ public class DeviceIOTest
             }
         };
     }
+
+    private IotHubTransportListener openEventDrivenDeviceIO(final Object deviceIO, final IotHubTransport transport) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubSendTask(transport);
+                result = mockIotHubSendTask;
+                new IotHubReceiveTask(transport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newSingleThreadScheduledExecutor();
+                result = mockScheduler;
+            }
+        };
+
+        Deencapsulation.invoke(deviceIO, "setEventDriven", new Class[] {boolean.class}, true);
+        Deencapsulation.invoke(deviceIO, "open");
+        assertEquals("OPEN", Deencapsulation.getField(deviceIO, "state").toString());
+
+        final List<IotHubTransportListener> listeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                transport.registerTransportListener(withCapture(listeners));
+            }
+        };
+        return listeners.get(0);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_043: [If the client is open, the setEventDriven shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void setEventDrivenClientOpenedThrows() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setEventDriven", new Class[] {boolean.class}, true);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_044: [The setEventDriven shall store the new mode.] */
+    /* Tests_SRS_DEVICE_IO_21_045: [The isEventDriven shall return the programed mode.] */
+    @Test
+    public void setEventDrivenSuccess()
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setEventDriven", new Class[] {boolean.class}, true);
+
+        // assert
+        boolean isEventDriven = Deencapsulation.invoke(deviceIO, "isEventDriven");
+        assertTrue(isEventDriven);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_052: [If the client is open, the setAmqpsConnectionPool shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void setAmqpsConnectionPoolClientOpenedThrows(@Mocked final AmqpsConnectionPool mockConnectionPool) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setAmqpsConnectionPool", mockConnectionPool);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_053: [If the transport is not AMQPS, the setAmqpsConnectionPool shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void setAmqpsConnectionPoolHttpsThrows(@Mocked final AmqpsConnectionPool mockConnectionPool)
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOHttps();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setAmqpsConnectionPool", mockConnectionPool);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_054: [The setAmqpsConnectionPool shall set the connection pool on the AMQPS transport.] */
+    @Test
+    public void setAmqpsConnectionPoolSuccess(@Mocked final AmqpsConnectionPool mockConnectionPool)
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setAmqpsConnectionPool", mockConnectionPool);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.setConnectionPool(mockConnectionPool);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_056: [If the client is open, the setMessageStore shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void setMessageStoreClientOpenedThrows(@Mocked final FileMessageStore mockMessageStore) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_057: [The setMessageStore shall store the new message store.] */
+    /* Tests_SRS_DEVICE_IO_21_058: [If there is a message store and the message is telemetry, the sendEventAsync shall append the message to the store, and add it to the transport with a callback that acknowledges it in the store before calling the provided callback.] */
+    /* Tests_SRS_DEVICE_IO_21_061: [If the message is completed with a status other than MESSAGE_CANCELLED_ONCLOSE or OUTBOUND_QUEUE_FULL, the callback shall acknowledge it in the message store.] */
+    /* Tests_SRS_DEVICE_IO_21_062: [The callback shall call the callback provided with the message, if any, with its context.] */
+    @Test
+    public void sendEventAsyncWithMessageStoreAcknowledgesOnCompletionSuccess(
+            @Mocked final FileMessageStore mockMessageStore,
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIOAmqp();
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockMessageStore.append(mockMsg);
+                result = 5L;
+                mockMessageStore.getPendingMessages();
+                result = new TreeMap<Long, Message>();
+            }
+        };
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context);
+
+        // assert
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.addMessage(mockMsg, withCapture(callbacks), null);
+                times = 1;
+            }
+        };
+        callbacks.get(0).execute(IotHubStatusCode.OK_EMPTY, null);
+        new Verifications()
+        {
+            {
+                mockMessageStore.acknowledge(5L);
+                times = 1;
+                mockCallback.execute(IotHubStatusCode.OK_EMPTY, context);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_061: [If the message is completed with a status other than MESSAGE_CANCELLED_ONCLOSE or OUTBOUND_QUEUE_FULL, the callback shall acknowledge it in the message store.] */
+    @Test
+    public void sendEventAsyncWithMessageStoreCancelledOnCloseKeepsMessageSuccess(
+            @Mocked final FileMessageStore mockMessageStore,
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIOAmqp();
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockMessageStore.append(mockMsg);
+                result = 5L;
+                mockMessageStore.getPendingMessages();
+                result = new TreeMap<Long, Message>();
+            }
+        };
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+        Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context);
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.addMessage(mockMsg, withCapture(callbacks), null);
+            }
+        };
+
+        // act
+        callbacks.get(0).execute(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, null);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockMessageStore.acknowledge(anyLong);
+                times = 0;
+                mockCallback.execute(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, context);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_059: [If the message cannot be appended to the store, the sendEventAsync shall add it to the transport with the provided callback.] */
+    @Test
+    public void sendEventAsyncWithMessageStoreAppendFailsSendsFromMemory(
+            @Mocked final FileMessageStore mockMessageStore,
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIOAmqp();
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockMessageStore.append(mockMsg);
+                result = new IOException();
+                mockMessageStore.getPendingMessages();
+                result = new TreeMap<Long, Message>();
+            }
+        };
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.addMessage(mockMsg, mockCallback, context);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_058: [If there is a message store and the message is telemetry, the sendEventAsync shall append the message to the store, and add it to the transport with a callback that acknowledges it in the store before calling the provided callback.] */
+    @Test
+    public void sendEventAsyncWithMessageStoreDoesNotStoreTwinMessages(
+            @Mocked final FileMessageStore mockMessageStore,
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIOAmqp();
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TWIN;
+                mockMessageStore.getPendingMessages();
+                result = new TreeMap<Long, Message>();
+            }
+        };
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockMessageStore.append((Message) any);
+                times = 0;
+                mockAmqpsTransport.addMessage(mockMsg, mockCallback, context);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_060: [If there is a message store, the open shall add the messages pending in the store to the transport, in order.] */
+    @Test
+    public void openWithMessageStoreReplaysPendingMessagesSuccess(
+            @Mocked final FileMessageStore mockMessageStore,
+            @Mocked final Message mockMsg1,
+            @Mocked final Message mockMsg2)
+            throws IOException
+    {
+        // arrange
+        final SortedMap<Long, Message> pendingMessages = new TreeMap<>();
+        pendingMessages.put(2L, mockMsg2);
+        pendingMessages.put(1L, mockMsg1);
+        final Object deviceIO = newDeviceIOAmqp();
+        Deencapsulation.invoke(deviceIO, "setMessageStore", mockMessageStore);
+        new NonStrictExpectations()
+        {
+            {
+                mockMessageStore.getPendingMessages();
+                result = pendingMessages;
+            }
+        };
+
+        // act
+        openDeviceIO(deviceIO, mockAmqpsTransport, mockExecutors, mockScheduler);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.open();
+                mockAmqpsTransport.addMessage(mockMsg1, (IotHubEventCallback) any, null);
+                times = 1;
+                mockAmqpsTransport.addMessage(mockMsg2, (IotHubEventCallback) any, null);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_046: [If the client is event driven, the open shall create one single thread scheduler for the send task and one for the receive task.] */
+    /* Tests_SRS_DEVICE_IO_21_047: [If the client is event driven, the open shall register a transport listener before opening the transport.] */
+    @Test
+    public void openEventDrivenDoesNotScheduleFixedRateTasksSuccess() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+
+        // act
+        IotHubTransportListener listener = openEventDrivenDeviceIO(deviceIO, mockAmqpsTransport);
+
+        // assert
+        assertNotNull(listener);
+        new Verifications()
+        {
+            {
+                mockExecutors.newSingleThreadScheduledExecutor();
+                times = 2;
+                mockExecutors.newScheduledThreadPool(anyInt);
+                times = 0;
+                mockScheduler.scheduleAtFixedRate((Runnable) any, anyLong, anyLong, (TimeUnit) any);
+                times = 0;
+                mockAmqpsTransport.open();
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_048: [If the client is event driven and the protocol is HTTPS, the open shall schedule receive tasks to run every receivePeriodInMilliseconds milliseconds.] */
+    @Test
+    public void openEventDrivenHttpsSchedulesReceiveTaskSuccess() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOHttps();
+
+        // act
+        openEventDrivenDeviceIO(deviceIO, mockHttpsTransport);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask, 0, RECEIVE_PERIOD_MILLIS_HTTPS, TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_051: [If the client is event driven, the sendEventAsync shall wake up the send task.] */
+    @Test
+    public void sendEventAsyncEventDrivenWakesUpSendTaskSuccess(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIOAmqp();
+        openEventDrivenDeviceIO(deviceIO, mockAmqpsTransport);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.addMessage(mockMsg, mockCallback, context);
+                times = 1;
+                mockScheduler.execute((Runnable) any);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_049: [If the transport is not empty after the send task, it shall be retried after sendPeriodInMilliseconds milliseconds.] */
+    @Test
+    public void sendWorkCoalescedUntilSendTaskRunsSuccess() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        IotHubTransportListener listener = openEventDrivenDeviceIO(deviceIO, mockAmqpsTransport);
+
+        // act
+        listener.onSendWorkAvailable();
+        listener.onSendWorkAvailable();
+        listener.onSendWorkAvailable();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.execute((Runnable) any);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_047: [If the client is event driven, the open shall register a transport listener before opening the transport.] */
+    @Test
+    public void receiveWorkRunsReceiveTaskForEachMessageSuccess() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        IotHubTransportListener listener = openEventDrivenDeviceIO(deviceIO, mockAmqpsTransport);
+
+        // act
+        listener.onReceiveWorkAvailable();
+        listener.onReceiveWorkAvailable();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.execute(mockIotHubReceiveTask);
+                times = 2;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_21_050: [If the client is event driven, the close shall stop notifications from the transport and shut down the send and receive schedulers.] */
+    @Test
+    public void closeEventDrivenShutsDownSchedulersSuccess() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIOAmqp();
+        openEventDrivenDeviceIO(deviceIO, mockAmqpsTransport);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "close");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockAmqpsTransport.registerTransportListener(null);
+                times = 1;
+                mockScheduler.shutdown();
+                times = 2;
+                mockAmqpsTransport.close();
+                times = 1;
+            }
+        };
+        assertEquals("CLOSED", Deencapsulation.getField(deviceIO, "state").toString());
+    }
 }
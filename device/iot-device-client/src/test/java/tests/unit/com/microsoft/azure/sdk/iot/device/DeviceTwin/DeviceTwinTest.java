@@ -12,8 +12,10 @@ import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
 
@@ -535,6 +537,325 @@ public class DeviceTwinTest
         };
     }
 
+    /*
+    **Tests_SRS_DEVICETWIN_21_001: [**The method shall merge the properties with the pending updates, where the last value of each key replaces the previous ones, and the objects are merged key by key.**]**
+    **Tests_SRS_DEVICETWIN_21_004: [**If the coalescing window is not 0, the method shall schedule the pending updates to be sent when the window of the first one ends.**]**
+     */
+    @Test
+    public void updateReportedPropWaitsForCoalescingWindow(@Mocked final TwinParser mockedTwinParserObject,
+                                                           @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        final String mockedSerilizedProp = "SerializedReportedProperties";
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = mockedSerilizedProp;
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+                mockedConfig.getReportedPropertiesCoalescingWindowMillis();
+                result = 60000L;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        HashSet<Property> reportedProp = new HashSet<>();
+        reportedProp.add(new Property("temperature", 20));
+
+        testTwin.updateReportedProperties(reportedProp);
+        testTwin.updateReportedProperties(reportedProp);
+
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                times = 0;
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any , null);
+                times = 0;
+            }
+        };
+        testTwin.close();
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_001: [**The method shall merge the properties with the pending updates, where the last value of each key replaces the previous ones, and the objects are merged key by key.**]**
+    **Tests_SRS_DEVICETWIN_21_005: [**The method shall cancel the scheduled send of the pending updates.**]**
+     */
+    @Test
+    public void flushReportedPropSendsMergedUpdateOnce(@Mocked final TwinParser mockedTwinParserObject,
+                                                       @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        final String mockedSerilizedProp = "SerializedReportedProperties";
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = mockedSerilizedProp;
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+                mockedConfig.getReportedPropertiesCoalescingWindowMillis();
+                result = 60000L;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        Map<String, Object> firstLocation = new HashMap<>();
+        firstLocation.put("latitude", 47.6);
+        Map<String, Object> secondLocation = new HashMap<>();
+        secondLocation.put("longitude", -122.3);
+        HashSet<Property> firstReportedProp = new HashSet<>();
+        firstReportedProp.add(new Property("temperature", 20));
+        firstReportedProp.add(new Property("location", firstLocation));
+        HashSet<Property> secondReportedProp = new HashSet<>();
+        secondReportedProp.add(new Property("temperature", 21));
+        secondReportedProp.add(new Property("location", secondLocation));
+        testTwin.updateReportedProperties(firstReportedProp);
+        testTwin.updateReportedProperties(secondReportedProp);
+
+        testTwin.flushReportedProperties();
+        testTwin.flushReportedProperties();
+
+        final List<Map<String, Object>> sentProperties = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateReportedProperty(withCapture(sentProperties));
+                times = 1;
+                mockedDeviceIO.sendEventAsync(mockedDeviceTwinMessage, (IotHubEventCallback)any , null);
+                times = 1;
+            }
+        };
+        assertEquals(21, sentProperties.get(0).get("temperature"));
+        Map<String, Object> sentLocation = (Map<String, Object>)sentProperties.get(0).get("location");
+        assertEquals(47.6, sentLocation.get("latitude"));
+        assertEquals(-122.3, sentLocation.get("longitude"));
+        assertEquals(1, firstLocation.size());
+        assertNull(Deencapsulation.getField(testTwin, "reportedPropertiesFlushTask"));
+        testTwin.close();
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_003: [**If a property deleted by a pending update is set again to an object, the method shall send the pending updates before merging the new ones.**]**
+     */
+    @Test
+    public void updateReportedPropSendsPendingDeleteBeforeObject(@Mocked final TwinParser mockedTwinParserObject,
+                                                                 @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        final String mockedSerilizedProp = "SerializedReportedProperties";
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = mockedSerilizedProp;
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+                mockedConfig.getReportedPropertiesCoalescingWindowMillis();
+                result = 60000L;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        Map<String, Object> location = new HashMap<>();
+        location.put("latitude", 47.6);
+        HashSet<Property> deleteReportedProp = new HashSet<>();
+        deleteReportedProp.add(new Property("location", null));
+        HashSet<Property> setReportedProp = new HashSet<>();
+        setReportedProp.add(new Property("location", location));
+        testTwin.updateReportedProperties(deleteReportedProp);
+
+        testTwin.updateReportedProperties(setReportedProp);
+
+        final List<Map<String, Object>> sentProperties = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateReportedProperty(withCapture(sentProperties));
+                times = 1;
+            }
+        };
+        assertTrue(sentProperties.get(0).containsKey("location"));
+        assertNull(sentProperties.get(0).get("location"));
+        testTwin.close();
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_006: [**If there is no pending update, the method shall do nothing.**]**
+     */
+    @Test
+    public void flushReportedPropDoesNothingIfNoPendingUpdate(@Mocked final TwinParser mockedTwinParserObject) throws IOException
+    {
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+
+        testTwin.flushReportedProperties();
+
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateReportedProperty((Map<String, Object>)any);
+                times = 0;
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any , null);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_008: [**The method shall send the pending updates.**]**
+    **Tests_SRS_DEVICETWIN_21_009: [**The method shall shut down the scheduler of the coalescing window.**]**
+     */
+    @Test
+    public void closeSendsPendingUpdateAndStopsScheduler(@Mocked final TwinParser mockedTwinParserObject,
+                                                         @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        final String mockedSerilizedProp = "SerializedReportedProperties";
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = mockedSerilizedProp;
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+                mockedConfig.getReportedPropertiesCoalescingWindowMillis();
+                result = 60000L;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        HashSet<Property> reportedProp = new HashSet<>();
+        reportedProp.add(new Property("temperature", 20));
+        testTwin.updateReportedProperties(reportedProp);
+
+        testTwin.close();
+
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync(mockedDeviceTwinMessage, (IotHubEventCallback)any , null);
+                times = 1;
+            }
+        };
+        assertNull(Deencapsulation.getField(testTwin, "reportedPropertiesScheduler"));
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_007: [**If the pending updates cannot be sent when the coalescing window ends, the user shall be notified on the status callback as ERROR.**]**
+     */
+    @Test
+    public void closeCallsStatusCBWithErrorIfPendingUpdateCannotBeSent(@Mocked final TwinParser mockedTwinParserObject,
+                                                                       @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        final String mockedSerilizedProp = "SerializedReportedProperties";
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = mockedSerilizedProp;
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+                mockedConfig.getReportedPropertiesCoalescingWindowMillis();
+                result = 60000L;
+                mockedDeviceIO.sendEventAsync(mockedDeviceTwinMessage, (IotHubEventCallback)any , null);
+                result = new IllegalStateException();
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        HashSet<Property> reportedProp = new HashSet<>();
+        reportedProp.add(new Property("temperature", 20));
+        testTwin.updateReportedProperties(reportedProp);
+
+        testTwin.close();
+
+        new Verifications()
+        {
+            {
+                mockedStatusCB.execute(IotHubStatusCode.ERROR, null);
+                times = 1;
+            }
+        };
+    }
+
     /*
     **Tests_SRS_DEVICETWIN_25_027: [**If the message is of type DEVICE_TWIN and DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE then the user call with a valid status is triggered.**]**
      */
@@ -279,6 +279,71 @@ public class MessageTest
         assertFalse(msg.isExpired());
     }
 
+    // Tests_SRS_MESSAGE_21_001: [The function shall return the message's absolute expiry time, or 0 if it is not set.]
+    @Test
+    public void getExpiryTimeReturnsAbsoluteExpiryTime()
+    {
+        Message msg = new Message("body");
+        assertEquals(0L, msg.getExpiryTime());
+
+        msg.setAbsoluteExpiryTime(1234L);
+        assertEquals(1234L, msg.getExpiryTime());
+    }
+
+    // Tests_SRS_MESSAGE_21_002: [The function shall return the number of message properties.]
+    // Tests_SRS_MESSAGE_21_004: [The function shall return the message property in the provided position, in the order the properties were set.]
+    @Test
+    public void getPropertyAtReturnsPropertiesInOrder()
+    {
+        Message msg = new Message("body");
+        for (int i = 0; i < 20; i++)
+        {
+            msg.setProperty("name" + i, "value" + i);
+        }
+
+        // set again an existing property, which moves it to the end.
+        msg.setProperty("NAME3", "new-value");
+
+        assertEquals(20, msg.getPropertyCount());
+        assertEquals("name0", msg.getPropertyAt(0).getName());
+        assertEquals("name4", msg.getPropertyAt(3).getName());
+        assertEquals("NAME3", msg.getPropertyAt(19).getName());
+        assertEquals("new-value", msg.getProperty("name3"));
+        assertEquals("value19", msg.getProperty("NAME19"));
+        assertEquals(20, msg.getProperties().length);
+    }
+
+    // Tests_SRS_MESSAGE_21_003: [If the index is not between 0 and the number of properties - 1, the function shall throw IndexOutOfBoundsException.]
+    @Test (expected = IndexOutOfBoundsException.class)
+    public void getPropertyAtOutOfRangeThrows()
+    {
+        Message msg = new Message("body");
+        msg.setProperty("name", "value");
+
+        msg.getPropertyAt(1);
+    }
+
+    // Tests_SRS_MESSAGE_11_026: [The function shall set the message property to the given value.]
+    @Test
+    public void setPropertyInvalidValueKeepsExistingProperty()
+    {
+        Message msg = new Message("body");
+        msg.setProperty("name", "value");
+
+        try
+        {
+            msg.setProperty("name", "\u00e9");
+            fail("setProperty shall reject a value that is not US-ASCII");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // expected.
+        }
+
+        assertEquals(1, msg.getPropertyCount());
+        assertEquals("value", msg.getProperty("name"));
+    }
+
     // Tests_SRS_MESSAGE_34_038: [If the provided absolute expiry time is negative, an IllegalArgumentException shall be thrown.]
     @Test (expected = IllegalArgumentException.class)
     public void setAbsoluteTimeWithNegativeTimeThrowsIllegalArgumentException()
@@ -0,0 +1,259 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.store;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.store.FileMessageStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for FileMessageStore, on a real journal in a temporary directory.
+ */
+public class FileMessageStoreTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String newDirectory() throws IOException
+    {
+        return new File(temporaryFolder.getRoot(), "store").getPath();
+    }
+
+    private int countSegments(String directory)
+    {
+        File[] files = new File(directory).listFiles();
+        int count = 0;
+        for (File file : files)
+        {
+            if (file.getName().endsWith(".journal"))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_001: [If the provided directoryPath is null or empty, or if segmentSize or syncBatchSize is smaller than 1, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorNullDirectoryThrows() throws IOException
+    {
+        // act
+        new FileMessageStore(null);
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_001: [If the provided directoryPath is null or empty, or if segmentSize or syncBatchSize is smaller than 1, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorZeroSegmentSizeThrows() throws IOException
+    {
+        // act
+        new FileMessageStore(newDirectory(), 0, 1);
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_002: [If the directory does not exist and cannot be created, the constructor shall throw IOException.] */
+    @Test (expected = IOException.class)
+    public void constructorDirectoryIsFileThrows() throws IOException
+    {
+        // arrange
+        File file = temporaryFolder.newFile("file");
+
+        // act
+        new FileMessageStore(file.getPath());
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_003: [The constructor shall recover, in order, the messages of the journal in the directory that were not acknowledged.] */
+    /* Tests_SRS_FILEMESSAGESTORE_21_008: [The append shall write the message to the journal with the next sequence number, and keep it as pending.] */
+    @Test
+    public void constructorRecoversPendingMessagesSuccess() throws IOException
+    {
+        // arrange
+        String directory = newDirectory();
+        Message message = new Message("temperature=20");
+        message.setMessageId("id1");
+        message.setCorrelationId("cid1");
+        message.setAbsoluteExpiryTime(Long.MAX_VALUE);
+        message.setProperty("unit", "celsius");
+        FileMessageStore store = new FileMessageStore(directory);
+        long first = store.append(message);
+        long second = store.append(new Message("temperature=21"));
+        store.close();
+
+        // act
+        FileMessageStore recovered = new FileMessageStore(directory);
+
+        // assert
+        SortedMap<Long, Message> pending = recovered.getPendingMessages();
+        assertEquals(2, recovered.size());
+        assertEquals(first + 1, second);
+        Message recoveredMessage = pending.get(first);
+        assertEquals("temperature=20", new String(recoveredMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+        assertEquals("id1", recoveredMessage.getMessageId());
+        assertEquals("cid1", recoveredMessage.getCorrelationId());
+        assertEquals(Long.MAX_VALUE, recoveredMessage.getExpiryTime());
+        assertEquals("celsius", recoveredMessage.getProperty("unit"));
+        assertEquals("temperature=21", new String(pending.get(second).getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+        assertTrue(recovered.append(new Message("temperature=22")) > second);
+        recovered.close();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_003: [The constructor shall recover, in order, the messages of the journal in the directory that were not acknowledged.] */
+    @Test
+    public void constructorIgnoresTornRecordSuccess() throws IOException
+    {
+        // arrange
+        String directory = newDirectory();
+        FileMessageStore store = new FileMessageStore(directory);
+        long first = store.append(new Message("first"));
+        store.append(new Message("second"));
+        store.close();
+        File segment = new File(directory).listFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try
+        {
+            // corrupt the payload of the last record, as a write interrupted by a crash.
+            long position = 0;
+            file.seek(position);
+            position += 4 + file.readInt();
+            file.seek(position + 4 + 4 + 1 + 8);
+            file.write('X');
+        }
+        finally
+        {
+            file.close();
+        }
+
+        // act
+        FileMessageStore recovered = new FileMessageStore(directory);
+
+        // assert
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.getPendingMessages().containsKey(first));
+        recovered.close();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_006: [If the provided message is null, the append shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void appendNullMessageThrows() throws IOException
+    {
+        // arrange
+        FileMessageStore store = new FileMessageStore(newDirectory());
+
+        // act
+        store.append(null);
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_007: [If the store is closed, the append shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void appendClosedStoreThrows() throws IOException
+    {
+        // arrange
+        FileMessageStore store = new FileMessageStore(newDirectory());
+        store.close();
+
+        // act
+        store.append(new Message("body"));
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_011: [If the message is not pending, the acknowledge shall do nothing.] */
+    /* Tests_SRS_FILEMESSAGESTORE_21_012: [The acknowledge shall write the acknowledgement to the journal and remove the message from the pending messages.] */
+    /* Tests_SRS_FILEMESSAGESTORE_21_015: [The size shall return the number of pending messages.] */
+    @Test
+    public void acknowledgeRemovesMessageAfterRecoverySuccess() throws IOException
+    {
+        // arrange
+        String directory = newDirectory();
+        FileMessageStore store = new FileMessageStore(directory);
+        long first = store.append(new Message("first"));
+        long second = store.append(new Message("second"));
+
+        // act
+        store.acknowledge(first);
+        store.acknowledge(first);
+        store.close();
+
+        // assert
+        FileMessageStore recovered = new FileMessageStore(directory);
+        assertEquals(1, recovered.size());
+        assertEquals(second, (long)recovered.getPendingMessages().firstKey());
+        recovered.close();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_004: [The constructor shall delete the segments whose messages are all acknowledged.] */
+    /* Tests_SRS_FILEMESSAGESTORE_21_013: [The acknowledge shall delete the oldest segments whose messages are all acknowledged.] */
+    @Test
+    public void acknowledgeDeletesAcknowledgedSegmentsSuccess() throws IOException
+    {
+        // arrange
+        String directory = newDirectory();
+        FileMessageStore store = new FileMessageStore(directory, 1, 1);
+        long first = store.append(new Message("first"));
+        long second = store.append(new Message("second"));
+        long third = store.append(new Message("third"));
+        // the first segment is empty, and each record rolls to a segment of its own.
+        assertEquals(4, countSegments(directory));
+
+        // act
+        store.acknowledge(second);
+        assertEquals(4, countSegments(directory));
+        store.acknowledge(first);
+        store.acknowledge(third);
+
+        // assert
+        assertEquals(0, store.size());
+        assertEquals(1, countSegments(directory));
+        store.close();
+        FileMessageStore recovered = new FileMessageStore(directory, 1, 1);
+        assertEquals(0, recovered.size());
+        recovered.close();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_014: [The getPendingMessages shall return a copy of the pending messages, sorted by sequence number.] */
+    @Test
+    public void getPendingMessagesReturnsCopySuccess() throws IOException
+    {
+        // arrange
+        FileMessageStore store = new FileMessageStore(newDirectory());
+        store.append(new Message("first"));
+
+        // act
+        SortedMap<Long, Message> pending = store.getPendingMessages();
+        pending.clear();
+
+        // assert
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_016: [If the store is closed, the flush shall throw IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void flushClosedStoreThrows() throws IOException
+    {
+        // arrange
+        FileMessageStore store = new FileMessageStore(newDirectory());
+        store.close();
+
+        // act
+        store.flush();
+    }
+
+    /* Tests_SRS_FILEMESSAGESTORE_21_018: [If the store is closed, the close shall do nothing.] */
+    @Test
+    public void closeTwiceSuccess() throws IOException
+    {
+        // arrange
+        FileMessageStore store = new FileMessageStore(newDirectory());
+        store.close();
+
+        // act
+        store.close();
+    }
+}
@@ -0,0 +1,310 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubResponseCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.OutboundQueuePolicy;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for OutboundPacketQueue.
+ * 100% methods covered
+ * 97% lines covered
+ */
+public class OutboundPacketQueueTest
+{
+    @Mocked
+    DeviceClientConfig mockConfig;
+    @Mocked
+    IotHubEventCallback mockCallback;
+    @Mocked
+    IotHubResponseCallback mockResponseCallback;
+
+    private final Queue<IotHubCallbackPacket> callbackList = new LinkedBlockingDeque<>();
+
+    private void setCapacity(final int capacity, final OutboundQueuePolicy policy)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getOutboundQueueCapacity();
+                result = capacity;
+                mockConfig.getOutboundQueuePolicy();
+                result = policy;
+            }
+        };
+    }
+
+    private IotHubOutboundPacket newPacket(Message message, Object context)
+    {
+        return new IotHubOutboundPacket(message, mockCallback, context);
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_001: [If the config or the callbackList is null, the constructor shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullConfig()
+    {
+        // act
+        new OutboundPacketQueue(null, callbackList);
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_001: [If the config or the callbackList is null, the constructor shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullCallbackList()
+    {
+        // act
+        new OutboundPacketQueue(mockConfig, null);
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_002: [The constructor shall create an empty queue that reads its capacity and policy from the config.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_003: [The function shall add the packet at the end of the queue.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_011: [The function shall remove and return the packet at the head of the queue, or null if the queue is empty, and wake up the callers waiting for room.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_013: [The function shall return the packet at the head of the queue without removing it, or null if the queue is empty.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_014: [The function shall return the number of packets in the queue.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_015: [The function shall return true if the queue has no packets, and false otherwise.]
+    @Test
+    public void addKeepsPacketsInOrder()
+    {
+        // arrange
+        setCapacity(10, OutboundQueuePolicy.FAIL_FAST);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        assertTrue(queue.isEmpty());
+
+        // act
+        queue.add(newPacket(new Message(), 1));
+        queue.add(newPacket(new Message(), 2));
+
+        // assert
+        assertEquals(2, queue.size());
+        assertFalse(queue.isEmpty());
+        assertEquals(1, queue.peek().getContext());
+        assertEquals(1, queue.poll().getContext());
+        assertEquals(2, queue.poll().getContext());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertTrue(callbackList.isEmpty());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_012: [If the queue is empty, the function shall throw NoSuchElementException.]
+    @Test (expected = NoSuchElementException.class)
+    public void removeThrowsOnEmptyQueue()
+    {
+        // arrange
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+
+        // act
+        queue.remove();
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_008: [If the queue is full and the policy is FAIL_FAST, or DROP_EXPIRED with no expired message, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the new message to the callback list.]
+    @Test
+    public void addFailsFastIfQueueIsFull()
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.FAIL_FAST);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 1));
+
+        // act
+        queue.add(newPacket(new Message(), 2));
+
+        // assert
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.peek().getContext());
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackPacket.getStatus());
+        assertEquals(2, callbackPacket.getContext());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_008: [If the queue is full and the policy is FAIL_FAST, or DROP_EXPIRED with no expired message, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the new message to the callback list.]
+    @Test
+    public void addFailsFastWithResponseCallback()
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.FAIL_FAST);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 1));
+
+        // act
+        queue.add(new IotHubOutboundPacket(new Message(), mockResponseCallback, 2));
+
+        // assert
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackPacket.getResponseMessage().getStatus());
+        assertEquals(mockResponseCallback, callbackPacket.getResponseCallback());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_006: [If the queue is full and the policy is DROP_OLDEST, the function shall remove the oldest message and add the status OUTBOUND_QUEUE_FULL with its callback and context to the callback list.]
+    @Test
+    public void addDropsOldestIfQueueIsFull()
+    {
+        // arrange
+        setCapacity(2, OutboundQueuePolicy.DROP_OLDEST);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 1));
+        queue.add(newPacket(new Message(), 2));
+
+        // act
+        queue.add(newPacket(new Message(), 3));
+
+        // assert
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.poll().getContext());
+        assertEquals(3, queue.poll().getContext());
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackPacket.getStatus());
+        assertEquals(1, callbackPacket.getContext());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_007: [If the queue is full and the policy is DROP_EXPIRED, the function shall remove the expired messages and add the status MESSAGE_EXPIRED with their callbacks and contexts to the callback list.]
+    @Test
+    public void addDropsExpiredIfQueueIsFull(@Mocked final Message mockExpiredMessage, @Mocked final Message mockMessage)
+    {
+        // arrange
+        setCapacity(2, OutboundQueuePolicy.DROP_EXPIRED);
+        new NonStrictExpectations()
+        {
+            {
+                mockExpiredMessage.isExpired();
+                result = true;
+                mockMessage.isExpired();
+                result = false;
+            }
+        };
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(mockMessage, 1));
+        queue.add(newPacket(mockExpiredMessage, 2));
+
+        // act
+        queue.add(newPacket(mockMessage, 3));
+
+        // assert
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.poll().getContext());
+        assertEquals(3, queue.poll().getContext());
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.MESSAGE_EXPIRED, callbackPacket.getStatus());
+        assertEquals(2, callbackPacket.getContext());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_008: [If the queue is full and the policy is FAIL_FAST, or DROP_EXPIRED with no expired message, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the new message to the callback list.]
+    @Test
+    public void addFailsFastIfNoMessageExpired(@Mocked final Message mockMessage)
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.DROP_EXPIRED);
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.isExpired();
+                result = false;
+            }
+        };
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(mockMessage, 1));
+
+        // act
+        queue.add(newPacket(mockMessage, 2));
+
+        // assert
+        assertEquals(1, queue.size());
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackPacket.getStatus());
+        assertEquals(2, callbackPacket.getContext());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_004: [If the queue is full and the policy is BLOCK, the function shall wait until the queue has room for the message.]
+    @Test
+    public void addBlocksUntilQueueHasRoom() throws InterruptedException
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.BLOCK);
+        final OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 1));
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                queue.add(newPacket(new Message(), 2));
+            }
+        };
+
+        // act
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        queue.poll();
+        producer.join(5000);
+
+        // assert
+        assertFalse(producer.isAlive());
+        assertEquals(1, queue.size());
+        assertEquals(2, queue.peek().getContext());
+        assertTrue(callbackList.isEmpty());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_005: [If the thread is interrupted while waiting, the function shall add the status OUTBOUND_QUEUE_FULL with the callback and context of the message to the callback list, and keep the thread interrupted.]
+    @Test
+    public void addRejectsPacketIfInterruptedWhileBlocked()
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.BLOCK);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 1));
+        Thread.currentThread().interrupt();
+
+        // act
+        queue.add(newPacket(new Message(), 2));
+
+        // assert
+        assertTrue(Thread.interrupted());
+        assertEquals(1, queue.size());
+        IotHubCallbackPacket callbackPacket = callbackList.remove();
+        assertEquals(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackPacket.getStatus());
+        assertEquals(2, callbackPacket.getContext());
+    }
+
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_009: [The function shall add the packet at the head of the queue, even if the queue is full.]
+    // Tests_SRS_OUTBOUNDPACKETQUEUE_21_010: [The function shall add the packets at the end of the queue, even if the queue is full.]
+    @Test
+    public void requeueIgnoresCapacity()
+    {
+        // arrange
+        setCapacity(1, OutboundQueuePolicy.FAIL_FAST);
+        OutboundPacketQueue queue = new OutboundPacketQueue(mockConfig, callbackList);
+        queue.add(newPacket(new Message(), 2));
+
+        // act
+        queue.addFirst(newPacket(new Message(), 1));
+        queue.requeue(Arrays.asList(newPacket(new Message(), 3), newPacket(new Message(), 4)));
+
+        // assert
+        assertEquals(4, queue.size());
+        assertEquals(1, queue.remove().getContext());
+        assertEquals(2, queue.remove().getContext());
+        assertEquals(3, queue.remove().getContext());
+        assertEquals(4, queue.remove().getContext());
+        assertTrue(callbackList.isEmpty());
+    }
+}
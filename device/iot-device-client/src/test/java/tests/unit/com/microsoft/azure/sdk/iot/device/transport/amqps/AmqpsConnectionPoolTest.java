@@ -0,0 +1,192 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceOperations;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import org.apache.qpid.proton.Proton;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/* Unit tests for AmqpsConnectionPool
+* 100% methods covered
+* 90% lines covered
+*/
+public class AmqpsConnectionPoolTest
+{
+    private static final String DEVICE_SESSION_CLASS = "com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceSession";
+    private static final String SHARED_CONNECTION_CLASS = "com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsSharedConnection";
+    private static final String HOSTNAME = "test.host.name";
+
+    @Mocked
+    DeviceClientConfig mockConfig;
+
+    @Mocked
+    AmqpsDeviceOperations mockAmqpsDeviceOperations;
+
+    @Mocked
+    ExecutorService mockExecutorService;
+
+    private Object newDeviceSession(AmqpsConnectionPool connectionPool) throws ClassNotFoundException
+    {
+        ArrayList<AmqpsDeviceOperations> operations = new ArrayList<>();
+        operations.add(mockAmqpsDeviceOperations);
+        return Deencapsulation.newInstance(DEVICE_SESSION_CLASS,
+                new Class[] {DeviceClientConfig.class, ArrayList.class, AmqpsConnectionPool.class},
+                mockConfig, operations, connectionPool);
+    }
+
+    private Object newSharedConnection(int deviceSessionCount)
+    {
+        Object connection = Deencapsulation.newInstance(SHARED_CONNECTION_CLASS, new Class[] {DeviceClientConfig.class}, mockConfig);
+        Deencapsulation.setField(connection, "deviceSessionCount", deviceSessionCount);
+        Deencapsulation.setField(connection, "executorService", mockExecutorService);
+        return connection;
+    }
+
+    private void setConfigExpectations(final DeviceClientConfig.AuthType authType, final String hostName)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getAuthenticationType();
+                result = authType;
+                mockConfig.getIotHubHostname();
+                result = hostName;
+                mockConfig.isUseWebsocket();
+                result = false;
+                mockConfig.getDeviceId();
+                result = "deviceId";
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_001: [The constructor shall throw IllegalArgumentException if the connectionCount is smaller than 1.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroConnectionCount()
+    {
+        // act
+        new AmqpsConnectionPool(0);
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_002: [The constructor shall save the connectionCount.]
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_003: [The function shall return the saved connectionCount.]
+    @Test
+    public void constructorSavesConnectionCount()
+    {
+        // act
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(3);
+
+        // assert
+        assertEquals(3, connectionPool.getConnectionCount());
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_004: [The function shall close all the connections of the pool and mark the pool as closed.]
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_005: [The function shall throw IllegalStateException if the pool is closed.]
+    @Test (expected = IllegalStateException.class)
+    public void registerThrowsOnClosedPool() throws IOException, ClassNotFoundException
+    {
+        // arrange
+        setConfigExpectations(DeviceClientConfig.AuthType.SAS_TOKEN, HOSTNAME);
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(1);
+        Object deviceSession = newDeviceSession(connectionPool);
+        connectionPool.close();
+
+        // act
+        Deencapsulation.invoke(connectionPool, "register", deviceSession);
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_006: [The function shall throw IllegalArgumentException if the device does not use SAS token authentication.]
+    @Test (expected = IllegalArgumentException.class)
+    public void registerThrowsOnX509Device() throws ClassNotFoundException
+    {
+        // arrange
+        setConfigExpectations(DeviceClientConfig.AuthType.X509_CERTIFICATE, HOSTNAME);
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(1);
+        Object deviceSession = newDeviceSession(connectionPool);
+
+        // act
+        Deencapsulation.invoke(connectionPool, "register", deviceSession);
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_007: [The function shall throw IllegalArgumentException if the device does not use the same IoT Hub and protocol as the devices already in the pool.]
+    @Test (expected = IllegalArgumentException.class)
+    public void registerThrowsOnDeviceOfOtherHub() throws ClassNotFoundException
+    {
+        // arrange
+        setConfigExpectations(DeviceClientConfig.AuthType.SAS_TOKEN, "other.host.name");
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(1);
+        Deencapsulation.setField(connectionPool, "iotHubHostname", HOSTNAME);
+        Object deviceSession = newDeviceSession(connectionPool);
+
+        // act
+        Deencapsulation.invoke(connectionPool, "register", deviceSession);
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_009: [If the pool is full, the function shall select the connection with the fewest device sessions.]
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_010: [The function shall add the device session to the selected connection and return it.]
+    @Test
+    public void registerSelectsLeastLoadedConnectionWhenFull() throws ClassNotFoundException
+    {
+        // arrange
+        setConfigExpectations(DeviceClientConfig.AuthType.SAS_TOKEN, HOSTNAME);
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(2);
+        Object busyConnection = newSharedConnection(5);
+        Object idleConnection = newSharedConnection(2);
+        List<Object> connections = Deencapsulation.getField(connectionPool, "connections");
+        connections.add(busyConnection);
+        connections.add(idleConnection);
+        Object deviceSession = newDeviceSession(connectionPool);
+
+        // act
+        Object selectedConnection = Deencapsulation.invoke(connectionPool, "register", deviceSession);
+
+        // assert
+        assertSame(idleConnection, selectedConnection);
+        assertEquals(3, (int)Deencapsulation.getField(idleConnection, "deviceSessionCount"));
+        assertEquals(5, (int)Deencapsulation.getField(busyConnection, "deviceSessionCount"));
+        assertEquals(2, connections.size());
+    }
+
+    // Tests_SRS_AMQPSCONNECTIONPOOL_21_008: [If the pool has less than connectionCount connections, the function shall create a new connection for the device.]
+    @Test
+    public void registerCreatesConnectionWhileNotFull(@Mocked final Proton mockProton,
+                                                      @Mocked final Executors mockExecutors) throws ClassNotFoundException
+    {
+        // arrange
+        setConfigExpectations(DeviceClientConfig.AuthType.SAS_TOKEN, HOSTNAME);
+        AmqpsConnectionPool connectionPool = new AmqpsConnectionPool(2);
+        Object busyConnection = newSharedConnection(0);
+        List<Object> connections = Deencapsulation.getField(connectionPool, "connections");
+        connections.add(busyConnection);
+        Object deviceSession = newDeviceSession(connectionPool);
+        new NonStrictExpectations()
+        {
+            {
+                Executors.newFixedThreadPool(1);
+                result = mockExecutorService;
+            }
+        };
+
+        // act
+        Object selectedConnection = Deencapsulation.invoke(connectionPool, "register", deviceSession);
+
+        // assert
+        assertEquals(2, connections.size());
+        assertTrue(selectedConnection != busyConnection);
+    }
+}
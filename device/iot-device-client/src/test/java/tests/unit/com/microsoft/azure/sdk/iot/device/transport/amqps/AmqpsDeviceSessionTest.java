@@ -0,0 +1,241 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.IotHubMessageResult;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import com.microsoft.azure.sdk.iot.device.transport.State;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsConnectionPool;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceOperations;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsMessage;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.ServerListener;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* Unit tests for AmqpsDeviceSession
+* 40% methods covered
+* 35% lines covered
+*/
+public class AmqpsDeviceSessionTest
+{
+    private static final String DEVICE_SESSION_CLASS = "com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceSession";
+
+    @Mocked
+    DeviceClientConfig mockConfig;
+
+    @Mocked
+    AmqpsDeviceOperations mockAmqpsDeviceOperations;
+
+    @Mocked
+    AmqpsConnectionPool mockConnectionPool;
+
+    @Mocked
+    ServerListener mockServerListener;
+
+    @Mocked
+    Message mockMessage;
+
+    @Mocked
+    AmqpsMessage mockAmqpsMessage;
+
+    @Mocked
+    Event mockEvent;
+
+    @Mocked
+    Link mockLink;
+
+    private Object newDeviceSession(ArrayList<AmqpsDeviceOperations> operations)
+    {
+        return Deencapsulation.newInstance(DEVICE_SESSION_CLASS,
+                new Class[] {DeviceClientConfig.class, ArrayList.class, AmqpsConnectionPool.class},
+                mockConfig, operations, mockConnectionPool);
+    }
+
+    private ArrayList<AmqpsDeviceOperations> newOperations()
+    {
+        ArrayList<AmqpsDeviceOperations> operations = new ArrayList<>();
+        operations.add(mockAmqpsDeviceOperations);
+        return operations;
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_001: [The constructor shall throw IllegalArgumentException if any of the parameters is null, or if the list of device operations is empty.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnEmptyOperations()
+    {
+        // act
+        newDeviceSession(new ArrayList<AmqpsDeviceOperations>());
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_002: [The constructor shall save the parameters and set the state to CLOSED.]
+    @Test
+    public void constructorSavesParameters()
+    {
+        // act
+        Object deviceSession = newDeviceSession(newOperations());
+
+        // assert
+        assertEquals(mockConfig, Deencapsulation.getField(deviceSession, "config"));
+        assertEquals(mockConnectionPool, Deencapsulation.getField(deviceSession, "connectionPool"));
+        assertEquals(State.CLOSED, Deencapsulation.getField(deviceSession, "state"));
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_025: [The function shall return a new id from the outbound queue.]
+    @Test
+    public void nextMessageIdReturnsSequentialIds()
+    {
+        // arrange
+        Object deviceSession = newDeviceSession(newOperations());
+
+        // act
+        int firstId = Deencapsulation.invoke(deviceSession, "nextMessageId");
+        int secondId = Deencapsulation.invoke(deviceSession, "nextMessageId");
+
+        // assert
+        assertEquals(0, firstId);
+        assertEquals(1, secondId);
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_009: [If the state of the device session is CLOSED, the function shall return false.]
+    @Test
+    public void sendMessageReturnsFalseIfClosed()
+    {
+        // arrange
+        Object deviceSession = newDeviceSession(newOperations());
+
+        // act
+        boolean isQueued = Deencapsulation.invoke(deviceSession, "sendMessage", 0, mockMessage, MessageType.DEVICE_TELEMETRY);
+
+        // assert
+        assertFalse(isQueued);
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_012: [If the device session is closed, the function shall return false.]
+    @Test
+    public void sendMessageResultReturnsFalseIfClosed()
+    {
+        // arrange
+        Object deviceSession = newDeviceSession(newOperations());
+
+        // act
+        boolean isQueued = Deencapsulation.invoke(deviceSession, "sendMessageResult", mockAmqpsMessage, IotHubMessageResult.COMPLETE);
+
+        // assert
+        assertFalse(isQueued);
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_024: [The constructor shall index the device operation objects by the name of their receiver link.]
+    // Tests_SRS_AMQPSDEVICESESSION_21_017: [The device session shall be OPEN when one of its receiver links is open remotely, and shall notify the listeners and the open lock.]
+    @Test
+    public void onLinkRemoteOpenSetsOpenAndNotifiesListeners()
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockLink;
+                mockLink.getName();
+                result = "receiver";
+                Deencapsulation.invoke(mockAmqpsDeviceOperations, "getReceiverLinkTag");
+                result = "receiver";
+            }
+        };
+        Object deviceSession = newDeviceSession(newOperations());
+        Deencapsulation.invoke(deviceSession, "addListener", mockServerListener);
+
+        // act
+        Deencapsulation.invoke(deviceSession, "onLinkRemoteOpen", mockEvent);
+
+        // assert
+        assertEquals(State.OPEN, Deencapsulation.getField(deviceSession, "state"));
+        new Verifications()
+        {
+            {
+                mockServerListener.connectionEstablished();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_018: [If one of its receiver links is closed remotely, the device session shall be CLOSED and shall notify the listeners that the connection was lost.]
+    @Test
+    public void onLinkRemoteCloseOfReceiverLinkNotifiesConnectionLost()
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockLink;
+                mockLink.getName();
+                result = "receiver";
+                Deencapsulation.invoke(mockAmqpsDeviceOperations, "getReceiverLinkTag");
+                result = "receiver";
+            }
+        };
+        Object deviceSession = newDeviceSession(newOperations());
+        Deencapsulation.invoke(deviceSession, "addListener", mockServerListener);
+        Deencapsulation.setField(deviceSession, "state", State.OPEN);
+
+        // act
+        boolean isLost = Deencapsulation.invoke(deviceSession, "onLinkRemoteClose", mockEvent);
+
+        // assert
+        assertTrue(isLost);
+        assertEquals(State.CLOSED, Deencapsulation.getField(deviceSession, "state"));
+        new Verifications()
+        {
+            {
+                mockServerListener.connectionLost();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSDEVICESESSION_21_018: [If one of its receiver links is closed remotely, the device session shall be CLOSED and shall notify the listeners that the connection was lost.]
+    @Test
+    public void onLinkRemoteCloseOfOtherLinkDoesNothing()
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockLink;
+                mockLink.getName();
+                result = "sender";
+                Deencapsulation.invoke(mockAmqpsDeviceOperations, "getReceiverLinkTag");
+                result = "receiver";
+            }
+        };
+        Object deviceSession = newDeviceSession(newOperations());
+        Deencapsulation.invoke(deviceSession, "addListener", mockServerListener);
+
+        // act
+        boolean isLost = Deencapsulation.invoke(deviceSession, "onLinkRemoteClose", mockEvent);
+
+        // assert
+        assertFalse(isLost);
+        new Verifications()
+        {
+            {
+                mockServerListener.connectionLost();
+                times = 0;
+            }
+        };
+    }
+}
@@ -412,8 +412,12 @@ public class AmqpsDeviceTelemetryTest
                 result = messageId;
                 mockMessage.getCorrelationId();
                 result = correlationId;
-                mockMessage.getProperties();
-                result = iotHubMessageProperties;
+                mockMessage.getPropertyCount();
+                result = iotHubMessageProperties.length;
+                mockMessage.getPropertyAt(0);
+                result = iotHubMessageProperties[0];
+                mockMessage.getPropertyAt(1);
+                result = iotHubMessageProperties[1];
                 new ApplicationProperties(userProperties);
             }
         };
@@ -7,6 +7,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.net.IotHubUri;
 import com.microsoft.azure.sdk.iot.device.transport.State;
@@ -27,7 +28,6 @@ import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -35,6 +35,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /* Unit tests for AmqpsIotHubConnection
@@ -49,6 +50,8 @@ public class AmqpsIotHubConnectionTest {
     final String deviceKey = "test-devicekey?&test";
     final String amqpPort = "5671";
     final String amqpWebSocketPort = "443";
+    private static final Class[] SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS =
+            new Class[] {MessageType.class, byte[].class, int.class, int.class, byte[].class};
 
     @Mocked
     protected Handshaker mockHandshaker;
@@ -783,8 +786,7 @@ public class AmqpsIotHubConnectionTest {
         };
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
-    // credit, the function shall return -1.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED, the function shall return false.]
     @Test
     public void sendMessageDoesNothingIfConnectionIsClosed() throws IOException
     {
@@ -797,16 +799,29 @@ public class AmqpsIotHubConnectionTest {
         Deencapsulation.setField(connection, "state", State.CLOSED);
         Deencapsulation.setField(connection, "linkCredit", 100);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create(), MessageType.DEVICE_TELEMETRY);
+        Boolean isQueued = connection.sendMessage(0, Message.Factory.create(), MessageType.DEVICE_TELEMETRY);
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertFalse(isQueued);
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
-    // credit, the function shall return -1.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_059: [The function shall return a new id from the outbound queue.]
     @Test
-    public void sendMessageDoesNothingIfNotEnoughLinkCredit() throws IOException
+    public void nextMessageIdReturnsSequentialIds() throws IOException
+    {
+        baseExpectations();
+
+        ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList = new ArrayList<AmqpsDeviceOperations>();
+        amqpsDeviceOperationsList.add(Deencapsulation.newInstance(AmqpsDeviceTelemetry.class, deviceId));
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, amqpsDeviceOperationsList);
+
+        assertEquals(0, connection.nextMessageId());
+        assertEquals(1, connection.nextMessageId());
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_052: [The function shall queue the encoded message with the given id for the reactor thread, and wake up the reactor.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_056: [The event handler shall run the queued acknowledgements, and send the queued messages up to the link credit.]
+    @Test
+    public void sendMessageQueuesMessageIfNotEnoughLinkCredit() throws IOException
     {
         baseExpectations();
 
@@ -817,30 +832,38 @@ public class AmqpsIotHubConnectionTest {
         Deencapsulation.setField(connection, "state", State.OPEN);
         Deencapsulation.setField(connection, "linkCredit", -1);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create(), MessageType.DEVICE_TELEMETRY);
+        Boolean isQueued = connection.sendMessage(connection.nextMessageId(), Message.Factory.create(), MessageType.DEVICE_TELEMETRY);
+        connection.onReactorQuiesced(mockEvent);
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertTrue(isQueued);
+        new Verifications()
+        {
+            {
+                mockReactor.wakeup();
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
+                times = 0;
+            }
+        };
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message and copy the contents to the byte buffer.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_017: [The function shall set the delivery tag for the sender.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_006: [The function shall call sendMessageAndGetDeliveryHash on all device operation objects.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return true after the message was queued.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_056: [The event handler shall run the queued acknowledgements, and send the queued messages up to the link credit.]
     @Test
     public void sendMessage() throws IOException
     {
         baseExpectations();
 
-        final byte[] messageBytes = new byte[] {1, 2};
-
         new NonStrictExpectations()
         {
             {
-                mockProtonMessage.encode((byte[]) any, anyInt, anyInt);
                 mockSender.delivery((byte[]) any);
                 result = mockDelivery;
-                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, messageBytes, anyInt, anyInt, messageBytes);
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
                 result = mockAmqpsSendReturnValue;
 
                 Deencapsulation.invoke(mockAmqpsSendReturnValue, "isDeliverySuccessful");
@@ -857,33 +880,39 @@ public class AmqpsIotHubConnectionTest {
         Deencapsulation.setField(connection, "state", State.OPEN);
         Deencapsulation.setField(connection, "linkCredit", 100);
 
-        Integer expectedDeliveryHash = 42;
-        Integer actualDeliveryHash = connection.sendMessage(mockProtonMessage, MessageType.DEVICE_TELEMETRY);
+        Boolean isQueued = connection.sendMessage(7, mockProtonMessage, MessageType.DEVICE_TELEMETRY);
+        connection.onReactorQuiesced(mockEvent);
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertTrue(isQueued);
+        Integer actualLinkCredit = Deencapsulation.getField(connection, "linkCredit");
+        assertEquals((Integer)99, actualLinkCredit);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, withEqual(AmqpMessageEncoder.deliveryTag(7)));
+                times = 1;
+            }
+        };
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_007: [The function shall doubles the buffer if encode throws BufferOverflowException.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes.]
     @Test
-    public void sendMessageDoublesBufferIfEncodeThrowsBufferOverflowException() throws IOException
+    public void sendMessageQueuesRightSizedEncodedMessage(@Mocked final AmqpMessageEncoder mockAmqpMessageEncoder) throws IOException
     {
         baseExpectations();
 
-        final byte[] bytes = new byte[1024];
-        final Integer deliveryHash = 24;
+        final byte[] encodedBytes = new byte[] {1, 2, 3};
         new NonStrictExpectations()
         {
             {
-                mockProtonMessage.encode(bytes, anyInt, anyInt);
-                result = new BufferOverflowException();
-
-                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, bytes, anyInt, anyInt, bytes);
+                AmqpMessageEncoder.encode(mockProtonMessage);
+                result = encodedBytes;
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
                 result = mockAmqpsSendReturnValue;
                 Deencapsulation.invoke(mockAmqpsSendReturnValue, "isDeliverySuccessful");
                 result = true;
-                Deencapsulation.invoke(mockAmqpsSendReturnValue, "getDeliveryHash");
-                result = deliveryHash;
-
             }
         };
 
@@ -894,14 +923,17 @@ public class AmqpsIotHubConnectionTest {
         Deencapsulation.setField(connection, "state", State.OPEN);
         Deencapsulation.setField(connection, "linkCredit", 100);
 
-        Integer actualDeliveryHash = connection.sendMessage(mockProtonMessage, MessageType.DEVICE_TELEMETRY);
+        Boolean isQueued = connection.sendMessage(0, mockProtonMessage, MessageType.DEVICE_TELEMETRY);
+        connection.onReactorQuiesced(mockEvent);
 
-        assertEquals(deliveryHash, actualDeliveryHash);
-        assertEquals(deliveryHash, actualDeliveryHash);
+        assertTrue(isQueued);
         new Verifications()
         {
             {
-                mockProtonMessage.encode(bytes, anyInt, anyInt);
+                AmqpMessageEncoder.encode(mockProtonMessage);
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), withEqual(encodedBytes), withEqual(0), withEqual(3), (byte[])any);
                 times = 1;
             }
         };
@@ -925,9 +957,9 @@ public class AmqpsIotHubConnectionTest {
         assertEquals(expectedResult, actualResult);
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_008: [The function shall return false if message acknowledge throws exception.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_008: [The reactor thread shall log the error if message acknowledge throws exception.]
     @Test
-    public void sendMessageReturnsFalseIfAcknowledgeThrows() throws IOException
+    public void sendMessageResultLogsIfAcknowledgeThrows() throws IOException
     {
         baseExpectations();
 
@@ -945,15 +977,17 @@ public class AmqpsIotHubConnectionTest {
 
         Deencapsulation.setField(connection, "state", State.OPEN);
 
-        Boolean expectedResult = false;
+        Boolean expectedResult = true;
         Boolean actualResult = connection.sendMessageResult(mockAmqpsMessage, IotHubMessageResult.COMPLETE);
+        connection.onReactorQuiesced(mockEvent);
 
         assertEquals(expectedResult, actualResult);
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_023: [If the message result is COMPLETE, ABANDON, or REJECT,
     // the function shall acknowledge the last message with acknowledgement type COMPLETE, ABANDON, or REJECT respectively.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_024: [The function shall return true after the message was acknowledged.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_024: [The function shall return true after the acknowledgement was queued.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_053: [The function shall queue the acknowledgement for the reactor thread, and wake up the reactor.]
     @Test
     public void sendMessageAcknowledgesProperlyBasedOnMessageResult() throws IOException
     {
@@ -976,6 +1010,7 @@ public class AmqpsIotHubConnectionTest {
         {
             Boolean expectedResult = true;
             Boolean actualResult = connection.sendMessageResult(mockAmqpsMessage, IotHubMessageResult.valueOf(ackType.toString()));
+            connection.onReactorQuiesced(mockEvent);
 
             assertEquals(expectedResult, actualResult);
 
@@ -1386,7 +1421,8 @@ public class AmqpsIotHubConnectionTest {
     }
 
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call getMessageFromReceiverLink on all device operation objects.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call getMessageFromReceiverLink on the device operation object that owns the receiver link of the event.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_058: [The constructor shall index the device operation objects by the name of their receiver link.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
     @Test
     public void onDeliveryReceive() throws IOException
@@ -1403,6 +1439,8 @@ public class AmqpsIotHubConnectionTest {
                 result = mockReceiver;
                 mockReceiver.getName();
                 result = receiverLinkName;
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getReceiverLinkTag");
+                result = receiverLinkName;
                 Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getMessageFromReceiverLink", receiverLinkName);
                 result = mockAmqpsMessage;
             }
@@ -1426,14 +1464,15 @@ public class AmqpsIotHubConnectionTest {
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) hash code to inform the AmqpsIotHubConnection of the message receipt.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) tag to inform the AmqpsIotHubConnection of the message receipt.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_054: [The event handler shall identify the message by the id reserved by nextMessageId.]
     @Test
     public void onDeliverySend(
 //            @Mocked final ArrayList<AmqpsDeviceOperations> mockArrayListAmqpsDeviceOperations
     ) throws IOException
     {
         baseExpectations();
-        final String receiverLinkName = "receiver";
+        final String senderLinkName = "sender";
 
         ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList = new ArrayList<AmqpsDeviceOperations>();
         amqpsDeviceOperationsList.add(mockAmqpsDeviceTelemetry);
@@ -1445,19 +1484,20 @@ public class AmqpsIotHubConnectionTest {
                 mockEvent.getLink();
                 result = mockLink;
                 mockLink.getName();
-                result = receiverLinkName;
+                result = senderLinkName;
                 mockEvent.getType();
                 result = Event.Type.DELIVERY;
                 mockEvent.getDelivery();
                 result = mockDelivery;
                 mockDelivery.getRemoteState();
                 result = Accepted.getInstance();
-                mockServerListener.messageSent(anyInt, true);
-                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getMessageFromReceiverLink", receiverLinkName);
-                result = null;
+                mockDelivery.getTag();
+                result = AmqpMessageEncoder.deliveryTag(7);
             }
         };
 
+        final Integer messageId = 7;
+
         connection.addListener(mockServerListener);
         connection.onDelivery(mockEvent);
 
@@ -1470,7 +1510,7 @@ public class AmqpsIotHubConnectionTest {
                 times = 1;
                 mockDelivery.getRemoteState();
                 times = 1;
-                mockServerListener.messageSent(mockDelivery.hashCode(), true);
+                mockServerListener.messageSent(messageId, true);
                 times = 1;
                 mockDelivery.free();
                 times = 1;
@@ -0,0 +1,290 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceOperations;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsDeviceTelemetry;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsSendReturnValue;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.ServerListener;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.apache.qpid.proton.engine.Delivery;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/* Unit tests for AmqpsOutboundQueue
+* 100% methods covered
+* 95% lines covered
+*/
+public class AmqpsOutboundQueueTest
+{
+    private static final String OUTBOUND_QUEUE_CLASS = "com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsOutboundQueue";
+    private static final Class[] SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS =
+            new Class[] {MessageType.class, byte[].class, int.class, int.class, byte[].class};
+
+    @Mocked
+    AmqpsDeviceTelemetry mockAmqpsDeviceTelemetry;
+
+    @Mocked
+    AmqpsSendReturnValue mockAmqpsSendReturnValue;
+
+    @Mocked
+    ServerListener mockServerListener;
+
+    @Mocked
+    Runnable mockRunnable;
+
+    @Mocked
+    Delivery mockDelivery;
+
+    private List<AmqpsDeviceOperations> operations()
+    {
+        List<AmqpsDeviceOperations> operations = new ArrayList<>();
+        operations.add(mockAmqpsDeviceTelemetry);
+        return operations;
+    }
+
+    private List<ServerListener> listeners()
+    {
+        List<ServerListener> listeners = new ArrayList<>();
+        listeners.add(mockServerListener);
+        return listeners;
+    }
+
+    private void addMessages(Object outboundQueue, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int messageId = Deencapsulation.invoke(outboundQueue, "nextMessageId");
+            Deencapsulation.invoke(outboundQueue, "addMessage", messageId, MessageType.DEVICE_TELEMETRY, new byte[10]);
+        }
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_010: [The function shall return a new non negative id.]
+    @Test
+    public void nextMessageIdReturnsSequentialIds() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+
+        // act
+        int firstId = Deencapsulation.invoke(outboundQueue, "nextMessageId");
+        int secondId = Deencapsulation.invoke(outboundQueue, "nextMessageId");
+
+        // assert
+        assertEquals(0, firstId);
+        assertEquals(1, secondId);
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertTrue(pendingMessages.isEmpty());
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_001: [The function shall add the message to the queue with the given id.]
+    @Test
+    public void addMessageQueuesMessageWithGivenId() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+
+        // act
+        Deencapsulation.invoke(outboundQueue, "addMessage", 42, MessageType.DEVICE_TELEMETRY, new byte[10]);
+
+        // assert
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertEquals(1, pendingMessages.size());
+        assertEquals(42, (int)Deencapsulation.getField(pendingMessages.iterator().next(), "messageId"));
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_002: [The function shall add the task to the queue.]
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_003: [The function shall run all the queued tasks in order.]
+    @Test
+    public void runTasksRunsQueuedTasksOnce() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        Deencapsulation.invoke(outboundQueue, "addTask", mockRunnable);
+
+        // act
+        Deencapsulation.invoke(outboundQueue, "runTasks");
+        Deencapsulation.invoke(outboundQueue, "runTasks");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockRunnable.run();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_004: [The function shall send each message using the first device operation object that accepts its type, with the id of the message as delivery tag.]
+    @Test
+    public void sendMessagesSendsUpToLinkCredit() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        addMessages(outboundQueue, 5);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
+                result = mockAmqpsSendReturnValue;
+                Deencapsulation.invoke(mockAmqpsSendReturnValue, "isDeliverySuccessful");
+                result = true;
+            }
+        };
+
+        // act
+        int sentCount = Deencapsulation.invoke(outboundQueue, "sendMessages", operations(), 3, listeners());
+
+        // assert
+        assertEquals(3, sentCount);
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertEquals(2, pendingMessages.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, withEqual(0), withEqual(10), withEqual(AmqpMessageEncoder.deliveryTag(2)));
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_008: [The function shall return the id of the message sent with the given delivery, read from its delivery tag, or null if the tag is not a message id.]
+    @Test
+    public void getMessageIdReadsDeliveryTag() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        new NonStrictExpectations()
+        {
+            {
+                mockDelivery.getTag();
+                result = AmqpMessageEncoder.deliveryTag(300);
+            }
+        };
+
+        // act
+        Integer messageId = Deencapsulation.invoke(outboundQueue, "getMessageId", mockDelivery);
+
+        // assert
+        assertEquals(300, (int)messageId);
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_008: [The function shall return the id of the message sent with the given delivery, read from its delivery tag, or null if the tag is not a message id.]
+    @Test
+    public void getMessageIdReturnsNullForOtherTags() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        new NonStrictExpectations()
+        {
+            {
+                mockDelivery.getTag();
+                returns(new byte[0], AmqpMessageEncoder.deliveryTag(Integer.MAX_VALUE + 1L));
+            }
+        };
+
+        // act - assert
+        assertNull(Deencapsulation.invoke(outboundQueue, "getMessageId", mockDelivery));
+        assertNull(Deencapsulation.invoke(outboundQueue, "getMessageId", mockDelivery));
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_005: [If the links are not ready, the function shall keep the message in the queue and stop sending.]
+    @Test
+    public void sendMessagesKeepsMessageIfLinkIsNotReady() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        addMessages(outboundQueue, 2);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
+                result = new IllegalStateException();
+            }
+        };
+
+        // act
+        int sentCount = Deencapsulation.invoke(outboundQueue, "sendMessages", operations(), 10, listeners());
+
+        // assert
+        assertEquals(0, sentCount);
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertEquals(2, pendingMessages.size());
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_007: [If no device operation object could send the message, the function shall notify the listeners that the message was not delivered.]
+    @Test
+    public void sendMessagesNotifiesFailureIfNoLinkAcceptsMessage() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        addMessages(outboundQueue, 1);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", SEND_MESSAGE_AND_GET_DELIVERY_HASH_ARGS,
+                        withEqual(MessageType.DEVICE_TELEMETRY), (byte[])any, anyInt, anyInt, (byte[])any);
+                result = mockAmqpsSendReturnValue;
+                Deencapsulation.invoke(mockAmqpsSendReturnValue, "isDeliverySuccessful");
+                result = false;
+            }
+        };
+
+        // act
+        int sentCount = Deencapsulation.invoke(outboundQueue, "sendMessages", operations(), 10, listeners());
+
+        // assert
+        assertEquals(0, sentCount);
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertTrue(pendingMessages.isEmpty());
+        new Verifications()
+        {
+            {
+                mockServerListener.messageSent(0, false);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSOUTBOUNDQUEUE_21_009: [The function shall drop all the queued messages and tasks.]
+    @Test
+    public void clearDropsQueuedWork() throws ClassNotFoundException
+    {
+        // arrange
+        Object outboundQueue = Deencapsulation.newInstance(OUTBOUND_QUEUE_CLASS);
+        addMessages(outboundQueue, 3);
+        Deencapsulation.invoke(outboundQueue, "addTask", mockRunnable);
+
+        // act
+        Deencapsulation.invoke(outboundQueue, "clear");
+        Deencapsulation.invoke(outboundQueue, "runTasks");
+
+        // assert
+        Collection<?> pendingMessages = Deencapsulation.getField(outboundQueue, "pendingMessages");
+        assertTrue(pendingMessages.isEmpty());
+        new Verifications()
+        {
+            {
+                mockRunnable.run();
+                times = 0;
+            }
+        };
+    }
+}
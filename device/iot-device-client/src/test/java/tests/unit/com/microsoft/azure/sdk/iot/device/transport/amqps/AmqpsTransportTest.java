@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.*;
 import mockit.*;
@@ -125,6 +126,32 @@ public class AmqpsTransportTest
         assertEquals(State.CLOSED, state);
     }
 
+    // Tests_SRS_AMQPSTRANSPORT_21_048: [If the transport is open, the function shall throw IllegalStateException.]
+    @Test (expected = IllegalStateException.class)
+    public void setConnectionPoolThrowsIfOpen(@Mocked final AmqpsConnectionPool mockConnectionPool) throws IOException
+    {
+        // arrange
+        AmqpsTransport transport = new AmqpsTransport(mockConfig);
+        transport.open();
+
+        // act
+        transport.setConnectionPool(mockConnectionPool);
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_048: [If the transport is open, the function shall throw IllegalStateException.]
+    @Test
+    public void setConnectionPoolSavesPool(@Mocked final AmqpsConnectionPool mockConnectionPool)
+    {
+        // arrange
+        AmqpsTransport transport = new AmqpsTransport(mockConfig);
+
+        // act
+        transport.setConnectionPool(mockConnectionPool);
+
+        // assert
+        assertEquals(mockConnectionPool, Deencapsulation.getField(transport, "connectionPool"));
+    }
+
     // Tests_SRS_AMQPSTRANSPORT_15_003: [If an AMQPS connection is already open, the function shall do nothing.]
     @Test
     public void openDoesNothingIfAlreadyOpened() throws IOException, InterruptedException
@@ -339,7 +366,7 @@ public class AmqpsTransportTest
         transport.close();
 
 
-        Queue<IotHubOutboundPacket> actualWaitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        OutboundPacketQueue actualWaitingMessages = Deencapsulation.getField(transport, "waitingMessages");
         Map<Integer, IotHubOutboundPacket> actualInProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
 
         assertEquals(actualWaitingMessages.size(), 0);
@@ -657,7 +684,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 2;
             }
         };
@@ -725,7 +752,7 @@ public class AmqpsTransportTest
         new Verifications()
         {
             {
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 0;
                 mockConnectionStateCallback.execute(IotHubConnectionState.SAS_TOKEN_EXPIRED, any);
                 times = 1;
@@ -765,7 +792,7 @@ public class AmqpsTransportTest
         new Verifications()
         {
             {
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 0;
             }
         };
@@ -807,13 +834,13 @@ public class AmqpsTransportTest
         new Verifications()
         {
             {
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 0;
             }
         };
     }
 
-    // Tests_SRS_AMQPSTRANSPORT_15_016: [If the sent message hash is valid, it shall be added to the in progress map.]
+    // Tests_SRS_AMQPSTRANSPORT_15_016: [The message shall be added to the in progress map under the id reserved by the connection, before it is handed to the connection.]
     @Test
     public void sendMessagesAddsSentMessagesToInProgressMap(
             @Mocked final Message mockMessage,
@@ -823,6 +850,7 @@ public class AmqpsTransportTest
     {
         final Map<String, Object> context = new HashMap<>();
         final byte[] messageBytes = new byte[] {1, 2};
+        final AmqpsTransport transport = new AmqpsTransport(mockConfig);
         new NonStrictExpectations()
         {
             {
@@ -836,8 +864,18 @@ public class AmqpsTransportTest
                 result = messageBytes;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TELEMETRY;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.nextMessageId();
                 returns (1, 2);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                result = new Delegate()
+                {
+                    Boolean sendMessage(int messageId, org.apache.qpid.proton.message.Message message, MessageType messageType)
+                    {
+                        // the message shall already be in progress when the connection gets it
+                        Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
+                        return inProgressMessages.containsKey(messageId);
+                    }
+                };
                 mockConfig.getDeviceId();
                 result = "deviceId";
                 Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "convertToProton", mockMessage);
@@ -849,7 +887,6 @@ public class AmqpsTransportTest
             }
         };
 
-        AmqpsTransport transport = new AmqpsTransport(mockConfig);
         transport.open();
         transport.addMessage(mockMessage, mockCallback, context);
         transport.addMessage(mockMessage, mockCallback, context);
@@ -857,6 +894,8 @@ public class AmqpsTransportTest
 
         Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(2, inProgressMessages.size());
+        assertTrue(inProgressMessages.containsKey(1));
+        assertTrue(inProgressMessages.containsKey(2));
 
         new Verifications()
         {
@@ -865,13 +904,13 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 2;
             }
         };
     }
 
-    // Tests_SRS_AMQPSTRANSPORT_15_017: [If the sent message hash is not valid, it shall be buffered to be sent in a subsequent attempt.]
+    // Tests_SRS_AMQPSTRANSPORT_15_017: [If the message could not be queued, it shall be removed from the in progress map and buffered to be sent in a subsequent attempt.]
     @Test
     public void sendMessagesAddsNotSentMessagesToInProgressMap(
             @Mocked final Message mockMessage,
@@ -896,8 +935,10 @@ public class AmqpsTransportTest
                 result = messageBytes;
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TELEMETRY;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
-                returns (1, -1);
+                mockConnection.nextMessageId();
+                returns (1, 2);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                returns (true, false);
                 mockConfig.getDeviceId();
                 result = "deviceId";
                 Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "convertToProton", mockMessage);
@@ -917,8 +958,9 @@ public class AmqpsTransportTest
 
         Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(1, inProgressMessages.size());
+        assertTrue(inProgressMessages.containsKey(1));
 
-        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        OutboundPacketQueue waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
         Assert.assertEquals(1, waitingMessages.size());
 
         new Verifications()
@@ -928,7 +970,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
                 times = 2;
             }
         };
@@ -962,8 +1004,8 @@ public class AmqpsTransportTest
                 returns (true, false);
                 mockMessage.getMessageType();
                 result = MessageType.DEVICE_TELEMETRY;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
-                result = 1;
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, (MessageType) any);
+                result = true;
                 mockConfig.getDeviceId();
                 result = "deviceId";
             }
@@ -978,7 +1020,7 @@ public class AmqpsTransportTest
         Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(1, inProgressMessages.size());
 
-        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        OutboundPacketQueue waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
         Assert.assertEquals(0, waitingMessages.size());
 
         Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
@@ -991,8 +1033,8 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, MessageType.DEVICE_TELEMETRY);
-                times = 0;
+                mockConnection.sendMessage(anyInt, (org.apache.qpid.proton.message.Message) any, (MessageType) any);
+                times = 1;
                 new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_EXPIRED, (IotHubEventCallback) any, any);
                 times = 1;
             }
@@ -1274,10 +1316,9 @@ public class AmqpsTransportTest
         Assert.assertTrue(receivedTransportMessages.size() == 1);
     }
 
-    // Tests_SRS_AMQPSTRANSPORT_15_028: [If the result could not be sent to IoTHub, the message shall be put back in the received messages queue to be processed again.]
-    // Tests_SRS_AMQPSTRANSPORT_15_028: [If the result could not be sent to IoTHub, the message shall be put back in the received messages queue to be processed again.]
+    // Tests_SRS_AMQPSTRANSPORT_15_027: [The function shall return the message result (one of COMPLETE, ABANDON, or REJECT) to the IoT Hub.]
     @Test
-    public void handleMessagePutsMessageBackIntoQueueIfCannotSendResultBackToServer() throws IOException
+    public void handleMessageDoesNotPutMessageBackIntoQueueIfCannotSendResultBackToServer() throws IOException
     {
         new NonStrictExpectations()
         {
@@ -1310,7 +1351,7 @@ public class AmqpsTransportTest
 
         Queue<AmqpsMessage> receivedTransportMessages = Deencapsulation.getField(transport, "receivedMessages");
 
-        Assert.assertTrue(receivedTransportMessages.size() == 2);
+        Assert.assertTrue(receivedTransportMessages.size() == 1);
 
         new Verifications()
         {
@@ -1322,7 +1363,7 @@ public class AmqpsTransportTest
             }
         };
 
-        Assert.assertTrue(receivedTransportMessages.size() == 2);
+        Assert.assertTrue(receivedTransportMessages.size() == 1);
     }
 
     // Tests_SRS_AMQPSTRANSPORT_15_029: [If the hash cannot be found in the list of keys for the messages in progress, the method returns.]
@@ -1393,7 +1434,7 @@ public class AmqpsTransportTest
             }
         };
 
-        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        OutboundPacketQueue waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
         Queue<IotHubCallbackPacket> callbackList  = Deencapsulation.getField(transport, "callbackList");
 
         Assert.assertTrue(inProgressMessages.size() == 1);
@@ -1435,7 +1476,7 @@ public class AmqpsTransportTest
             }
         };
 
-        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        OutboundPacketQueue waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
         Queue<IotHubCallbackPacket> callbackList  = Deencapsulation.getField(transport, "callbackList");
 
         Assert.assertTrue(inProgressMessages.size() == 1);
@@ -1468,7 +1509,7 @@ public class AmqpsTransportTest
         inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
-        Queue<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
+        OutboundPacketQueue waitingMessages = new OutboundPacketQueue(mockConfig, new LinkedBlockingDeque<IotHubCallbackPacket>());
         waitingMessages.add(new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
         waitingMessages.add(new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
         Deencapsulation.setField(transport, "waitingMessages", waitingMessages);
@@ -1624,7 +1665,7 @@ public class AmqpsTransportTest
         AmqpsTransport transport = new AmqpsTransport(mockConfig);
 
 
-        Queue<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
+        OutboundPacketQueue waitingMessages = new OutboundPacketQueue(mockConfig, new LinkedBlockingDeque<IotHubCallbackPacket>());
         waitingMessages.add(new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
         Deencapsulation.setField(transport, "waitingMessages", waitingMessages);
 
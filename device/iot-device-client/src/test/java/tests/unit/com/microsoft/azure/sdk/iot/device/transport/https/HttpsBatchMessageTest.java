@@ -247,6 +247,70 @@ public class HttpsBatchMessageTest
         }
     }
 
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+    @Test
+    public void addMessageAppendsMessagesAsJsonArray(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            IotHubSizeExceededException
+    {
+        final String msgBody = "test-msg-body";
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                result = msgBody.getBytes();
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        batchMsg.addMessage(mockMsg);
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+
+        final String expectedMsg = "{\"body\":\"" + Base64.encodeBase64StringLocal(msgBody.getBytes()) + "\",\"base64Encoded\":true}";
+        assertThat(testBatchBody, is("[" + expectedMsg + "," + expectedMsg + "]"));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_21_014: [The function shall compute the size of the batched message from the size of the current batch and the size of the new message, without encoding the current batch again.]
+    @Test
+    public void addMessageFillsBatchUpToMaxSize(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            IotHubSizeExceededException
+    {
+        final byte[] msgBodyBytes = new byte[1000];
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                result = msgBodyBytes;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        int numAddedMessages = 0;
+        try
+        {
+            while (true)
+            {
+                batchMsg.addMessage(mockMsg);
+                numAddedMessages++;
+            }
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            // the batch is full.
+        }
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+
+        final int expectedMaxSize = 255 * 1024 - 1;
+        final int msgJsonSize = ("{\"body\":\"" + Base64.encodeBase64StringLocal(msgBodyBytes) + "\",\"base64Encoded\":true}").length();
+        assertThat(numAddedMessages, is((expectedMaxSize - 2 + 1) / (msgJsonSize + 1)));
+        assertThat(batchMsg.numMessages(), is(numAddedMessages));
+        assertThat(testBatchBody.length(), is(2 + numAddedMessages * (msgJsonSize + 1) - 1));
+        assertThat(testBatchBody.charAt(0), is('['));
+        assertThat(testBatchBody.charAt(testBatchBody.length() - 1), is(']'));
+    }
+
     // Tests_SRS_HTTPSBATCHMESSAGE_11_011: [The function shall return 'application/vnd.microsoft.iothub.json'.]
     @Test
     public void getContentTypeReturnsCorrectContentType()
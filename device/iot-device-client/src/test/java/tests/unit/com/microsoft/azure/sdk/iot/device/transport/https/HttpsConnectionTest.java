@@ -13,9 +13,11 @@ import org.junit.Test;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -425,8 +427,7 @@ public class HttpsConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
     @Test
-    public void readInputCompletelyReadsInputStream(
-            @Mocked final InputStream mockIs)
+    public void readInputCompletelyReadsInputStream()
             throws IOException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
@@ -440,9 +441,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -496,7 +495,7 @@ public class HttpsConnectionTest
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
                 result = mockIs;
-                mockIs.read();
+                mockIs.read((byte[]) any, anyInt, anyInt);
                 result = -1;
             }
         };
@@ -513,10 +512,134 @@ public class HttpsConnectionTest
         };
     }
 
+    // Tests_SRS_HTTPSCONNECTION_21_026: [The function shall read the input stream in bulk into a buffer sized from the response Content-Length, if the server sent one.]
+    @Test
+    public void readInputReadsContentOfContentLength() throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = new byte[10000];
+        Arrays.fill(expectedResponse, (byte) 7);
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = expectedResponse.length;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_21_027: [If the Content-Length is not known, the function shall start with a default buffer and grow it until the end of the stream is reached.]
+    @Test
+    public void readInputReadsContentLargerThanDefaultBufferWithoutContentLength() throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = new byte[10000];
+        for (int i = 0; i < expectedResponse.length; i++)
+        {
+            expectedResponse[i] = (byte) i;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = -1;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_21_030: [The buffer sized from the Content-Length shall not be bigger than 64 KB; a longer content shall grow the buffer as it arrives.]
+    @Test
+    public void readInputDoesNotTrustContentLengthLargerThanContent() throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = { 1, 2, 3 };
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = Integer.MAX_VALUE;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_21_030: [The buffer sized from the Content-Length shall not be bigger than 64 KB; a longer content shall grow the buffer as it arrives.]
+    @Test
+    public void readInputReadsContentOfContentLengthLargerThanInitialBuffer() throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = new byte[200000];
+        for (int i = 0; i < expectedResponse.length; i++)
+        {
+            expectedResponse[i] = (byte) i;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = expectedResponse.length;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
     // Tests_SRS_HTTPSCONNECTION_11_013: [The function shall read from the error stream and return the response.]
     @Test
-    public void readErrorCompletelyReadsErrorStream(
-            @Mocked final InputStream mockIs)
+    public void readErrorCompletelyReadsErrorStream()
             throws IOException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
@@ -530,9 +653,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -614,7 +735,7 @@ public class HttpsConnectionTest
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
                 result = mockIs;
-                mockIs.read();
+                mockIs.read((byte[]) any, anyInt, anyInt);
                 result = -1;
             }
         };
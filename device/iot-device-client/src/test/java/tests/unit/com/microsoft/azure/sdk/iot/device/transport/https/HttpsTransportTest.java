@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 import com.microsoft.azure.sdk.iot.device.transport.https.*;
 import junit.framework.AssertionFailedError;
 import mockit.*;
@@ -113,7 +114,7 @@ public class HttpsTransportTest
 
 
         Queue<IotHubOutboundPacket> actualInProgressMessages = Deencapsulation.getField(transport, "inProgressList");
-        Queue<IotHubOutboundPacket> actualWaitingMessages = Deencapsulation.getField(transport, "waitingList");
+        OutboundPacketQueue actualWaitingMessages = Deencapsulation.getField(transport, "waitingList");
         
         assertEquals(actualWaitingMessages.size(), 0);
         assertEquals(actualInProgressMessages.size(), 0);        
@@ -358,6 +359,121 @@ public class HttpsTransportTest
         };
     }
 
+    // Tests_SRS_HTTPSTRANSPORT_21_043: [The function shall keep the message built while batching, so the messages in progress are not serialized again to be sent or resent.]
+    @Test
+    public void sendMessagesSerializesMessagesOnlyOnceWhenResending(
+            @Mocked final Message mockMsg,
+            @Mocked final HttpsSingleMessage mockHttpsMsg,
+            @Mocked final IotHubEventCallback mockCallback,
+            @Mocked final HttpsBatchMessage mockBatch,
+            @Mocked final ResponseMessage mockResponseMessage)
+            throws URISyntaxException, IOException, IotHubSizeExceededException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                HttpsSingleMessage.parseHttpsMessage(mockMsg);
+                result = mockHttpsMsg;
+                new HttpsBatchMessage();
+                result = mockBatch;
+                mockConn.sendEvent((HttpsMessage) any);
+                result = new IOException();
+                result = mockResponseMessage;
+            }
+        };
+
+        HttpsTransport transport = new HttpsTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        try
+        {
+            transport.sendMessages();
+            throw new AssertionFailedError();
+        }
+        catch (IOException e)
+        {
+
+        }
+        transport.sendMessages();
+
+        final HttpsMessage expectedMsg = mockBatch;
+        new Verifications()
+        {
+            {
+                HttpsSingleMessage.parseHttpsMessage(mockMsg);
+                times = 2;
+                mockBatch.addMessage(mockHttpsMsg);
+                times = 2;
+                mockConn.sendEvent(expectedMsg);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_HTTPSTRANSPORT_21_045: [The method shall discard the message kept for the messages in progress.]
+    // Tests_SRS_HTTPSTRANSPORT_21_046: [When the function moves new messages to the in progress list, it shall discard the message kept for the previous messages in progress.]
+    @Test
+    public void sendMessagesAfterCloseAndReopenDoesNotResendCancelledBatch(
+            @Mocked final Message mockMsg,
+            @Mocked final Message mockOversizeMsg,
+            @Mocked final HttpsSingleMessage mockHttpsMsg,
+            @Mocked final HttpsSingleMessage mockOversizeHttpsMsg,
+            @Mocked final IotHubEventCallback mockCallback,
+            @Mocked final HttpsBatchMessage mockBatch,
+            @Mocked final ResponseMessage mockResponseMessage)
+            throws URISyntaxException, IOException, IotHubSizeExceededException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                HttpsSingleMessage.parseHttpsMessage(mockMsg);
+                result = mockHttpsMsg;
+                HttpsSingleMessage.parseHttpsMessage(mockOversizeMsg);
+                result = mockOversizeHttpsMsg;
+                new HttpsBatchMessage();
+                result = mockBatch;
+                mockBatch.addMessage(mockOversizeHttpsMsg);
+                result = new IotHubSizeExceededException();
+                mockConn.sendEvent((HttpsMessage) any);
+                result = new IOException();
+                result = mockResponseMessage;
+            }
+        };
+
+        HttpsTransport transport = new HttpsTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        try
+        {
+            transport.sendMessages();
+            throw new AssertionFailedError();
+        }
+        catch (IOException e)
+        {
+
+        }
+        transport.close();
+        transport.open();
+        transport.addMessage(mockOversizeMsg, mockCallback, context);
+        transport.sendMessages();
+
+        final HttpsMessage expectedBatch = mockBatch;
+        final HttpsMessage expectedMsg = mockOversizeHttpsMsg;
+        new VerificationsInOrder()
+        {
+            {
+                mockConn.sendEvent(expectedBatch);
+                times = 1;
+                mockConn.sendEvent(expectedMsg);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_HTTPSTRANSPORT_11_013: [If no messages fit using the batch format, the function shall send a single message without the batch format.]
     @Test
     public void sendMessagesSendsSingleMesssageIfBatchFormatExceedsMaxSize(
@@ -283,4 +283,58 @@ public class MqttConnectionTest
         MqttCallback actualMqttCallback = Deencapsulation.getField(mqttConnection,  "mqttCallback");
         assertEquals(actualMqttCallback, testMqttCallback);
     }
+
+    //Tests_SRS_MQTTCONNECTION_21_015: [The constructor shall save maxInFlightCount and use it as the in flight window of the connection options.]
+    //Tests_SRS_MQTTCONNECTION_21_016: [Getter for the in flight window.]
+    @Test
+    public void constructorWithMaxInFlightCountSetsInFlightWindow() throws Exception
+    {
+        //arrange
+        baseConstructorExpectations();
+
+        //act
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext, 50);
+
+        //assert
+        baseConstructorVerifications();
+        new Verifications()
+        {
+            {
+                mockMqttConnectionOptions.setMaxInflight(50);
+                times = 1;
+            }
+        };
+        int actualMaxInFlightCount = Deencapsulation.invoke(mqttConnection, "getMaxInFlightCount");
+        assertEquals(50, actualMaxInFlightCount);
+    }
+
+    //Tests_SRS_MQTTCONNECTION_21_015: [The constructor shall save maxInFlightCount and use it as the in flight window of the connection options.]
+    @Test
+    public void constructorUsesDefaultInFlightWindow() throws Exception
+    {
+        //arrange
+        baseConstructorExpectations();
+
+        //act
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockMqttConnectionOptions.setMaxInflight(10);
+                times = 1;
+            }
+        };
+        int actualMaxInFlightCount = Deencapsulation.invoke(mqttConnection, "getMaxInFlightCount");
+        assertEquals(10, actualMaxInFlightCount);
+    }
+
+    //Tests_SRS_MQTTCONNECTION_21_014: [The constructor shall throw IllegalArgumentException if maxInFlightCount is smaller than 1.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroMaxInFlightCount() throws Exception
+    {
+        //act
+        Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext, 0);
+    }
 }
@@ -8,11 +8,14 @@ import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.net.IotHubUri;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.*;
 import mockit.*;
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
@@ -22,7 +25,9 @@ import java.net.URLEncoder;
 
 import static junit.framework.TestCase.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /* Unit tests for MqttIotHubConnection
  * Code coverage: 100% methods, 95% lines
@@ -41,6 +46,7 @@ public class MqttIotHubConnectionTest
     final String publishTopic = "devices/test-deviceId/messages/events/";
     final String subscribeTopic = "devices/test-deviceId/messages/devicebound/#";
     final String expectedToken = "someToken";
+    final int maxInFlightCount = 10;
 
     @Mocked
     private DeviceClientConfig mockConfig;
@@ -228,6 +234,8 @@ public class MqttIotHubConnectionTest
                 result = expectedSasToken;
                 mockConfig.isUseWebsocket();
                 result = false;
+                mockConfig.getMqttMaxInFlightCount();
+                result = maxInFlightCount;
             }
         };
 
@@ -250,7 +258,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, serverUri, deviceId, any, any, any);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, serverUri, deviceId, any, any, any, maxInFlightCount);
                 times = 1;
             }
         };
@@ -277,6 +285,8 @@ public class MqttIotHubConnectionTest
                 result = expectedToken;
                 mockConfig.isUseWebsocket();
                 result = true;
+                mockConfig.getMqttMaxInFlightCount();
+                result = maxInFlightCount;
             }
         };
 
@@ -299,7 +309,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-               Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, serverUri, deviceId, any, any, any);
+               Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, serverUri, deviceId, any, any, any, maxInFlightCount);
                times = 1;
             }
         };
@@ -324,13 +334,15 @@ public class MqttIotHubConnectionTest
                 result = "someToken";
                 mockConfig.isUseWebsocket();
                 result = false;
+                mockConfig.getMqttMaxInFlightCount();
+                result = maxInFlightCount;
             }
         };
 
         new StrictExpectations()
         {
             {
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, serverUri, deviceId, any, any, mockSslContext);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, serverUri, deviceId, any, any, mockSslContext, maxInFlightCount);
                 result = new IOException();
             }
         };
@@ -376,14 +388,17 @@ public class MqttIotHubConnectionTest
                 result = "someToken";
                 mockConfig.isUseWebsocket();
                 result = false;
+                mockConfig.getMqttMaxInFlightCount();
+                result = maxInFlightCount;
             }
         };
 
         new StrictExpectations()
         {
             {
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, any, any, any, any, mockSslContext);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, any, any, any, any, mockSslContext, maxInFlightCount);
                 result = mockedMqttConnection;
+                Deencapsulation.invoke(mockedMqttConnection, "setTransportListener", new Class[] {IotHubTransportListener.class}, (Object)null);
             }
         };
 
@@ -434,14 +449,17 @@ public class MqttIotHubConnectionTest
                 result = "someToken";
                 mockConfig.isUseWebsocket();
                 result = false;
+                mockConfig.getMqttMaxInFlightCount();
+                result = maxInFlightCount;
             }
         };
 
         new StrictExpectations()
         {
             {
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, any, any, any, any, mockSslContext);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, any, any, any, any, mockSslContext, maxInFlightCount);
                 result = mockedMqttConnection;
+                Deencapsulation.invoke(mockedMqttConnection, "setTransportListener", new Class[] {IotHubTransportListener.class}, (Object)null);
             }
         };
 
@@ -498,7 +516,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, any, any, any, any, any);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, any, any, any, any, any, anyInt);
                 maxTimes = 1;
             }
         };
@@ -838,6 +856,7 @@ public class MqttIotHubConnectionTest
 
     // Tests_SRS_MQTTIOTHUBCONNECTION_15_014: [The function shall attempt to consume a message
     // from the received messages queue.]
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall consume the message only with the messaging client of its topic: device methods for method requests, device twin for twin topics, and messaging otherwise.]
     @Test
     public void receiveMessageSucceeds() throws IOException
     {
@@ -847,10 +866,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceMethod.receive();
-                result = null;
-                mockDeviceTwin.receive();
-                result = null;
+                mockDeviceMessaging.peekMessage();
+                result = new MutablePair<>("devices/test-deviceId/messages/devicebound/%24.mid=1", expectedMessageBody);
                 mockDeviceMessaging.receive();
                 result = new Message(expectedMessageBody);
             }
@@ -871,15 +888,16 @@ public class MqttIotHubConnectionTest
         {
             {
                 mockDeviceTwin.receive();
-                times = 1;
+                times = 0;
                 mockDeviceMethod.receive();
-                times = 1;
+                times = 0;
                 mockDeviceMessaging.receive();
                 times = 1;
             }
         };
     }
 
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall consume the message only with the messaging client of its topic: device methods for method requests, device twin for twin topics, and messaging otherwise.]
     @Test
     public void receiveDeviceTwinMessageSucceeds() throws IOException
     {
@@ -889,8 +907,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceMethod.receive();
-                result = null;
+                mockDeviceMessaging.peekMessage();
+                result = new MutablePair<>("$iothub/twin/res/200/?$rid=1", expectedMessageBody);
                 mockDeviceTwin.receive();
                 result = new IotHubTransportMessage(expectedMessageBody, MessageType.DEVICE_TWIN);
             }
@@ -912,14 +930,17 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                mockDeviceMethod.receive();
+                mockDeviceTwin.receive();
                 times = 1;
+                mockDeviceMethod.receive();
+                times = 0;
                 mockDeviceMessaging.receive();
                 times = 0;
             }
         };
     }
 
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall consume the message only with the messaging client of its topic: device methods for method requests, device twin for twin topics, and messaging otherwise.]
     @Test
     public void receiveDeviceMethodMessageSucceeds() throws IOException
     {
@@ -929,6 +950,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
+                mockDeviceMessaging.peekMessage();
+                result = new MutablePair<>("$iothub/methods/POST/testMethod/?$rid=1", expectedMessageBody);
                 mockDeviceMethod.receive();
                 result = new IotHubTransportMessage(expectedMessageBody, MessageType.DEVICE_TWIN);
             }
@@ -959,6 +982,76 @@ public class MqttIotHubConnectionTest
             }
         };
     }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_026: [The function shall peek the topic of the oldest received message once, and return null if there is none.]
+    @Test
+    public void receiveMessageReturnsNullIfNoMessage() throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceMessaging.peekMessage();
+                result = null;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        Message message = connection.receiveMessage();
+
+        assertNull(message);
+        new Verifications()
+        {
+            {
+                mockDeviceTwin.receive();
+                times = 0;
+                mockDeviceMethod.receive();
+                times = 0;
+                mockDeviceMessaging.receive();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_028: [If the messaging client of the topic does not consume the message, the function shall consume it with the messaging client.]
+    @Test
+    public void receiveMessageFallsBackToMessagingIfNotConsumed() throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+        final byte[] expectedMessageBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceMessaging.peekMessage();
+                result = new MutablePair<>("$iothub/twin/", expectedMessageBody);
+                mockDeviceTwin.receive();
+                result = null;
+                mockDeviceMessaging.receive();
+                result = new Message(expectedMessageBody);
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        Message message = connection.receiveMessage();
+
+        assertNotNull(message);
+        new Verifications()
+        {
+            {
+                mockDeviceTwin.receive();
+                times = 1;
+                mockDeviceMessaging.receive();
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_MQTTIOTHUBCONNECTION_15_015: [If the MQTT connection is closed,
     // the function shall throw an IllegalStateException.]
     @Test(expected = IllegalStateException.class)
@@ -996,6 +1089,13 @@ public class MqttIotHubConnectionTest
 
         Deencapsulation.setField(connection, "deviceMethod", method);
 
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceMessaging.peekMessage();
+                result = new MutablePair<>("$iothub/methods/POST/testMethod/?$rid=1", new byte[] { 0x61 });
+            }
+        };
 
         new Expectations()
         {
@@ -1037,6 +1137,134 @@ public class MqttIotHubConnectionTest
     }
 
 
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_022: [The function shall create the MQTT connection with the in flight window provided by the configuration.]
+    @Test
+    public void openCreatesConnectionWithConfiguredInFlightWindow() throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getMqttMaxInFlightCount();
+                result = 50;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, anyString, anyString, anyString, anyString, any, 50);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_025: [The function shall publish the message using the messaging
+    // client with the provided actionListener, and return the result of the publish.]
+    @Test
+    public void sendEventAsyncPublishesMessageWithListener(@Mocked final Message mockMsg,
+                                                           @Mocked final IMqttActionListener mockActionListener) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBytes();
+                result = msgBody;
+                mockDeviceMessaging.sendAsync(mockMsg, mockActionListener);
+                returns(true, false);
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        assertTrue(connection.sendEventAsync(mockMsg, mockActionListener));
+        assertFalse(connection.sendEventAsync(mockMsg, mockActionListener));
+
+        new Verifications()
+        {
+            {
+                mockDeviceMessaging.sendAsync(mockMsg, mockActionListener);
+                times = 2;
+                mockDeviceMessaging.send(mockMsg);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_023: [If the message is null or empty, or the actionListener is null,
+    // the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void sendEventAsyncThrowsOnEmptyMessage(@Mocked final Message mockMsg,
+                                                   @Mocked final IMqttActionListener mockActionListener) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBytes();
+                result = new byte[0];
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        connection.sendEventAsync(mockMsg, mockActionListener);
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_023: [If the message is null or empty, or the actionListener is null,
+    // the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void sendEventAsyncThrowsOnNullListener(@Mocked final Message mockMsg) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBytes();
+                result = msgBody;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+
+        connection.sendEventAsync(mockMsg, null);
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_024: [If the MQTT connection is closed,
+    // the function shall throw an IllegalStateException.]
+    @Test (expected = IllegalStateException.class)
+    public void sendEventAsyncThrowsIfConnectionIsClosed(@Mocked final Message mockMsg,
+                                                         @Mocked final IMqttActionListener mockActionListener) throws IOException
+    {
+        baseExpectations();
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBytes();
+                result = msgBody;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+
+        connection.sendEventAsync(mockMsg, mockActionListener);
+    }
+
     private void baseExpectations()
     {
         new NonStrictExpectations() {
@@ -1057,7 +1285,7 @@ public class MqttIotHubConnectionTest
             {
                 mockConfig.getIotHubConnectionString().getSharedAccessToken();
                 result = expectedToken;
-                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, anyString, anyString, anyString, anyString, any);
+                Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, int.class}, anyString, anyString, anyString, anyString, any, anyInt);
                 result = mockedMqttConnection;
                 new MqttMessaging(mockedMqttConnection, anyString);
                 result = mockDeviceMessaging;
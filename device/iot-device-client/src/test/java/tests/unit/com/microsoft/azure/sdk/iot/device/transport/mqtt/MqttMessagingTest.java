@@ -10,11 +10,13 @@ import com.microsoft.azure.sdk.iot.device.transport.mqtt.Mqtt;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMessaging;
 import mockit.*;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.junit.Test;
 
 import java.io.IOException;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /* Unit tests for MqttMessaging
  * Code coverage: 100% methods, 78% lines
@@ -323,8 +325,10 @@ public class MqttMessagingTest
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                mockMessage.getProperties();
-                result = messageProperties;
+                mockMessage.getPropertyCount();
+                result = messageProperties.length;
+                mockMessage.getPropertyAt(0);
+                result = messageProperties[0];
                 Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
                 mockMessage.getCorrelationId();
                 result = expectedCorrelationId;
@@ -345,7 +349,7 @@ public class MqttMessagingTest
             {
                 mockMessage.getBytes();
                 times = 2;
-                mockMessage.getProperties();
+                mockMessage.getPropertyCount();
                 Deencapsulation.invoke(mockMqtt, "publish", publishTopicWithProperties,  messageBody);
                 times = 1;
             }
@@ -371,8 +375,10 @@ public class MqttMessagingTest
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                mockMessage.getProperties();
-                result = messageProperties;
+                mockMessage.getPropertyCount();
+                result = messageProperties.length;
+                mockMessage.getPropertyAt(0);
+                result = messageProperties[0];
                 mockMessage.getMessageId();
                 result = messageidValue;
                 Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
@@ -389,7 +395,7 @@ public class MqttMessagingTest
             {
                 mockMessage.getBytes();
                 times = 2;
-                mockMessage.getProperties();
+                mockMessage.getPropertyCount();
                 Deencapsulation.invoke(mockMqtt, "publish", publishTopicWithProperties, messageBody);
                 times = 1;
                 mockMessage.getMessageId();
@@ -397,4 +403,109 @@ public class MqttMessagingTest
             }
         };
     }
+
+    /*
+     **Tests_SRS_MqttMessaging_21_029: [**sendAsync method shall build the publish topic in the same way as send, and publish the message by calling tryPublish() with the provided actionListener.**]**
+     */
+    @Test
+    public void sendAsyncShallTryPublishMessageWithPropsAndListener(@Mocked final Mqtt mockMqtt,
+                                                                    @Mocked final IMqttActionListener mockActionListener) throws IOException
+    {
+        final byte[] messageBody = {0x61, 0x62, 0x63};
+        final String propertyName = "key";
+        final String propertyValue = "value";
+        final MessageProperty[] messageProperties = new MessageProperty[]
+                {
+                        new MessageProperty(propertyName, propertyValue)
+                };
+        final String messageidValue = "test-message-id";
+        final MqttMessaging testMqttMessaging = new MqttMessaging(mockedMqttConnection, CLIENT_ID);
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getBytes();
+                result = messageBody;
+                mockMessage.getPropertyCount();
+                result = messageProperties.length;
+                mockMessage.getPropertyAt(0);
+                result = messageProperties[0];
+                mockMessage.getMessageId();
+                result = messageidValue;
+                Deencapsulation.invoke(testMqttMessaging, "tryPublish",
+                        new Class[] {String.class, byte[].class, IMqttActionListener.class},
+                        anyString, messageBody, mockActionListener);
+                result = true;
+            }
+        };
+
+        boolean published = testMqttMessaging.sendAsync(mockMessage, mockActionListener);
+        final String publishTopicWithProperties = String.format(
+                "devices/%s/messages/events/$.mid=%s&%s=%s", CLIENT_ID, messageidValue, propertyName, propertyValue);
+
+        assertTrue(published);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockMqtt, "tryPublish", publishTopicWithProperties, messageBody, mockActionListener);
+                times = 1;
+                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+     **Tests_SRS_MqttMessaging_21_030: [**The publish topic shall start with the publishTopic of the device, and the system and custom property keys and values shall be percent-encoded.**]**
+     */
+    @Test
+    public void sendShallEncodePropertiesInPublishTopic(@Mocked final Mqtt mockMqtt) throws IOException
+    {
+        final byte[] messageBody = {0x61, 0x62, 0x63};
+        final MessageProperty[] messageProperties = new MessageProperty[]
+                {
+                        new MessageProperty("key&name", "a=b c/d%")
+                };
+        final String messageidValue = "id?1";
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getBytes();
+                result = messageBody;
+                mockMessage.getPropertyCount();
+                result = messageProperties.length;
+                mockMessage.getPropertyAt(0);
+                result = messageProperties[0];
+                mockMessage.getMessageId();
+                result = messageidValue;
+                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+            }
+        };
+
+        MqttMessaging testMqttMessaging = new MqttMessaging(mockedMqttConnection, CLIENT_ID);
+
+        // act
+        testMqttMessaging.send(mockMessage);
+
+        // assert
+        final String publishTopicWithProperties = String.format(
+                "devices/%s/messages/events/$.mid=id%%3F1&key%%26name=a%%3Db%%20c%%2Fd%%25", CLIENT_ID);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockMqtt, "publish", publishTopicWithProperties, messageBody);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+     **Tests_SRS_MqttMessaging_21_028: [**sendAsync method shall throw an IOException if the message is null.**]**
+     */
+    @Test (expected = IOException.class)
+    public void sendAsyncShallThrowIOExceptionIfMessageIsNull(@Mocked final Mqtt mockMqtt,
+                                                             @Mocked final IMqttActionListener mockActionListener) throws IOException
+    {
+        MqttMessaging testMqttMessaging = new MqttMessaging(mockedMqttConnection, CLIENT_ID);
+        testMqttMessaging.sendAsync(null, mockActionListener);
+    }
 }
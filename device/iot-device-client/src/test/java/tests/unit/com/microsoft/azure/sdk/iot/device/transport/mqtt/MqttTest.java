@@ -32,6 +32,7 @@ public class MqttTest {
     private static final String MOCK_PARSE_TOPIC = "devices/deviceID/messages/devicebound/%24.mid=69ea4caf-d83e-454b-81f2-caafda4c81c8&%24.exp=0&%24.to=%2Fdevices%2FdeviceID%2Fmessages%2FdeviceBound&%24.cid=169c34b3-99b0-49f9-b0f6-8fa9d2c99345&iothub-ack=full&property1=value1";
     private static final byte[] EXPECTED_PAYLOAD = {0x61, 0x62, 0x63};
     private Message expectedMessage;
+    private static final int MAX_IN_FLIGHT_COUNT = 10;
     private static final String EXPECTED_EXPIRED_SAS_TOKEN = "SharedAccessSignature sr=hostname&sig=Signature&se=0";
 
     @Mocked
@@ -119,6 +120,8 @@ public class MqttTest {
                 result = new ConcurrentLinkedQueue<>();
                 Deencapsulation.invoke(mockedMqttConnection, "getMqttLock");
                 result = new Object();
+                Deencapsulation.invoke(mockedMqttConnection, "getMaxInFlightCount");
+                result = MAX_IN_FLIGHT_COUNT;
             }
         };
     }
@@ -578,6 +581,197 @@ public class MqttTest {
     }
 
 
+    /*
+    **Tests_SRS_Mqtt_25_048: [**publish shall check for pending publish tokens by calling getPendingDeliveryTokens.
+    * And if the in flight window is full, publish shall wait for the oldest pending token to complete before checking again.**]**
+    */
+    @Test
+    public void publishWaitsForOldestTokenWhenInFlightWindowIsFull() throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        final IMqttDeliveryToken[] testTokens = new IMqttDeliveryToken[MAX_IN_FLIGHT_COUNT];
+        for (int i = 0; i < MAX_IN_FLIGHT_COUNT; i++)
+        {
+            testTokens[i] = mockMqttDeliveryToken;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                // the window is full until the oldest token completes, then it is empty.
+                mockMqttAsyncClient.getPendingDeliveryTokens();
+                result = testTokens;
+                result = new IMqttDeliveryToken[0];
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, payload);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockMqttDeliveryToken.waitForCompletion(anyLong);
+                times = 1;
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_059: [**The function shall publish message payload on the publishTopic with the provided actionListener, and return true without waiting for the acknowledgement.**]**
+     */
+    @Test
+    public void tryPublishPublishesWithListenerWhenConnected(@Mocked final IMqttActionListener mockActionListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+                new MqttMessage(payload);
+                result = mockMqttMessage;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        boolean published = Deencapsulation.invoke(mockMqtt, "tryPublish", MOCK_PARSE_TOPIC, payload, mockActionListener);
+
+        //assert
+        assertTrue(published);
+        new Verifications()
+        {
+            {
+                mockMqttMessage.setQos(anyInt);
+                times = 1;
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage, null, mockActionListener);
+                times = 1;
+                mockMqttDeliveryToken.waitForCompletion();
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_058: [**If the number of pending delivery tokens reached the in flight window, the function shall return false without publishing.**]**
+     */
+    @Test
+    public void tryPublishReturnsFalseWhenInFlightWindowIsFull(@Mocked final IMqttActionListener mockActionListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        final IMqttDeliveryToken[] testTokens = new IMqttDeliveryToken[MAX_IN_FLIGHT_COUNT];
+        for (int i = 0; i < MAX_IN_FLIGHT_COUNT; i++)
+        {
+            testTokens[i] = mockMqttDeliveryToken;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+                mockMqttAsyncClient.getPendingDeliveryTokens();
+                result = testTokens;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        boolean published = Deencapsulation.invoke(mockMqtt, "tryPublish", MOCK_PARSE_TOPIC, payload, mockActionListener);
+
+        //assert
+        assertFalse(published);
+        new Verifications()
+        {
+            {
+                mockMqttAsyncClient.publish(anyString, (MqttMessage) any, any, (IMqttActionListener) any);
+                times = 0;
+                mockMqttDeliveryToken.waitForCompletion(anyLong);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_056: [**If the actionListener is null, the function shall throw an IOException.**]**
+     */
+    @Test (expected = IOException.class)
+    public void tryPublishThrowsOnNullListener() throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "tryPublish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, MOCK_PARSE_TOPIC, payload, null);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_057: [**The function shall check the SAS token, the connection, the publishTopic and the payload in the same way as publish.**]**
+     */
+    @Test (expected = IOException.class)
+    public void tryPublishFailsWhenNotConnected(@Mocked final IMqttActionListener mockActionListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = false;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "tryPublish", MOCK_PARSE_TOPIC, payload, mockActionListener);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_060: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
+     */
+    @Test (expected = IOException.class)
+    public void tryPublishThrowsIOExceptionWhenPublishThrows(@Mocked final IMqttActionListener mockActionListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+                new MqttMessage(payload);
+                result = mockMqttMessage;
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage, null, mockActionListener);
+                result = mockMqttException;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "tryPublish", MOCK_PARSE_TOPIC, payload, mockActionListener);
+    }
+
     /*
     **Tests_SRS_Mqtt_25_014: [**The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.**]**
      */
@@ -1405,6 +1599,47 @@ public class MqttTest {
         assertEquals("\"", receivedMessage.getProperties()[2].getValue());
         assertEquals("=", receivedMessage.getProperties()[3].getValue());
     }
+
+    /*
+    **Tests_SRS_Mqtt_34_053: [**A property's key and value may include unusual characters such as &, %, $**]**
+    */
+    @Test
+    public void receiveSuccessCustomPropertyHasEmptyAndEncodedValues() throws IOException, MqttException
+    {
+        //arrange
+        final byte[] payload = {0x61, 0x62, 0x63};
+        final String mockParseTopicWithEncodedValues = "devices/deviceID/messages/devicebound/%24.mid=69ea4caf-d83e-454b-81f2-caafda4c81c8&iothub-ack=full&property1=&property2=%3Cvalue%3E+with+spaces%3D&";
+        baseConstructorExpectations();
+        baseConnectExpectation();
+        new MockUp<MqttMessaging>()
+        {
+            @Mock
+            Pair<String, byte[]> peekMessage()
+            {
+                return new MutablePair<>(mockParseTopicWithEncodedValues, payload);
+            }
+        };
+
+        final Mqtt mockMqtt = new MqttMessaging(mockedMqttConnection, CLIENT_ID);
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+            }
+        };
+
+        Deencapsulation.invoke(mockMqtt, "connect");
+
+        //act
+        Message receivedMessage = mockMqtt.receive();
+
+        //assert
+        assertEquals("69ea4caf-d83e-454b-81f2-caafda4c81c8", receivedMessage.getMessageId());
+        assertEquals(2, receivedMessage.getProperties().length);
+        assertEquals("", receivedMessage.getProperties()[0].getValue());
+        assertEquals("<value> with spaces=", receivedMessage.getProperties()[1].getValue());
+    }
     /*
     **Tests_SRS_Mqtt_99_049: [**If the user supplied SAS token has expired, the function shall throw an IOException.**]**
      */
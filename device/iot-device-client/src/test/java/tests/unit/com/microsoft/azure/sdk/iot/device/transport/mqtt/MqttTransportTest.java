@@ -7,17 +7,25 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportListener;
+import com.microsoft.azure.sdk.iot.device.transport.OutboundPacketQueue;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
 import junit.framework.AssertionFailedError;
 import mockit.*;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
@@ -179,7 +187,7 @@ public class MqttTransportTest
         transport.close();
 
 
-        Queue<IotHubOutboundPacket> actualWaitingMessages = Deencapsulation.getField(transport, "waitingList");
+        OutboundPacketQueue actualWaitingMessages = Deencapsulation.getField(transport, "waitingList");
         
         assertEquals(actualWaitingMessages.size(), 0);
         
@@ -291,6 +299,8 @@ public class MqttTransportTest
                 result = mockPacket;
                 mockPacket.getMessage();
                 result = mockMsg;
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
             }
         };
 
@@ -304,7 +314,7 @@ public class MqttTransportTest
         new Verifications()
         {
             {
-                expectedConnection.sendEvent(mockMsg);
+                expectedConnection.sendEventAsync(mockMsg, (IMqttActionListener) any);
                 times = 2;
             }
         };
@@ -336,6 +346,10 @@ public class MqttTransportTest
                 result = mockCallback;
                 mockPacket.getContext();
                 result = context;
+                mockPacket.getMessage();
+                result = mockMsg;
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TWIN;
                 mockConnection.sendEvent((Message) any);
                 returns(IotHubStatusCode.OK_EMPTY, IotHubStatusCode.ERROR);
                 new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockCallback, context);
@@ -464,6 +478,8 @@ public class MqttTransportTest
         new NonStrictExpectations()
         {
             {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TWIN;
                 mockConnection.sendEvent((Message) any);
                 result = new IllegalStateException(anyString);
                 result = IotHubStatusCode.OK_EMPTY;
@@ -486,6 +502,279 @@ public class MqttTransportTest
         };
     }
 
+    // Tests_SRS_MQTTTRANSPORT_21_030: [The function shall publish each telemetry message without waiting
+    // for the IoT Hub acknowledgement, and track it as in progress.]
+    @Test
+    public void sendMessagesPublishesTelemetryWithoutWaitingForAcknowledgement(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.sendMessages();
+
+        OutboundPacketQueue waitingList = Deencapsulation.getField(transport, "waitingList");
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        Set<IotHubOutboundPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        assertEquals(0, waitingList.size());
+        assertEquals(0, callbackList.size());
+        assertEquals(2, inProgressPackets.size());
+        assertFalse(transport.isEmpty());
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, (IMqttActionListener) any);
+                times = 2;
+                mockConnection.sendEvent((Message) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_031: [If the in flight window is full, the function shall put the message
+    // back at the head of the waiting list and stop sending.]
+    @Test
+    public void sendMessagesKeepsMessagesInOrderWhenInFlightWindowIsFull(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context1 = new HashMap<>();
+        final Map<String, Object> context2 = new HashMap<>();
+        final Map<String, Object> context3 = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                returns(true, false);
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context1);
+        transport.addMessage(mockMsg, mockCallback, context2);
+        transport.addMessage(mockMsg, mockCallback, context3);
+        transport.sendMessages();
+
+        OutboundPacketQueue waitingList = Deencapsulation.getField(transport, "waitingList");
+        assertEquals(2, waitingList.size());
+        assertEquals(context2, waitingList.remove().getContext());
+        assertEquals(context3, waitingList.remove().getContext());
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, (IMqttActionListener) any);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_034: [When the IoT Hub acknowledges a message, the transport shall add
+    // the status code OK_EMPTY along with the callback and context to the callback list, and notify
+    // the transport listener.]
+    @Test
+    public void acknowledgedMessageAddsOkEmptyToCallbackListAndNotifiesListener(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback,
+            @Mocked final IotHubTransportListener mockTransportListener)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
+            }
+        };
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.registerTransportListener(mockTransportListener);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.sendMessages();
+        final List<IMqttActionListener> actionListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, withCapture(actionListeners));
+            }
+        };
+
+        // act
+        actionListeners.get(0).onSuccess(null);
+
+        // assert
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(1, callbackList.size());
+        IotHubCallbackPacket callbackPacket = callbackList.peek();
+        assertEquals(IotHubStatusCode.OK_EMPTY, callbackPacket.getStatus());
+        assertEquals(context, callbackPacket.getContext());
+        Set<IotHubOutboundPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        assertEquals(0, inProgressPackets.size());
+        new Verifications()
+        {
+            {
+                mockTransportListener.onSendWorkAvailable();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_035: [If a published message fails, the transport shall add the status
+    // code ERROR along with the callback and context to the callback list, and notify the transport listener.]
+    @Test
+    public void failedDeliveryAddsErrorToCallbackList(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
+            }
+        };
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.sendMessages();
+        final List<IMqttActionListener> actionListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, withCapture(actionListeners));
+            }
+        };
+
+        // act
+        actionListeners.get(0).onFailure(null, new Throwable());
+
+        // assert
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(1, callbackList.size());
+        assertEquals(IotHubStatusCode.ERROR, callbackList.peek().getStatus());
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_033: [If the message cannot be published, the function shall add
+    // the status code ERROR along with the callback and context to the callback list.]
+    @Test
+    public void sendMessagesAddsErrorToCallbackListIfPublishFails(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = new IOException();
+            }
+        };
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+
+        // act
+        transport.sendMessages();
+
+        // assert
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(1, callbackList.size());
+        assertEquals(IotHubStatusCode.ERROR, callbackList.peek().getStatus());
+        Set<IotHubOutboundPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        assertEquals(0, inProgressPackets.size());
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_032: [If the message is null or empty, the function shall add
+    // the status code BAD_FORMAT along with the callback and context to the callback list.]
+    @Test
+    public void sendMessagesAddsBadFormatToCallbackListIfMessageIsEmpty(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = new IllegalArgumentException();
+            }
+        };
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+
+        // act
+        transport.sendMessages();
+
+        // assert
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(1, callbackList.size());
+        assertEquals(IotHubStatusCode.BAD_FORMAT, callbackList.peek().getStatus());
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_99_020: [The method shall remove all the messages which are in progress or waiting to be sent and add them to the callback list.]
+    @Test
+    public void closeCancelsInProgressMessagesAndIgnoresLateAcknowledgement(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
+            }
+        };
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.sendMessages();
+        final List<IMqttActionListener> actionListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, withCapture(actionListeners));
+            }
+        };
+
+        // act
+        transport.close();
+        actionListeners.get(0).onSuccess(null);
+
+        // assert
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(0, callbackList.size());
+        new Verifications()
+        {
+            {
+                mockCallback.execute(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE, context);
+                times = 1;
+                mockCallback.execute(IotHubStatusCode.OK_EMPTY, any);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_MQTTTRANSPORT_15_011: [If the MQTT connection is closed,
     // the function shall throw an IllegalStateException.]
     @Test(expected = IllegalStateException.class)
@@ -520,6 +809,8 @@ public class MqttTransportTest
             {
                 new MqttIotHubConnection(mockConfig);
                 result = mockConnection;
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
                 mockCallbackPacket.getStatus();
                 returns(IotHubStatusCode.OK_EMPTY, IotHubStatusCode.ERROR);
                 mockCallbackPacket.getCallback();
@@ -534,6 +825,16 @@ public class MqttTransportTest
         transport.addMessage(mockMsg, mockCallback, context);
         transport.addMessage(mockMsg, mockCallback, context);
         transport.sendMessages();
+        final List<IMqttActionListener> actionListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, withCapture(actionListeners));
+                times = 2;
+            }
+        };
+        actionListeners.get(0).onSuccess(null);
+        actionListeners.get(1).onFailure(null, new IOException());
         transport.invokeCallbacks();
 
         final IotHubEventCallback expectedCallback = mockCallback;
@@ -580,6 +881,8 @@ public class MqttTransportTest
             {
                 new MqttIotHubConnection(mockConfig);
                 result = mockConnection;
+                mockConnection.sendEventAsync((Message) any, (IMqttActionListener) any);
+                result = true;
                 mockCallbackPacket.getStatus();
                 result = IotHubStatusCode.OK_EMPTY;
                 mockCallbackPacket.getCallback();
@@ -596,6 +899,14 @@ public class MqttTransportTest
         transport.open();
         transport.addMessage(mockMsg, mockCallback, context);
         transport.sendMessages();
+        final List<IMqttActionListener> actionListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEventAsync(mockMsg, withCapture(actionListeners));
+            }
+        };
+        actionListeners.get(0).onSuccess(null);
         try
         {
             transport.invokeCallbacks();
@@ -643,6 +954,13 @@ public class MqttTransportTest
             throws IOException
     {
         final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TWIN;
+            }
+        };
 
         MqttTransport transport = new MqttTransport(mockConfig);
         transport.open();
@@ -665,6 +983,13 @@ public class MqttTransportTest
             throws IOException
     {
         final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getMessageType();
+                result = MessageType.DEVICE_TWIN;
+            }
+        };
 
         MqttTransport transport = new MqttTransport(mockConfig);
         transport.open();
@@ -691,6 +1016,8 @@ public class MqttTransportTest
                 result = mockCallback;
                 mockConfig.getDeviceTelemetryMessageContext();
                 result = context;
+                mockConnection.receiveMessage();
+                result = null;
             }
         };
 
@@ -722,8 +1049,11 @@ public class MqttTransportTest
                 result = mockCallback;
                 mockConfig.getDeviceTelemetryMessageContext();
                 result = context;
+                mockConfig.getMqttCallbackExecutor();
+                result = null;
                 mockConnection.receiveMessage();
                 result = mockMsg;
+                result = null;
             }
         };
 
@@ -742,6 +1072,141 @@ public class MqttTransportTest
         };
     }
 
+    // Tests_SRS_MQTTTRANSPORT_21_037: [The function shall keep consuming messages until there are no more messages, or the transport is closed.]
+    @Test
+    public void handleMessageDrainsAllReceivedMessages(
+            @Mocked final MessageCallback mockCallback,
+            @Mocked final Message mockMsg1,
+            @Mocked final Message mockMsg2) throws IOException
+    {
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceTelemetryMessageCallback();
+                result = mockCallback;
+                mockConfig.getDeviceTelemetryMessageContext();
+                result = context;
+                mockConfig.getMqttCallbackExecutor();
+                result = null;
+                mockConnection.receiveMessage();
+                result = mockMsg1;
+                result = mockMsg2;
+                result = null;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.handleMessage();
+
+        final MessageCallback expectedCallback = mockCallback;
+        final Message expectedMsg1 = mockMsg1;
+        final Message expectedMsg2 = mockMsg2;
+        final MqttIotHubConnection expectedConnection = mockConnection;
+        new Verifications()
+        {
+            {
+                expectedCallback.execute(expectedMsg1, context);
+                times = 1;
+                expectedCallback.execute(expectedMsg2, context);
+                times = 1;
+                expectedConnection.receiveMessage();
+                times = 3;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_038: [If an executor is set in the configuration, the function shall invoke the callback on the executor.]
+    @Test
+    public void handleMessageHandsCallbackOffToExecutor(
+            @Mocked final MessageCallback mockCallback,
+            @Mocked final Message mockMsg,
+            @Mocked final Executor mockExecutor) throws IOException
+    {
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceTelemetryMessageCallback();
+                result = mockCallback;
+                mockConfig.getDeviceTelemetryMessageContext();
+                result = context;
+                mockConfig.getMqttCallbackExecutor();
+                result = mockExecutor;
+                mockConnection.receiveMessage();
+                result = mockMsg;
+                result = null;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.handleMessage();
+
+        final MessageCallback expectedCallback = mockCallback;
+        final Executor expectedExecutor = mockExecutor;
+        final List<Runnable> tasks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                expectedExecutor.execute(withCapture(tasks));
+                times = 1;
+                expectedCallback.execute((Message)any, any);
+                times = 0;
+            }
+        };
+
+        tasks.get(0).run();
+
+        new Verifications()
+        {
+            {
+                expectedCallback.execute(mockMsg, context);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTTRANSPORT_21_039: [If the executor rejects the callback, the function shall invoke it in the calling thread.]
+    @Test
+    public void handleMessageRunsCallbackInlineIfExecutorRejects(
+            @Mocked final MessageCallback mockCallback,
+            @Mocked final Message mockMsg,
+            @Mocked final Executor mockExecutor) throws IOException
+    {
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceTelemetryMessageCallback();
+                result = mockCallback;
+                mockConfig.getDeviceTelemetryMessageContext();
+                result = context;
+                mockConfig.getMqttCallbackExecutor();
+                result = mockExecutor;
+                mockExecutor.execute((Runnable)any);
+                result = new RejectedExecutionException();
+                mockConnection.receiveMessage();
+                result = mockMsg;
+                result = null;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.handleMessage();
+
+        final MessageCallback expectedCallback = mockCallback;
+        new Verifications()
+        {
+            {
+                expectedCallback.execute(mockMsg, context);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_MQTTTRANSPORT_15_018: [If the MQTT connection is closed,
     // the function shall throw an IllegalStateException.]
     @Test(expected = IllegalStateException.class)
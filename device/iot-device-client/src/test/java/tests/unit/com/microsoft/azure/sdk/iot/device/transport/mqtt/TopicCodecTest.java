@@ -0,0 +1,147 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.TopicCodec;
+import org.junit.Test;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for TopicCodec.
+ */
+public class TopicCodecTest
+{
+    /* Tests_SRS_TOPICCODEC_21_001: [If the provided builder or value is null, the appendEncoded shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void appendEncodedNullValueThrows()
+    {
+        // act
+        TopicCodec.appendEncoded(new StringBuilder(), null);
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_002: [If the value has only unreserved characters, the appendEncoded shall append it as is.] */
+    @Test
+    public void appendEncodedUnreservedValueSucceeds()
+    {
+        // arrange
+        StringBuilder builder = new StringBuilder("prefix/");
+
+        // act
+        TopicCodec.appendEncoded(builder, "Abc-123_x.y~z");
+
+        // assert
+        assertEquals("prefix/Abc-123_x.y~z", builder.toString());
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_003: [The appendEncoded shall append the other characters as the '%' escape of each byte of their UTF-8 encoding.] */
+    @Test
+    public void appendEncodedReservedAndMultiByteCharactersSucceeds()
+    {
+        // arrange
+        StringBuilder builder = new StringBuilder();
+
+        // act
+        TopicCodec.appendEncoded(builder, "a&b=c d/%$\u00e9");
+
+        // assert
+        assertEquals("a%26b%3Dc%20d%2F%25%24%C3%A9", builder.toString());
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_004: [If the provided topic is null, or the range is out of the topic, the decode shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeNullTopicThrows()
+    {
+        // act
+        TopicCodec.decode(null, 0, 0);
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_004: [If the provided topic is null, or the range is out of the topic, the decode shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeRangeOutOfTopicThrows()
+    {
+        // act
+        TopicCodec.decode("key=value", 4, 10);
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_005: [If the range has no '%' and no '+', the decode shall return it as is.] */
+    @Test
+    public void decodeRangeWithoutEscapesSucceeds()
+    {
+        // arrange
+        String topic = "value";
+
+        // act
+        String value = TopicCodec.decode(topic, 0, topic.length());
+
+        // assert
+        assertSame(topic, value);
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_006: [The decode shall replace '+' by a space, and each sequence of '%' escapes by the UTF-8 text of their bytes.] */
+    @Test
+    public void decodeRangeWithEscapesSucceeds()
+    {
+        // arrange
+        String topic = "key=caf%C3%A9+au+lait%24&next=1";
+
+        // act
+        String value = TopicCodec.decode(topic, 4, topic.indexOf('&'));
+
+        // assert
+        assertEquals("caf\u00e9 au lait$", value);
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_006: [The decode shall replace '+' by a space, and each sequence of '%' escapes by the UTF-8 text of their bytes.] */
+    @Test
+    public void decodeMatchesUrlDecoderForEncodedValues() throws Exception
+    {
+        // arrange
+        String[] values = { "", "plain", "a b+c", "%&=/?#", "\u00e9\u4e2d\ud83d\ude00", "$.mid" };
+
+        for (String expected : values)
+        {
+            StringBuilder builder = new StringBuilder();
+            TopicCodec.appendEncoded(builder, expected);
+            String encodedByCodec = builder.toString();
+            String encodedByUrlEncoder = URLEncoder.encode(expected, StandardCharsets.UTF_8.name());
+
+            // act
+            String decodedFromCodec = TopicCodec.decode(encodedByCodec, 0, encodedByCodec.length());
+            String decodedFromUrlEncoder = TopicCodec.decode(encodedByUrlEncoder, 0, encodedByUrlEncoder.length());
+
+            // assert
+            assertEquals(expected, decodedFromCodec);
+            assertEquals(expected, decodedFromUrlEncoder);
+            assertEquals(URLDecoder.decode(encodedByCodec, StandardCharsets.UTF_8.name()), decodedFromCodec);
+        }
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_007: [If an escape is incomplete or is not hexadecimal, the decode shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeIncompleteEscapeThrows()
+    {
+        // arrange
+        String topic = "value%2";
+
+        // act
+        TopicCodec.decode(topic, 0, topic.length());
+    }
+
+    /* Tests_SRS_TOPICCODEC_21_007: [If an escape is incomplete or is not hexadecimal, the decode shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeNonHexadecimalEscapeThrows()
+    {
+        // arrange
+        String topic = "value%zz";
+
+        // act
+        TopicCodec.decode(topic, 0, topic.length());
+    }
+}
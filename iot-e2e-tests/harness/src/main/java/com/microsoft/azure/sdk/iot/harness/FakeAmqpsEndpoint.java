@@ -0,0 +1,364 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.amqp.transport.Source;
+import org.apache.qpid.proton.amqp.transport.Target;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.message.Message;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Minimal AMQP 1.0 container over TLS that answers the links opened by the device client
+ * to the IoT Hub, on the addresses used by {@code AmqpsIotHubConnection} and {@code AmqpsSharedConnection}.
+ * </p>
+ * <p>
+ * Every connection is accepted, with SASL PLAIN or ANONYMOUS, and every link is attached with the
+ * addresses the device asked for. The telemetry on {@code /devices/{deviceId}/messages/events} is
+ * accepted and counted, the put-token requests on {@code $cbs} are answered with status 200, and the
+ * other messages are only accepted. Nothing is ever sent on the links to the device, so there is no
+ * cloud to device message, method or twin response.
+ * </p>
+ * <p>
+ * Each connection runs a Proton {@link Transport} on its own thread, which reads the socket, processes
+ * the frames and writes the output of the transport back, so there is no reactor.
+ * </p>
+ */
+final class FakeAmqpsEndpoint
+{
+    private static final String[] SASL_MECHANISMS = { "PLAIN", "ANONYMOUS" };
+    private static final String CONTAINER_ID = "fake-iothub";
+    private static final String TELEMETRY_ADDRESS_PREFIX = "/devices/";
+    private static final String TELEMETRY_ADDRESS_SUFFIX = "/messages/events";
+    private static final String CBS_ADDRESS = "$cbs";
+    private static final String CBS_STATUS_CODE_KEY = "status-code";
+    private static final String CBS_STATUS_DESCRIPTION_KEY = "status-description";
+    private static final int CBS_STATUS_OK = 200;
+    private static final int LINK_CREDIT = 1000;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<Socket>());
+    private final AtomicLong telemetryCount = new AtomicLong();
+
+    /**
+     * Opens the TLS listening socket.
+     *
+     * @param sslContext the context with the identity of the endpoint.
+     * @param port the port to listen on. The device client always connects to 5671.
+     * @throws IOException if the port cannot be bound.
+     */
+    FakeAmqpsEndpoint(SSLContext sslContext, int port) throws IOException
+    {
+        this.serverSocket = sslContext.getServerSocketFactory().createServerSocket(port);
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    void start()
+    {
+        this.executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * Closes the listening socket and all the connections.
+     *
+     * @throws IOException if the listening socket cannot be closed.
+     */
+    void close() throws IOException
+    {
+        this.serverSocket.close();
+        synchronized (this.connections)
+        {
+            for (Socket socket : this.connections)
+            {
+                closeQuietly(socket);
+            }
+        }
+        this.executor.shutdownNow();
+    }
+
+    int getPort()
+    {
+        return this.serverSocket.getLocalPort();
+    }
+
+    long getTelemetryCount()
+    {
+        return this.telemetryCount.get();
+    }
+
+    private void acceptConnections()
+    {
+        while (!this.serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.add(socket);
+                this.executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        serve(socket);
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                // the listening socket was closed, or the client went away during the handshake.
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        Transport transport = Proton.transport();
+        Connection connection = Proton.connection();
+        Collector collector = Proton.collector();
+        connection.collect(collector);
+        connection.setContainer(CONTAINER_ID);
+        transport.bind(connection);
+        Sasl sasl = transport.sasl();
+        sasl.server();
+        sasl.setMechanisms(SASL_MECHANISMS);
+
+        try
+        {
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            while (!transport.isClosed())
+            {
+                writeOutput(transport, output);
+                int capacity = transport.capacity();
+                if (capacity < 0)
+                {
+                    break;
+                }
+
+                int read = input.read(buffer, 0, Math.min(capacity, buffer.length));
+                if (read < 0)
+                {
+                    transport.close_tail();
+                }
+                else
+                {
+                    transport.tail().put(buffer, 0, read);
+                    transport.process();
+                }
+
+                // the device client authenticates with the SAS token or on $cbs, and both are accepted as is.
+                if ((sasl.getOutcome() == Sasl.SaslOutcome.PN_SASL_NONE) && (sasl.getRemoteMechanisms().length > 0))
+                {
+                    sasl.done(Sasl.SaslOutcome.PN_SASL_OK);
+                }
+
+                handleEvents(collector);
+            }
+            writeOutput(transport, output);
+        }
+        catch (SocketException e)
+        {
+            // the client closed the connection.
+        }
+        catch (IOException | TransportException e)
+        {
+            System.out.println("AMQPS connection failed: " + e.getMessage());
+        }
+        finally
+        {
+            this.connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void handleEvents(Collector collector)
+    {
+        Event event;
+        while ((event = collector.peek()) != null)
+        {
+            switch (event.getType())
+            {
+                case CONNECTION_REMOTE_OPEN:
+                    event.getConnection().open();
+                    break;
+                case CONNECTION_REMOTE_CLOSE:
+                    event.getConnection().close();
+                    break;
+                case SESSION_REMOTE_OPEN:
+                    event.getSession().open();
+                    break;
+                case SESSION_REMOTE_CLOSE:
+                    event.getSession().close();
+                    break;
+                case LINK_REMOTE_OPEN:
+                    openLink(event.getLink());
+                    break;
+                case LINK_REMOTE_CLOSE:
+                    event.getLink().close();
+                    break;
+                case DELIVERY:
+                    if (event.getLink() instanceof Receiver)
+                    {
+                        handleDelivery((Receiver)event.getLink(), event.getDelivery());
+                    }
+                    break;
+                default:
+                    break;
+            }
+            collector.pop();
+        }
+    }
+
+    private static void openLink(Link link)
+    {
+        // attach with the addresses the device asked for, so its link init and remote open checks pass.
+        link.setSource(link.getRemoteSource());
+        link.setTarget(link.getRemoteTarget());
+        link.open();
+        if (link instanceof Receiver)
+        {
+            ((Receiver)link).flow(LINK_CREDIT);
+        }
+    }
+
+    private void handleDelivery(Receiver receiver, Delivery delivery)
+    {
+        if (!delivery.isReadable() || delivery.isPartial())
+        {
+            return;
+        }
+
+        byte[] message = new byte[delivery.pending()];
+        int read = receiver.recv(message, 0, message.length);
+        receiver.advance();
+        delivery.disposition(Accepted.getInstance());
+        delivery.settle();
+        receiver.flow(1);
+
+        String address = addressOf(receiver.getRemoteTarget());
+        if (address.startsWith(TELEMETRY_ADDRESS_PREFIX) && address.endsWith(TELEMETRY_ADDRESS_SUFFIX))
+        {
+            this.telemetryCount.incrementAndGet();
+        }
+        else if (CBS_ADDRESS.equals(address))
+        {
+            answerPutToken(receiver.getSession(), message, read);
+        }
+    }
+
+    private static void answerPutToken(Session session, byte[] encodedRequest, int length)
+    {
+        Sender replySender = findCbsReplySender(session);
+        if (replySender == null)
+        {
+            return;
+        }
+
+        Message request = Proton.message();
+        request.decode(encodedRequest, 0, length);
+        Properties properties = new Properties();
+        properties.setCorrelationId(request.getMessageId());
+        properties.setTo(request.getReplyTo());
+        Map<String, Object> applicationProperties = new HashMap<>();
+        applicationProperties.put(CBS_STATUS_CODE_KEY, CBS_STATUS_OK);
+        applicationProperties.put(CBS_STATUS_DESCRIPTION_KEY, "OK");
+        Message response = Proton.message();
+        response.setProperties(properties);
+        response.setApplicationProperties(new ApplicationProperties(applicationProperties));
+
+        byte[] encodedResponse = new byte[READ_BUFFER_SIZE];
+        int encodedLength = response.encode(encodedResponse, 0, encodedResponse.length);
+        replySender.delivery(String.valueOf(request.getMessageId()).getBytes(StandardCharsets.UTF_8));
+        replySender.send(encodedResponse, 0, encodedLength);
+        replySender.advance();
+    }
+
+    private static Sender findCbsReplySender(Session session)
+    {
+        // the $cbs responses go on the link of the same session whose source is $cbs.
+        Link link = session.getConnection().linkHead(null, null);
+        while (link != null)
+        {
+            if ((link instanceof Sender) && (link.getSession() == session) && CBS_ADDRESS.equals(addressOf(link.getRemoteSource())))
+            {
+                return (Sender)link;
+            }
+            link = link.next(null, null);
+        }
+        return null;
+    }
+
+    private static String addressOf(Target target)
+    {
+        return ((target == null) || (target.getAddress() == null)) ? "" : target.getAddress();
+    }
+
+    private static String addressOf(Source source)
+    {
+        return ((source == null) || (source.getAddress() == null)) ? "" : source.getAddress();
+    }
+
+    private static void writeOutput(Transport transport, OutputStream output) throws IOException
+    {
+        int pending;
+        while ((pending = transport.pending()) > 0)
+        {
+            ByteBuffer head = transport.head();
+            byte[] bytes = new byte[pending];
+            head.get(bytes);
+            output.write(bytes);
+            transport.pop(pending);
+        }
+        output.flush();
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // already closed.
+        }
+    }
+}
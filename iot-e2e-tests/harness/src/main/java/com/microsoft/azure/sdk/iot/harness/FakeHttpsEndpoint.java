@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * HTTPS endpoint that answers the requests sent by the device client to the IoT Hub, on the
+ * URIs used by {@code HttpsIotHubConnection}.
+ * </p>
+ * <p>
+ * The events posted to {@code /devices/{deviceId}/messages/events} are counted and accepted with
+ * 204, and the polls of {@code /devices/{deviceId}/messages/devicebound} always find no message.
+ * The authorization is not checked.
+ * </p>
+ */
+final class FakeHttpsEndpoint
+{
+    private static final String DEVICES_PATH = "/devices/";
+    private static final String EVENTS_PATH_SUFFIX = "/messages/events";
+    private static final String DEVICEBOUND_PATH_SEGMENT = "/messages/devicebound";
+    private static final String BATCH_CONTENT_TYPE = "application/vnd.microsoft.iothub.json";
+    private static final String BATCH_BODY_FIELD = "\"body\":";
+    private static final int NO_CONTENT = 204;
+    private static final int NOT_FOUND = 404;
+    private static final int STOP_DELAY_SECONDS = 0;
+
+    private final HttpsServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong telemetryCount = new AtomicLong();
+
+    /**
+     * Binds the HTTPS server.
+     *
+     * @param sslContext the context with the identity of the endpoint.
+     * @param port the port to listen on. The device client connects to 443, unless the host name has a port.
+     * @throws IOException if the port cannot be bound.
+     */
+    FakeHttpsEndpoint(SSLContext sslContext, int port) throws IOException
+    {
+        this.server = HttpsServer.create(new InetSocketAddress(port), 0);
+        this.server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        this.server.setExecutor(this.executor);
+        this.server.createContext(DEVICES_PATH, new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                handleDeviceRequest(exchange);
+            }
+        });
+    }
+
+    /**
+     * Starts answering the requests in the background.
+     */
+    void start()
+    {
+        this.server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    void close()
+    {
+        this.server.stop(STOP_DELAY_SECONDS);
+        this.executor.shutdownNow();
+    }
+
+    int getPort()
+    {
+        return this.server.getAddress().getPort();
+    }
+
+    long getTelemetryCount()
+    {
+        return this.telemetryCount.get();
+    }
+
+    private void handleDeviceRequest(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readBody(exchange.getRequestBody());
+            if (path.endsWith(EVENTS_PATH_SUFFIX))
+            {
+                this.telemetryCount.addAndGet(countMessages(exchange.getRequestHeaders().getFirst("Content-Type"), body));
+                exchange.sendResponseHeaders(NO_CONTENT, -1);
+            }
+            else if (path.contains(DEVICEBOUND_PATH_SEGMENT))
+            {
+                // there is never a message to receive, and completing or abandoning one is accepted.
+                exchange.sendResponseHeaders(NO_CONTENT, -1);
+            }
+            else
+            {
+                exchange.sendResponseHeaders(NOT_FOUND, -1);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private static long countMessages(String contentType, byte[] body)
+    {
+        if ((contentType == null) || !contentType.startsWith(BATCH_CONTENT_TYPE))
+        {
+            return 1;
+        }
+
+        // a batch is a JSON array with one object, and one body field, for each message.
+        String batch = new String(body, StandardCharsets.UTF_8);
+        long count = 0;
+        int index = batch.indexOf(BATCH_BODY_FIELD);
+        while (index >= 0)
+        {
+            count++;
+            index = batch.indexOf(BATCH_BODY_FIELD, index + BATCH_BODY_FIELD.length());
+        }
+        return count;
+    }
+
+    private static byte[] readBody(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0)
+        {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * <p>
+ * Local stand-in for the IoT Hub, to run the device client without a hub, in CI or on machines
+ * without network. It speaks MQTT, HTTPS and AMQPS over TLS, with the identity in a key store, and
+ * acknowledges the telemetry of any device without checking its credentials.
+ * </p>
+ * <p>
+ * The device client connects to the host name of its connection string, on 8883 for MQTT, 443 for
+ * HTTPS and 5671 for AMQPS, and trusts the certificate given with the "SetCertificatePath" option. See the README of this
+ * module for the host name and the certificates.
+ * </p>
+ */
+public final class FakeIotHub implements Closeable
+{
+    /** The port of the IoT Hub MQTT endpoint. */
+    public static final int MQTT_PORT = 8883;
+
+    /** The port of the IoT Hub HTTPS endpoint. */
+    public static final int HTTPS_PORT = 443;
+
+    /** The port of the IoT Hub AMQPS endpoint. */
+    public static final int AMQPS_PORT = 5671;
+
+    private static final String TLS_PROTOCOL = "TLSv1.2";
+
+    private final FakeMqttEndpoint mqttEndpoint;
+    private final FakeHttpsEndpoint httpsEndpoint;
+    private final FakeAmqpsEndpoint amqpsEndpoint;
+
+    /**
+     * Starts the endpoints on the IoT Hub ports.
+     *
+     * @param keyStorePath the path to the key store with the private key and the certificate of the hub.
+     * @param keyStorePassword the password of the key store and of its key.
+     * @throws IOException if the key store cannot be read, or a port cannot be bound.
+     */
+    public FakeIotHub(String keyStorePath, String keyStorePassword) throws IOException
+    {
+        this(keyStorePath, keyStorePassword, MQTT_PORT, HTTPS_PORT, AMQPS_PORT);
+    }
+
+    /**
+     * Starts the endpoints on the given ports.
+     *
+     * @param keyStorePath the path to the key store with the private key and the certificate of the hub.
+     * @param keyStorePassword the password of the key store and of its key.
+     * @param mqttPort the port of the MQTT endpoint, 0 for any free port.
+     * @param httpsPort the port of the HTTPS endpoint, 0 for any free port.
+     * @param amqpsPort the port of the AMQPS endpoint, 0 for any free port.
+     * @throws IllegalArgumentException if the key store path or password is null or empty.
+     * @throws IOException if the key store cannot be read, or a port cannot be bound.
+     */
+    public FakeIotHub(String keyStorePath, String keyStorePassword, int mqttPort, int httpsPort, int amqpsPort) throws IllegalArgumentException, IOException
+    {
+        if ((keyStorePath == null) || keyStorePath.isEmpty() || (keyStorePassword == null) || keyStorePassword.isEmpty())
+        {
+            throw new IllegalArgumentException("keyStorePath and keyStorePassword cannot be null or empty");
+        }
+
+        SSLContext sslContext = createSslContext(keyStorePath, keyStorePassword.toCharArray());
+        this.mqttEndpoint = new FakeMqttEndpoint(sslContext, mqttPort);
+        try
+        {
+            this.httpsEndpoint = new FakeHttpsEndpoint(sslContext, httpsPort);
+        }
+        catch (IOException e)
+        {
+            this.mqttEndpoint.close();
+            throw e;
+        }
+        try
+        {
+            this.amqpsEndpoint = new FakeAmqpsEndpoint(sslContext, amqpsPort);
+        }
+        catch (IOException e)
+        {
+            this.httpsEndpoint.close();
+            this.mqttEndpoint.close();
+            throw e;
+        }
+
+        this.mqttEndpoint.start();
+        this.httpsEndpoint.start();
+        this.amqpsEndpoint.start();
+    }
+
+    /**
+     * Getter for the port of the MQTT endpoint.
+     *
+     * @return the port of the MQTT endpoint.
+     */
+    public int getMqttPort()
+    {
+        return this.mqttEndpoint.getPort();
+    }
+
+    /**
+     * Getter for the port of the HTTPS endpoint.
+     *
+     * @return the port of the HTTPS endpoint.
+     */
+    public int getHttpsPort()
+    {
+        return this.httpsEndpoint.getPort();
+    }
+
+    /**
+     * Getter for the port of the AMQPS endpoint.
+     *
+     * @return the port of the AMQPS endpoint.
+     */
+    public int getAmqpsPort()
+    {
+        return this.amqpsEndpoint.getPort();
+    }
+
+    /**
+     * Getter for the number of telemetry messages received over MQTT.
+     *
+     * @return the number of telemetry messages received over MQTT.
+     */
+    public long getMqttTelemetryCount()
+    {
+        return this.mqttEndpoint.getTelemetryCount();
+    }
+
+    /**
+     * Getter for the number of telemetry messages received over HTTPS, counting each message of a batch.
+     *
+     * @return the number of telemetry messages received over HTTPS.
+     */
+    public long getHttpsTelemetryCount()
+    {
+        return this.httpsEndpoint.getTelemetryCount();
+    }
+
+    /**
+     * Getter for the number of telemetry messages received over AMQPS.
+     *
+     * @return the number of telemetry messages received over AMQPS.
+     */
+    public long getAmqpsTelemetryCount()
+    {
+        return this.amqpsEndpoint.getTelemetryCount();
+    }
+
+    /**
+     * Stops the endpoints and closes all the connections.
+     *
+     * @throws IOException if the MQTT or AMQPS listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.httpsEndpoint.close();
+        try
+        {
+            this.amqpsEndpoint.close();
+        }
+        finally
+        {
+            this.mqttEndpoint.close();
+        }
+    }
+
+    private static SSLContext createSslContext(String keyStorePath, char[] password) throws IOException
+    {
+        try
+        {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            InputStream input = new FileInputStream(keyStorePath);
+            try
+            {
+                keyStore.load(input, password);
+            }
+            finally
+            {
+                input.close();
+            }
+
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, password);
+            SSLContext sslContext = SSLContext.getInstance(TLS_PROTOCOL);
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+            return sslContext;
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IOException("Cannot load the key store " + keyStorePath + ": " + e.getMessage(), e);
+        }
+    }
+}
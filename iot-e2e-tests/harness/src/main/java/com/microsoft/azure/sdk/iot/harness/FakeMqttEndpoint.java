@@ -0,0 +1,315 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import javax.net.ssl.SSLContext;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Minimal MQTT 3.1.1 broker over TLS that answers the packets sent by the device client
+ * to the IoT Hub, on the topics used by {@code MqttIotHubConnection}.
+ * </p>
+ * <p>
+ * Every connection is accepted, and every subscription is granted with QoS 1. The telemetry on
+ * {@code devices/{deviceId}/messages/events/} is acknowledged and counted, the twin requests on
+ * {@code $iothub/twin/} are answered with an empty twin, and the other publishes are only acknowledged.
+ * Nothing is routed between the clients.
+ * </p>
+ */
+final class FakeMqttEndpoint
+{
+    private static final int CONNECT = 1;
+    private static final int CONNACK = 2;
+    private static final int PUBLISH = 3;
+    private static final int PUBACK = 4;
+    private static final int SUBSCRIBE = 8;
+    private static final int SUBACK = 9;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int UNSUBACK = 11;
+    private static final int PINGREQ = 12;
+    private static final int PINGRESP = 13;
+    private static final int DISCONNECT = 14;
+
+    private static final int GRANTED_QOS = 1;
+    private static final String TELEMETRY_TOPIC_PREFIX = "devices/";
+    private static final String TELEMETRY_TOPIC_SEGMENT = "/messages/events/";
+    private static final String TWIN_GET_TOPIC_PREFIX = "$iothub/twin/GET/";
+    private static final String TWIN_PATCH_TOPIC_PREFIX = "$iothub/twin/PATCH/properties/reported/";
+    private static final String TWIN_RESPONSE_TOPIC_FORMAT = "$iothub/twin/res/%d/%s";
+    private static final String REQUEST_ID_KEY = "?$rid=";
+    private static final byte[] EMPTY_TWIN = "{\"desired\":{\"$version\":1},\"reported\":{\"$version\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<Socket>());
+    private final AtomicLong telemetryCount = new AtomicLong();
+    private final AtomicLong twinVersion = new AtomicLong(1);
+
+    /**
+     * Opens the TLS listening socket.
+     *
+     * @param sslContext the context with the identity of the endpoint.
+     * @param port the port to listen on. The device client always connects to 8883.
+     * @throws IOException if the port cannot be bound.
+     */
+    FakeMqttEndpoint(SSLContext sslContext, int port) throws IOException
+    {
+        this.serverSocket = sslContext.getServerSocketFactory().createServerSocket(port);
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    void start()
+    {
+        this.executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * Closes the listening socket and all the connections.
+     *
+     * @throws IOException if the listening socket cannot be closed.
+     */
+    void close() throws IOException
+    {
+        this.serverSocket.close();
+        synchronized (this.connections)
+        {
+            for (Socket socket : this.connections)
+            {
+                closeQuietly(socket);
+            }
+        }
+        this.executor.shutdownNow();
+    }
+
+    int getPort()
+    {
+        return this.serverSocket.getLocalPort();
+    }
+
+    long getTelemetryCount()
+    {
+        return this.telemetryCount.get();
+    }
+
+    private void acceptConnections()
+    {
+        while (!this.serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.add(socket);
+                this.executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        serve(socket);
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                // the listening socket was closed, or the client went away during the handshake.
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try
+        {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            boolean connected = true;
+            while (connected)
+            {
+                int header = input.read();
+                if (header < 0)
+                {
+                    break;
+                }
+
+                byte[] body = new byte[readRemainingLength(input)];
+                input.readFully(body);
+                switch (header >> 4)
+                {
+                    case CONNECT:
+                        // the session present flag is 0, and the return code is 0 (accepted).
+                        writePacket(output, CONNACK << 4, new byte[] { 0, 0 });
+                        break;
+                    case PUBLISH:
+                        handlePublish(output, header, body);
+                        break;
+                    case SUBSCRIBE:
+                        writePacket(output, SUBACK << 4, grantSubscriptions(body));
+                        break;
+                    case UNSUBSCRIBE:
+                        writePacket(output, UNSUBACK << 4, new byte[] { body[0], body[1] });
+                        break;
+                    case PINGREQ:
+                        writePacket(output, PINGRESP << 4, new byte[0]);
+                        break;
+                    case DISCONNECT:
+                        connected = false;
+                        break;
+                    default:
+                        // PUBACK of the twin responses, and packets this broker does not answer.
+                        break;
+                }
+            }
+        }
+        catch (SocketException | EOFException e)
+        {
+            // the client closed the connection.
+        }
+        catch (IOException e)
+        {
+            System.out.println("MQTT connection failed: " + e.getMessage());
+        }
+        finally
+        {
+            this.connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void handlePublish(OutputStream output, int header, byte[] body) throws IOException
+    {
+        int qos = (header >> 1) & 0x03;
+        int topicLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+        String topic = new String(body, 2, topicLength, StandardCharsets.UTF_8);
+        if (qos > 0)
+        {
+            int packetIdIndex = 2 + topicLength;
+            writePacket(output, PUBACK << 4, new byte[] { body[packetIdIndex], body[packetIdIndex + 1] });
+        }
+
+        if (topic.startsWith(TELEMETRY_TOPIC_PREFIX) && topic.contains(TELEMETRY_TOPIC_SEGMENT))
+        {
+            this.telemetryCount.incrementAndGet();
+        }
+        else if (topic.startsWith(TWIN_GET_TOPIC_PREFIX))
+        {
+            publish(output, String.format(TWIN_RESPONSE_TOPIC_FORMAT, 200, requestIdOf(topic)), EMPTY_TWIN);
+        }
+        else if (topic.startsWith(TWIN_PATCH_TOPIC_PREFIX))
+        {
+            publish(output, String.format(TWIN_RESPONSE_TOPIC_FORMAT, 204, requestIdOf(topic) + "&$version=" + this.twinVersion.incrementAndGet()), new byte[0]);
+        }
+    }
+
+    private static byte[] grantSubscriptions(byte[] body)
+    {
+        // the packet id, then one granted QoS for each topic filter.
+        int count = 0;
+        int index = 2;
+        while (index < body.length)
+        {
+            index += 2 + (((body[index] & 0xFF) << 8) | (body[index + 1] & 0xFF)) + 1;
+            count++;
+        }
+
+        byte[] granted = new byte[2 + count];
+        granted[0] = body[0];
+        granted[1] = body[1];
+        for (int i = 0; i < count; i++)
+        {
+            granted[2 + i] = GRANTED_QOS;
+        }
+        return granted;
+    }
+
+    private static String requestIdOf(String topic)
+    {
+        int index = topic.indexOf(REQUEST_ID_KEY);
+        if (index < 0)
+        {
+            return REQUEST_ID_KEY;
+        }
+
+        int end = topic.indexOf('&', index);
+        return topic.substring(index, (end < 0) ? topic.length() : end);
+    }
+
+    private static void publish(OutputStream output, String topic, byte[] payload) throws IOException
+    {
+        // QoS 0, so there is no packet id.
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[2 + topicBytes.length + payload.length];
+        body[0] = (byte)(topicBytes.length >> 8);
+        body[1] = (byte)topicBytes.length;
+        System.arraycopy(topicBytes, 0, body, 2, topicBytes.length);
+        System.arraycopy(payload, 0, body, 2 + topicBytes.length, payload.length);
+        writePacket(output, PUBLISH << 4, body);
+    }
+
+    private static void writePacket(OutputStream output, int header, byte[] body) throws IOException
+    {
+        synchronized (output)
+        {
+            output.write(header);
+            int remaining = body.length;
+            do
+            {
+                int encoded = remaining & 0x7F;
+                remaining >>>= 7;
+                output.write((remaining > 0) ? (encoded | 0x80) : encoded);
+            }
+            while (remaining > 0);
+            output.write(body);
+            output.flush();
+        }
+    }
+
+    private static int readRemainingLength(DataInputStream input) throws IOException
+    {
+        int length = 0;
+        int shift = 0;
+        int encoded;
+        do
+        {
+            encoded = input.readUnsignedByte();
+            length |= (encoded & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((encoded & 0x80) != 0);
+        return length;
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // already closed.
+        }
+    }
+}
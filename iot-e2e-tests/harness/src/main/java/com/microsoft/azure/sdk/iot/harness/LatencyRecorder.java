@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe record of latencies, in nanoseconds, with their percentiles.
+ */
+public final class LatencyRecorder
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] latencies = new long[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Records one latency.
+     *
+     * @param latencyNanos the latency in nanoseconds.
+     */
+    public synchronized void record(long latencyNanos)
+    {
+        if (this.count == this.latencies.length)
+        {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = latencyNanos;
+    }
+
+    /**
+     * Getter for the number of recorded latencies.
+     *
+     * @return the number of recorded latencies.
+     */
+    public synchronized int getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Computes the latency below which the given fraction of the recorded latencies are,
+     * by the nearest rank method.
+     *
+     * @param fraction the fraction of the latencies, between 0 and 1, like 0.99 for p99.
+     * @return the latency in nanoseconds, or 0 if nothing was recorded.
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1.
+     */
+    public long getPercentile(double fraction) throws IllegalArgumentException
+    {
+        if ((fraction < 0) || (fraction > 1))
+        {
+            throw new IllegalArgumentException("fraction shall be between 0 and 1");
+        }
+
+        long[] sorted;
+        synchronized (this)
+        {
+            sorted = Arrays.copyOf(this.latencies, this.count);
+        }
+
+        if (sorted.length == 0)
+        {
+            return 0;
+        }
+
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import com.microsoft.azure.sdk.iot.device.*;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Runs a number of simulated devices, each one with its own {@link DeviceClient}, that send telemetry
+ * as fast as the client accepts it, and measures the time between the send of each message and its
+ * acknowledgement by the hub.
+ * </p>
+ * <p>
+ * It is meant to run against a {@link FakeIotHub}, which accepts any device, so all the devices share
+ * the same made up key.
+ * </p>
+ */
+public final class LoadDriver
+{
+    private static final String CONNECTION_STRING_FORMAT = "HostName=%s;DeviceId=%s;SharedAccessKey=%s";
+    private static final String DEVICE_ID_FORMAT = "load-device-%d";
+    private static final String DEVICE_KEY = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+    private static final String MESSAGE_FORMAT = "{\"device\":%d,\"sequence\":%d}";
+    private static final String CERTIFICATE_PATH_OPTION = "SetCertificatePath";
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final String hostName;
+    private final String trustedCertPath;
+
+    /**
+     * Creates a driver for the hub in the given host.
+     *
+     * @param hostName the host name of the hub, with a '.', like 127.0.0.1.
+     * @param trustedCertPath the path to the PEM certificate that the devices trust for the hub.
+     * @throws IllegalArgumentException if the host name or the certificate path is null or empty.
+     */
+    public LoadDriver(String hostName, String trustedCertPath) throws IllegalArgumentException
+    {
+        if ((hostName == null) || hostName.isEmpty() || (trustedCertPath == null) || trustedCertPath.isEmpty())
+        {
+            throw new IllegalArgumentException("hostName and trustedCertPath cannot be null or empty");
+        }
+
+        this.hostName = hostName;
+        this.trustedCertPath = trustedCertPath;
+    }
+
+    /**
+     * Opens the devices, sends the messages, and waits for all the acknowledgements or the timeout.
+     *
+     * @param protocol the protocol of all the devices.
+     * @param deviceCount the number of devices.
+     * @param messagesPerDevice the number of messages that each device sends.
+     * @param timeoutMillis the maximum time to wait for the acknowledgements.
+     * @return the report of the run.
+     * @throws IllegalArgumentException if the protocol is null, or a count or the timeout is not positive.
+     * @throws IOException if a device cannot be opened.
+     * @throws URISyntaxException if the host name is not a valid URI.
+     * @throws InterruptedException if the thread is interrupted while waiting for the acknowledgements.
+     */
+    public LoadReport run(IotHubClientProtocol protocol, int deviceCount, int messagesPerDevice, long timeoutMillis)
+            throws IllegalArgumentException, IOException, URISyntaxException, InterruptedException
+    {
+        if ((protocol == null) || (deviceCount < 1) || (messagesPerDevice < 1) || (timeoutMillis < 1))
+        {
+            throw new IllegalArgumentException("protocol cannot be null, and the counts and the timeout shall be positive");
+        }
+
+        List<DeviceClient> clients = new ArrayList<>(deviceCount);
+        try
+        {
+            for (int device = 0; device < deviceCount; device++)
+            {
+                String deviceId = String.format(DEVICE_ID_FORMAT, device);
+                DeviceClient client = new DeviceClient(String.format(CONNECTION_STRING_FORMAT, this.hostName, deviceId, DEVICE_KEY), protocol);
+                clients.add(client);
+                client.setOption(CERTIFICATE_PATH_OPTION, this.trustedCertPath);
+                client.open();
+            }
+
+            final LatencyRecorder latencies = new LatencyRecorder();
+            final AtomicLong failedCount = new AtomicLong();
+            final CountDownLatch acknowledgements = new CountDownLatch(deviceCount * messagesPerDevice);
+            IotHubEventCallback callback = new IotHubEventCallback()
+            {
+                @Override
+                public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+                {
+                    if ((responseStatus == IotHubStatusCode.OK) || (responseStatus == IotHubStatusCode.OK_EMPTY))
+                    {
+                        latencies.record(System.nanoTime() - (Long)callbackContext);
+                    }
+                    else
+                    {
+                        failedCount.incrementAndGet();
+                    }
+                    acknowledgements.countDown();
+                }
+            };
+
+            // the devices take turns, so they all load the hub during the whole run.
+            long start = System.nanoTime();
+            for (int sequence = 0; sequence < messagesPerDevice; sequence++)
+            {
+                for (int device = 0; device < deviceCount; device++)
+                {
+                    Message message = new Message(String.format(MESSAGE_FORMAT, device, sequence));
+                    clients.get(device).sendEventAsync(message, callback, System.nanoTime());
+                }
+            }
+
+            acknowledgements.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            long elapsed = System.nanoTime() - start;
+            return new LoadReport(protocol, deviceCount, (long)deviceCount * messagesPerDevice, failedCount.get(), elapsed, latencies);
+        }
+        finally
+        {
+            for (DeviceClient client : clients)
+            {
+                try
+                {
+                    client.closeNow();
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Cannot close a device: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the devices on each protocol in turn, and prints the reports.
+     *
+     * @param args the host name, the path to the trusted PEM certificate, the number of devices, the number of
+     *             messages per device, optionally the protocols separated by commas (MQTT,HTTPS,AMQPS by default), and
+     *             optionally the key store path and password to start a {@link FakeIotHub} in this process.
+     * @throws Exception if a run fails.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if ((args.length != 4) && (args.length != 5) && (args.length != 7))
+        {
+            System.out.println("Expected arguments: <hostName> <trustedCertPath> <deviceCount> <messagesPerDevice> " +
+                    "[<protocols> [<keyStorePath> <keyStorePassword>]]");
+            return;
+        }
+
+        String[] protocols = ((args.length > 4) ? args[4] : "MQTT,HTTPS,AMQPS").split(",");
+        FakeIotHub hub = (args.length == 7) ? new FakeIotHub(args[5], args[6]) : null;
+        try
+        {
+            LoadDriver driver = new LoadDriver(args[0], args[1]);
+            for (String protocol : protocols)
+            {
+                LoadReport report = driver.run(IotHubClientProtocol.valueOf(protocol.trim()),
+                        Integer.parseInt(args[2]), Integer.parseInt(args[3]), DEFAULT_TIMEOUT_MILLIS);
+                System.out.println(report);
+            }
+
+            if (hub != null)
+            {
+                System.out.println("Hub received " + hub.getMqttTelemetryCount() + " MQTT, " +
+                        hub.getHttpsTelemetryCount() + " HTTPS and " + hub.getAmqpsTelemetryCount() + " AMQPS messages");
+            }
+        }
+        finally
+        {
+            if (hub != null)
+            {
+                hub.close();
+            }
+        }
+    }
+}
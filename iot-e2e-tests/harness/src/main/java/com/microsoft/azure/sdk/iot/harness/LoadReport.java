@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.harness;
+
+import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of one run of the {@link LoadDriver} on one transport.
+ */
+public final class LoadReport
+{
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final IotHubClientProtocol protocol;
+    private final int deviceCount;
+    private final long sentCount;
+    private final long failedCount;
+    private final long elapsedNanos;
+    private final LatencyRecorder latencies;
+
+    LoadReport(IotHubClientProtocol protocol, int deviceCount, long sentCount, long failedCount, long elapsedNanos, LatencyRecorder latencies)
+    {
+        this.protocol = protocol;
+        this.deviceCount = deviceCount;
+        this.sentCount = sentCount;
+        this.failedCount = failedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+    }
+
+    public IotHubClientProtocol getProtocol()
+    {
+        return this.protocol;
+    }
+
+    /**
+     * Getter for the number of messages acknowledged with success.
+     *
+     * @return the number of messages acknowledged with success.
+     */
+    public long getAcknowledgedCount()
+    {
+        return this.latencies.getCount();
+    }
+
+    /**
+     * Getter for the number of messages acknowledged with an error status.
+     *
+     * @return the number of messages acknowledged with an error status.
+     */
+    public long getFailedCount()
+    {
+        return this.failedCount;
+    }
+
+    /**
+     * Getter for the number of messages never acknowledged before the timeout.
+     *
+     * @return the number of messages never acknowledged.
+     */
+    public long getMissingCount()
+    {
+        return this.sentCount - this.latencies.getCount() - this.failedCount;
+    }
+
+    /**
+     * Getter for the throughput of the acknowledged messages.
+     *
+     * @return the number of messages acknowledged with success per second.
+     */
+    public double getThroughput()
+    {
+        return (this.elapsedNanos == 0) ? 0 : (this.latencies.getCount() * NANOS_PER_SECOND / this.elapsedNanos);
+    }
+
+    /**
+     * Getter for the latency between the send of a message and its acknowledgement.
+     *
+     * @param fraction the fraction of the messages, between 0 and 1, like 0.99 for p99.
+     * @return the latency in milliseconds.
+     */
+    public double getLatencyMillis(double fraction)
+    {
+        return this.latencies.getPercentile(fraction) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %d devices, %d sent, %d acknowledged, %d failed, %d missing, %.1f msg/s, " +
+                        "p50 %.2f ms, p99 %.2f ms, p999 %.2f ms",
+                this.protocol, this.deviceCount, this.sentCount, this.getAcknowledgedCount(), this.failedCount,
+                this.getMissingCount(), this.getThroughput(),
+                this.getLatencyMillis(0.5), this.getLatencyMillis(0.99), this.getLatencyMillis(0.999));
+    }
+}
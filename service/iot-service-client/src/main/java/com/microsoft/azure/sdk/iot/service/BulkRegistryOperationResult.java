@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a bulk registry operation. The devices that are not in the errors succeeded.
+ */
+public class BulkRegistryOperationResult
+{
+    private boolean isSuccessful;
+    private List<DeviceRegistryOperationError> errors;
+
+    /**
+     * Getter for the success of the whole operation
+     *
+     * @return true if the operation succeeded for all the devices, false otherwise
+     */
+    public boolean isSuccessful()
+    {
+        return isSuccessful;
+    }
+
+    /**
+     * Getter for the errors of the devices that failed
+     *
+     * @return The unmodifiable list of errors, empty if all the devices succeeded
+     */
+    public List<DeviceRegistryOperationError> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Constructs a BulkRegistryOperationResult object with the provided values
+     * @param isSuccessful the success of the whole operation
+     * @param errors the errors of the devices that failed
+     */
+    BulkRegistryOperationResult(boolean isSuccessful, List<DeviceRegistryOperationError> errors)
+    {
+        //Codes_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_001: [This constructor shall save the provided isSuccessful and errors.]
+        this.isSuccessful = isSuccessful;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+    }
+
+    /**
+     * Constructs a BulkRegistryOperationResult object based off of a BulkRegistryOperationResultParser object
+     * @param parser the object to base the constructed object on
+     */
+    BulkRegistryOperationResult(BulkRegistryOperationResultParser parser)
+    {
+        //Codes_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_003: [If the provided BulkRegistryOperationResultParser object is null, an IllegalArgumentException shall be thrown.]
+        if (parser == null)
+        {
+            throw new IllegalArgumentException("The parser may not be null");
+        }
+
+        //Codes_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_002: [This constructor shall convert the provided parser and each of its errors into a BulkRegistryOperationResult object.]
+        List<DeviceRegistryOperationError> errors = new ArrayList<>();
+        for (DeviceRegistryOperationErrorParser errorParser : parser.getErrors())
+        {
+            errors.add(new DeviceRegistryOperationError(errorParser));
+        }
+
+        this.isSuccessful = parser.isSuccessful();
+        this.errors = Collections.unmodifiableList(errors);
+    }
+}
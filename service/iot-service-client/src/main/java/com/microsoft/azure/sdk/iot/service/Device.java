@@ -520,6 +520,34 @@ public class Device
         return  deviceParser;
     }
 
+    /**
+     * Converts this into an ExportImportDevice object, to be sent in a bulk registry operation.
+     * @param importMode the operation that the registry shall do with this device.
+     * @return the ExportImportDevice object with the identity, status, and authentication of this.
+     * @throws IllegalArgumentException if the provided importMode is null.
+     */
+    ExportImportDevice toExportImportDevice(ImportMode importMode) throws IllegalArgumentException
+    {
+        if (importMode == null)
+        {
+            //Codes_SRS_SERVICE_SDK_JAVA_DEVICE_21_002: [If the provided importMode is null, this method shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("importMode cannot be null");
+        }
+
+        //Codes_SRS_SERVICE_SDK_JAVA_DEVICE_21_001: [This method shall return a new instance of an ExportImportDevice object with the deviceId, eTag, status, statusReason, and authentication of this, and the provided importMode.]
+        ExportImportDevice exportImportDevice = new ExportImportDevice(this.deviceId, this.authentication.getAuthenticationType());
+        exportImportDevice.setAuthentication(this.authentication);
+        exportImportDevice.setImportMode(importMode);
+        exportImportDevice.setStatus(this.status);
+        exportImportDevice.setStatusReason(this.statusReason);
+        if (!Tools.isNullOrEmpty(this.eTag))
+        {
+            exportImportDevice.seteTag(this.eTag);
+        }
+
+        return exportImportDevice;
+    }
+
     /**
      * Retrieves information from the provided parser and saves it to this. All information on this will be overwritten.
      * @param parser the parser to read from
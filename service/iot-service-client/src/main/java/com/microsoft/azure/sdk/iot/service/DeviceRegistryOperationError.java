@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+
+/**
+ * The error of a single device in a bulk registry operation.
+ */
+public class DeviceRegistryOperationError
+{
+    private String deviceId;
+    private String errorCode;
+    private String errorStatus;
+
+    /**
+     * Getter for the id of the device that failed
+     *
+     * @return The deviceId string
+     */
+    public String getDeviceId()
+    {
+        return deviceId;
+    }
+
+    /**
+     * Getter for the error code, like "DeviceAlreadyExists", or the name of the exception if the request of this
+     * device failed as a whole
+     *
+     * @return The errorCode string
+     */
+    public String getErrorCode()
+    {
+        return errorCode;
+    }
+
+    /**
+     * Getter for the description of the error
+     *
+     * @return The errorStatus string
+     */
+    public String getErrorStatus()
+    {
+        return errorStatus;
+    }
+
+    /**
+     * Constructs a DeviceRegistryOperationError object with the provided values
+     * @param deviceId the id of the device that failed
+     * @param errorCode the code of the error
+     * @param errorStatus the description of the error
+     */
+    DeviceRegistryOperationError(String deviceId, String errorCode, String errorStatus)
+    {
+        //Codes_SRS_SERVICE_SDK_JAVA_DEVICE_REGISTRY_OPERATION_ERROR_21_001: [This constructor shall save the provided deviceId, errorCode, and errorStatus.]
+        this.deviceId = deviceId;
+        this.errorCode = errorCode;
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Constructs a DeviceRegistryOperationError object based off of a DeviceRegistryOperationErrorParser object
+     * @param parser the object to base the constructed object on
+     */
+    DeviceRegistryOperationError(DeviceRegistryOperationErrorParser parser)
+    {
+        //Codes_SRS_SERVICE_SDK_JAVA_DEVICE_REGISTRY_OPERATION_ERROR_21_003: [If the provided DeviceRegistryOperationErrorParser object is null, an IllegalArgumentException shall be thrown.]
+        if (parser == null)
+        {
+            throw new IllegalArgumentException("The parser may not be null");
+        }
+
+        //Codes_SRS_SERVICE_SDK_JAVA_DEVICE_REGISTRY_OPERATION_ERROR_21_002: [This constructor shall copy the deviceId, errorCode, and errorStatus of the provided parser.]
+        this.deviceId = parser.getDeviceId();
+        this.errorCode = parser.getErrorCode();
+        this.errorStatus = parser.getErrorStatus();
+    }
+}
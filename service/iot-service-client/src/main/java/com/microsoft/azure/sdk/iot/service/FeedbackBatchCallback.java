@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+/**
+ * Callback for the feedback batches received by a FeedbackReceiver that was started with
+ * {@link FeedbackReceiver#startReceiving(FeedbackBatchCallback)}.
+ */
+public interface FeedbackBatchCallback
+{
+    /**
+     * Called on the receiver thread for each feedback batch, in the order they are received.
+     * The batch is acknowledged to the IoT Hub when this method returns. If it throws, the
+     * batch is abandoned and the IoT Hub delivers it again.
+     *
+     * @param feedbackBatch the received feedback batch
+     */
+    void onFeedbackBatchReceived(FeedbackBatch feedbackBatch);
+}
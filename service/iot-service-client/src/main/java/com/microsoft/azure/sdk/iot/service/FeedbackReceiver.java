@@ -129,6 +129,47 @@ public class FeedbackReceiver extends Receiver
         this.amqpReceive.close();
     }
 
+    /**
+     * Start receiving feedback batches on a dedicated thread, over a connection that stays open until
+     * {@link #stopReceiving()} or {@link #close()} is called. Every batch is passed to the callback
+     * as soon as it arrives, and acknowledged to the IoT Hub when the callback returns. If the
+     * connection is lost, a new one is opened.
+     *
+     * <p>Use this instead of {@link #receive(long)} to process a continuous flow of feedback without
+     * opening a connection for each batch. While receiving, {@link #receive(long)} shall not be used.</p>
+     *
+     * @param feedbackBatchCallback The callback to call for each received feedback batch
+     * @throws IOException This exception is thrown if the input AmqpReceive object is null or the receiver thread cannot be started
+     * @throws IllegalStateException This exception is thrown if the receiver is already receiving
+     */
+    public void startReceiving(FeedbackBatchCallback feedbackBatchCallback) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_015: [The function shall throw IOException if the member AMQPReceive object has not been initialized]
+        if (this.amqpReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_016: [The function shall call startReceiving() on the member AMQPReceive object with the given callback]
+        this.amqpReceive.startReceiving(feedbackBatchCallback);
+    }
+
+    /**
+     * Stop receiving feedback batches started by {@link #startReceiving(FeedbackBatchCallback)} and
+     * close the connection. The function does nothing if the receiver is not receiving.
+     *
+     * @throws IOException This exception is thrown if the input AmqpReceive object is null
+     */
+    public void stopReceiving() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_017: [The function shall throw IOException if the member AMQPReceive object has not been initialized]
+        if (this.amqpReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_018: [The function shall call stopReceiving() on the member AMQPReceive object]
+        this.amqpReceive.stopReceiving();
+    }
+
     /**
      * Receive FeedbackBatch with default timeout
      *
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+/**
+ * Callback for the file upload notifications received by a FileUploadNotificationReceiver that was
+ * started with {@link FileUploadNotificationReceiver#startReceiving(FileUploadNotificationCallback)}.
+ */
+public interface FileUploadNotificationCallback
+{
+    /**
+     * Called on the receiver thread for each file upload notification, in the order they are received.
+     * The notification is acknowledged to the IoT Hub when this method returns. If it throws, the
+     * notification is abandoned and the IoT Hub delivers it again.
+     *
+     * @param fileUploadNotification the received file upload notification
+     */
+    void onFileUploadNotificationReceived(FileUploadNotification fileUploadNotification);
+}
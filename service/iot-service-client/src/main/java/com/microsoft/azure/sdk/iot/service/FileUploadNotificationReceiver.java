@@ -103,6 +103,47 @@ public class FileUploadNotificationReceiver extends Receiver
         return this.amqpFileUploadNotificationReceive.receive(timeoutMs);
     }
 
+    /**
+     * Start receiving file upload notifications on a dedicated thread, over a connection that stays open
+     * until {@link #stopReceiving()} or {@link #close()} is called. Every notification is passed to the
+     * callback as soon as it arrives, and acknowledged to the IoT Hub when the callback returns. If the
+     * connection is lost, a new one is opened.
+     *
+     * <p>Use this instead of {@link #receive(long)} to process a continuous flow of notifications without
+     * opening a connection for each one. While receiving, {@link #receive(long)} shall not be used.</p>
+     *
+     * @param fileUploadNotificationCallback The callback to call for each received notification
+     * @throws IOException This exception is thrown if the input AmqpFileUploadNotificationReceive object is null or the receiver thread cannot be started
+     * @throws IllegalStateException This exception is thrown if the receiver is already receiving
+     */
+    public void startReceiving(FileUploadNotificationCallback fileUploadNotificationCallback) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_014: [The function shall throw IOException if the member AmqpFileUploadNotificationReceive object has not been initialized]
+        if (this.amqpFileUploadNotificationReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_015: [The function shall call startReceiving() on the member AmqpFileUploadNotificationReceive object with the given callback]
+        this.amqpFileUploadNotificationReceive.startReceiving(fileUploadNotificationCallback);
+    }
+
+    /**
+     * Stop receiving file upload notifications started by {@link #startReceiving(FileUploadNotificationCallback)}
+     * and close the connection. The function does nothing if the receiver is not receiving.
+     *
+     * @throws IOException This exception is thrown if the input AmqpFileUploadNotificationReceive object is null
+     */
+    public void stopReceiving() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_016: [The function shall throw IOException if the member AmqpFileUploadNotificationReceive object has not been initialized]
+        if (this.amqpFileUploadNotificationReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_017: [The function shall call stopReceiving() on the member AmqpFileUploadNotificationReceive object]
+        this.amqpFileUploadNotificationReceive.stopReceiving();
+    }
+
     /**
      * Async wrapper for open() operation
      *
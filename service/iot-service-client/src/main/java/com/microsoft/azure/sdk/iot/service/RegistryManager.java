@@ -6,10 +6,12 @@
 package com.microsoft.azure.sdk.iot.service;
 
 import com.google.gson.JsonSyntaxException;
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.DeviceParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.ExportImportDeviceParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.JobPropertiesParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.RegistryStatisticsParser;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
@@ -21,13 +23,18 @@ import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Use the RegistryManager class to manage the identity registry in IoT Hubs.
@@ -36,6 +43,11 @@ public class RegistryManager
 {
     private final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private static final int MAX_DEVICES_PER_BULK_REQUEST = 100;
+    private static final int MAX_CONCURRENT_BULK_REQUESTS = 4;
+    private static final int BULK_REQUEST_DEVICE_ERRORS_STATUS = 400;
+    // Separated from the executor, so the async wrappers of the bulk operations cannot starve their own requests.
+    private final ExecutorService bulkExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_BULK_REQUESTS);
     private IotHubConnectionString iotHubConnectionString;
 
     /**
@@ -94,7 +106,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
@@ -165,7 +177,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -235,20 +247,28 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_106: [The function shall parse the response body while it is read from the connection, and close it.]
+        HttpResponse response = request.sendStreamed();
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
+        try (InputStream bodyStream = response.getBodyStream())
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
+            IotHubExceptionManager.httpResponseVerification(response);
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        try (JsonReader jsonReader = Json.createReader(new StringReader(bodyStr)))
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
+            return readDevices(bodyStream);
+        }
+    }
+
+    private static ArrayList<Device> readDevices(InputStream bodyStream)
+    {
+        try (JsonReader jsonReader = Json.createReader(new InputStreamReader(bodyStream, StandardCharsets.UTF_8)))
         {
             ArrayList<Device> deviceList = new ArrayList<>();
             JsonArray deviceArray = jsonReader.readArray();
@@ -373,7 +393,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, device.toDeviceParser().toJson().getBytes(), sasTokenString);
@@ -476,7 +496,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
@@ -524,6 +544,99 @@ public class RegistryManager
         return future;
     }
 
+    /**
+     * Add the given devices to the IotHub, in requests of up to 100 devices that run in parallel
+     *
+     * @param devices The device objects to add
+     * @return The result of the operation, with the error of each device that was not added
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null device
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     */
+    public BulkRegistryOperationResult addDevices(Collection<Device> devices) throws IllegalArgumentException, IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_087: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_088: [The function shall convert each device to an ExportImportDevice with the import mode Create, and send them in a bulk registry operation]
+        return bulkRegistryOperation(toExportImportDeviceParsers(devices, ImportMode.Create));
+    }
+
+    /**
+     * Async wrapper for addDevices() operation
+     *
+     * @param devices The device objects to add
+     * @return The future object for the requested operation
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null device
+     */
+    public CompletableFuture<BulkRegistryOperationResult> addDevicesAsync(Collection<Device> devices) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_089: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+        final List<ExportImportDeviceParser> parsers = toExportImportDeviceParsers(devices, ImportMode.Create);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_090: [The function shall create an async wrapper around the addDevices() function call, handle the return value or delegate exception]
+        return bulkRegistryOperationAsync(parsers);
+    }
+
+    /**
+     * Update the given devices in the IotHub, in requests of up to 100 devices that run in parallel
+     *
+     * @param devices The device objects to update
+     * @return The result of the operation, with the error of each device that was not updated
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null device
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     */
+    public BulkRegistryOperationResult updateDevices(Collection<Device> devices) throws IllegalArgumentException, IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_092: [The function shall convert each device to an ExportImportDevice with the import mode Update, and send them in a bulk registry operation]
+        return bulkRegistryOperation(toExportImportDeviceParsers(devices, ImportMode.Update));
+    }
+
+    /**
+     * Async wrapper for updateDevices() operation
+     *
+     * @param devices The device objects to update
+     * @return The future object for the requested operation
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null device
+     */
+    public CompletableFuture<BulkRegistryOperationResult> updateDevicesAsync(Collection<Device> devices) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_093: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+        final List<ExportImportDeviceParser> parsers = toExportImportDeviceParsers(devices, ImportMode.Update);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_094: [The function shall create an async wrapper around the updateDevices() function call, handle the return value or delegate exception]
+        return bulkRegistryOperationAsync(parsers);
+    }
+
+    /**
+     * Remove the given devices from the IotHub, in requests of up to 100 devices that run in parallel
+     *
+     * @param deviceIds The ids of the devices to remove
+     * @return The result of the operation, with the error of each device that was not removed
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null or empty id
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     */
+    public BulkRegistryOperationResult removeDevices(Collection<String> deviceIds) throws IllegalArgumentException, IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_095: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null or empty id]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_096: [The function shall create an ExportImportDevice for each id with the import mode Delete, and send them in a bulk registry operation]
+        return bulkRegistryOperation(toDeleteExportImportDeviceParsers(deviceIds));
+    }
+
+    /**
+     * Async wrapper for removeDevices() operation
+     *
+     * @param deviceIds The ids of the devices to remove
+     * @return The future object for the requested operation
+     * @throws IllegalArgumentException This exception is thrown if the collection is null or empty, or has a null or empty id
+     */
+    public CompletableFuture<BulkRegistryOperationResult> removeDevicesAsync(Collection<String> deviceIds) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_097: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null or empty id]
+        final List<ExportImportDeviceParser> parsers = toDeleteExportImportDeviceParsers(deviceIds);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_098: [The function shall create an async wrapper around the removeDevices() function call, handle the return value or delegate exception]
+        return bulkRegistryOperationAsync(parsers);
+    }
+
     /**
      * Get device statistics
      *
@@ -537,7 +650,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlDeviceStatistics();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -606,7 +719,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
         String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
@@ -676,7 +789,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
         String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
@@ -745,7 +858,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -788,6 +901,184 @@ public class RegistryManager
         return future;
     }
 
+    private static List<ExportImportDeviceParser> toExportImportDeviceParsers(Collection<Device> devices, ImportMode importMode)
+    {
+        if (devices == null || devices.isEmpty())
+        {
+            throw new IllegalArgumentException("devices cannot be null or empty");
+        }
+
+        List<ExportImportDeviceParser> parsers = new ArrayList<>(devices.size());
+        for (Device device : devices)
+        {
+            if (device == null)
+            {
+                throw new IllegalArgumentException("devices cannot contain a null device");
+            }
+
+            parsers.add(device.toExportImportDevice(importMode).toExportImportDeviceParser());
+        }
+
+        return parsers;
+    }
+
+    private static List<ExportImportDeviceParser> toDeleteExportImportDeviceParsers(Collection<String> deviceIds)
+    {
+        if (deviceIds == null || deviceIds.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceIds cannot be null or empty");
+        }
+
+        List<ExportImportDeviceParser> parsers = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds)
+        {
+            if (Tools.isNullOrEmpty(deviceId))
+            {
+                throw new IllegalArgumentException("deviceIds cannot contain a null or empty id");
+            }
+
+            ExportImportDeviceParser parser = new ExportImportDeviceParser();
+            parser.setId(deviceId);
+            parser.setImportMode(ImportMode.Delete.toString());
+            parsers.add(parser);
+        }
+
+        return parsers;
+    }
+
+    private CompletableFuture<BulkRegistryOperationResult> bulkRegistryOperationAsync(List<ExportImportDeviceParser> parsers)
+    {
+        final CompletableFuture<BulkRegistryOperationResult> future = new CompletableFuture<>();
+        executor.submit(() ->
+        {
+            try
+            {
+                BulkRegistryOperationResult result = bulkRegistryOperation(parsers);
+                future.complete(result);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private BulkRegistryOperationResult bulkRegistryOperation(List<ExportImportDeviceParser> parsers) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_099: [The function shall split the devices in requests of up to 100 devices, and send up to 4 requests at the same time]
+        List<Future<BulkRegistryOperationResult>> futures = new ArrayList<>();
+        for (int start = 0; start < parsers.size(); start += MAX_DEVICES_PER_BULK_REQUEST)
+        {
+            final List<ExportImportDeviceParser> chunk = parsers.subList(start, Math.min(start + MAX_DEVICES_PER_BULK_REQUEST, parsers.size()));
+            futures.add(bulkExecutor.submit(() -> sendBulkRequest(chunk)));
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_104: [The function shall return a result that is successful only if all the requests succeeded, with the errors of all the requests in the order of the devices]
+        boolean isSuccessful = true;
+        List<DeviceRegistryOperationError> errors = new ArrayList<>();
+        try
+        {
+            for (Future<BulkRegistryOperationResult> future : futures)
+            {
+                BulkRegistryOperationResult chunkResult = future.get();
+                isSuccessful &= chunkResult.isSuccessful();
+                errors.addAll(chunkResult.getErrors());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_105: [If the thread is interrupted while waiting for the requests, the function shall cancel the pending requests and throw IOException]
+            for (Future<BulkRegistryOperationResult> future : futures)
+            {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the bulk registry operation", e);
+        }
+        catch (ExecutionException e)
+        {
+            // sendBulkRequest reports the failures of the hub in the result, so only unexpected errors get here.
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        return new BulkRegistryOperationResult(isSuccessful, errors);
+    }
+
+    private BulkRegistryOperationResult sendBulkRequest(List<ExportImportDeviceParser> chunk)
+    {
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_100: [The function shall send each request with a new SAS token, as a POST of the json array of its devices to the devices URL]
+            StringBuilder devicesJson = new StringBuilder("[");
+            for (ExportImportDeviceParser parser : chunk)
+            {
+                if (devicesJson.length() > 1)
+                {
+                    devicesJson.append(',');
+                }
+                devicesJson.append(parser.toJson());
+            }
+            devicesJson.append(']');
+
+            URL url = iotHubConnectionString.getUrlDevices();
+            String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+            HttpRequest request = CreateRequest(url, HttpMethod.POST, devicesJson.toString().getBytes(StandardCharsets.UTF_8), sasTokenString);
+            HttpResponse response = request.send();
+
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_101: [If the response status is 400 and its error reason has the errors of the devices, the function shall return a result with these errors]
+            if (response.getStatus() == BULK_REQUEST_DEVICE_ERRORS_STATUS)
+            {
+                BulkRegistryOperationResult result = parseDeviceErrors(response.getErrorReason());
+                if (result != null)
+                {
+                    return result;
+                }
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_102: [Otherwise, the function shall verify the response status, and create the result from the response body, or a successful result if the body is empty]
+            IotHubExceptionManager.httpResponseVerification(response);
+            String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+            if (bodyStr.isEmpty())
+            {
+                return new BulkRegistryOperationResult(true, new ArrayList<>());
+            }
+            return new BulkRegistryOperationResult(new BulkRegistryOperationResultParser(bodyStr));
+        }
+        catch (IOException | IotHubException | IllegalArgumentException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_103: [If a request fails, the function shall report an error for each device of the request, with the name of the exception as error code and its message as error status]
+            List<DeviceRegistryOperationError> errors = new ArrayList<>(chunk.size());
+            for (ExportImportDeviceParser parser : chunk)
+            {
+                errors.add(new DeviceRegistryOperationError(parser.getId(), e.getClass().getSimpleName(), e.getMessage()));
+            }
+            return new BulkRegistryOperationResult(false, errors);
+        }
+    }
+
+    private static BulkRegistryOperationResult parseDeviceErrors(byte[] errorReason)
+    {
+        try
+        {
+            BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser(new String(errorReason, StandardCharsets.UTF_8));
+            if (parser.getErrors().isEmpty())
+            {
+                return null;
+            }
+            return new BulkRegistryOperationResult(parser);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // not a bulk result, the response verification reports the error.
+            return null;
+        }
+    }
+
     private String CreateExportJobPropertiesJson(String exportBlobContainerUri, Boolean excludeKeysInExport)
     {
         JobProperties jobProperties = new JobProperties();
@@ -10,6 +10,10 @@ import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -175,25 +179,58 @@ public class ServiceClient
     /**
      * Provide asynchronous access to send()
      *
+     * The message is queued on the open connection and the returned future is completed
+     * when the IoT Hub settles it, so many messages can be outstanding at the same time.
+     *
      * @param deviceId The device identifier for the target device
      * @param message The message for the device
      * @return The future object for the requested operation
      */
     public CompletableFuture<Void> sendAsync(String deviceId, Message message)
     {
-        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call]
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
-        try
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_019: [The function shall fail the future with IOException if the member AMQP sender object has not been initialized]
+        if (this.amqpMessageSender == null)
         {
-            send(deviceId, message);
-            future.complete(null);
-        } catch (Exception e)
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("AMQP sender is not initialized"));
+            return future;
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall call sendAsync() on the member AMQP sender object and return its future]
+        return this.amqpMessageSender.sendAsync(deviceId, message);
+    }
+
+    /**
+     * Send a batch of one-way messages, each to its own device, over the open connection
+     *
+     * All the messages are encoded and queued at once, then streamed as consecutive
+     * deliveries while the link has credit. Each future completes when the IoT Hub settles
+     * its message, so one rejected message does not fail the others.
+     *
+     * @param messages The pairs of device identifier and message for that device
+     * @return One future per message, in the order of the batch
+     * @throws IllegalArgumentException if the batch is null or empty
+     */
+    public List<CompletableFuture<Void>> sendBatchAsync(Collection<Map.Entry<String, Message>> messages) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_020: [The function shall throw IllegalArgumentException if the batch is null or empty]
+        if (messages == null || messages.isEmpty())
         {
-            future.completeExceptionally(e);
+            throw new IllegalArgumentException("messages cannot be null or empty");
         }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_021: [The function shall fail all the futures with IOException if the member AMQP sender object has not been initialized]
+        if (this.amqpMessageSender == null)
+        {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++)
+            {
+                final CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException("AMQP sender is not initialized"));
+                futures.add(future);
+            }
+            return futures;
+        }
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_022: [The function shall call sendBatchAsync() on the member AMQP sender object and return its futures]
+        return this.amqpMessageSender.sendBatchAsync(messages);
     }
 
     /**
@@ -12,6 +12,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
 
 /** 
  * Grants device access to an IoT Hub for the specified amount of time. 
@@ -20,6 +21,29 @@ public final class IotHubServiceSasToken
 {
     long TOKEN_VALID_SECS = 365*24*60*60;
 
+    private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
+
+    /*
+     * Mac.getInstance looks up the provider on every call, so each thread keeps
+     * its own instance. A Mac is not thread safe, but it can be initialized with
+     * a new key and reused by the thread that owns it.
+     */
+    private static final ThreadLocal<Mac> HMAC_SHA256 = new ThreadLocal<Mac>()
+    {
+        @Override
+        protected Mac initialValue()
+        {
+            try
+            {
+                return Mac.getInstance(HMAC_SHA256_ALGORITHM);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     /**
      * The SAS token format. The parameters to be interpolated are, in order:
      * the signature
@@ -84,10 +108,10 @@ public final class IotHubServiceSasToken
             // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_12_004: [The constructor shall create a key from the shared access key signing with HmacSHA256]
             // Get an hmac_sha1 key from the raw key bytes
             byte[] keyBytes = Base64.decodeBase64Local(this.keyValue.getBytes("UTF-8"));
-            SecretKeySpec signingKey = new SecretKeySpec(keyBytes, "HmacSHA256");
+            SecretKeySpec signingKey = new SecretKeySpec(keyBytes, HMAC_SHA256_ALGORITHM);
 
-            // Get an hmac_sha1 Mac instance and initialize with the signing key
-            Mac mac = Mac.getInstance("HmacSHA256");
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_009: [The constructor shall reuse the HmacSHA256 Mac instance of the calling thread.]
+            Mac mac = HMAC_SHA256.get();
             mac.init(signingKey);
 
             // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_12_005: [The constructor shall compute the final signature by url encoding the signed key]
@@ -120,6 +144,17 @@ public final class IotHubServiceSasToken
         return expiresOnDate / 1000;
     }
 
+    /**
+     * Getter for the time, as a UNIX timestamp in seconds, until which the token is valid.
+     *
+     * @return The expiry time of the token.
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_010: [The function shall return the expiry time of the token, in seconds since the UNIX epoch.]
+        return this.expiryTime;
+    }
+
     /**
      * Returns the string representation of the SAS token.
      *
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares the SAS token of a connection string between all the requests made
+ * with it, so the token is signed once instead of on every request.
+ * <p>
+ * The tokens are cached by host name and shared access key name, so the key
+ * itself is never kept as a map key. A connection string with a new key for
+ * the same policy replaces the cached token, and the number of cached tokens
+ * is bounded.
+ * <p>
+ * The token is renewed when it gets close to its expiry. The first request
+ * that finds the token in its renewal window signs a new one, while the
+ * concurrent requests keep using the current token, which is still valid.
+ */
+public final class IotHubServiceSasTokenProvider
+{
+    /* Once less than this part of the token lifetime remains, the token is renewed. */
+    private static final int RENEWAL_LIFETIME_DIVISOR = 10;
+
+    /* A token that expires in less than this many seconds is never handed out. */
+    private static final long EXPIRY_MARGIN_SECS = 60;
+
+    /* Upper bound of the number of cached providers. */
+    private static final int MAX_PROVIDERS = 64;
+
+    /* One provider per host name and shared access key name. */
+    private static final ConcurrentMap<String, IotHubServiceSasTokenProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+    private final IotHubConnectionString iotHubConnectionString;
+    private final String sharedAccessKey;
+    private final AtomicBoolean isRenewing = new AtomicBoolean(false);
+
+    private volatile IotHubServiceSasToken sasToken;
+    private volatile long renewalTime;
+
+    private IotHubServiceSasTokenProvider(IotHubConnectionString iotHubConnectionString)
+    {
+        this.iotHubConnectionString = iotHubConnectionString;
+        this.sharedAccessKey = iotHubConnectionString.getSharedAccessKey();
+    }
+
+    /**
+     * Returns a valid SAS token for the given connection string, signing a new
+     * one only if there is no cached token or if the cached token is close to
+     * its expiry.
+     *
+     * @param iotHubConnectionString Connection string object containing the connection parameters
+     * @return The string representation of a valid SAS token.
+     * @throws IllegalArgumentException This exception is thrown if the connection string is null.
+     */
+    public static String getSasToken(IotHubConnectionString iotHubConnectionString) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_001: [The function shall throw IllegalArgumentException if the input object is null.]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        String hostName = iotHubConnectionString.getHostName();
+        String keyName = iotHubConnectionString.getSharedAccessKeyName();
+        String sharedAccessKey = iotHubConnectionString.getSharedAccessKey();
+        if ((hostName == null) || (keyName == null) || (sharedAccessKey == null))
+        {
+            // nothing to share the token with.
+            return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [The function shall use the same provider for all connection strings with the same host name and shared access key name.]
+        String key = hostName + "/" + keyName;
+        IotHubServiceSasTokenProvider provider = PROVIDERS.get(key);
+        while ((provider == null) || !sharedAccessKey.equals(provider.sharedAccessKey))
+        {
+            IotHubServiceSasTokenProvider newProvider = new IotHubServiceSasTokenProvider(iotHubConnectionString);
+            if (provider == null)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_007: [If there are already 64 providers, the function shall drop one of them before adding a new one.]
+                evictIfFull();
+                provider = PROVIDERS.putIfAbsent(key, newProvider);
+                if (provider == null)
+                {
+                    provider = newProvider;
+                }
+            }
+            else if (PROVIDERS.replace(key, provider, newProvider))
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_006: [If the shared access key changed, the function shall replace the provider, so the token is signed with the new key.]
+                provider = newProvider;
+            }
+            else
+            {
+                // another thread changed the provider in the meantime.
+                provider = PROVIDERS.get(key);
+            }
+        }
+
+        return provider.getToken();
+    }
+
+    private static void evictIfFull()
+    {
+        Iterator<String> keys = PROVIDERS.keySet().iterator();
+        while ((PROVIDERS.size() >= MAX_PROVIDERS) && keys.hasNext())
+        {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private String getToken()
+    {
+        long now = System.currentTimeMillis() / 1000;
+        IotHubServiceSasToken currentToken = this.sasToken;
+
+        if ((currentToken == null) || (now >= currentToken.getExpiryTime() - EXPIRY_MARGIN_SECS))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_003: [If there is no token, or the token expires within a minute, the function shall create a new token before returning.]
+            currentToken = renewExpiredToken(now);
+        }
+        else if ((now >= this.renewalTime) && this.isRenewing.compareAndSet(false, true))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_004: [If the token is in the last tenth of its lifetime, the function shall create a new token, and concurrent calls shall return the current token while it is created.]
+            try
+            {
+                currentToken = renew(now);
+            }
+            finally
+            {
+                this.isRenewing.set(false);
+            }
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_005: [Otherwise, the function shall return the cached token.]
+        return currentToken.toString();
+    }
+
+    private synchronized IotHubServiceSasToken renewExpiredToken(long now)
+    {
+        IotHubServiceSasToken currentToken = this.sasToken;
+        if ((currentToken != null) && (now < currentToken.getExpiryTime() - EXPIRY_MARGIN_SECS))
+        {
+            // another thread renewed it in the meantime.
+            return currentToken;
+        }
+
+        return renew(now);
+    }
+
+    private IotHubServiceSasToken renew(long now)
+    {
+        IotHubServiceSasToken newToken = new IotHubServiceSasToken(this.iotHubConnectionString);
+        long lifetime = newToken.getExpiryTime() - now;
+        this.renewalTime = newToken.getExpiryTime() - (lifetime / RENEWAL_LIFETIME_DIVISOR);
+        this.sasToken = newToken;
+        return newToken;
+    }
+}
@@ -4,7 +4,7 @@
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
@@ -55,6 +55,105 @@ public class DeviceOperations
             String requestId,
             long timeoutInMs) 
             throws IOException, IotHubException, IllegalArgumentException
+    {
+        //Codes_SRS_DEVICE_OPERATIONS_21_022: [If no `customHeaders` are provided, the request shall add to the HTTP header the custom headers set by setHeaders, if any, and clear them.]
+        return request(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, takeHeaders());
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard, and return its response.
+     * The custom headers only apply to this request, so concurrent requests do not share any state.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @param customHeaders the additional headers for this request. Can be {@code null}.
+     * @return the result of the request.
+     * @throws IotHubException This exception is thrown if the response verification failed
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public static HttpResponse request(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> customHeaders)
+            throws IOException, IotHubException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, customHeaders);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
+        HttpResponse response = request.send();
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
+        IotHubExceptionManager.httpResponseVerification(response);
+        
+        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
+        return response;
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard, and return its response without
+     * reading the body, so the caller can parse it while it arrives. The caller must close the
+     * {@link HttpResponse#getBodyStream()} of the returned response.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @param customHeaders the additional headers for this request. Can be {@code null}.
+     * @return the result of the request, with the body left on the connection.
+     * @throws IotHubException This exception is thrown if the response verification failed
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public static HttpResponse requestStreamed(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> customHeaders)
+            throws IOException, IotHubException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, customHeaders);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_023: [The requestStreamed shall create and send the request in the same way as request, but leave the body of the response unread in the response body stream.] */
+        HttpResponse response = request.sendStreamed();
+
+        try
+        {
+            /* Codes_SRS_DEVICE_OPERATIONS_21_024: [If the resulted HttpResponseStatus represents fail, the requestStreamed shall close the response body stream and throw proper Exception by calling httpResponseVerification.] */
+            IotHubExceptionManager.httpResponseVerification(response);
+        }
+        catch (IotHubException | RuntimeException e)
+        {
+            if (response.getBodyStream() != null)
+            {
+                response.getBodyStream().close();
+            }
+            throw e;
+        }
+
+        return response;
+    }
+
+    private static HttpRequest createRequest(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> customHeaders)
+            throws IOException, IllegalArgumentException
     {
         /* Codes_SRS_DEVICE_OPERATIONS_21_001: [The request shall throw IllegalArgumentException if the provided `iotHubConnectionString` is null.] */
         if(iotHubConnectionString == null)
@@ -87,7 +186,7 @@ public class DeviceOperations
         }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_006: [The request shall create a new SASToken with the ServiceConnect rights.] */
-        String sasTokenString = new IotHubServiceSasToken(iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
         /* Codes_SRS_DEVICE_OPERATIONS_21_007: [If the SASToken is null or empty, the request shall throw IOException.] */
          if((sasTokenString == null) || sasTokenString.isEmpty())
         {
@@ -119,33 +218,27 @@ public class DeviceOperations
         /* Codes_SRS_DEVICE_OPERATIONS_21_014: [The request shall add to the HTTP header a `Content-Type` key with `application/json; charset=utf-8`.] */
         request.setHeaderField(CONTENT_TYPE, ACCEPT_VALUE + "; " + ACCEPT_CHARSET);
 
-        if (headers != null)
+        if (customHeaders != null)
         {
             //SRS_DEVICE_OPERATIONS_25_019: [The request shall add to the HTTP header all the additional custom headers set for this request.]
-            for(Map.Entry<String, String> header : headers.entrySet())
+            for(Map.Entry<String, String> header : customHeaders.entrySet())
             {
                 request.setHeaderField(header.getKey(), header.getValue());
             }
-
-            headers = null;
         }
 
-        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
-        HttpResponse response = request.send();
-
-        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
-        IotHubExceptionManager.httpResponseVerification(response);
-        
-        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
-        return response;
+        return request;
     }
 
     /**
      * Sets headers to be used on next HTTP request
      * @param httpHeaders non null and non empty custom headers
      * @throws IllegalArgumentException This exception is thrown if headers were null or empty
+     * @deprecated the headers are shared by all the threads, so a concurrent request may take them.
+     * Pass the headers to {@link #request(IotHubConnectionString, URL, HttpMethod, byte[], String, long, Map)} instead.
      */
-    public static void setHeaders(Map<String, String> httpHeaders) throws IllegalArgumentException
+    @Deprecated
+    public static synchronized void setHeaders(Map<String, String> httpHeaders) throws IllegalArgumentException
     {
         if (httpHeaders == null || httpHeaders.size() == 0)
         {
@@ -156,4 +249,11 @@ public class DeviceOperations
         //SRS_DEVICE_OPERATIONS_25_020: [This method shall set the headers map to be used for next request only.]
         headers = httpHeaders;
     }
+
+    private static synchronized Map<String, String> takeHeaders()
+    {
+        Map<String, String> customHeaders = headers;
+        headers = null;
+        return customHeaders;
+    }
 }
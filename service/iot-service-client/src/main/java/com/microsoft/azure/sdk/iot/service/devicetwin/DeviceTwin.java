@@ -14,17 +14,21 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class DeviceTwin
 {
     private IotHubConnectionString iotHubConnectionString = null;
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private final long USE_DEFAULT_TIMEOUT = 0;
     private final int DEFAULT_PAGE_SIZE = 100;
+    private final int DEFAULT_PREFETCHED_PAGES = 2;
 
     /**
      * Static constructor to create instance from connection string
@@ -89,7 +93,7 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_009: [** The function shall send the created request and get the response **]**
          **Codes_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId.getAndIncrement()), USE_DEFAULT_TIMEOUT);
         String twin = new String(response.getBody(), StandardCharsets.UTF_8);
 
         /*
@@ -113,7 +117,7 @@ public class DeviceTwin
      * @throws IOException This exception is thrown if the IO operation failed
      * @throws IotHubException This exception is thrown if the response verification failed
      */
-    public synchronized void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
+    public void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
     {
         if (device == null || device.getDeviceId() == null || device.getDeviceId().length() == 0)
         {
@@ -168,7 +172,7 @@ public class DeviceTwin
 
         **Codes_SRS_DEVICETWIN_25_020: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++),0);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()),0);
     }
 
     /**
@@ -229,7 +233,7 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_028: [** The function shall verify the response status and throw proper Exception **]**
          */
        /*
-        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), String.valueOf(requestId++));
+        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), String.valueOf(requestId.getAndIncrement()));
         */
     }
 
@@ -295,7 +299,7 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_036: [** The function shall verify the response status and throw proper Exception **]**
          */
         // Currently not implemented on service
-        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId++));
+        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId.getAndIncrement()));
     }
 
     /**
@@ -360,7 +364,7 @@ public class DeviceTwin
          */
         throw new NotImplementedException();
         // Currently not implemented on service
-        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId++));
+        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId.getAndIncrement()));
     }
 
     /**
@@ -371,7 +375,7 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -401,12 +405,64 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_DEVICETWIN_25_052: [ If the pageSize if not provided then a default pageSize of 100 is used for the query.]
         return this.queryTwin(sqlQuery, DEFAULT_PAGE_SIZE);
     }
 
+    /**
+     * Sql style query for twin that provides the results as a stream. The next page of the query is requested as soon
+     * as a page arrives, so the pages are usually available by the time the stream reaches them. Close the stream if
+     * it is not consumed to the end, to stop requesting pages.
+     *
+     * <p>An IOException while requesting or parsing a page is thrown by the stream as an UncheckedIOException, and an
+     * IotHubException is thrown as a RuntimeException with the IotHubException as the cause.</p>
+     *
+     * @param sqlQuery Sql query string to query IotHub for Twin
+     * @param pageSize Size to limit query response by
+     * @param maxPrefetchedPages Maximum number of pages received ahead of the stream. Zero disables prefetching.
+     * @return Stream of the twins returned by the query
+     * @throws IotHubException If the request for the first page was not successful at the IotHub
+     * @throws IOException If input parameters are invalid
+     */
+    public Stream<DeviceTwinDevice> queryTwinStream(String sqlQuery, Integer pageSize, int maxPrefetchedPages) throws IotHubException, IOException
+    {
+        if (sqlQuery == null || sqlQuery.length() == 0)
+        {
+            //Codes_SRS_DEVICETWIN_21_069: [The method shall throw IllegalArgumentException if the query is null or empty.]
+            throw new IllegalArgumentException("Query cannot be null or empty");
+        }
+
+        if (pageSize <= 0)
+        {
+            //Codes_SRS_DEVICETWIN_21_070: [The method shall throw IllegalArgumentException if the page size is zero or negative.]
+            throw new IllegalArgumentException("pagesize cannot be negative or zero");
+        }
+
+        //Codes_SRS_DEVICETWIN_21_071: [The method shall create a new Query Object of Type TWIN with the provided maxPrefetchedPages, and send the request for the first page by calling sendQueryRequest.]
+        Query deviceTwinQuery = new Query(sqlQuery, pageSize, QueryType.TWIN, maxPrefetchedPages);
+        deviceTwinQuery.sendQueryRequest(iotHubConnectionString, iotHubConnectionString.getUrlTwinQuery(), HttpMethod.POST, USE_DEFAULT_TIMEOUT);
+
+        //Codes_SRS_DEVICETWIN_21_072: [The method shall return the stream of the query, with each element parsed as a DeviceTwinDevice.]
+        return deviceTwinQuery.stream().map(this::queryElementToDeviceTwinDevice);
+    }
+
+    /**
+     * Sql style query for twin that provides the results as a stream, using the default page size of 100 and
+     * keeping up to 2 pages received ahead of the stream.
+     *
+     * @param sqlQuery Sql query string to query IotHub for Twin
+     * @return Stream of the twins returned by the query
+     * @throws IotHubException If the request for the first page was not successful at the IotHub
+     * @throws IOException If input parameters are invalid
+     */
+    public Stream<DeviceTwinDevice> queryTwinStream(String sqlQuery) throws IotHubException, IOException
+    {
+        //Codes_SRS_DEVICETWIN_21_073: [If the pageSize and maxPrefetchedPages are not provided, the method shall use a pageSize of 100 and prefetch up to 2 pages.]
+        return this.queryTwinStream(sqlQuery, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCHED_PAGES);
+    }
+
     /**
      * Create a QueryCollection object that can be used to query whole pages of results at a time. QueryCollection objects
      * also allow you to provide a continuation token for the query to pick up from
@@ -414,7 +470,7 @@ public class DeviceTwin
      * @param sqlQuery the sql query to run
      * @return the created QueryCollection object that can be used to query the service
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_069: [This function shall return the results of calling queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE).]
         return this.queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -428,7 +484,7 @@ public class DeviceTwin
      * @param pageSize the number of results to return at a time
      * @return the created QueryCollection object that can be used to query the service
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_070: [This function shall return a new QueryCollection object of type TWIN with the provided sql query and page size.]
         return new QueryCollection(sqlQuery, pageSize, QueryType.TWIN, this.iotHubConnectionString, this.iotHubConnectionString.getUrlTwinQuery(), HttpMethod.POST, USE_DEFAULT_TIMEOUT);
@@ -443,7 +499,7 @@ public class DeviceTwin
      * @throws IotHubException If IotHub could not respond back to the query successfully
      * @throws IOException If input parameter is incorrect
      */
-    public synchronized boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
+    public boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
     {
         if (deviceTwinQuery == null)
         {
@@ -463,7 +519,7 @@ public class DeviceTwin
      * @throws IotHubException If a non successful response from IotHub is received
      * @throws NoSuchElementException If no additional element was found
      */
-    public synchronized DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
+    public DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
     {
         if (deviceTwinQuery == null)
         {
@@ -492,7 +548,7 @@ public class DeviceTwin
      * @return True if the provided deviceTwinQueryCollection has a next page to query, false otherwise
      * @throws IllegalArgumentException if the provided deviceTwinQueryCollection is null
      */
-    public synchronized boolean hasNext(QueryCollection deviceTwinQueryCollection)
+    public boolean hasNext(QueryCollection deviceTwinQueryCollection)
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -515,7 +571,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
     {
         //Codes_SRS_DEVICETWIN_34_075: [This function shall call next(deviceTwinQueryCollection, queryOptions) where queryOptions has the deviceTwinQueryCollection's current page size.]
         QueryOptions options = new QueryOptions();
@@ -538,7 +594,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -612,6 +668,24 @@ public class DeviceTwin
         return job;
     }
 
+    private DeviceTwinDevice queryElementToDeviceTwinDevice(Object element)
+    {
+        if (!(element instanceof String))
+        {
+            //Codes_SRS_DEVICETWIN_21_074: [If an element of the query response is an object other than String, the stream shall throw UncheckedIOException.]
+            throw new UncheckedIOException(new IOException("Received a response that could not be parsed"));
+        }
+
+        try
+        {
+            return jsonToDeviceTwinDevice((String) element);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private DeviceTwinDevice jsonToDeviceTwinDevice(String json) throws IOException
     {
         TwinParser twinParser = new TwinParser();
@@ -13,10 +13,14 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*
     Sql style query IotHub for twin, jobs, device jobs or raw data
@@ -27,6 +31,18 @@ public class Query
     private static final String ITEM_TYPE_KEY = "x-ms-item-type";
     private static final String PAGE_SIZE_KEY = "x-ms-max-item-count";
 
+    // A prefetch task stops if the consumer leaves a full buffer untouched for this long; the consumer then
+    // continues the query on its own thread from the last continuation token it received.
+    private static final long PREFETCH_OFFER_TIMEOUT_MILLISECS = 60000;
+    private static final long PREFETCH_POLL_INTERVAL_MILLISECS = 100;
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(runnable ->
+    {
+        Thread thread = new Thread(runnable, "azure-iot-sdk-QueryPrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private int pageSize;
     private String query;
     private boolean isSqlQuery;
@@ -44,6 +60,10 @@ public class Query
     private HttpMethod httpMethod;
     private long timeout;
 
+    private final int maxPrefetchedPages;
+    private BlockingQueue<QueryPage> prefetchedPages;
+    private Future<?> prefetchTask;
+
     /**
      * Constructor for Query
      * @param query Sql style query to be sent to IotHub
@@ -53,6 +73,26 @@ public class Query
      */
     public Query(String query, int pageSize, QueryType requestQueryType) throws IllegalArgumentException
     {
+        this(query, pageSize, requestQueryType, 0);
+    }
+
+    /**
+     * Constructor for a Query that requests the next page as soon as a page arrives, so the pages are
+     * already available when the caller iterates over them.
+     * @param query Sql style query to be sent to IotHub
+     * @param pageSize page size for the query response to request query over
+     * @param requestQueryType Type of query
+     * @param maxPrefetchedPages maximum number of pages received ahead of the caller. Zero disables prefetching.
+     * @throws IllegalArgumentException if the input parameters are invalid
+     */
+    public Query(String query, int pageSize, QueryType requestQueryType, int maxPrefetchedPages) throws IllegalArgumentException
+    {
+        if (maxPrefetchedPages < 0)
+        {
+            //Codes_SRS_QUERY_21_023: [If the maxPrefetchedPages is negative the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max prefetched pages cannot be negative");
+        }
+
         //Codes_SRS_QUERY_25_001: [The constructor shall validate query and save query, pagesize and request type]
         //Codes_SRS_QUERY_25_002: [If the query is null or empty or is not a valid sql query (containing select and from), the constructor shall throw an IllegalArgumentException.]
         ParserUtility.validateQuery(query);
@@ -78,6 +118,7 @@ public class Query
         this.queryResponse = null;
         //Codes_SRS_QUERY_25_017: [If the query is avaliable then isSqlQuery shall be set to true, and false otherwise.]
         this.isSqlQuery = true;
+        this.maxPrefetchedPages = maxPrefetchedPages;
     }
 
     /**
@@ -108,6 +149,7 @@ public class Query
         this.responseQueryType = QueryType.UNKNOWN;
         this.queryResponse = null;
         this.isSqlQuery = false;
+        this.maxPrefetchedPages = 0;
     }
 
     /**
@@ -172,18 +214,42 @@ public class Query
         this.httpMethod = method;
         this.timeout = timeoutInMs;
 
+        // A new request starts a new sequence of pages, so the pages prefetched for the previous one are dropped.
+        this.cancelPrefetch();
+
+        QueryPage page = this.requestPage(this.requestContinuationToken, this.responseQueryType);
+        this.setCurrentPage(page);
+
+        if (this.maxPrefetchedPages > 0 && this.responseContinuationToken != null)
+        {
+            //Codes_SRS_QUERY_21_024: [If prefetching is enabled and the response has a continuation token, the method shall start requesting the next pages in the background, keeping at most maxPrefetchedPages pages that were not consumed yet.]
+            this.startPrefetch();
+        }
+
+        return this.queryResponse;
+    }
+
+    /**
+     * Requests one page of this query from the IotHub. This method does not change the state of the query,
+     * so it can be called from the prefetch task.
+     * @param continuationToken token for the page to request. Can be {@code null}
+     * @param previousQueryType type of the previous page, used if the response does not provide one
+     * @return the received page
+     * @throws IOException If the response type is unknown or does not match the request type
+     * @throws IotHubException If HTTP response other then status ok is received
+     */
+    private QueryPage requestPage(String continuationToken, QueryType previousQueryType) throws IOException, IotHubException
+    {
         byte[] payload = null;
         Map<String, String> queryHeaders = new HashMap<>();
 
-        if (this.requestContinuationToken != null)
+        if (continuationToken != null)
         {
-            queryHeaders.put(CONTINUATION_TOKEN_KEY, requestContinuationToken);
+            queryHeaders.put(CONTINUATION_TOKEN_KEY, continuationToken);
         }
         //Codes_SRS_QUERY_25_007: [The method shall set the http headers x-ms-continuation and x-ms-max-item-count with request continuation token and page size if they were not null.]
         queryHeaders.put(PAGE_SIZE_KEY, String.valueOf(pageSize));
 
-        DeviceOperations.setHeaders(queryHeaders);
-
         if (isSqlQuery)
         {
             //Codes_SRS_QUERY_25_008: [The method shall obtain the serilaized query by using QueryRequestParser.]
@@ -196,9 +262,18 @@ public class Query
         }
 
         //Codes_SRS_QUERY_25_009: [The method shall use the provided HTTP Method and send request to IotHub with the serialized body over the provided URL.]
-        HttpResponse httpResponse = DeviceOperations.request(iotHubConnectionString, url, method, payload, null, timeoutInMs);
+        //Codes_SRS_QUERY_21_031: [The method shall parse the response body while it is read from the connection, and close it.]
+        HttpResponse httpResponse = DeviceOperations.requestStreamed(this.iotHubConnectionString, this.url, this.httpMethod, payload, null, this.timeout, queryHeaders);
+        try (InputStream bodyStream = httpResponse.getBodyStream())
+        {
+            return this.readPage(httpResponse, bodyStream, previousQueryType);
+        }
+    }
 
-        this.responseContinuationToken = null;
+    private QueryPage readPage(HttpResponse httpResponse, InputStream bodyStream, QueryType previousQueryType) throws IOException
+    {
+        String responseContinuationToken = null;
+        QueryType responseQueryType = previousQueryType;
         Map<String, String> headers = httpResponse.getHeaderFields();
         //Codes_SRS_QUERY_25_010: [The method shall read the continuation token (x-ms-continuation) and response type (x-ms-item-type) from the HTTP Headers and save it.]
         for (Map.Entry<String, String> header : headers.entrySet())
@@ -206,31 +281,161 @@ public class Query
             switch (header.getKey())
             {
                 case CONTINUATION_TOKEN_KEY:
-                    this.responseContinuationToken = header.getValue();
+                    responseContinuationToken = header.getValue();
                     break;
                 case ITEM_TYPE_KEY:
-                    this.responseQueryType = QueryType.fromString(header.getValue());
+                    responseQueryType = QueryType.fromString(header.getValue());
                     break;
                 default:
                     break;
             }
         }
 
-        if (this.responseQueryType == null || this.responseQueryType == QueryType.UNKNOWN)
+        if (responseQueryType == null || responseQueryType == QueryType.UNKNOWN)
         {
             //Codes_SRS_QUERY_25_012: [If the response type is Unknown or not found then this method shall throw IOException.]
             throw new IOException("Query response type is not defined by IotHub");
         }
 
-        if (this.requestQueryType != this.responseQueryType)
+        if (this.requestQueryType != responseQueryType)
         {
             //Codes_SRS_QUERY_25_011: [If the request type and response does not match then the method shall throw IOException.]
             throw new IOException("Query response does not match query request");
         }
 
         //Codes_SRS_QUERY_25_013: [The method shall create a QueryResponse object with the contents from the response body and save it.]
-        this.queryResponse = new QueryResponse(new String(httpResponse.getBody()));
-        return this.queryResponse;
+        return new QueryPage(new QueryResponse(bodyStream), responseContinuationToken, responseQueryType);
+    }
+
+    private void setCurrentPage(QueryPage page)
+    {
+        this.responseContinuationToken = page.continuationToken;
+        this.responseQueryType = page.queryType;
+        this.queryResponse = page.queryResponse;
+    }
+
+    private void startPrefetch()
+    {
+        final BlockingQueue<QueryPage> pages = new ArrayBlockingQueue<>(this.maxPrefetchedPages);
+        final String continuationToken = this.responseContinuationToken;
+        final QueryType queryType = this.responseQueryType;
+
+        this.prefetchedPages = pages;
+        this.prefetchTask = PREFETCH_EXECUTOR.submit(() -> this.prefetchPages(continuationToken, queryType, pages));
+    }
+
+    /**
+     * Body of the prefetch task. Each page is requested with the continuation token of the previous one and
+     * added to the given queue, waiting while the queue is full. A failed request is added to the queue as
+     * well and ends the task, so the caller receives the failure in the same order as the pages.
+     */
+    private void prefetchPages(String continuationToken, QueryType queryType, BlockingQueue<QueryPage> pages)
+    {
+        String nextContinuationToken = continuationToken;
+        QueryType nextQueryType = queryType;
+
+        try
+        {
+            while (nextContinuationToken != null && !Thread.currentThread().isInterrupted())
+            {
+                QueryPage page;
+                try
+                {
+                    page = this.requestPage(nextContinuationToken, nextQueryType);
+                }
+                catch (IOException | IotHubException | RuntimeException e)
+                {
+                    page = new QueryPage(e);
+                }
+
+                if (!pages.offer(page, PREFETCH_OFFER_TIMEOUT_MILLISECS, TimeUnit.MILLISECONDS) || page.exception != null)
+                {
+                    return;
+                }
+
+                nextContinuationToken = page.continuationToken;
+                nextQueryType = page.queryType;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // The prefetch was cancelled.
+        }
+    }
+
+    /**
+     * Replaces the current page by the next prefetched one, waiting for it if it was not received yet.
+     * @return {@code true} if a prefetched page was used, or {@code false} if there is no prefetch task
+     *         that can provide the next page, in which case the caller shall request it.
+     * @throws IOException if the request for the next page failed or the wait was interrupted
+     * @throws IotHubException if the request for the next page was not successful at the Hub
+     */
+    private boolean continueWithPrefetchedPage() throws IOException, IotHubException
+    {
+        if (this.prefetchedPages == null)
+        {
+            return false;
+        }
+
+        QueryPage page;
+        try
+        {
+            page = this.prefetchedPages.poll(PREFETCH_POLL_INTERVAL_MILLISECS, TimeUnit.MILLISECONDS);
+            while (page == null && !this.prefetchTask.isDone())
+            {
+                page = this.prefetchedPages.poll(PREFETCH_POLL_INTERVAL_MILLISECS, TimeUnit.MILLISECONDS);
+            }
+            if (page == null)
+            {
+                // The task may have added its last page right before it finished.
+                page = this.prefetchedPages.poll();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next page of the query");
+        }
+
+        if (page == null)
+        {
+            this.cancelPrefetch();
+            return false;
+        }
+
+        if (page.exception != null)
+        {
+            //Codes_SRS_QUERY_21_026: [If the request for a prefetched page failed, hasNext shall throw the exception of that request, and the next call shall request the page again.]
+            this.cancelPrefetch();
+            if (page.exception instanceof IOException)
+            {
+                throw (IOException) page.exception;
+            }
+            else if (page.exception instanceof IotHubException)
+            {
+                throw (IotHubException) page.exception;
+            }
+            throw (RuntimeException) page.exception;
+        }
+
+        this.requestContinuationToken = this.responseContinuationToken;
+        this.setCurrentPage(page);
+        return true;
+    }
+
+    /**
+     * Stops requesting pages in the background and drops the pages that were already prefetched. The query
+     * stays usable, the next pages are then requested when they are needed.
+     */
+    public void cancelPrefetch()
+    {
+        //Codes_SRS_QUERY_21_027: [The method shall stop the prefetch task, if any, and drop the prefetched pages.]
+        if (this.prefetchTask != null)
+        {
+            this.prefetchTask.cancel(true);
+            this.prefetchTask = null;
+        }
+        this.prefetchedPages = null;
     }
 
     /**
@@ -255,8 +460,12 @@ public class Query
         boolean isNextAvailable = this.queryResponse.hasNext();
         if (!isNextAvailable && this.getContinuationToken() != null)
         {
-            //Codes_SRS_QUERY_25_021: [If no further query response is available, then this method shall continue to request query to IotHub if continuation token is available.]
-            this.continueQuery(this.getContinuationToken());
+            //Codes_SRS_QUERY_21_025: [If no further query response is available and a page was prefetched, the method shall continue with the prefetched page, waiting for it if it was not received yet.]
+            if (!this.continueWithPrefetchedPage())
+            {
+                //Codes_SRS_QUERY_25_021: [If no further query response is available, then this method shall continue to request query to IotHub if continuation token is available.]
+                this.continueQuery(this.getContinuationToken());
+            }
             return this.queryResponse.hasNext();
         }
         else
@@ -287,4 +496,89 @@ public class Query
        }
 
     }
+
+    /**
+     * Provides the remaining elements of this query as a sequential stream. The pages are requested while the
+     * stream is consumed, or ahead of it if prefetching is enabled. Closing the stream cancels the prefetch.
+     *
+     * <p>Since a stream cannot throw checked exceptions, an IOException thrown while requesting a page is
+     * wrapped in an UncheckedIOException and an IotHubException is wrapped in a RuntimeException.</p>
+     *
+     * @return a stream over the elements in the query response
+     */
+    public Stream<Object> stream()
+    {
+        //Codes_SRS_QUERY_21_028: [The method shall return a sequential stream over the elements returned by next, for as long as hasNext returns true.]
+        Iterator<Object> iterator = new Iterator<Object>()
+        {
+            /** True after hasNext found an element that next did not return yet, so next does not probe again. */
+            private boolean isNextAvailable;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (this.isNextAvailable)
+                {
+                    return true;
+                }
+
+                try
+                {
+                    this.isNextAvailable = Query.this.hasNext();
+                    return this.isNextAvailable;
+                }
+                catch (IOException e)
+                {
+                    //Codes_SRS_QUERY_21_029: [If requesting a page throws IOException, the stream shall throw UncheckedIOException, and if it throws IotHubException, the stream shall throw RuntimeException with it as the cause.]
+                    throw new UncheckedIOException(e);
+                }
+                catch (IotHubException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public Object next()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                this.isNextAvailable = false;
+                return Query.this.queryResponse.next();
+            }
+        };
+
+        //Codes_SRS_QUERY_21_030: [Closing the stream shall cancel the prefetch.]
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::cancelPrefetch);
+    }
+
+    /**
+     * One page of a query response, or the failure of the request for it.
+     */
+    private static final class QueryPage
+    {
+        private final QueryResponse queryResponse;
+        private final String continuationToken;
+        private final QueryType queryType;
+        private final Exception exception;
+
+        private QueryPage(QueryResponse queryResponse, String continuationToken, QueryType queryType)
+        {
+            this.queryResponse = queryResponse;
+            this.continuationToken = continuationToken;
+            this.queryType = queryType;
+            this.exception = null;
+        }
+
+        private QueryPage(Exception exception)
+        {
+            this.queryResponse = null;
+            this.continuationToken = null;
+            this.queryType = null;
+            this.exception = exception;
+        }
+    }
 }
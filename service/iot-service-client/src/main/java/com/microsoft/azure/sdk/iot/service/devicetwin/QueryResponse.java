@@ -8,6 +8,9 @@ package com.microsoft.azure.sdk.iot.service.devicetwin;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 /**
@@ -35,6 +38,24 @@ public class QueryResponse implements Iterator<Object>
         this.responseElementsIterator = responseParser.getJsonItems().iterator();
     }
 
+    /**
+     * Creates an object for the query response, parsing the json while it is read from the stream
+     * @param jsonStream stream with the json response for query to parse
+     * @throws IOException If the json response could not be read from the stream
+     */
+    QueryResponse(InputStream jsonStream) throws IOException
+    {
+        if (jsonStream == null)
+        {
+            //Codes_SRS_QUERY_RESPONSE_21_001: [If the jsonStream is null, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("response cannot be null");
+        }
+
+        //Codes_SRS_QUERY_RESPONSE_21_002: [The constructor shall parse the json response as UTF-8 while it is read from the stream, using QueryResponseParser, and set the iterator.]
+        QueryResponseParser responseParser = new QueryResponseParser(new InputStreamReader(jsonStream, StandardCharsets.UTF_8));
+        this.responseElementsIterator = responseParser.getJsonItems().iterator();
+    }
+
     /**
      * returns the availability of next response
      * @return true if present and false otherwise
@@ -14,19 +14,24 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * JobClient enables service client to schedule and cancel jobs for a group of devices using the IoTHub.
+ * A single instance can be used from multiple threads at the same time, but each {@link Query} must only be
+ * iterated by one thread.
  */
 public class JobClient
 {
     private final static long USE_DEFAULT_TIMEOUT = 0L;
     private final static long MAX_TIMEOUT = Integer.MAX_VALUE - 24000;
     private final static Integer DEFAULT_PAGE_SIZE = 100;
+    private final static int DEFAULT_PREFETCHED_PAGES = 2;
 
     private final static byte[] EMPTY_JSON = "{}".getBytes();
 
@@ -70,7 +75,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleUpdateTwin(
+    public JobResult scheduleUpdateTwin(
             String jobId,
             String queryCondition,
             DeviceTwinDevice updateTwin,
@@ -143,7 +148,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleDeviceMethod(
+    public JobResult scheduleDeviceMethod(
             String jobId,
             String queryCondition,
             String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload,
@@ -210,7 +215,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult getJob(String jobId)
+    public JobResult getJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -249,7 +254,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult cancelJob(String jobId)
+    public JobResult cancelJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -337,7 +342,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -366,12 +371,74 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_038: [If the pageSize is not specified, default pageSize of 100 shall be used .]
         return queryDeviceJob(sqlQuery, DEFAULT_PAGE_SIZE);
     }
 
+    /**
+     * Query for device Job that provides the results as a stream. The next page of the query is requested as soon
+     * as a page arrives, so the pages are usually available by the time the stream reaches them. Close the stream if
+     * it is not consumed to the end, to stop requesting pages.
+     *
+     * <p>An IOException while requesting or parsing a page is thrown by the stream as an UncheckedIOException, and an
+     * IotHubException is thrown as a RuntimeException with the IotHubException as the cause.</p>
+     *
+     * @param sqlQuery sql style query over device.jobs
+     * @param pageSize the value to which to limit the job response size by
+     * @param maxPrefetchedPages maximum number of pages received ahead of the stream. Zero disables prefetching.
+     * @return Stream of the job results returned by the query
+     * @throws IotHubException When IotHub fails to respond to the request for the first page
+     * @throws IOException When any of the parameters are incorrect
+     */
+    public Stream<JobResult> queryDeviceJobStream(String sqlQuery, Integer pageSize, int maxPrefetchedPages) throws IotHubException, IOException
+    {
+        if (sqlQuery == null || sqlQuery.length() == 0)
+        {
+            //Codes_SRS_JOBCLIENT_21_036: [If the sqlQuery is null or empty, the queryDeviceJobStream shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("Query cannot be null or empty");
+        }
+
+        if (pageSize <= 0)
+        {
+            //Codes_SRS_JOBCLIENT_21_037: [If the pageSize is zero or negative, the queryDeviceJobStream shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("pagesize cannot be negative or zero");
+        }
+
+        //Codes_SRS_JOBCLIENT_21_038: [The queryDeviceJobStream shall create a query object for the type DEVICE_JOB with the provided maxPrefetchedPages, and send the request for the first page by calling sendQueryRequest.]
+        Query deviceJobQuery = new Query(sqlQuery, pageSize, QueryType.DEVICE_JOB, maxPrefetchedPages);
+        deviceJobQuery.sendQueryRequest(iotHubConnectionString, iotHubConnectionString.getUrlTwinQuery(), HttpMethod.POST, MAX_TIMEOUT);
+
+        //Codes_SRS_JOBCLIENT_21_039: [The queryDeviceJobStream shall return the stream of the query, with each element parsed as a JobResult.]
+        return deviceJobQuery.stream().map(JobClient::queryElementToJobResult);
+    }
+
+    /**
+     * Query for device Job that provides the results as a stream, using the default page size of 100 and keeping
+     * up to 2 pages received ahead of the stream.
+     * @param sqlQuery sql style query over device.jobs
+     * @return Stream of the job results returned by the query
+     * @throws IotHubException When IotHub fails to respond to the request for the first page
+     * @throws IOException When any of the parameters are incorrect
+     */
+    public Stream<JobResult> queryDeviceJobStream(String sqlQuery) throws IotHubException, IOException
+    {
+        //Codes_SRS_JOBCLIENT_21_040: [If the pageSize and maxPrefetchedPages are not specified, the queryDeviceJobStream shall use a pageSize of 100 and prefetch up to 2 pages.]
+        return queryDeviceJobStream(sqlQuery, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCHED_PAGES);
+    }
+
+    private static JobResult queryElementToJobResult(Object element)
+    {
+        if (!(element instanceof String))
+        {
+            //Codes_SRS_JOBCLIENT_21_041: [If an element of the query response is an object other than String, the stream shall throw UncheckedIOException.]
+            throw new UncheckedIOException(new IOException("Received a response that could not be parsed"));
+        }
+
+        return new JobResult(((String) element).getBytes());
+    }
+
     /**
      * returns the availability of next job result in response. Query's further if page size has been met
      * @param query Query for which to look for next job response by
@@ -379,7 +446,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException if any of the input parameters are incorrect
      */
-    public synchronized boolean hasNextJob(Query query) throws IotHubException, IOException
+    public boolean hasNextJob(Query query) throws IotHubException, IOException
     {
         if (query == null)
         {
@@ -398,7 +465,7 @@ public class JobClient
      * @throws IOException if any of the input parameters are incorrect
      * @throws NoSuchElementException if called when no further responses are left
      */
-    public synchronized JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
+    public JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
     {
         if (query == null)
         {
@@ -430,7 +497,7 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
     {
         if (pageSize <= 0)
         {
@@ -455,7 +522,7 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_043: [If the pageSize is not specified, default pageSize of 100 shall be used.]
         return queryJobResponse(jobType, jobStatus, DEFAULT_PAGE_SIZE);
@@ -7,6 +7,7 @@ package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.deps.serializer.FileUploadNotificationParser;
 import com.microsoft.azure.sdk.iot.service.FileUploadNotification;
+import com.microsoft.azure.sdk.iot.service.FileUploadNotificationCallback;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
@@ -14,13 +15,21 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
  * overriding the events what are needed to handle
  * high level open, close methods and feedback received event.
+ *
+ * Besides receive(), which connects for each call, startReceiving() runs a reactor
+ * on its own thread that keeps one link open and passes every notification to a
+ * callback until stopReceiving() is called, reconnecting if the connection is lost.
  */
 public class AmqpFileUploadNotificationReceive extends BaseHandler implements AmqpFeedbackReceivedEvent
 {
@@ -34,6 +43,13 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
     private Queue<FileUploadNotification> fileUploadNotificationQueue;
     private static final int REACTOR_TIMEOUT = 3141; // reactor timeout in milliseconds
 
+    private static final int PERSISTENT_REACTOR_TIMEOUT = 100; // reactor select timeout in milliseconds
+    private static final int RECONNECT_DELAY = 5000; // time between two connection attempts in milliseconds
+    private static final int CLOSE_TIMEOUT = 10000; // time to wait for the reactor to close the connection in milliseconds
+    private ExecutorService persistentReceiveExecutor = null;
+    private volatile Reactor persistentReactor = null;
+    private volatile boolean isStopRequested = false;
+
     /**
      * Constructor to set up connection parameters
      * @param hostName The address string of the service (example: AAA.BBB.CCC)
@@ -87,6 +103,8 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
      */
     public synchronized void close()
     {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_011: [The function shall stop receiving if it was started.]
+        stopReceiving();
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_25_004: [The function shall invalidate the member AmqpsReceiveHandler object]
         amqpReceiveHandler = null;
         if ( fileUploadNotificationQueue!= null && !fileUploadNotificationQueue.isEmpty())
@@ -96,6 +114,150 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
         fileUploadNotificationQueue = null;
     }
 
+    /**
+     * Start receiving file upload notifications on a dedicated thread, over a link that stays open
+     * until stopReceiving() is called. Each notification is passed to the callback and acknowledged
+     * when the callback returns.
+     * @param fileUploadNotificationCallback The callback to call for each received notification
+     * @throws IOException This exception is thrown if the reactor cannot be created
+     */
+    public synchronized void startReceiving(FileUploadNotificationCallback fileUploadNotificationCallback) throws IOException
+    {
+        if (fileUploadNotificationCallback == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_012: [The function shall throw IllegalArgumentException if the callback is null.]
+            throw new IllegalArgumentException("fileUploadNotificationCallback cannot be null");
+        }
+        if (persistentReceiveExecutor != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_013: [The function shall throw IllegalStateException if the receiver is already receiving.]
+            throw new IllegalStateException("The receiver is already receiving");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_014: [The function shall create a persistent AmqpFileUploadNotificationReceivedHandler that parses each received Json string to a FileUploadNotification and passes it to the callback.]
+        final AmqpFileUploadNotificationReceivedHandler handler = new AmqpFileUploadNotificationReceivedHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol,
+                notificationJson ->
+                {
+                    try
+                    {
+                        fileUploadNotificationCallback.onFileUploadNotificationReceived(parseFileUploadNotification(notificationJson));
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }, true);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_015: [The function shall initialize a Proton reactor and run it on a dedicated thread.]
+        final Reactor firstReactor = Proton.reactor();
+        this.isStopRequested = false;
+        this.persistentReactor = firstReactor;
+        this.persistentReceiveExecutor = Executors.newSingleThreadExecutor();
+        this.persistentReceiveExecutor.submit(() -> runPersistentReceive(firstReactor, handler));
+    }
+
+    /**
+     * Stop receiving file upload notifications, close the link and wait for the receiver thread to finish.
+     * If the receiver is not receiving, the function does nothing.
+     */
+    public synchronized void stopReceiving()
+    {
+        if (persistentReceiveExecutor == null)
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_016: [The function shall request the reactor thread to close the connection and wait for it to finish.]
+        isStopRequested = true;
+        Reactor currentReactor = this.persistentReactor;
+        if (currentReactor != null)
+        {
+            currentReactor.wakeup();
+        }
+        persistentReceiveExecutor.shutdown();
+        try
+        {
+            persistentReceiveExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        persistentReceiveExecutor = null;
+        persistentReactor = null;
+    }
+
+    private void runPersistentReceive(Reactor firstReactor, AmqpFileUploadNotificationReceivedHandler handler)
+    {
+        // All the proton objects are only touched on this thread.
+        Reactor runningReactor = firstReactor;
+        while (runningReactor != null)
+        {
+            runningReactor.setTimeout(PERSISTENT_REACTOR_TIMEOUT);
+            runningReactor.connection(handler);
+            runningReactor.start();
+            long nextConnectTime = System.currentTimeMillis() + RECONNECT_DELAY;
+            long closeDeadline = 0;
+            while (runningReactor.process())
+            {
+                if (isStopRequested && closeDeadline == 0)
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_017: [On stop, the reactor thread shall close the handler and stop once the connection is released or the close timeout expires.]
+                    handler.close();
+                    closeDeadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+                }
+
+                if (closeDeadline != 0)
+                {
+                    if (handler.isClosed() || System.currentTimeMillis() > closeDeadline)
+                    {
+                        break;
+                    }
+                }
+                else if (handler.isConnectionNeeded() && System.currentTimeMillis() >= nextConnectTime)
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVE_21_018: [The reactor thread shall open a new connection if the previous one was lost, waiting RECONNECT_DELAY milliseconds between two attempts.]
+                    runningReactor.connection(handler);
+                    nextConnectTime = System.currentTimeMillis() + RECONNECT_DELAY;
+                }
+            }
+
+            runningReactor.stop();
+            runningReactor.free();
+            runningReactor = nextPersistentReactor();
+        }
+    }
+
+    /**
+     * Create the reactor that replaces one that ran out of work after losing its connection.
+     * @return the new reactor, or null if the receiver is stopping
+     */
+    private Reactor nextPersistentReactor()
+    {
+        while (!isStopRequested)
+        {
+            try
+            {
+                Thread.sleep(RECONNECT_DELAY);
+                if (!isStopRequested)
+                {
+                    Reactor newReactor = Proton.reactor();
+                    this.persistentReactor = newReactor;
+                    return newReactor;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                return null;
+            }
+            catch (IOException e)
+            {
+                // try again after the next delay
+            }
+        }
+        return null;
+    }
+
     /**
      * Synchronized call to receive feedback batch
      * Hide the event based receiving mechanism from the user API
@@ -156,11 +318,7 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
 
         try
         {
-            FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(feedbackJson);
-
-            fileUploadNotification = new FileUploadNotification(notificationParser.getDeviceId(),
-                    notificationParser.getBlobUri(), notificationParser.getBlobName(), notificationParser.getLastUpdatedTime(),
-                    notificationParser.getBlobSizeInBytesTag(), notificationParser.getEnqueuedTimeUtc());
+            fileUploadNotification = parseFileUploadNotification(feedbackJson);
 
             fileUploadNotificationQueue.add(fileUploadNotification);
         }
@@ -174,4 +332,13 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
             System.out.println("Service threw something mysteriously dangerous, message abandoned.");
         }
     }
+
+    private static FileUploadNotification parseFileUploadNotification(String notificationJson) throws IOException
+    {
+        FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(notificationJson);
+
+        return new FileUploadNotification(notificationParser.getDeviceId(),
+                notificationParser.getBlobUri(), notificationParser.getBlobName(), notificationParser.getLastUpdatedTime(),
+                notificationParser.getBlobSizeInBytesTag(), notificationParser.getEnqueuedTimeUtc());
+    }
 }
@@ -12,8 +12,10 @@ import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Modified;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.engine.impl.TransportInternal;
 import org.apache.qpid.proton.reactor.FlowController;
@@ -28,6 +30,10 @@ import java.util.Map;
  * Contains and sets connection parameters (path, port, endpoint)
  * Maintains the layers of AMQP protocol (Link, Session, Connection, Transport)
  * Creates and sets SASL authentication for transport
+ *
+ * In persistent mode the link stays open after a delivery, each delivery is settled
+ * after the FeedbackReceived callback returns, and a lost connection is released so
+ * the reactor thread can open a new one.
  */
 public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
 {
@@ -47,6 +53,10 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
 
     private AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent;
 
+    private final boolean isPersistent;
+    private Connection connection = null;
+    private volatile boolean isClosed = false;
+
     /**
      * Constructor to set up connection parameters and initialize
      * handshaker and flow controller for transport
@@ -56,6 +66,20 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
      * @param amqpFeedbackReceivedEvent callback to delegate the received message to the user API
      */
     AmqpFileUploadNotificationReceivedHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol, AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent)
+    {
+        this(hostName, userName, sasToken, iotHubServiceClientProtocol, amqpFeedbackReceivedEvent, false);
+    }
+
+    /**
+     * Constructor to set up connection parameters and initialize
+     * handshaker and flow controller for transport
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param amqpFeedbackReceivedEvent callback to delegate the received message to the user API
+     * @param isPersistent true to keep the link open and receive deliveries until the handler is closed
+     */
+    AmqpFileUploadNotificationReceivedHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol, AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent, boolean isPersistent)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_25_001: [The constructor shall copy all input parameters to private member variables for event processing]
         if (hostName == null || userName == null || sasToken == null || iotHubServiceClientProtocol == null || amqpFeedbackReceivedEvent == null ||
@@ -78,6 +102,7 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
         this.userName = userName;
         this.sasToken = sasToken;
         this.amqpFeedbackReceivedEvent = amqpFeedbackReceivedEvent;
+        this.isPersistent = isPersistent;
 
         // Add a child handler that performs some default handshaking
         // behaviour.
@@ -123,7 +148,15 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
             // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_25_006: [The event handler shall create a Message (Proton) object from the decoded buffer]
             org.apache.qpid.proton.message.Message msg = Proton.message();
             msg.decode(buffer, 0, read);
-          
+
+            if (this.isPersistent)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_21_022: [In persistent mode, the event handler shall call the FeedbackReceived callback with the Data body, settle the Delivery with the Accepted outcome if the callback returns or with the Modified (delivery failed) outcome if it throws, and keep the link open.]
+                delivery.disposition(notifyFeedbackReceived(msg));
+                delivery.settle();
+                return;
+            }
+
             // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_25_007: [The event handler shall settle the Delivery with the Accepted outcome]
             delivery.disposition(Accepted.getInstance());
             delivery.settle();
@@ -144,6 +177,26 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
         }
     }
 
+    private DeliveryState notifyFeedbackReceived(org.apache.qpid.proton.message.Message msg)
+    {
+        try
+        {
+            if (amqpFeedbackReceivedEvent != null && msg.getBody() instanceof Data)
+            {
+                Data feedbackJson = (Data) msg.getBody();
+                amqpFeedbackReceivedEvent.onFeedbackReceived(feedbackJson.getValue().toString());
+            }
+            return Accepted.getInstance();
+        }
+        catch (RuntimeException e)
+        {
+            // The service delivers the notification again, up to its maximum delivery count.
+            Modified modified = new Modified();
+            modified.setDeliveryFailed(true);
+            return modified;
+        }
+    }
+
     @Override
     public void onConnectionBound(Event event)
     {
@@ -174,6 +227,7 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_25_011: [The event handler shall set the host name on the connection]
         Connection conn = event.getConnection();
         conn.setHostname(hostName);
+        this.connection = conn;
 
         // Every session or link could have their own handler(s) if we
         // wanted simply by adding the handler to the given session
@@ -218,4 +272,95 @@ public class AmqpFileUploadNotificationReceivedHandler extends BaseHandler
             link.setSource(source);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Event handler for the transport error event
+     * @param event The proton event object
+     */
+    @Override
+    public void onTransportError(Event event)
+    {
+        connectionLost(event.getConnection());
+    }
+
+    /**
+     * Event handler for the connection remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        connectionLost(event.getConnection());
+    }
+
+    /**
+     * Event handler for the link remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        connectionLost(event.getConnection());
+    }
+
+    /**
+     * Event handler for the connection final event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionFinal(Event event)
+    {
+        if (event.getConnection() == this.connection)
+        {
+            this.connection = null;
+        }
+    }
+
+    /**
+     * Returns true if the handler is persistent, not closed, and has no connection.
+     * Must be called on the reactor thread.
+     * @return true if a new connection shall be opened
+     */
+    boolean isConnectionNeeded()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_21_023: [The function shall return true if the handler is persistent, is not closed, and has no connection.]
+        return isPersistent && !isClosed && connection == null;
+    }
+
+    /**
+     * Returns true if the handler was closed and its connection has been released.
+     * @return true if the handler has nothing left to process
+     */
+    boolean isClosed()
+    {
+        return isClosed && connection == null;
+    }
+
+    /**
+     * Close the connection and stop opening new ones. Must be called on the reactor thread.
+     */
+    void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_21_024: [The function shall close the connection, if any, and mark the handler as closed.]
+        isClosed = true;
+        if (connection != null)
+        {
+            connection.close();
+        }
+    }
+
+    private void connectionLost(Connection lostConnection)
+    {
+        if (!isPersistent || (lostConnection != null && lostConnection != this.connection))
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_21_025: [In persistent mode, if the connection is lost, the event handler shall close and release it, so the reactor thread opens a new one.]
+        if (this.connection != null)
+        {
+            this.connection.close();
+        }
+        this.connection = null;
+    }
+}
@@ -6,6 +6,7 @@
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchCallback;
 import com.microsoft.azure.sdk.iot.service.FeedbackBatchMessage;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import org.apache.qpid.proton.Proton;
@@ -14,11 +15,18 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
  * overriding the events what are needed to handle
  * high level open, close methods and feedback received event.
+ *
+ * Besides receive(), which connects for each call, startReceiving() runs a reactor
+ * on its own thread that keeps one link open and passes every feedback batch to a
+ * callback until stopReceiving() is called, reconnecting if the connection is lost.
  */
 public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEvent
 {
@@ -31,6 +39,13 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
     private FeedbackBatch feedbackBatch;
     private static final int REACTOR_TIMEOUT = 3141; // reactor timeout in milliseconds
 
+    private static final int PERSISTENT_REACTOR_TIMEOUT = 100; // reactor select timeout in milliseconds
+    private static final int RECONNECT_DELAY = 5000; // time between two connection attempts in milliseconds
+    private static final int CLOSE_TIMEOUT = 10000; // time to wait for the reactor to close the connection in milliseconds
+    private ExecutorService persistentReceiveExecutor = null;
+    private volatile Reactor persistentReactor = null;
+    private volatile boolean isStopRequested = false;
+
     /**
      * Constructor to set up connection parameters
      * @param hostName The address string of the service (example: AAA.BBB.CCC)
@@ -78,10 +93,146 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
      */
     public void close()
     {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_011: [The function shall stop receiving if it was started.]
+        stopReceiving();
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_12_004: [The function shall invalidate the member AmqpsReceiveHandler object]
         amqpReceiveHandler = null;
     }
 
+    /**
+     * Start receiving feedback batches on a dedicated thread, over a link that stays open
+     * until stopReceiving() is called. Each batch is passed to the callback and acknowledged
+     * when the callback returns.
+     * @param feedbackBatchCallback The callback to call for each received feedback batch
+     * @throws IOException This exception is thrown if the reactor cannot be created
+     */
+    public synchronized void startReceiving(FeedbackBatchCallback feedbackBatchCallback) throws IOException
+    {
+        if (feedbackBatchCallback == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_012: [The function shall throw IllegalArgumentException if the callback is null.]
+            throw new IllegalArgumentException("feedbackBatchCallback cannot be null");
+        }
+        if (persistentReceiveExecutor != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_013: [The function shall throw IllegalStateException if the receiver is already receiving.]
+            throw new IllegalStateException("The receiver is already receiving");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_014: [The function shall create a persistent AmqpFeedbackReceivedHandler that parses each received Json string to a FeedbackBatch and passes it to the callback.]
+        final AmqpFeedbackReceivedHandler handler = new AmqpFeedbackReceivedHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol,
+                feedbackJson -> feedbackBatchCallback.onFeedbackBatchReceived(FeedbackBatchMessage.parse(feedbackJson)), true);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_015: [The function shall initialize a Proton reactor and run it on a dedicated thread.]
+        final Reactor firstReactor = Proton.reactor();
+        this.isStopRequested = false;
+        this.persistentReactor = firstReactor;
+        this.persistentReceiveExecutor = Executors.newSingleThreadExecutor();
+        this.persistentReceiveExecutor.submit(() -> runPersistentReceive(firstReactor, handler));
+    }
+
+    /**
+     * Stop receiving feedback batches, close the link and wait for the receiver thread to finish.
+     * If the receiver is not receiving, the function does nothing.
+     */
+    public synchronized void stopReceiving()
+    {
+        if (persistentReceiveExecutor == null)
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_016: [The function shall request the reactor thread to close the connection and wait for it to finish.]
+        isStopRequested = true;
+        Reactor currentReactor = this.persistentReactor;
+        if (currentReactor != null)
+        {
+            currentReactor.wakeup();
+        }
+        persistentReceiveExecutor.shutdown();
+        try
+        {
+            persistentReceiveExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        persistentReceiveExecutor = null;
+        persistentReactor = null;
+    }
+
+    private void runPersistentReceive(Reactor firstReactor, AmqpFeedbackReceivedHandler handler)
+    {
+        // All the proton objects are only touched on this thread.
+        Reactor runningReactor = firstReactor;
+        while (runningReactor != null)
+        {
+            runningReactor.setTimeout(PERSISTENT_REACTOR_TIMEOUT);
+            runningReactor.connection(handler);
+            runningReactor.start();
+            long nextConnectTime = System.currentTimeMillis() + RECONNECT_DELAY;
+            long closeDeadline = 0;
+            while (runningReactor.process())
+            {
+                if (isStopRequested && closeDeadline == 0)
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_017: [On stop, the reactor thread shall close the handler and stop once the connection is released or the close timeout expires.]
+                    handler.close();
+                    closeDeadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+                }
+
+                if (closeDeadline != 0)
+                {
+                    if (handler.isClosed() || System.currentTimeMillis() > closeDeadline)
+                    {
+                        break;
+                    }
+                }
+                else if (handler.isConnectionNeeded() && System.currentTimeMillis() >= nextConnectTime)
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_018: [The reactor thread shall open a new connection if the previous one was lost, waiting RECONNECT_DELAY milliseconds between two attempts.]
+                    runningReactor.connection(handler);
+                    nextConnectTime = System.currentTimeMillis() + RECONNECT_DELAY;
+                }
+            }
+
+            runningReactor.stop();
+            runningReactor.free();
+            runningReactor = nextPersistentReactor();
+        }
+    }
+
+    /**
+     * Create the reactor that replaces one that ran out of work after losing its connection.
+     * @return the new reactor, or null if the receiver is stopping
+     */
+    private Reactor nextPersistentReactor()
+    {
+        while (!isStopRequested)
+        {
+            try
+            {
+                Thread.sleep(RECONNECT_DELAY);
+                if (!isStopRequested)
+                {
+                    Reactor newReactor = Proton.reactor();
+                    this.persistentReactor = newReactor;
+                    return newReactor;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                return null;
+            }
+            catch (IOException e)
+            {
+                // try again after the next delay
+            }
+        }
+        return null;
+    }
+
     /**
      * Synchronized call to receive feedback batch
      * Hide the event based receiving mechanism from the user API
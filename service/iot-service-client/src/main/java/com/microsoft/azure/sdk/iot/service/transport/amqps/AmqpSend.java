@@ -15,21 +15,40 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
  * overriding the events what are needed to handle
  * high level open, close and send methods.
  * Initialize and use AmqpsSendHandler class for low level ampqs operations.
+ *
+ * The reactor runs on its own thread from open() to close() and keeps one
+ * connection and sender link open, so concurrent sends share the link instead
+ * of opening a new connection for each message. If the connection is lost,
+ * a new one is opened as soon as there are messages to send.
  */
 public class AmqpSend extends BaseHandler
 {
     protected final String hostName;
     protected final String userName;
     protected final String sasToken;
-    protected Reactor reactor = null;
-    protected AmqpSendHandler amqpSendHandler;
+    // Written under the lock in open and close, and read without it by the senders.
+    protected volatile Reactor reactor = null;
+    protected volatile AmqpSendHandler amqpSendHandler;
     protected IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private ExecutorService reactorExecutor = null;
+    private volatile boolean isCloseRequested = false;
+    private static final int REACTOR_TIMEOUT = 100; // reactor select timeout in milliseconds
+    private static final int CLOSE_TIMEOUT = 10000; // time to wait for the reactor to close the connection in milliseconds
 
     /**
      * Constructor to set up connection parameters
@@ -85,26 +104,65 @@ public class AmqpSend extends BaseHandler
 
     /**
      * Create AmqpsSendHandler and store it in a member variable
+     * Start the Proton reactor on its own thread, which opens the connection
+     * @throws IOException This exception is thrown if the reactor cannot be created
      */
-    public void open()
+    public synchronized void open() throws IOException
     {
+        if (amqpSendHandler != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_011: [If the sender is already open, the function shall do nothing.]
+            return;
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_004: [The function shall create an AmqpsSendHandler object to handle reactor events]
-        amqpSendHandler = new AmqpSendHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol);
+        final AmqpSendHandler openedHandler = new AmqpSendHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
+        final Reactor openedReactor = Proton.reactor(this);
+        openedReactor.setTimeout(REACTOR_TIMEOUT);
+        this.isCloseRequested = false;
+
+        // The reactor is published before the handler, so a sender that reads the
+        // new handler also reads the reactor that serves it.
+        this.reactor = openedReactor;
+        this.amqpSendHandler = openedHandler;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object on a dedicated thread]
+        this.reactorExecutor = Executors.newSingleThreadExecutor();
+        this.reactorExecutor.submit(() -> runReactor(openedReactor, openedHandler));
     }
 
     /**
-     * Invalidate AmqpsSendHandler member variable
+     * Close the connection, fail the messages that were not settled yet,
+     * stop the reactor thread and invalidate AmqpsSendHandler member variable
      */
-    public void close()
+    public synchronized void close()
     {
+        if (amqpSendHandler != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_012: [The function shall request the reactor thread to close the connection and wait for it to finish.]
+            isCloseRequested = true;
+            this.reactor.wakeup();
+            this.reactorExecutor.shutdown();
+            try
+            {
+                this.reactorExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_005: [The function shall invalidate the member AmqpsSendHandler object]
         amqpSendHandler = null;
+        this.reactorExecutor = null;
     }
 
     /**
-     * Create binary message
-     * Initialize and start Proton reactor
-     * Send the created message
+     * Create binary message and send it over the open connection
+     * Wait until the message is settled by the service
      * @param deviceId The device name string
      * @param message The message to be sent
      * @throws IOException This exception is thrown if the AmqpSend object is not initialized
@@ -112,27 +170,133 @@ public class AmqpSend extends BaseHandler
      */
     public void send(String deviceId, Message message) throws IOException, IotHubException
     {
-      synchronized(this)
-      {
-        if  (amqpSendHandler != null)
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [The function shall wait for the message to be settled and throw the exception it was completed with, if any]
+            sendAsync(deviceId, message).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the message to be sent", e);
+        }
+        catch (ExecutionException e)
         {
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The function shall create a binary message with the given content]
-            amqpSendHandler.createProtonMessage(deviceId, message);
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
-            this.reactor = Proton.reactor(this);
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object]
-            this.reactor.run();
-            this.reactor.free();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [** The function shall call sendComplete to identify the status of sent message and throws exception if thrown by sendComplete **]**
-            amqpSendHandler.sendComplete();
+            Throwable cause = e.getCause();
+            if (cause instanceof IotHubException)
+            {
+                throw (IotHubException)cause;
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
         }
-        else
+    }
+
+    /**
+     * Create binary message and queue it to be sent over the open connection
+     * @param deviceId The device name string
+     * @param message The message to be sent
+     * @return The future completed when the service settles the message, or completed
+     * exceptionally with IotHubException if the service rejects it, or IOException if the
+     * connection is lost before the message is settled
+     */
+    public CompletableFuture<Void> sendAsync(String deviceId, Message message)
+    {
+        AmqpSendHandler handler = this.amqpSendHandler;
+        Reactor currentReactor = this.reactor;
+        if (handler == null)
         {
             // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The function shall throw IOException if the send handler object is not initialized]
-            throw new IOException("send handler is not initialized. call open before send");
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("send handler is not initialized. call open before send"));
+            return future;
         }
-      }
 
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The function shall create a binary message with the given content]
+        CompletableFuture<Void> future = handler.createProtonMessage(deviceId, message);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_013: [The function shall wake up the reactor thread so it sends the message.]
+        currentReactor.wakeup();
+        return future;
+    }
+
+    /**
+     * Create binary messages for a batch of devices and queue them to be sent as
+     * consecutive deliveries over the open connection
+     * @param messages The pairs of device name string and message to be sent
+     * @return One future per message, in the order of the batch, each completed when the
+     * service settles that message
+     */
+    public List<CompletableFuture<Void>> sendBatchAsync(Collection<Map.Entry<String, Message>> messages)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_016: [The function shall throw IllegalArgumentException if the batch is null or empty.]
+        if (messages == null || messages.isEmpty())
+        {
+            throw new IllegalArgumentException("messages cannot be null or empty");
+        }
+
+        AmqpSendHandler handler = this.amqpSendHandler;
+        Reactor currentReactor = this.reactor;
+        if (handler == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_017: [If the send handler object is not initialized, the function shall complete all the futures with IOException.]
+            List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++)
+            {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException("send handler is not initialized. call open before send"));
+                futures.add(future);
+            }
+            return futures;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_018: [The function shall create all the binary messages, queue them, and wake up the reactor thread once.]
+        List<CompletableFuture<Void>> futures = handler.createProtonMessages(messages);
+        currentReactor.wakeup();
+        return futures;
     }
 
+    private void runReactor(Reactor runningReactor, AmqpSendHandler handler)
+    {
+        // All the proton objects are only touched on this thread. Other threads queue
+        // their messages in the handler and wake up the reactor.
+        runningReactor.start();
+        long closeDeadline = 0;
+        while (runningReactor.process())
+        {
+            if (isCloseRequested && closeDeadline == 0)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_014: [On close, the reactor thread shall close the handler and stop once the connection is released or the close timeout expires.]
+                handler.close();
+                closeDeadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+            }
+
+            if (closeDeadline != 0)
+            {
+                if (handler.isClosed() || System.currentTimeMillis() > closeDeadline)
+                {
+                    break;
+                }
+            }
+            else
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_015: [The reactor thread shall open a new connection when messages are waiting and the previous connection was lost.]
+                if (handler.isConnectionNeeded())
+                {
+                    runningReactor.connection(handler);
+                }
+                handler.sendPendingMessages();
+            }
+        }
+
+        if (closeDeadline == 0)
+        {
+            handler.close();
+        }
+        runningReactor.stop();
+        runningReactor.free();
+    }
 }
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Tools;
@@ -20,11 +21,15 @@ import org.apache.qpid.proton.engine.impl.TransportInternal;
 import org.apache.qpid.proton.reactor.Handshaker;
 
 import java.io.IOException;
-import java.nio.BufferOverflowException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class to override
@@ -32,6 +37,11 @@ import java.util.concurrent.LinkedBlockingQueue;
  * Contains and sets connection parameters (path, port, endpoint)
  * Maintains the layers of AMQP protocol (Link, Session, Connection, Transport)
  * Creates and sets SASL authentication for transport
+ *
+ * The connection and the sender link are kept open between messages. Messages
+ * can be queued from any thread, but they are only written to the link by the
+ * reactor thread, as long as the link has credit. Each message is completed
+ * through its own future when the service settles the delivery.
  */
 public class AmqpSendHandler extends BaseHandler
 {
@@ -42,19 +52,23 @@ public class AmqpSendHandler extends BaseHandler
     public static final String DEVICE_PATH_FORMAT = "/devices/%s/messages/devicebound";
     public static final String WEBSOCKET_PATH = "/$iothub/websocket";
     public static final String WEBSOCKET_SUB_PROTOCOL = "AMQPWSB10";
-    private Queue<AmqpResponseVerification> sendStatusQueue = new LinkedBlockingQueue<>();
-    private Queue<org.apache.qpid.proton.message.Message> messagesToBeSent = new LinkedBlockingQueue<>();
+    private final Queue<PendingMessage> messagesToBeSent = new ConcurrentLinkedQueue<>();
+    // Only accessed by the reactor thread.
+    private final Map<Delivery, CompletableFuture<Void>> inFlightMessages = new HashMap<>();
+    private Connection connection = null;
+    private Sender sender = null;
 
     protected final String hostName;
     protected final String userName;
     protected final String sasToken;
-    private int nextTag = 0;
+    private long nextTag = 0;
 
     protected final IotHubServiceClientProtocol iotHubServiceClientProtocol;
     protected final String webSocketHostName;
 
-    private boolean isConnected = false;
-    private boolean isConnectionError = false;
+    private volatile boolean isConnected = false;
+    private volatile boolean isClosed = false;
+    private boolean isConnectionRemoteOpened = false;
     /**
      * Constructor to set up connection parameters and initialize handshaker for transport
      *
@@ -117,11 +131,44 @@ public class AmqpSendHandler extends BaseHandler
     }
 
     /**
-     * Create Proton message from deviceId and content string
+     * Create Proton message from deviceId and content string and queue it to be sent
      * @param deviceId The device name string
      * @param message The message to be sent
+     * @return The future completed when the service settles the message
      */
-    public void createProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
+    public CompletableFuture<Void> createProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
+    {
+        PendingMessage pendingMessage = encodeProtonMessage(deviceId, message);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_032: [The function shall queue the message and return a future that is completed when the message is settled.]
+        queueMessages(Collections.singletonList(pendingMessage));
+        return pendingMessage.future;
+    }
+
+    /**
+     * Create Proton messages for a batch of device messages and queue them to be sent
+     * as consecutive deliveries
+     * @param messages The pairs of device name string and message to be sent
+     * @return The futures completed when the service settles each message, in the order of the batch
+     */
+    public List<CompletableFuture<Void>> createProtonMessages(Collection<Map.Entry<String, com.microsoft.azure.sdk.iot.service.Message>> messages)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_040: [The function shall encode all the messages before queuing any of them.]
+        List<PendingMessage> pendingMessages = new ArrayList<>(messages.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+        for (Map.Entry<String, com.microsoft.azure.sdk.iot.service.Message> entry : messages)
+        {
+            PendingMessage pendingMessage = encodeProtonMessage(entry.getKey(), entry.getValue());
+            pendingMessages.add(pendingMessage);
+            futures.add(pendingMessage.future);
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_041: [The function shall queue the messages in the batch order and return one future per message.]
+        queueMessages(pendingMessages);
+        return futures;
+    }
+
+    private PendingMessage encodeProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_005: [The function shall create a new Message (Proton) object]
         org.apache.qpid.proton.message.Message protonMessage = Proton.message();
@@ -158,7 +205,38 @@ public class AmqpSendHandler extends BaseHandler
         Section section = new Data(binary);
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_009: [The function shall set the Message body to the created data section]
         protonMessage.setBody(section);
-        messagesToBeSent.add(protonMessage);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes]
+        // Encoding here keeps it on the calling thread instead of the reactor thread.
+        byte[] msgData = AmqpMessageEncoder.encode(protonMessage);
+
+        return new PendingMessage(msgData, new CompletableFuture<>());
+    }
+
+    private void queueMessages(List<PendingMessage> pendingMessages)
+    {
+        if (isClosed)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_033: [If the handler is closed, the function shall return a future completed with IOException.]
+            for (PendingMessage pendingMessage : pendingMessages)
+            {
+                pendingMessage.future.completeExceptionally(new IOException("send handler is closed"));
+            }
+            return;
+        }
+
+        messagesToBeSent.addAll(pendingMessages);
+        if (isClosed)
+        {
+            // closed while the messages were being queued
+            for (PendingMessage pendingMessage : pendingMessages)
+            {
+                if (messagesToBeSent.remove(pendingMessage))
+                {
+                    pendingMessage.future.completeExceptionally(new IOException("send handler is closed"));
+                }
+            }
+        }
     }
 
     /**
@@ -211,6 +289,7 @@ public class AmqpSendHandler extends BaseHandler
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_012: [The event handler shall set the host name on the connection]
         Connection conn = event.getConnection();
         conn.setHostname(hostName);
+        this.connection = conn;
 
         // Every session or link could have their own handler(s) if we
         // wanted simply by adding the handler to the given session
@@ -235,6 +314,7 @@ public class AmqpSendHandler extends BaseHandler
         conn.open();
         ssn.open();
         snd.open();
+        this.sender = snd;
         isConnected = true;
     }
 
@@ -246,7 +326,43 @@ public class AmqpSendHandler extends BaseHandler
     public void onTransportError(Event event)
     {
         isConnected = false;
-        isConnectionError = true;
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_038: [If the connection is lost, the event handler shall fail all the in flight messages with IOException and release the connection, so the next message opens a new one.]
+        connectionLost(event.getConnection(), "Connection failed to be established");
+    }
+
+    /**
+     * Event handler for the connection remote open event
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onConnectionRemoteOpen(Event event)
+    {
+        if (event.getConnection() == this.connection)
+        {
+            isConnectionRemoteOpened = true;
+        }
+    }
+
+    /**
+     * Event handler for the connection remote close event
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_038: [If the connection is lost, the event handler shall fail all the in flight messages with IOException and release the connection, so the next message opens a new one.]
+        connectionLost(event.getConnection(), "Connection closed by the service");
+    }
+
+    /**
+     * Event handler for the link remote close event
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_038: [If the connection is lost, the event handler shall fail all the in flight messages with IOException and release the connection, so the next message opens a new one.]
+        connectionLost(event.getConnection(), "Sender link closed by the service");
     }
 
     /**
@@ -271,35 +387,41 @@ public class AmqpSendHandler extends BaseHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        if (!messagesToBeSent.isEmpty())
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall get the Sender (Proton) object from the link]
+        Sender snd = (Sender)event.getLink();
+        if (snd == this.sender)
         {
-            org.apache.qpid.proton.message.Message protonMessage = messagesToBeSent.remove();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall get the Sender (Proton) object from the link]
-            Sender snd = (Sender)event.getLink();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall encode the message and copy to the byte buffer]
-            if (snd.getCredit() > 0)
-            {
-                byte[] msgData = new byte[1024];
-                int length;
-                while (true)
-                {
-                    try
-                    {
-                        length = protonMessage.encode(msgData, 0, msgData.length);
-                        break;
-                    } catch (BufferOverflowException e)
-                    {
-                        msgData = new byte[msgData.length * 2];
-                    }
-                }
-                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall set the delivery tag on the Sender (Proton) object]
-                byte[] tag = String.valueOf(nextTag++).getBytes();
-                Delivery dlv = snd.delivery(tag);
-                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall send the encoded bytes]
-                snd.send(msgData, 0, length);
+            sendPendingMessages();
+        }
+    }
+
+    /**
+     * Send the queued messages for as long as the sender link has credit.
+     * Must be called on the reactor thread.
+     */
+    public void sendPendingMessages()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_034: [The function shall send queued messages while the sender link is open and has credit.]
+        if (sender == null)
+        {
+            return;
+        }
 
-                snd.advance();
+        while (sender.getCredit() > 0)
+        {
+            PendingMessage pendingMessage = messagesToBeSent.poll();
+            if (pendingMessage == null)
+            {
+                break;
             }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall set the delivery tag on the Sender (Proton) object, using the sequence number of the delivery]
+            byte[] tag = AmqpMessageEncoder.deliveryTag(nextTag++);
+            Delivery dlv = sender.delivery(tag);
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall send the encoded bytes]
+            sender.send(pendingMessage.data, 0, pendingMessage.data.length);
+            sender.advance();
+            inFlightMessages.put(dlv, pendingMessage.future);
         }
     }
 
@@ -315,41 +437,146 @@ public class AmqpSendHandler extends BaseHandler
             //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_024: [ The event handler shall get the Delivery remote state from the delivery **]**
             DeliveryState remoteState = d.getRemoteState();
 
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [ The event handler shall verify the Amqp response and add the response to a queue. **]**
-            sendStatusQueue.add(new AmqpResponseVerification(remoteState));
+            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [ The event handler shall verify the Amqp response and complete the future of the message with it. **]**
+            AmqpResponseVerification verification = new AmqpResponseVerification(remoteState);
+            CompletableFuture<Void> future = inFlightMessages.remove(d);
+            if (future != null)
+            {
+                if (verification.getException() != null)
+                {
+                    //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [ The event handler shall complete the future exceptionally with the exception from the response if it is not null **]**
+                    future.completeExceptionally(verification.getException());
+                }
+                else
+                {
+                    future.complete(null);
+                }
+            }
 
             //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_026: [ The event handler shall settle the delivery. **]**
             d.settle();
 
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_027: [ The event handler shall get the Sender (Proton) object from the event **]**
-            Sender snd = event.getSender();
+            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [ The event handler shall keep the Sender, Session and Connection open for the next messages **]**
+        }
+    }
 
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [ The event handler shall close the Sender, Session and Connection **]**
-            snd.close();
-            snd.getSession().close();
-            snd.getSession().getConnection().close();
-            isConnected = false;
+    /**
+     * Event handler for the connection final event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionFinal(Event event)
+    {
+        if (event.getConnection() == this.connection)
+        {
+            this.connection = null;
+            this.sender = null;
         }
+    }
 
+    /**
+     * Returns true if there are messages waiting and no connection to send them on.
+     * Must be called on the reactor thread.
+     * @return true if a new connection shall be opened
+     */
+    public boolean isConnectionNeeded()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_035: [The function shall return true if there are queued messages, the handler is not closed, and there is no connection.]
+        return !isClosed && connection == null && !messagesToBeSent.isEmpty();
     }
 
-    public void sendComplete() throws IotHubException, IOException
+    /**
+     * Returns true if the handler was closed and its connection has been released.
+     * @return true if the handler has nothing left to process
+     */
+    public boolean isClosed()
     {
-        //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_029: [ The event handler shall check the status queue to get the response for the sent message **]**
-        if (isConnectionError)
+        return isClosed && connection == null;
+    }
+
+    /**
+     * Close the sender link, the session and the connection, and fail all the pending
+     * messages. Must be called on the reactor thread.
+     */
+    public void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_036: [The function shall close the Sender, Session and Connection.]
+        isClosed = true;
+        isConnected = false;
+        if (sender != null)
         {
-            throw new IOException("Connection failed to be established");
+            sender.close();
+            sender.getSession().close();
         }
-        if (!sendStatusQueue.isEmpty())
+        if (connection != null)
         {
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_030: [ The event handler shall remove the response from the queue **]**
-            AmqpResponseVerification verifier = sendStatusQueue.remove();
-            if (verifier.getException() != null)
-            {
-                //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [ The event handler shall get the exception from the response and throw is it is not null **]**
-                throw verifier.getException();
-            }
+            connection.close();
         }
+        sender = null;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_037: [The function shall complete the futures of all queued and in flight messages with IOException.]
+        failInFlightMessages(new IOException("send handler is closed"));
+        failQueuedMessages(new IOException("send handler is closed"));
+    }
+
+    private void connectionLost(Connection lostConnection, String reason)
+    {
+        if (lostConnection != null && lostConnection != this.connection)
+        {
+            // event from a connection that was already replaced
+            return;
+        }
+
+        isConnected = false;
+        if (this.connection != null)
+        {
+            this.connection.close();
+        }
+        this.connection = null;
+        this.sender = null;
+
+        // The service may or may not have received the in flight messages, so they can not be resent safely.
+        failInFlightMessages(new IOException(reason));
+
+        if (!isConnectionRemoteOpened)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_039: [If the connection could not be established, the event handler shall also fail the queued messages with IOException.]
+            failQueuedMessages(new IOException(reason));
+        }
+        isConnectionRemoteOpened = false;
     }
 
+    private void failQueuedMessages(IOException exception)
+    {
+        PendingMessage pendingMessage;
+        while ((pendingMessage = messagesToBeSent.poll()) != null)
+        {
+            pendingMessage.future.completeExceptionally(exception);
+        }
+    }
+
+    private void failInFlightMessages(IOException exception)
+    {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(inFlightMessages.values());
+        inFlightMessages.clear();
+        for (CompletableFuture<Void> future : futures)
+        {
+            future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * An encoded message waiting for link credit along with the future to complete when it is settled.
+     */
+    private static class PendingMessage
+    {
+        private final byte[] data;
+        private final CompletableFuture<Void> future;
+
+        private PendingMessage(byte[] data, CompletableFuture<Void> future)
+        {
+            this.data = data;
+            this.future = future;
+        }
+    }
 }
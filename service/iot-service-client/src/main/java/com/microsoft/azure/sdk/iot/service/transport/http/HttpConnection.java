@@ -10,7 +10,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.ProtocolException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +27,11 @@ import java.util.Map;
  */
 public class HttpConnection
 {
+    /** The size of the read buffer used when the response has no Content-Length. */
+    private static final int DEFAULT_READ_BUFFER_SIZE = 4096;
+    /** The largest read buffer allocated upfront from the Content-Length; bigger responses grow it as they arrive. */
+    private static final int MAX_INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
     /** The underlying HTTPS connection. */
     protected final HttpsURLConnection connection;
 
@@ -203,13 +207,32 @@ public class HttpConnection
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_12_014: [The function shall read from the input stream (response stream) and return the response.]
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_12_015: [The function shall throw an IOException if the input stream could not be accessed.]
         InputStream inputStream = this.connection.getInputStream();
-        byte[] input = readInputStream(inputStream);
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_21_024: [The function shall read the input stream in bulk into a buffer sized from the response Content-Length, if the server sent one.]
+        byte[] input = readInputStream(inputStream, this.connection.getContentLength());
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_12_016: [The function shall close the input stream after it has been completely read.]
         inputStream.close();
 
         return input;
     }
 
+    /**
+     * Returns the input stream (response stream) without reading it, so the
+     * response body can be consumed while it arrives instead of being copied
+     * into memory first. The caller must read the stream to the end and close
+     * it, otherwise the underlying connection will not be reused.
+     *
+     * @return The response body stream.
+     *
+     * @throws IOException This exception thrown if the input stream could not be
+     * accessed, for example if the server could not be reached.
+     */
+    public InputStream readInputAsStream() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_21_026: [The function shall return the input stream (response stream) without reading from it.]
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_21_027: [The function shall throw an IOException if the input stream could not be accessed.]
+        return this.connection.getInputStream();
+    }
+
     /**
      * Reads from the error stream and returns the error reason.
      *
@@ -228,7 +251,7 @@ public class HttpConnection
         // if there is no error reason, getErrorStream() returns null.
         if (errorStream != null)
         {
-            error = readInputStream(errorStream);
+            error = readInputStream(errorStream, this.connection.getContentLength());
             // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_12_019: [The function shall close the error stream after it has been completely read.]
             errorStream.close();
         }
@@ -278,23 +301,52 @@ public class HttpConnection
     protected static byte[] readInputStream(InputStream stream)
             throws IOException
     {
-        ArrayList<Byte> byteBuffer = new ArrayList<>();
-        int nextByte = -1;
-        // read(byte[]) reads the byte into the buffer and returns the number
-        // of bytes read, or -1 if the end of the stream has been reached.
-        while ((nextByte = stream.read()) > -1)
-        {
-            byteBuffer.add((byte) nextByte);
-        }
+        return readInputStream(stream, -1);
+    }
 
-        int bufferSize = byteBuffer.size();
-        byte[] byteArray = new byte[bufferSize];
-        for (int i = 0; i < bufferSize; ++i)
+    /**
+     * Reads the input stream until the stream is empty, in blocks instead of
+     * one byte at a time.
+     *
+     * @param stream The input stream.
+     * @param contentLength The expected length of the content, or a negative
+     * value if it is not known. It is only used to size the first buffer, up
+     * to 64 KB; the stream is always read to the end.
+     *
+     * @return The content of the input stream.
+     *
+     * @throws IOException This exception thrown if the input stream could not be read from.
+     */
+    protected static byte[] readInputStream(InputStream stream, int contentLength)
+            throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_21_025: [If the Content-Length is not known, the function shall start with a default buffer and grow it until the end of the stream is reached.]
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_21_028: [The buffer sized from the Content-Length shall not be bigger than 64 KB; a longer content shall grow the buffer as it arrives.]
+        byte[] buffer = new byte[contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_READ_BUFFER_SIZE) : DEFAULT_READ_BUFFER_SIZE];
+        int totalRead = 0;
+        while (true)
         {
-            byteArray[i] = byteBuffer.get(i);
+            if (totalRead == buffer.length)
+            {
+                // The buffer is full; only grow it if there is really more content.
+                int nextByte = stream.read();
+                if (nextByte == -1)
+                {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[totalRead++] = (byte) nextByte;
+            }
+
+            int bytesRead = stream.read(buffer, totalRead, buffer.length - totalRead);
+            if (bytesRead == -1)
+            {
+                break;
+            }
+            totalRead += bytesRead;
         }
 
-        return byteArray;
+        return (totalRead == buffer.length) ? buffer : Arrays.copyOf(buffer, totalRead);
     }
 
     protected HttpConnection()
@@ -8,6 +8,7 @@ package com.microsoft.azure.sdk.iot.service.transport.http;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
@@ -50,9 +51,32 @@ public class HttpRequest
      * established, or the input/output streams could not be accessed.
      */
     public HttpResponse send() throws IOException
+    {
+        return this.send(false);
+    }
+
+    /**
+     * Executes the HTTPS request without reading the response body, so the
+     * caller can parse the body while it arrives. The body is returned by
+     * {@link HttpResponse#getBodyStream()}, and the caller must close it for
+     * the underlying connection to be reused.
+     *
+     * @return The HTTPS response, with the body left on the connection.
+     *
+     * @throws IOException This exception thrown if the connection could not be
+     * established, or the input/output streams could not be accessed.
+     */
+    public HttpResponse sendStreamed() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_001: [The function shall send the request and return the HTTP response with the status code, header fields, and error reason (if any), leaving the body unread in the response body stream.]
+        return this.send(true);
+    }
+
+    private HttpResponse send(boolean streamBody) throws IOException
     {
         int responseStatus = -1;
         byte[] responseBody = new byte[0];
+        InputStream responseBodyStream = null;
         byte[] errorReason = new byte[0];
         Map<String, List<String>> headerFields;
         try
@@ -62,7 +86,14 @@ public class HttpRequest
 
             responseStatus = this.connection.getResponseStatus();
             headerFields = this.connection.getResponseHeaders();
-            responseBody = this.connection.readInput();
+            if (streamBody)
+            {
+                responseBodyStream = this.connection.readInputAsStream();
+            }
+            else
+            {
+                responseBody = this.connection.readInput();
+            }
         }
         // Can be caused either by an unsuccessful
         // connection or by a bad status code.
@@ -82,6 +113,11 @@ public class HttpRequest
             errorReason = this.connection.readError();
         }
 
+        if (streamBody)
+        {
+            return new HttpResponse(responseStatus, responseBodyStream, headerFields, errorReason);
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_006: [The function shall return the HTTPS response received, including the status code, body, header fields, and error reason (if any).]
         return new HttpResponse(responseStatus, responseBody, headerFields,
                 errorReason);
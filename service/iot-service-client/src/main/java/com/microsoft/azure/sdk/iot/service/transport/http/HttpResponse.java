@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.http;
 
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +21,7 @@ public class HttpResponse
     protected final byte[] body;
     protected final byte[] errorReason;
     protected final Map<String, String> headerFields;
+    protected final InputStream bodyStream;
 
     /**
      * Constructor.
@@ -37,19 +39,29 @@ public class HttpResponse
         this.status = status;
         this.body = Arrays.copyOf(body, body.length);
         this.errorReason = errorReason;
+        this.headerFields = canonicalizeHeaderFields(headerFields);
+        this.bodyStream = null;
+    }
 
-        this.headerFields = new HashMap<>();
-        for (Map.Entry<String, List<String>> headerField : headerFields
-                .entrySet())
-        {
-            String key = headerField.getKey();
-            if (key != null)
-            {
-                String field = canonicalizeFieldName(key);
-                String values = flattenValuesList(headerField.getValue());
-                this.headerFields.put(field, values);
-            }
-        }
+    /**
+     * Constructor for a response whose body was not read from the connection. The body is
+     * returned by {@link #getBodyStream()}, and the caller owns the stream and must close it.
+     *
+     * @param status The HTTPS status code.
+     * @param bodyStream The stream to read the response body from. Can be {@code null} if there is no body.
+     * @param headerFields The map of header field names and the values associated with the field name.
+     * @param errorReason The error reason.
+     */
+    public HttpResponse(int status, InputStream bodyStream,
+                        Map<String, List<String>> headerFields,
+                        byte[] errorReason)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSE_21_001: [The constructor shall store the input arguments so that the getters can return them later, and the body shall be empty.]
+        this.status = status;
+        this.body = new byte[0];
+        this.errorReason = errorReason;
+        this.headerFields = canonicalizeHeaderFields(headerFields);
+        this.bodyStream = bodyStream;
     }
 
     /**
@@ -74,6 +86,17 @@ public class HttpResponse
         return Arrays.copyOf(this.body, this.body.length);
     }
 
+    /**
+     * Getter for the stream to read the response body from.
+     *
+     * @return The response body stream, or {@code null} if the body was already read.
+     */
+    public InputStream getBodyStream()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSE_21_002: [The function shall return the body stream given in the constructor, or null if the response was created with the body.]
+        return this.bodyStream;
+    }
+
     /**
      * Getter for a header field.
      *
@@ -130,6 +153,24 @@ public class HttpResponse
         return this.errorReason;
     }
 
+    private static Map<String, String> canonicalizeHeaderFields(Map<String, List<String>> headerFields)
+    {
+        Map<String, String> canonicalizedHeaderFields = new HashMap<>();
+        for (Map.Entry<String, List<String>> headerField : headerFields
+                .entrySet())
+        {
+            String key = headerField.getKey();
+            if (key != null)
+            {
+                String field = canonicalizeFieldName(key);
+                String values = flattenValuesList(headerField.getValue());
+                canonicalizedHeaderFields.put(field, values);
+            }
+        }
+
+        return canonicalizedHeaderFields;
+    }
+
     protected static String canonicalizeFieldName(String field)
     {
         String canonicalizedField = field;
@@ -161,5 +202,6 @@ public class HttpResponse
         this.body = null;
         this.headerFields = null;
         this.errorReason = null;
+        this.bodyStream = null;
     }
 }
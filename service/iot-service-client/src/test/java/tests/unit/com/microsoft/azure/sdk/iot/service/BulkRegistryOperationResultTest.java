@@ -0,0 +1,99 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+import com.microsoft.azure.sdk.iot.service.BulkRegistryOperationResult;
+import com.microsoft.azure.sdk.iot.service.DeviceRegistryOperationError;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Code Coverage
+ * Methods: 100%
+ * Lines: 100%
+ */
+public class BulkRegistryOperationResultTest
+{
+    //Tests_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_002: [This constructor shall convert the provided parser and each of its errors into a BulkRegistryOperationResult object.]
+    //Tests_SRS_SERVICE_SDK_JAVA_DEVICE_REGISTRY_OPERATION_ERROR_21_002: [This constructor shall copy the deviceId, errorCode, and errorStatus of the provided parser.]
+    @Test
+    public void fromBulkRegistryOperationResultParser()
+    {
+        // arrange
+        DeviceRegistryOperationErrorParser errorParser = new DeviceRegistryOperationErrorParser();
+        errorParser.setDeviceId("device1");
+        errorParser.setErrorCode("DeviceAlreadyExists");
+        errorParser.setErrorStatus("A device with ID 'device1' is already registered.");
+        List<DeviceRegistryOperationErrorParser> errorParsers = new ArrayList<>();
+        errorParsers.add(errorParser);
+        BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser();
+        parser.setSuccessful(false);
+        parser.setErrors(errorParsers);
+
+        // act
+        BulkRegistryOperationResult result = Deencapsulation.newInstance(BulkRegistryOperationResult.class, new Class[] {BulkRegistryOperationResultParser.class}, parser);
+
+        // assert
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("device1", result.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceAlreadyExists", result.getErrors().get(0).getErrorCode());
+        assertEquals("A device with ID 'device1' is already registered.", result.getErrors().get(0).getErrorStatus());
+    }
+
+    //Tests_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_001: [This constructor shall save the provided isSuccessful and errors.]
+    //Tests_SRS_SERVICE_SDK_JAVA_DEVICE_REGISTRY_OPERATION_ERROR_21_001: [This constructor shall save the provided deviceId, errorCode, and errorStatus.]
+    @Test
+    public void constructorSavesTheErrors()
+    {
+        // arrange
+        DeviceRegistryOperationError error = Deencapsulation.newInstance(DeviceRegistryOperationError.class,
+                new Class[] {String.class, String.class, String.class}, "device1", "IOException", "connection lost");
+        List<DeviceRegistryOperationError> errors = new ArrayList<>();
+        errors.add(error);
+
+        // act
+        BulkRegistryOperationResult result = Deencapsulation.newInstance(BulkRegistryOperationResult.class,
+                new Class[] {boolean.class, List.class}, false, errors);
+
+        // assert
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("device1", result.getErrors().get(0).getDeviceId());
+        assertEquals("IOException", result.getErrors().get(0).getErrorCode());
+        assertEquals("connection lost", result.getErrors().get(0).getErrorStatus());
+    }
+
+    //Tests_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_002: [This constructor shall convert the provided parser and each of its errors into a BulkRegistryOperationResult object.]
+    @Test
+    public void fromSuccessfulParserHasNoErrors()
+    {
+        // arrange
+        BulkRegistryOperationResultParser parser = new BulkRegistryOperationResultParser("{\"isSuccessful\":true}");
+
+        // act
+        BulkRegistryOperationResult result = Deencapsulation.newInstance(BulkRegistryOperationResult.class, new Class[] {BulkRegistryOperationResultParser.class}, parser);
+
+        // assert
+        assertTrue(result.isSuccessful());
+        assertTrue(result.getErrors().isEmpty());
+    }
+
+    //Tests_SRS_SERVICE_SDK_JAVA_BULK_REGISTRY_OPERATION_RESULT_21_003: [If the provided BulkRegistryOperationResultParser object is null, an IllegalArgumentException shall be thrown.]
+    @Test (expected = IllegalArgumentException.class)
+    public void nullParserThrows()
+    {
+        // act
+        Deencapsulation.newInstance(BulkRegistryOperationResult.class, new Class[] {BulkRegistryOperationResultParser.class}, (Object)null);
+    }
+}
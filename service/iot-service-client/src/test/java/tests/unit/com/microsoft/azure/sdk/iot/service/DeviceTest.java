@@ -9,6 +9,8 @@ import com.microsoft.azure.sdk.iot.deps.serializer.*;
 import com.microsoft.azure.sdk.iot.service.Device;
 import com.microsoft.azure.sdk.iot.service.DeviceConnectionState;
 import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ImportMode;
 import com.microsoft.azure.sdk.iot.service.auth.AuthenticationMechanism;
 import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
 import com.microsoft.azure.sdk.iot.service.auth.SymmetricKey;
@@ -647,6 +649,41 @@ public class DeviceTest
         reflectivelyInvokeToDeviceParser(device);
     }
 
+    //Tests_SRS_SERVICE_SDK_JAVA_DEVICE_21_001: [This method shall return a new instance of an ExportImportDevice object with the deviceId, eTag, status, statusReason, and authentication of this, and the provided importMode.]
+    @Test
+    public void toExportImportDeviceCopiesTheDevice()
+    {
+        //arrange
+        Device device = Device.createDevice("someDevice", AuthenticationType.SAS);
+        device.setStatus(DeviceStatus.Disabled);
+        Deencapsulation.setField(device, "eTag", "someETag");
+        Deencapsulation.setField(device, "statusReason", "someReason");
+
+        //act
+        ExportImportDevice exportImportDevice = Deencapsulation.invoke(device, "toExportImportDevice", ImportMode.Update);
+
+        //assert
+        assertEquals("someDevice", exportImportDevice.getId());
+        assertEquals("someETag", exportImportDevice.geteTag());
+        assertEquals(ImportMode.Update, exportImportDevice.getImportMode());
+        assertEquals(DeviceStatus.Disabled, exportImportDevice.getStatus());
+        assertEquals("someReason", exportImportDevice.getStatusReason());
+        assertEquals(AuthenticationType.SAS, exportImportDevice.getAuthentication().getAuthenticationType());
+        assertEquals(device.getPrimaryKey(), exportImportDevice.getAuthentication().getSymmetricKey().getPrimaryKey());
+        assertEquals(device.getSecondaryKey(), exportImportDevice.getAuthentication().getSymmetricKey().getSecondaryKey());
+    }
+
+    //Tests_SRS_SERVICE_SDK_JAVA_DEVICE_21_002: [If the provided importMode is null, this method shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void toExportImportDeviceThrowsOnNullImportMode()
+    {
+        //arrange
+        Device device = Device.createDevice("someDevice", AuthenticationType.SAS);
+
+        //act
+        Deencapsulation.invoke(device, "toExportImportDevice", new Class[] { ImportMode.class }, (Object)null);
+    }
+
     /**
      * Use reflection to call the Device constructor that takes a DeviceParser object as its only argument
      * @param parser the parser to pass into the constructor
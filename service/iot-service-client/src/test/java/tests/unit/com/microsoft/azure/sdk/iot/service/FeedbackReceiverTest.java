@@ -6,6 +6,7 @@
 package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchCallback;
 import com.microsoft.azure.sdk.iot.service.FeedbackReceiver;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpReceive;
@@ -751,4 +752,37 @@ public class FeedbackReceiverTest
         CompletableFuture<FeedbackBatch> completableFuture = feedbackReceiver.receiveAsync(timeoutMs);
         completableFuture.get();
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_016: [The function shall call startReceiving() on the member AMQPReceive object with the given callback]
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_018: [The function shall call stopReceiving() on the member AMQPReceive object]
+    @Test
+    public void startReceiving_and_stopReceiving_call_amqp() throws Exception
+    {
+        // Arrange
+        FeedbackBatchCallback feedbackBatchCallback = feedbackBatch -> {};
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        // Assert
+        new Expectations()
+        {
+            {
+                amqpReceive.startReceiving(feedbackBatchCallback);
+                amqpReceive.stopReceiving();
+            }
+        };
+        // Act
+        feedbackReceiver.startReceiving(feedbackBatchCallback);
+        feedbackReceiver.stopReceiving();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_015: [The function shall throw IOException if the member AMQPReceive object has not been initialized]
+    // Assert
+    @Test (expected = IOException.class)
+    public void startReceiving_throws_if_amqp_not_initialized() throws Exception
+    {
+        // Arrange
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(feedbackReceiver, "amqpReceive", null);
+        // Act
+        feedbackReceiver.startReceiving(feedbackBatch -> {});
+    }
 }
@@ -6,6 +6,7 @@
 package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.FileUploadNotification;
+import com.microsoft.azure.sdk.iot.service.FileUploadNotificationCallback;
 import com.microsoft.azure.sdk.iot.service.FileUploadNotificationReceiver;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotificationReceive;
@@ -360,4 +361,40 @@ public class FileUploadNotificationReceiverTest
         };
 
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_015: [The function shall call startReceiving() on the member AmqpFileUploadNotificationReceive object with the given callback]
+    // Tests_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_017: [The function shall call stopReceiving() on the member AmqpFileUploadNotificationReceive object]
+    @Test
+    public void startReceivingAndStopReceivingCallAmqp() throws Exception
+    {
+        // Arrange
+        FileUploadNotificationCallback fileUploadNotificationCallback = fileUploadNotification -> {};
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, "xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        // Act
+        fileUploadNotificationReceiver.startReceiving(fileUploadNotificationCallback);
+        fileUploadNotificationReceiver.stopReceiving();
+
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpFileUploadNotificationReceive.startReceiving(fileUploadNotificationCallback);
+                times = 1;
+                amqpFileUploadNotificationReceive.stopReceiving();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_21_014: [The function shall throw IOException if the member AmqpFileUploadNotificationReceive object has not been initialized]
+    // Assert
+    @Test (expected = IOException.class)
+    public void startReceivingThrowsIfAmqpNotInitialized() throws Exception
+    {
+        // Arrange
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, "xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(fileUploadNotificationReceiver, "amqpFileUploadNotificationReceive", null);
+        // Act
+        fileUploadNotificationReceiver.startReceiving(fileUploadNotification -> {});
+    }
 }
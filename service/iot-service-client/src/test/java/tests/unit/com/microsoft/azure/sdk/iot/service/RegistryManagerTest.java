@@ -18,13 +18,20 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Code Coverage
@@ -320,6 +327,7 @@ public class RegistryManagerTest
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_106: [The function shall parse the response body while it is read from the connection, and close it.]
     @Test
     public void getDevices_good_case() throws Exception
     {
@@ -332,6 +340,50 @@ public class RegistryManagerTest
         ArrayList<Device> devices =  registryManager.getDevices(10);
 
         getDevicesVerifications(numberOfDevices, devices);
+        assertEquals(3, devices.size());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_106: [The function shall parse the response body while it is read from the connection, and close it.]
+    @Test
+    public void getDevicesClosesBodyStreamIfResponseVerificationFails() throws Exception
+    {
+        final boolean[] isClosed = { false };
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[0])
+        {
+            @Override
+            public void close()
+            {
+                isClosed[0] = true;
+            }
+        };
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                mockHttpRequest.sendStreamed();
+                result = mockHttpResponse;
+                mockHttpResponse.getBodyStream();
+                result = bodyStream;
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                result = new IotHubException();
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        try
+        {
+            registryManager.getDevices(10);
+            assertTrue("getDevices did not throw", false);
+        }
+        catch (IotHubException expected)
+        {
+            // Expected.
+        }
+
+        assertTrue(isClosed[0]);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_030: [The function shall throw IllegalArgumentException if the input count number is less than 1]
@@ -912,6 +964,208 @@ public class RegistryManagerTest
         CompletableFuture completableFuture = registryManager.removeDeviceAsync(deviceId);
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_087: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevices_input_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevices(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_087: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevices_input_null_device() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevices(Arrays.asList(device, null));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_088: [The function shall convert each device to an ExportImportDevice with the import mode Create, and send them in a bulk registry operation]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_100: [The function shall send each request with a new SAS token, as a POST of the json array of its devices to the devices URL]
+    @Test
+    public void addDevices_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "{\"isSuccessful\":true,\"errors\":[],\"warnings\":[]}");
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.addDevices(Arrays.asList(device, device));
+
+        assertTrue(result.isSuccessful());
+        assertTrue(result.getErrors().isEmpty());
+        new VerificationsInOrder()
+        {
+            {
+                Deencapsulation.invoke(device, "toExportImportDevice", ImportMode.Create);
+                times = 2;
+                iotHubConnectionString.getUrlDevices();
+                new HttpRequest(mockUrl, HttpMethod.POST, (byte[]) any);
+                mockHttpRequest.setReadTimeoutMillis(anyInt);
+                mockHttpRequest.setHeaderField("authorization", anyString);
+                mockHttpRequest.send();
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_093: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void updateDevicesAsync_input_empty() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.updateDevicesAsync(new ArrayList<>());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_092: [The function shall convert each device to an ExportImportDevice with the import mode Update, and send them in a bulk registry operation]
+    @Test
+    public void updateDevices_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "{\"isSuccessful\":true}");
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.updateDevices(Arrays.asList(device));
+
+        assertTrue(result.isSuccessful());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(device, "toExportImportDevice", ImportMode.Update);
+                times = 1;
+                new HttpRequest(mockUrl, HttpMethod.POST, (byte[]) any);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_095: [The function shall throw IllegalArgumentException if the input collection is null or empty, or has a null or empty id]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void removeDevices_input_empty_id() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.removeDevices(Arrays.asList("somedevice", ""));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_096: [The function shall create an ExportImportDevice for each id with the import mode Delete, and send them in a bulk registry operation]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_099: [The function shall split the devices in requests of up to 100 devices, and send up to 4 requests at the same time]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_102: [Otherwise, the function shall verify the response status, and create the result from the response body, or a successful result if the body is empty]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_104: [The function shall return a result that is successful only if all the requests succeeded, with the errors of all the requests in the order of the devices]
+    @Test
+    public void removeDevices_splits_in_requests_of_100_devices() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "");
+        final List<byte[]> payloads = new ArrayList<>();
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.removeDevices(createDeviceIds(250));
+
+        assertTrue(result.isSuccessful());
+        assertTrue(result.getErrors().isEmpty());
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, HttpMethod.POST, withCapture(payloads));
+                times = 3;
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                times = 3;
+            }
+        };
+        int deviceCount = 0;
+        for (byte[] payload : payloads)
+        {
+            String json = new String(payload, StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"importMode\":\"Delete\""));
+            deviceCount += json.split("\"id\":").length - 1;
+        }
+        assertEquals(250, deviceCount);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_101: [If the response status is 400 and its error reason has the errors of the devices, the function shall return a result with these errors]
+    @Test
+    public void removeDevices_reports_device_errors() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "");
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getStatus();
+                result = 400;
+                mockHttpResponse.getErrorReason();
+                result = ("{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"device0\",\"errorCode\":\"DeviceNotFound\"," +
+                        "\"errorStatus\":\"Device device0 not registered\"}],\"warnings\":[]}").getBytes();
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.removeDevices(createDeviceIds(2));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("device0", result.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceNotFound", result.getErrors().get(0).getErrorCode());
+        new Verifications()
+        {
+            {
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_103: [If a request fails, the function shall report an error for each device of the request, with the name of the exception as error code and its message as error status]
+    @Test
+    public void removeDevices_reports_failed_request_for_each_device() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "");
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.send();
+                result = new IOException("connection lost");
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.removeDevices(createDeviceIds(3));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getErrors().size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals("device" + i, result.getErrors().get(i).getDeviceId());
+            assertEquals("IOException", result.getErrors().get(i).getErrorCode());
+            assertEquals("connection lost", result.getErrors().get(i).getErrorStatus());
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_098: [The function shall create an async wrapper around the removeDevices() function call, handle the return value or delegate exception]
+    @Test
+    public void removeDevicesAsync_future_return_ok() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, "{\"isSuccessful\":true}");
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        CompletableFuture<BulkRegistryOperationResult> completableFuture = registryManager.removeDevicesAsync(createDeviceIds(2));
+
+        assertTrue(completableFuture.get().isSuccessful());
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
@@ -1277,6 +1531,34 @@ public class RegistryManagerTest
         };
     }
 
+    private void bulkExpectations(String connectionString, String responseBody) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlDevices();
+                result = mockUrl;
+                mockHttpRequest.send();
+                result = mockHttpResponse;
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                mockHttpResponse.getBody();
+                result = responseBody.getBytes();
+            }
+        };
+    }
+
+    private static List<String> createDeviceIds(int count)
+    {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            deviceIds.add("device" + i);
+        }
+        return deviceIds;
+    }
+
     private void commonVerifications(HttpMethod httpMethod, String requestDeviceId, Device responseDevice) throws Exception
     {
         new VerificationsInOrder()
@@ -1306,11 +1588,11 @@ public class RegistryManagerTest
                 result = iotHubConnectionString;
                 iotHubConnectionString.getUrlDeviceList(numberOfDevices);
                 result = mockUrl;
-                mockHttpRequest.send();
+                mockHttpRequest.sendStreamed();
                 result = mockHttpResponse;
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
-                mockHttpResponse.getBody();
-                result = devicesJson.getBytes();
+                mockHttpResponse.getBodyStream();
+                result = new ByteArrayInputStream(devicesJson.getBytes(StandardCharsets.UTF_8));
             }
         };
     }
@@ -1330,7 +1612,7 @@ public class RegistryManagerTest
                 mockHttpRequest.setHeaderField("Accept", "application/json");
                 mockHttpRequest.setHeaderField("Content-Type", "application/json");
                 mockHttpRequest.setHeaderField("charset", "utf-8");
-                mockHttpRequest.send();
+                mockHttpRequest.sendStreamed();
             }
         };
         assertNotEquals(null, devices);
@@ -12,10 +12,16 @@ import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ServiceClientTest
 {
@@ -366,7 +372,7 @@ public class ServiceClientTest
         completableFuture.get();
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall call sendAsync() on the member AMQP sender object and return its future]
     @Test
     public void send_async_future_return_ok() throws Exception
     {
@@ -386,8 +392,8 @@ public class ServiceClientTest
         new Expectations()
         {
             {
-                amqpSend.send(deviceId, iotMessage);
-                serviceClient.send(deviceId, iotMessage);
+                amqpSend.sendAsync(deviceId, iotMessage);
+                result = CompletableFuture.completedFuture(null);
             }
         };
         // Act
@@ -395,18 +401,17 @@ public class ServiceClientTest
         completableFuture.get();
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall call sendAsync() on the member AMQP sender object and return its future]
     // Assert
     @Test (expected = Exception.class)
     public void send_async_future_throw() throws Exception
     {
         // Arrange
-        new MockUp<ServiceClient>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public void send(String deviceId, String message) throws IOException
             {
-                throw new IOException();
+                amqpSend.sendAsync(anyString, (Message)any);
+                result = failedFuture(new IOException());
             }
         };
         String iotHubName = "IOTHUBNAME";
@@ -478,4 +483,84 @@ public class ServiceClientTest
         // Assert
         assertNotEquals(null, feedbackReceiver);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_019: [The function shall fail the future with IOException if the member AMQP sender object has not been initialized]
+    @Test (expected = ExecutionException.class)
+    public void send_async_fails_future_if_sender_not_initialized() throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        Deencapsulation.setField(serviceClient, "amqpMessageSender", null);
+        // Act
+        CompletableFuture<Void> completableFuture = serviceClient.sendAsync("XXX", new Message("HELLO"));
+        completableFuture.get();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_022: [The function shall call sendBatchAsync() on the member AMQP sender object and return its futures]
+    @Test
+    public void send_batch_async_delegates_to_sender() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, IotHubServiceClientProtocol.AMQPS);
+        final List<Map.Entry<String, Message>> batch = new ArrayList<>();
+        batch.add(new AbstractMap.SimpleEntry<>("device1", new Message("HELLO")));
+        final List<CompletableFuture<Void>> senderFutures = new ArrayList<>();
+        senderFutures.add(CompletableFuture.completedFuture(null));
+        new Expectations()
+        {
+            {
+                amqpSend.sendBatchAsync(batch);
+                result = senderFutures;
+            }
+        };
+        // Act
+        List<CompletableFuture<Void>> futures = serviceClient.sendBatchAsync(batch);
+        // Assert
+        assertEquals(senderFutures, futures);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_020: [The function shall throw IllegalArgumentException if the batch is null or empty]
+    @Test (expected = IllegalArgumentException.class)
+    public void send_batch_async_throws_on_null_batch() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, IotHubServiceClientProtocol.AMQPS);
+        // Act
+        serviceClient.sendBatchAsync(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_021: [The function shall fail all the futures with IOException if the member AMQP sender object has not been initialized]
+    @Test
+    public void send_batch_async_fails_futures_if_sender_not_initialized() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(serviceClient, "amqpMessageSender", null);
+        final List<Map.Entry<String, Message>> batch = new ArrayList<>();
+        batch.add(new AbstractMap.SimpleEntry<>("device1", new Message("HELLO")));
+        batch.add(new AbstractMap.SimpleEntry<>("device2", new Message("HELLO")));
+        // Act
+        List<CompletableFuture<Void>> futures = serviceClient.sendBatchAsync(batch);
+        // Assert
+        assertEquals(2, futures.size());
+        assertTrue(futures.get(0).isCompletedExceptionally());
+        assertTrue(futures.get(1).isCompletedExceptionally());
+    }
+
+    private static CompletableFuture<Void> failedFuture(Exception exception)
+    {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
 }
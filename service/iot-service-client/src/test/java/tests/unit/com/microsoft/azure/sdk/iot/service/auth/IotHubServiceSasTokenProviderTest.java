@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for IotHubServiceSasTokenProvider.
+ * Each test uses its own host name, so the tokens cached by one test are never seen by another.
+ */
+@RunWith(JMockit.class)
+public class IotHubServiceSasTokenProviderTest
+{
+    private static final String TOKEN = "SharedAccessSignature sr=hostname.b.c.d&sig=SIGNATURE&se=EXPIRY&skn=ACCESSKEYNAME";
+
+    private static IotHubConnectionString createConnectionString(String hostName) throws Exception
+    {
+        return createConnectionString(hostName, "1234567890abcdefghijklmnopqrstvwxyz=");
+    }
+
+    private static IotHubConnectionString createConnectionString(String hostName, String sharedAccessKey) throws Exception
+    {
+        String connectionString = "HostName=" + hostName + ".b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=" + sharedAccessKey;
+        return IotHubConnectionStringBuilder.createConnectionString(connectionString);
+    }
+
+    private static long now()
+    {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_001: [The function shall throw IllegalArgumentException if the input object is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void getSasToken_input_null()
+    {
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [The function shall use the same provider for all connection strings with the same host name and shared access key name.]
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_005: [Otherwise, the function shall return the cached token.]
+    @Test
+    public void getSasToken_reuses_token_of_same_connection_string(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString1 = createConnectionString("reuse");
+        final IotHubConnectionString iotHubConnectionString2 = createConnectionString("reuse");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+                mockToken.toString();
+                result = TOKEN;
+            }
+        };
+
+        // Act
+        String token1 = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString1);
+        String token2 = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString2);
+        String token3 = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString1);
+
+        // Assert
+        assertEquals(TOKEN, token1);
+        assertEquals(TOKEN, token2);
+        assertEquals(TOKEN, token3);
+        new Verifications()
+        {
+            {
+                new IotHubServiceSasToken((IotHubConnectionString) any);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [The function shall use the same provider for all connection strings with the same host name and shared access key name.]
+    @Test
+    public void getSasToken_creates_token_per_connection_string(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString1 = createConnectionString("perstring1");
+        final IotHubConnectionString iotHubConnectionString2 = createConnectionString("perstring2");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+            }
+        };
+
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString1);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString2);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                new IotHubServiceSasToken(iotHubConnectionString1);
+                times = 1;
+                new IotHubServiceSasToken(iotHubConnectionString2);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_003: [If there is no token, or the token expires within a minute, the function shall create a new token before returning.]
+    @Test
+    public void getSasToken_creates_new_token_if_expiring(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = createConnectionString("expiring");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 30;
+            }
+        };
+
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                new IotHubServiceSasToken(iotHubConnectionString);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_004: [If the token is in the last tenth of its lifetime, the function shall create a new token, and concurrent calls shall return the current token while it is created.]
+    @Test
+    public void getSasToken_renews_token_in_renewal_window(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = createConnectionString("renewal");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+            }
+        };
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        Map<String, Object> providers = Deencapsulation.getField(IotHubServiceSasTokenProvider.class, "PROVIDERS");
+        Deencapsulation.setField(providers.get("renewal.b.c.d/ACCESSKEYNAME"), "renewalTime", 0L);
+
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                new IotHubServiceSasToken(iotHubConnectionString);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [The function shall use the same provider for all connection strings with the same host name and shared access key name.]
+    @Test
+    public void getSasToken_does_not_keep_the_key_in_the_cache(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = createConnectionString("cachekey");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+            }
+        };
+
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        // Assert
+        Map<String, Object> providers = Deencapsulation.getField(IotHubServiceSasTokenProvider.class, "PROVIDERS");
+        assertTrue(providers.containsKey("cachekey.b.c.d/ACCESSKEYNAME"));
+        for (String key : providers.keySet())
+        {
+            assertFalse(key.contains(iotHubConnectionString.getSharedAccessKey()));
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_006: [If the shared access key changed, the function shall replace the provider, so the token is signed with the new key.]
+    @Test
+    public void getSasToken_creates_new_token_if_key_changed(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString1 = createConnectionString("rotation", "1234567890abcdefghijklmnopqrstvwxyz=");
+        final IotHubConnectionString iotHubConnectionString2 = createConnectionString("rotation", "abcdefghijklmnopqrstvwxyz1234567890=");
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+            }
+        };
+
+        // Act
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString1);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString2);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString2);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                new IotHubServiceSasToken(iotHubConnectionString1);
+                times = 1;
+                new IotHubServiceSasToken(iotHubConnectionString2);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_007: [If there are already 64 providers, the function shall drop one of them before adding a new one.]
+    @Test
+    public void getSasToken_bounds_the_number_of_providers(@Mocked final IotHubServiceSasToken mockToken) throws Exception
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockToken.getExpiryTime();
+                result = now() + 3600;
+            }
+        };
+
+        // Act
+        for (int i = 0; i < 100; i++)
+        {
+            IotHubServiceSasTokenProvider.getSasToken(createConnectionString("bound" + i));
+        }
+
+        // Assert
+        Map<String, Object> providers = Deencapsulation.getField(IotHubServiceSasTokenProvider.class, "PROVIDERS");
+        assertTrue(providers.size() <= 64);
+        assertTrue(providers.containsKey("bound99.b.c.d/ACCESSKEYNAME"));
+    }
+}
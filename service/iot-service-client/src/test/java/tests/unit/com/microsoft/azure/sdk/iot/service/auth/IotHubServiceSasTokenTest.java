@@ -10,6 +10,7 @@ import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import mockit.Deencapsulation;
 import mockit.Expectations;
+import mockit.Verifications;
 import com.microsoft.azure.sdk.iot.deps.util.Base64;
 import org.junit.Test;
 
@@ -127,4 +128,47 @@ public class IotHubServiceSasTokenTest
         Deencapsulation.setField(iotHubConnectionString, "hostName", null);
         IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_009: [The constructor shall reuse the HmacSHA256 Mac instance of the calling thread.]
+    @Test
+    public void constructor_reuses_mac_of_thread() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        new IotHubServiceSasToken(iotHubConnectionString);
+        new Expectations(Mac.class)
+        {
+        };
+
+        // Act
+        new IotHubServiceSasToken(iotHubConnectionString);
+        new IotHubServiceSasToken(iotHubConnectionString);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                Mac.getInstance(anyString);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_010: [The function shall return the expiry time of the token, in seconds since the UNIX epoch.]
+    @Test
+    public void getExpiryTime_returns_expiry_time() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
+
+        // Act
+        long expiryTime = iotHubServiceSasToken.getExpiryTime();
+
+        // Assert
+        assertEquals(expiryTime, (long)Deencapsulation.getField(iotHubServiceSasToken, "expiryTime"));
+        assertEquals(iotHubServiceSasToken.toString().contains("&se=" + expiryTime + "&"), true);
+    }
 }
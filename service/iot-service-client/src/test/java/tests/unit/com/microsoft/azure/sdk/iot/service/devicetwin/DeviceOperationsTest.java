@@ -17,7 +17,9 @@ import mockit.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
@@ -26,6 +28,9 @@ import java.util.Map;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for Http requester
@@ -796,6 +801,192 @@ public class DeviceOperationsTest
         };
     }
 
+    //Tests_SRS_DEVICE_OPERATIONS_25_019: [The request shall add to the HTTP header all the additional custom headers set for this request.]
+    @Test
+    public void requestWithCustomHeadersSetsHeadersOnlyOnThatRequest(@Mocked IotHubServiceSasToken iotHubServiceSasToken,
+                                                                      @Mocked HttpRequest httpRequest) throws Exception
+    {
+        //Arrange
+        Map<String, String> headers = new HashMap<>();
+        headers.put("TestKey", "TestValue");
+
+        //act
+        DeviceOperations.request(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                headers);
+        DeviceOperations.request(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                httpRequest.setHeaderField("TestKey", "TestValue");
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICE_OPERATIONS_21_022: [If no `customHeaders` are provided, the request shall add to the HTTP header the custom headers set by setHeaders, if any, and clear them.]
+    @Test
+    public void requestWithCustomHeadersDoesNotTakeHeadersSetForNextRequest(@Mocked IotHubServiceSasToken iotHubServiceSasToken,
+                                                                             @Mocked HttpRequest httpRequest) throws Exception
+    {
+        //Arrange
+        Map<String, String> headers = new HashMap<>();
+        headers.put("TestKey", "TestValue");
+        DeviceOperations.setHeaders(headers);
+
+        //act
+        DeviceOperations.request(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                null);
+
+        //assert
+        assertEquals(headers, Deencapsulation.getField(DeviceOperations.class, "headers"));
+        new Verifications()
+        {
+            {
+                httpRequest.setHeaderField("TestKey", "TestValue");
+                times = 0;
+            }
+        };
+        Deencapsulation.setField(DeviceOperations.class, "headers", null);
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_023: [The requestStreamed shall create and send the request in the same way as request, but leave the body of the response unread in the response body stream.] */
+    @Test
+    public void requestStreamedSucceed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest)
+            throws Exception
+    {
+        //arrange
+        final boolean[] isClosed = { false };
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[0])
+        {
+            @Override
+            public void close()
+            {
+                isClosed[0] = true;
+            }
+        };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        HttpResponse sendResponse = new HttpResponse(200, bodyStream, headerFields, new byte[0]);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("TestKey", "TestValue");
+
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpRequest.sendStreamed();
+                result = sendResponse;
+            }
+        };
+
+        //act
+        HttpResponse response = DeviceOperations.requestStreamed(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                headers);
+
+        //assert
+        assertEquals(response, sendResponse);
+        new Verifications()
+        {
+            {
+                new HttpRequest(new URL(STANDARD_URL), HttpMethod.POST, STANDARD_PAYLOAD);
+                times = 1;
+                httpRequest.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
+                times = 1;
+                httpRequest.setHeaderField(AUTHORIZATION, STANDARD_SASTOKEN_STRING);
+                times = 1;
+                httpRequest.setHeaderField("TestKey", "TestValue");
+                times = 1;
+                httpRequest.send();
+                times = 0;
+                httpRequest.sendStreamed();
+                times = 1;
+            }
+        };
+        assertFalse(isClosed[0]);
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_024: [If the resulted HttpResponseStatus represents fail, the requestStreamed shall close the response body stream and throw proper Exception by calling httpResponseVerification.] */
+    @Test
+    public void requestStreamedClosesBodyStreamOnHttpResponseVerificationFailed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest)
+            throws Exception
+    {
+        //arrange
+        final boolean[] isClosed = { false };
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[0])
+        {
+            @Override
+            public void close()
+            {
+                isClosed[0] = true;
+            }
+        };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        final byte[] errorReason = "{\"ExceptionMessage\":\"This is the error message\"}".getBytes();
+        HttpResponse sendResponse = new HttpResponse(400, bodyStream, headerFields, errorReason);
+
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpRequest.sendStreamed();
+                result = sendResponse;
+            }
+        };
+
+        //act
+        try
+        {
+            DeviceOperations.requestStreamed(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0,
+                    null);
+            fail("requestStreamed did not throw");
+        }
+        catch (IotHubBadFormatException expected)
+        {
+            // Expected.
+        }
+
+        //assert
+        assertTrue(isClosed[0]);
+    }
+
     //Tests_SRS_DEVICE_OPERATIONS_25_021: [If the headers map is null or empty then this method shall throw IllegalArgumentException.]
     @Test (expected = IllegalArgumentException.class)
     public void setCustomHeadersThrowsOnNull() throws Exception
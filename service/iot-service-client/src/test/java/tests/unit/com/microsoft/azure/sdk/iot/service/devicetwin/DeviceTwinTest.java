@@ -23,6 +23,8 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -1103,6 +1105,84 @@ public class DeviceTwinTest
         };
     }
 
+    //Tests_SRS_DEVICETWIN_21_071: [The method shall create a new Query Object of Type TWIN with the provided maxPrefetchedPages, and send the request for the first page by calling sendQueryRequest.]
+    //Tests_SRS_DEVICETWIN_21_072: [The method shall return the stream of the query, with each element parsed as a DeviceTwinDevice.]
+    @Test
+    public void queryTwinStreamSucceeds(@Mocked DeviceTwinDevice mockedDevice) throws IotHubException, IOException
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+
+        new NonStrictExpectations()
+        {
+            {
+                new Query(anyString, anyInt, QueryType.TWIN, 3);
+                result = mockedQuery;
+                mockedQuery.stream();
+                result = Stream.of((Object) "{\"deviceId\":\"testDevice\"}");
+            }
+        };
+
+        //act
+        List<DeviceTwinDevice> devices = testTwin.queryTwinStream(VALID_SQL_QUERY, 10, 3).collect(Collectors.toList());
+
+        //assert
+        assertEquals(1, devices.size());
+        new Verifications()
+        {
+            {
+                new Query(VALID_SQL_QUERY, 10, QueryType.TWIN, 3);
+                times = 1;
+                Deencapsulation.invoke(mockedQuery, "sendQueryRequest", new Class[] {IotHubConnectionString.class, URL.class, HttpMethod.class, Long.class}, any, any, HttpMethod.POST, any);
+                times = 1;
+                mockedTwinParser.updateTwin("{\"deviceId\":\"testDevice\"}");
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICETWIN_21_073: [If the pageSize and maxPrefetchedPages are not provided, the method shall use a pageSize of 100 and prefetch up to 2 pages.]
+    @Test
+    public void queryTwinStreamUsesDefaultPageSizeAndPrefetch() throws IotHubException, IOException
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedQuery.stream();
+                result = Stream.empty();
+            }
+        };
+
+        //act
+        testTwin.queryTwinStream(VALID_SQL_QUERY);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new Query(VALID_SQL_QUERY, 100, QueryType.TWIN, 2);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICETWIN_21_070: [The method shall throw IllegalArgumentException if the page size is zero or negative.]
+    @Test (expected = IllegalArgumentException.class)
+    public void queryTwinStreamThrowsOnZeroPageSize() throws IotHubException, IOException
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+
+        //act
+        testTwin.queryTwinStream(VALID_SQL_QUERY, 0, 2);
+    }
+
     //Tests_SRS_DEVICETWIN_25_047: [ The method shall throw IllegalArgumentException if the query is null or empty.]
     @Test (expected = IllegalArgumentException.class)
     public void twinQueryThrowsOnNullQuery(@Mocked DeviceTwinDevice mockedDevice) throws IotHubException, IOException
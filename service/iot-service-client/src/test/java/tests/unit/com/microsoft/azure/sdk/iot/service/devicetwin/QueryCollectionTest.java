@@ -22,6 +22,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.Map;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.*;
@@ -313,7 +314,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -328,10 +329,7 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                DeviceOperations.setHeaders(expectedValidRequestHeaders);
-                times = 1;
-
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout, expectedValidRequestHeaders);
                 times = 1;
             }
         };
@@ -354,7 +352,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -379,7 +377,7 @@ public class QueryCollectionTest
         new NonStrictExpectations()
         {
             {
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -396,10 +394,7 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                DeviceOperations.setHeaders(expectedValidRequestHeaders);
-                times = 1;
-
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout, expectedValidRequestHeaders);
                 times = 1;
             }
         };
@@ -430,7 +425,7 @@ public class QueryCollectionTest
                 expectedQueryStringJson.getBytes();
                 result = expectedQueryStringBytes;
 
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -445,7 +440,7 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (Map<String, String>) any);
                 times = 1;
             }
         };
@@ -477,7 +472,7 @@ public class QueryCollectionTest
                 expectedQueryStringJson.getBytes();
                 result = expectedQueryStringBytes;
 
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -517,7 +512,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (Map<String, String>) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -698,10 +693,7 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                DeviceOperations.setHeaders(expectedValidRequestHeaders);
-                times = 1;
-
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, null, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, null, expectedTimeout, expectedValidRequestHeaders);
                 times = 1;
             }
         };
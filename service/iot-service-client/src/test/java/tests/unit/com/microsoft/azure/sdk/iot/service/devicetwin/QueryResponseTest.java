@@ -10,9 +10,14 @@ import com.microsoft.azure.sdk.iot.service.devicetwin.QueryResponse;
 import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -105,6 +110,63 @@ public class QueryResponseTest
         QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, json);
     }
 
+    //Tests_SRS_QUERY_RESPONSE_21_002: [The constructor shall parse the json response as UTF-8 while it is read from the stream, using QueryResponseParser, and set the iterator.]
+    @Test
+    public void constructorWithStreamSucceeds() throws IOException
+    {
+        //arrange
+        final InputStream jsonStream = new ByteArrayInputStream("testJson".getBytes(StandardCharsets.UTF_8));
+        final List<String> testList = new LinkedList();
+        testList.add("testValue");
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedQueryResponseParser.getJsonItems();
+                result = testList;
+            }
+        };
+
+        //act
+        QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, new Class[] {InputStream.class}, jsonStream);
+
+        //assert
+        assertEqualsIterator(testList.iterator(), Deencapsulation.getField(testResponse, "responseElementsIterator" ));
+        new Verifications()
+        {
+            {
+                new QueryResponseParser((Reader) any);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_QUERY_RESPONSE_21_001: [If the jsonStream is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullStream() throws IOException
+    {
+        //act
+        Deencapsulation.newInstance(QueryResponse.class, new Class[] {InputStream.class}, (InputStream) null);
+    }
+
+    @Test (expected = IOException.class)
+    public void constructorWithStreamThrowsWhenParserThrows() throws IOException
+    {
+        //arrange
+        final InputStream jsonStream = new ByteArrayInputStream("testJson".getBytes(StandardCharsets.UTF_8));
+
+        new NonStrictExpectations()
+        {
+            {
+                new QueryResponseParser((Reader) any);
+                result = new IOException();
+            }
+        };
+
+        //act
+        Deencapsulation.newInstance(QueryResponse.class, new Class[] {InputStream.class}, jsonStream);
+    }
+
     //Tests_SRS__QUERY_RESPONSE_25_003: [The method shall return true if next element from QueryResponse is available and false otherwise.]
     @Test
     public void hasNextReturnsTrue() throws IOException
@@ -17,12 +17,17 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import mockit.*;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -358,6 +363,52 @@ public class QueryTest
         assertEquals(DEFAULT_QUERY_TYPE, Deencapsulation.getField(testQuery, "responseQueryType"));
     }
 
+    //Tests_SRS_QUERY_21_031: [The method shall parse the response body while it is read from the connection, and close it.]
+    @Test
+    public void sendQueryRequestParsesAndClosesResponseBodyStream() throws IotHubException, IOException
+    {
+        //arrange
+        final boolean[] isClosed = { false };
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[0])
+        {
+            @Override
+            public void close()
+            {
+                isClosed[0] = true;
+            }
+        };
+        final Map<String, String> testHeaderResponseMap = new HashMap<>();
+        testHeaderResponseMap.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+
+        Query testQuery = Deencapsulation.newInstance(Query.class, DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                result = testHeaderResponseMap;
+                mockHttpResponse.getBodyStream();
+                result = bodyStream;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(testQuery, "sendQueryRequest",  mockIotHubConnectionString, mockUrl, mockHttpMethod, (long)0);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendStreamed();
+                times = 1;
+                mockHttpRequest.send();
+                times = 0;
+            }
+        };
+        assertTrue(isClosed[0]);
+        assertNotNull(Deencapsulation.getField(testQuery, "queryResponse"));
+    }
+
     @Test
     public void sendQueryRequestForNoSqlSucceeds() throws IotHubException, IOException
     {
@@ -502,7 +553,7 @@ public class QueryTest
             {
                 mockHttpResponse.getHeaderFields();
                 result = testHeaderResponseMap;
-                Deencapsulation.newInstance(QueryResponse.class, anyString);
+                Deencapsulation.newInstance(QueryResponse.class, new Class[] {InputStream.class}, (InputStream) any);
                 result = new IOException("test");
             }
         };
@@ -924,4 +975,179 @@ public class QueryTest
         //act
         Object next = Deencapsulation.invoke(testQuery, "next");
     }
+
+    //Tests_SRS_QUERY_21_023: [If the maxPrefetchedPages is negative the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithPrefetchThrowsOnNegativeMaxPrefetchedPages() throws IllegalArgumentException
+    {
+        //act
+        Query testQuery = new Query(DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE, -1);
+    }
+
+    //Tests_SRS_QUERY_21_024: [If prefetching is enabled and the response has a continuation token, the method shall start requesting the next pages in the background, keeping at most maxPrefetchedPages pages that were not consumed yet.]
+    //Tests_SRS_QUERY_21_025: [If no further query response is available and a page was prefetched, the method shall continue with the prefetched page, waiting for it if it was not received yet.]
+    @Test
+    public void hasNextContinuesWithPrefetchedPage() throws IotHubException, IOException
+    {
+        //arrange
+        final String testResponseToken = UUID.randomUUID().toString();
+        final Map<String, String> firstPageHeaders = new HashMap<>();
+        firstPageHeaders.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+        firstPageHeaders.put("x-ms-continuation", testResponseToken);
+        final Map<String, String> lastPageHeaders = new HashMap<>();
+        lastPageHeaders.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+
+        Query testQuery = new Query(DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE, 1);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                returns(firstPageHeaders, lastPageHeaders);
+                mockedQueryResponse.hasNext();
+                returns(false, true);
+            }
+        };
+
+        testQuery.sendQueryRequest(mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+
+        //act
+        boolean hasNext = testQuery.hasNext();
+
+        //assert
+        assertTrue(hasNext);
+        assertNull(Deencapsulation.getField(testQuery, "responseContinuationToken"));
+        assertEquals(testResponseToken, Deencapsulation.getField(testQuery, "requestContinuationToken"));
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, mockHttpMethod, (byte[]) any);
+                times = 2;
+                mockHttpRequest.setHeaderField("x-ms-continuation", testResponseToken);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_QUERY_21_026: [If the request for a prefetched page failed, hasNext shall throw the exception of that request, and the next call shall request the page again.]
+    @Test
+    public void hasNextThrowsIfPrefetchedPageFailedAndRequestsItAgain() throws IotHubException, IOException
+    {
+        //arrange
+        final String testResponseToken = UUID.randomUUID().toString();
+        final Map<String, String> firstPageHeaders = new HashMap<>();
+        firstPageHeaders.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+        firstPageHeaders.put("x-ms-continuation", testResponseToken);
+        final Map<String, String> invalidPageHeaders = new HashMap<>();
+        invalidPageHeaders.put("x-ms-item-type", QueryType.JOB_RESPONSE.getValue());
+        final Map<String, String> lastPageHeaders = new HashMap<>();
+        lastPageHeaders.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+
+        Query testQuery = new Query(DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE, 2);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                returns(firstPageHeaders, invalidPageHeaders, lastPageHeaders);
+                mockedQueryResponse.hasNext();
+                returns(false, false, true);
+            }
+        };
+
+        testQuery.sendQueryRequest(mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+
+        //act
+        try
+        {
+            testQuery.hasNext();
+            fail("hasNext shall throw the failure of the prefetched page");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        boolean hasNext = testQuery.hasNext();
+
+        //assert
+        assertTrue(hasNext);
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, mockHttpMethod, (byte[]) any);
+                times = 3;
+                mockHttpRequest.setHeaderField("x-ms-continuation", testResponseToken);
+                times = 2;
+            }
+        };
+    }
+
+    //Tests_SRS_QUERY_21_027: [The method shall stop the prefetch task, if any, and drop the prefetched pages.]
+    @Test
+    public void cancelPrefetchDropsPrefetchedPages() throws IotHubException, IOException
+    {
+        //arrange
+        final Map<String, String> testHeaderResponseMap = new HashMap<>();
+        testHeaderResponseMap.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+        testHeaderResponseMap.put("x-ms-continuation", UUID.randomUUID().toString());
+
+        Query testQuery = new Query(DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE, 1);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                result = testHeaderResponseMap;
+            }
+        };
+
+        testQuery.sendQueryRequest(mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+        assertNotNull(Deencapsulation.getField(testQuery, "prefetchTask"));
+
+        //act
+        testQuery.cancelPrefetch();
+
+        //assert
+        assertNull(Deencapsulation.getField(testQuery, "prefetchTask"));
+        assertNull(Deencapsulation.getField(testQuery, "prefetchedPages"));
+    }
+
+    //Tests_SRS_QUERY_21_028: [The method shall return a sequential stream over the elements returned by next, for as long as hasNext returns true.]
+    //Tests_SRS_QUERY_21_030: [Closing the stream shall cancel the prefetch.]
+    @Test
+    public void streamReturnsAllElements() throws IotHubException, IOException
+    {
+        //arrange
+        final Map<String, String> testHeaderResponseMap = new HashMap<>();
+        testHeaderResponseMap.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+
+        Query testQuery = new Query(DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE, 1);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                result = testHeaderResponseMap;
+                mockedQueryResponse.hasNext();
+                returns(true, true, false);
+                mockedQueryResponse.next();
+                returns("first", "second");
+            }
+        };
+
+        testQuery.sendQueryRequest(mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+
+        //act
+        List<Object> elements;
+        try (Stream<Object> stream = testQuery.stream())
+        {
+            elements = stream.collect(Collectors.toList());
+        }
+
+        //assert
+        assertEquals(2, elements.size());
+        assertEquals("first", elements.get(0));
+        assertEquals("second", elements.get(1));
+        assertNull(Deencapsulation.getField(testQuery, "prefetchTask"));
+    }
 }
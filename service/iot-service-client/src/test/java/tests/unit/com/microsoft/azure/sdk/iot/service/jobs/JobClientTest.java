@@ -30,8 +30,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -1876,6 +1879,54 @@ public class JobClientTest
         };
     }
 
+    //Tests_SRS_JOBCLIENT_21_038: [The queryDeviceJobStream shall create a query object for the type DEVICE_JOB with the provided maxPrefetchedPages, and send the request for the first page by calling sendQueryRequest.]
+    //Tests_SRS_JOBCLIENT_21_039: [The queryDeviceJobStream shall return the stream of the query, with each element parsed as a JobResult.]
+    //Tests_SRS_JOBCLIENT_21_040: [If the pageSize and maxPrefetchedPages are not specified, the queryDeviceJobStream shall use a pageSize of 100 and prefetch up to 2 pages.]
+    @Test
+    public void queryDeviceJobStreamSucceeds(@Mocked Query mockedQuery, @Mocked JobResult mockedJobResult) throws IotHubException, IOException
+    {
+        //arrange
+        final String connectionString = "testString";
+        JobClient testJobClient = JobClient.createFromConnectionString(connectionString);
+
+        new NonStrictExpectations()
+        {
+            {
+                new Query(anyString, anyInt, QueryType.DEVICE_JOB, anyInt);
+                result = mockedQuery;
+                mockedQuery.stream();
+                result = Stream.of((Object) "{}");
+            }
+        };
+
+        //act
+        List<JobResult> jobResults = testJobClient.queryDeviceJobStream(VALID_SQL_QUERY).collect(Collectors.toList());
+
+        //assert
+        assertEquals(1, jobResults.size());
+        new Verifications()
+        {
+            {
+                new Query(VALID_SQL_QUERY, 100, QueryType.DEVICE_JOB, 2);
+                times = 1;
+                Deencapsulation.invoke(mockedQuery, "sendQueryRequest", new Class[] {IotHubConnectionString.class, URL.class, HttpMethod.class, Long.class}, any, any, HttpMethod.POST, any);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_JOBCLIENT_21_037: [If the pageSize is zero or negative, the queryDeviceJobStream shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void queryDeviceJobStreamThrowsOnNegativePageSize() throws IotHubException, IOException
+    {
+        //arrange
+        final String connectionString = "testString";
+        JobClient testJobClient = JobClient.createFromConnectionString(connectionString);
+
+        //act
+        testJobClient.queryDeviceJobStream(VALID_SQL_QUERY, -1, 2);
+    }
+
     //Tests_SRS_JOBCLIENT_25_036: [If the sqlQuery is null, empty, or invalid, the queryDeviceJob shall throw IllegalArgumentException.]
     @Test (expected = IllegalArgumentException.class)
     public void queryDeviceJobThrowsOnNullQuery(@Mocked Query mockedQuery) throws IotHubException, IOException
@@ -12,10 +12,13 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotific
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.Source;
@@ -32,7 +35,9 @@ import org.apache.qpid.proton.reactor.*;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -816,4 +821,52 @@ public class AmqpFileUploadNotificationReceivedHandlerTest
             { return null; }
         };
     }
-}
\ No newline at end of file
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFILEUPLOADNOTIFICATIONRECEIVEDHANDLER_21_022: [In persistent mode, the event handler shall call the FeedbackReceived callback with the Data body, settle the Delivery with the Accepted outcome if the callback returns or with the Modified (delivery failed) outcome if it throws, and keep the link open.]
+    @Test
+    public void onDeliveryPersistentAcceptsAfterCallbackAndKeepsLinkOpen()
+    {
+        // Arrange
+        final List<String> receivedNotifications = new ArrayList<>();
+        AmqpFeedbackReceivedEvent recordingEvent = receivedNotifications::add;
+        Object amqpReceiveHandler = Deencapsulation.newInstance(AmqpFileUploadNotificationReceivedHandler.class, "aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS, recordingEvent, true);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = receiver;
+                receiver.current();
+                result = delivery;
+                delivery.isReadable();
+                result = true;
+                delivery.isPartial();
+                result = false;
+                delivery.getLink();
+                result = receiver;
+                receiver.getName();
+                result = "filenotificationreceiver";
+                message.getBody();
+                result = new Data(new Binary("notification".getBytes()));
+            }
+        };
+
+        // Act
+        Deencapsulation.invoke(amqpReceiveHandler, "onDelivery", event);
+
+        // Assert
+        assertEquals(1, receivedNotifications.size());
+        new Verifications()
+        {
+            {
+                delivery.disposition(Accepted.getInstance());
+                times = 1;
+                delivery.settle();
+                times = 1;
+                session.close();
+                times = 0;
+                connection.close();
+                times = 0;
+            }
+        };
+    }
+}
@@ -12,11 +12,15 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFeedbackReceivedH
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Modified;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
@@ -31,11 +35,15 @@ import org.apache.qpid.proton.reactor.*;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 
 import static com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFeedbackReceivedHandler.RECEIVE_TAG;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /** Unit tests for AmqpFeedbackReceivedHandler */
 @RunWith(JMockit.class)
@@ -732,4 +740,108 @@ public class AmqpReceiveHandlerTest
             { return null; }
         };
     }
-}
\ No newline at end of file
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_018: [In persistent mode, the event handler shall call the FeedbackReceived callback, settle the Delivery with the Accepted outcome if the callback returns or with the Modified (delivery failed) outcome if it throws, and keep the link open.]
+    @Test
+    public void onDelivery_persistent_accepts_after_callback_and_keeps_link_open()
+    {
+        // Arrange
+        final List<String> receivedFeedback = new ArrayList<>();
+        AmqpFeedbackReceivedHandler amqpReceiveHandler = new AmqpFeedbackReceivedHandler("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS, receivedFeedback::add, true);
+        recordReadableDelivery();
+
+        // Act
+        amqpReceiveHandler.onDelivery(event);
+
+        // Assert
+        assertEquals(1, receivedFeedback.size());
+        new Verifications()
+        {
+            {
+                delivery.disposition(Accepted.getInstance());
+                times = 1;
+                delivery.settle();
+                times = 1;
+                session.close();
+                times = 0;
+                connection.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_018: [In persistent mode, the event handler shall call the FeedbackReceived callback, settle the Delivery with the Accepted outcome if the callback returns or with the Modified (delivery failed) outcome if it throws, and keep the link open.]
+    @Test
+    public void onDelivery_persistent_abandons_if_callback_throws()
+    {
+        // Arrange
+        AmqpFeedbackReceivedHandler amqpReceiveHandler = new AmqpFeedbackReceivedHandler("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS,
+                feedbackJson -> { throw new IllegalStateException(); }, true);
+        recordReadableDelivery();
+
+        // Act
+        amqpReceiveHandler.onDelivery(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                delivery.disposition((DeliveryState) withInstanceOf(Modified.class));
+                times = 1;
+                delivery.settle();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_019: [The function shall return true if the handler is persistent, is not closed, and has no connection.]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_020: [The function shall close the connection, if any, and mark the handler as closed.]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_021: [In persistent mode, if the connection is lost, the event handler shall close and release it, so the reactor thread opens a new one.]
+    @Test
+    public void persistent_handler_releases_lost_connection()
+    {
+        // Arrange
+        AmqpFeedbackReceivedHandler amqpReceiveHandler = new AmqpFeedbackReceivedHandler("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS, amqpFeedbackReceivedEvent, true);
+        new NonStrictExpectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+            }
+        };
+        amqpReceiveHandler.onConnectionInit(event);
+        assertFalse(amqpReceiveHandler.isConnectionNeeded());
+
+        // Act
+        amqpReceiveHandler.onConnectionRemoteClose(event);
+
+        // Assert
+        assertTrue(amqpReceiveHandler.isConnectionNeeded());
+        amqpReceiveHandler.close();
+        assertFalse(amqpReceiveHandler.isConnectionNeeded());
+        assertTrue(amqpReceiveHandler.isClosed());
+    }
+
+    private void recordReadableDelivery()
+    {
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = receiver;
+                receiver.current();
+                result = delivery;
+                delivery.isReadable();
+                result = true;
+                delivery.isPartial();
+                result = false;
+                delivery.getLink();
+                result = receiver;
+                receiver.getName();
+                result = RECEIVE_TAG;
+                message.getBody();
+                result = new AmqpValue("feedback");
+            }
+        };
+    }
+}
@@ -21,6 +21,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -183,4 +185,56 @@ public class AmqpReceiveTest
         // Act
         amqpReceive.onFeedbackReceived(jsonData);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_012: [The function shall throw IllegalArgumentException if the callback is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void startReceiving_null_callback_throws() throws IOException
+    {
+        // Arrange
+        AmqpReceive amqpReceive = new AmqpReceive("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        // Act
+        amqpReceive.startReceiving(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_013: [The function shall throw IllegalStateException if the receiver is already receiving.]
+    // Assert
+    @Test (expected = IllegalStateException.class)
+    public void startReceiving_twice_throws() throws IOException
+    {
+        // Arrange
+        AmqpReceive amqpReceive = new AmqpReceive("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        ExecutorService runningExecutor = Executors.newSingleThreadExecutor();
+        Deencapsulation.setField(amqpReceive, "persistentReceiveExecutor", runningExecutor);
+        try
+        {
+            // Act
+            amqpReceive.startReceiving(feedbackBatch -> {});
+        }
+        finally
+        {
+            runningExecutor.shutdown();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_016: [The function shall request the reactor thread to close the connection and wait for it to finish.]
+    @Test
+    public void stopReceiving_wakes_up_reactor_and_releases_thread() throws IOException
+    {
+        // Arrange
+        AmqpReceive amqpReceive = new AmqpReceive("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(amqpReceive, "persistentReceiveExecutor", Executors.newSingleThreadExecutor());
+        Deencapsulation.setField(amqpReceive, "persistentReactor", reactor);
+        new Expectations()
+        {
+            {
+                reactor.wakeup();
+            }
+        };
+        // Act
+        amqpReceive.stopReceiving();
+        // Assert
+        assertNull(Deencapsulation.getField(amqpReceive, "persistentReceiveExecutor"));
+        assertNull(Deencapsulation.getField(amqpReceive, "persistentReactor"));
+    }
 }
@@ -5,6 +5,7 @@
 
 package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.deps.transport.amqp.AmqpMessageEncoder;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
@@ -13,6 +14,7 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSendHandler;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
@@ -40,9 +42,10 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.BufferOverflowException;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /** Unit tests for AmqpSendHandler */
 @RunWith(JMockit.class)
@@ -382,11 +385,11 @@ public class AmqpSendHandlerTest
         amqpSendHandler.onLinkInit(event);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_017: [The event handler shall get the Sender (Proton) object from the link]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall encode the message and copy to the byte buffer]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall set the delivery tag on the Sender (Proton) object]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall send the encoded bytes]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall close the Sender, Session and Connection]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall get the Sender (Proton) object from the link and send the queued messages if it is the current sender]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_034: [The function shall send queued messages while the sender link is open and has credit.]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The function shall set the delivery tag on the Sender (Proton) object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The function shall send the encoded bytes]
     @Test
     public void onLinkFlow_call_flow_ok() throws UnsupportedEncodingException
     {
@@ -394,63 +397,153 @@ public class AmqpSendHandlerTest
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String hostAddr = hostName + ":5671";
         String deviceId = "deviceId";
         String content = "abcdefghijklmnopqrst";
         com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message(content);
-        String endpoint = "/messages/devicebound";
+        final byte[] encodedMessage = content.getBytes();
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
-        createProtonObjects();
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        amqpSendHandler.createProtonMessage(deviceId, iotMessage);
-        // Assert
-        new Expectations()
+        new NonStrictExpectations(AmqpMessageEncoder.class)
         {
             {
-                link = event.getLink();
-                link.getCredit();
-                byte[] buffer = new byte[1024];
-                message.encode(buffer, 0, 1024);
+                AmqpMessageEncoder.encode((Message) any);
+                result = encodedMessage;
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                returns(1, 0);
+                sender.delivery((byte[]) any);
+                result = delivery;
             }
         };
+        amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+        Deencapsulation.setField(amqpSendHandler, "sender", sender);
+
         // Act
         amqpSendHandler.onLinkFlow(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                AmqpMessageEncoder.encode((Message) any);
+                times = 1;
+                sender.send(encodedMessage, 0, encodedMessage.length);
+                times = 1;
+                sender.advance();
+                times = 1;
+            }
+        };
+        Map<Delivery, CompletableFuture<Void>> inFlightMessages = Deencapsulation.getField(amqpSendHandler, "inFlightMessages");
+        assertEquals(1, inFlightMessages.size());
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_017: [The event handler shall get the Sender (Proton) object from the link]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall encode the message and copy to the byte buffer]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall set the delivery tag on the Sender (Proton) object]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall send the encoded bytes]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall close the Sender, Session and Connection]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The function shall encode the message in the buffer of the calling thread and copy the encoded bytes]
     @Test
-    public void onLinkFlowBufferOverflow_call_flow_ok() throws UnsupportedEncodingException
+    public void createProtonMessageBufferOverflow_call_flow_ok() throws UnsupportedEncodingException
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String hostAddr = hostName + ":5671";
-        String deviceId = "deviceId";
-        String content = "abcdefghijklmnopqrst";
-        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message(content);
-        String endpoint = "/messages/devicebound";
         exceptionCount = 0;
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         createProtonObjects();
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<Message> testMessagesToBeSent = new LinkedBlockingQueue<>();
-        testMessagesToBeSent.add(messageWithException);
-        Deencapsulation.setField(amqpSendHandler,"messagesToBeSent", testMessagesToBeSent );
+        new NonStrictExpectations()
+        {
+            {
+                Proton.message();
+                result = messageWithException;
+            }
+        };
+
+        // Act
+        CompletableFuture<Void> future = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
+
         // Assert
-        new Expectations()
+        assertEquals(1, (int)exceptionCount);
+        assertFalse(future.isDone());
+        Queue<Object> messagesToBeSent = Deencapsulation.getField(amqpSendHandler, "messagesToBeSent");
+        assertEquals(1, messagesToBeSent.size());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_040: [The function shall encode all the messages before queuing any of them.]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_041: [The function shall queue the messages in the batch order and return one future per message.]
+    @Test
+    public void createProtonMessages_queues_batch_and_returns_one_future_per_message() throws UnsupportedEncodingException
+    {
+        // Arrange
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        List<Map.Entry<String, com.microsoft.azure.sdk.iot.service.Message>> batch = new ArrayList<>();
+        batch.add(new AbstractMap.SimpleEntry<>("device1", new com.microsoft.azure.sdk.iot.service.Message("abc")));
+        batch.add(new AbstractMap.SimpleEntry<>("device2", new com.microsoft.azure.sdk.iot.service.Message("def")));
+        batch.add(new AbstractMap.SimpleEntry<>("device3", new com.microsoft.azure.sdk.iot.service.Message("ghi")));
+        Deencapsulation.setField(amqpSendHandler, "sender", sender);
+        new NonStrictExpectations(AmqpMessageEncoder.class)
         {
             {
-                link = event.getLink();
-                link.getCredit();
+                AmqpMessageEncoder.encode((Message) any);
+                result = new byte[] {1, 2, 3};
+                sender.getCredit();
+                returns(2, 1, 0);
             }
         };
+
+        // Act
+        List<CompletableFuture<Void>> futures = amqpSendHandler.createProtonMessages(batch);
+        amqpSendHandler.sendPendingMessages();
+
+        // Assert
+        assertEquals(3, futures.size());
+        new Verifications()
+        {
+            {
+                AmqpMessageEncoder.encode((Message) any);
+                times = 3;
+                properties.setTo("/devices/device1/messages/devicebound");
+                properties.setTo("/devices/device2/messages/devicebound");
+                properties.setTo("/devices/device3/messages/devicebound");
+                sender.advance();
+                times = 2;
+            }
+        };
+        Queue<Object> messagesToBeSent = Deencapsulation.getField(amqpSendHandler, "messagesToBeSent");
+        assertEquals(1, messagesToBeSent.size());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_034: [The function shall send queued messages while the sender link is open and has credit.]
+    @Test
+    public void onLinkFlow_does_not_send_without_credit() throws UnsupportedEncodingException
+    {
+        // Arrange
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        CompletableFuture<Void> future = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
+        Deencapsulation.setField(amqpSendHandler, "sender", sender);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                result = 0;
+            }
+        };
+
         // Act
         amqpSendHandler.onLinkFlow(event);
+
+        // Assert
+        assertFalse(future.isDone());
+        new Verifications()
+        {
+            {
+                sender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
     }
 
     /*
@@ -458,13 +551,11 @@ public class AmqpSendHandlerTest
 
     Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_024: [** The event handler shall get the Delivery remote state from the delivery **]**
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [** The event handler shall verify the Amqp response and add the response to a queue. **]**
+    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [** The event handler shall verify the Amqp response and complete the future of the message with it. **]**
 
     Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_026: [** The event handler shall settle the delivery. **]**
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_027: [** The event handler shall get the Sender (Proton) object from the event **]**
-
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [** The event handler shall close the Sender, Session and Connection **]**
+    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [** The event handler shall keep the Sender, Session and Connection open for the next messages **]**
      */
     @Test
     public void onDelivery_flow_ok(final @Mocked Event mockedEvent,
@@ -477,9 +568,10 @@ public class AmqpSendHandlerTest
         String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-
-        // Assert
-        new Expectations()
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Map<Delivery, CompletableFuture<Void>> inFlightMessages = Deencapsulation.getField(amqpSendHandler, "inFlightMessages");
+        inFlightMessages.put(mockedDelivery, future);
+        new NonStrictExpectations()
         {
             {
                 mockedEvent.getType();
@@ -488,94 +580,173 @@ public class AmqpSendHandlerTest
                 result = mockedDelivery;
                 mockedDelivery.getRemoteState();
                 result = mockedDeliveryState;
-                sender.close();
-                session = sender.getSession();
-                connection = session.getConnection();
-                connection.close();
+                responseVerification.getException();
+                result = null;
             }
         };
+
         // Act
         amqpSendHandler.onDelivery(mockedEvent);
-    }
-
-    /*
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_029: [** The event handler shall check the status queue to get the response for the sent message **]**
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_030: [** The event handler shall remove the response from the queue **]**
+        // Assert
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        assertTrue(inFlightMessages.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedDelivery.settle();
+                times = 1;
+                sender.close();
+                times = 0;
+                connection.close();
+                times = 0;
+            }
+        };
+    }
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-     */
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall complete the future exceptionally with the exception from the response if it is not null **]**
     @Test
-    public void sendComplete_flow_OK(final @Mocked AmqpResponseVerification mockedVerification) throws IotHubException, IOException
+    public void onDelivery_completes_future_with_exception_if_found(final @Mocked Event mockedEvent,
+                                                                    final @Mocked Delivery mockedDelivery) throws Exception
     {
         // Arrange
-        String hostName = "aaa";
-        String userName = "bbb";
-        String sasToken = "ccc";
+        final IotHubException iotHubException = new IotHubException("rejected");
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
-        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<AmqpResponseVerification> testsendStatusQueue = new LinkedBlockingQueue<>();
-        testsendStatusQueue.add(mockedVerification);
-        Deencapsulation.setField(amqpSendHandler,"sendStatusQueue", testsendStatusQueue );
-
-        // Assert
-        new Expectations()
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Map<Delivery, CompletableFuture<Void>> inFlightMessages = Deencapsulation.getField(amqpSendHandler, "inFlightMessages");
+        inFlightMessages.put(mockedDelivery, future);
+        new NonStrictExpectations()
         {
             {
-                mockedVerification.getException();
-                result = null;
+                mockedEvent.getType();
+                result = Event.Type.DELIVERY;
+                mockedEvent.getDelivery();
+                result = mockedDelivery;
+                responseVerification.getException();
+                returns(iotHubException);
             }
         };
+
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.onDelivery(mockedEvent);
+
+        // Assert
+        assertTrue(future.isCompletedExceptionally());
+        try
+        {
+            future.get();
+            fail("the future shall complete with the exception from the response");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals(iotHubException, e.getCause());
+        }
     }
 
-    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-    @Test (expected = IotHubException.class)
-    public void sendComplete_throws_exception_if_found(final @Mocked AmqpResponseVerification mockedVerification,
-                                                       final @Mocked IotHubException mockedIotHubException) throws IotHubException, IOException
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_038: [If the connection is lost, the event handler shall fail all the in flight messages with IOException and release the connection, so the next message opens a new one.]
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_039: [If the connection could not be established, the event handler shall also fail the queued messages with IOException.]
+    @Test
+    public void onTransportError_fails_in_flight_and_queued_messages(final @Mocked Delivery mockedDelivery) throws Exception
     {
         // Arrange
-        String hostName = "aaa";
-        String userName = "bbb";
-        String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
-        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<AmqpResponseVerification> testsendStatusQueue = new LinkedBlockingQueue<>();
-        testsendStatusQueue.add(mockedVerification);
-        Deencapsulation.setField(amqpSendHandler,"sendStatusQueue", testsendStatusQueue );
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+            }
+        };
+        amqpSendHandler.onConnectionInit(event);
+        CompletableFuture<Void> inFlightFuture = new CompletableFuture<>();
+        Map<Delivery, CompletableFuture<Void>> inFlightMessages = Deencapsulation.getField(amqpSendHandler, "inFlightMessages");
+        inFlightMessages.put(mockedDelivery, inFlightFuture);
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
+
+        // Act
+        amqpSendHandler.onTransportError(event);
 
         // Assert
-        new Expectations()
+        assertTrue(inFlightFuture.isCompletedExceptionally());
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertNull(Deencapsulation.getField(amqpSendHandler, "connection"));
+    }
+
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_038: [If the connection is lost, the event handler shall fail all the in flight messages with IOException and release the connection, so the next message opens a new one.]
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_035: [The function shall return true if there are queued messages, the handler is not closed, and there is no connection.]
+    @Test
+    public void onConnectionRemoteClose_keeps_queued_messages_for_the_next_connection() throws Exception
+    {
+        // Arrange
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        new NonStrictExpectations()
         {
             {
-                mockedVerification.getException();
-                result = mockedIotHubException;
+                event.getConnection();
+                result = connection;
             }
         };
+        amqpSendHandler.onConnectionInit(event);
+        amqpSendHandler.onConnectionRemoteOpen(event);
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
+        assertFalse(amqpSendHandler.isConnectionNeeded());
+
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.onConnectionRemoteClose(event);
 
+        // Assert
+        assertFalse(queuedFuture.isDone());
+        assertTrue(amqpSendHandler.isConnectionNeeded());
     }
 
-
-    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-    @Test (expected = IOException.class)
-    public void sendComplete_throws_Connection_exception_if_found(final @Mocked AmqpResponseVerification mockedVerification,
-                                                                  final @Mocked IotHubException mockedIotHubException,
-                                                                  final @Mocked Event mockedEvent) throws IotHubException, IOException
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_036: [The function shall close the Sender, Session and Connection.]
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_037: [The function shall complete the futures of all queued and in flight messages with IOException.]
+    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_033: [If the handler is closed, the function shall return a future completed with IOException.]
+    @Test
+    public void close_closes_link_and_fails_pending_messages() throws Exception
     {
         // Arrange
-        String hostName = "aaa";
-        String userName = "bbb";
-        String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
-        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        amqpSendHandler.onTransportError(mockedEvent);
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+                connection.session();
+                result = session;
+                session.sender(anyString);
+                result = sender;
+                sender.getSession();
+                result = session;
+            }
+        };
+        amqpSendHandler.onConnectionInit(event);
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
 
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.close();
+        CompletableFuture<Void> futureAfterClose = amqpSendHandler.createProtonMessage("deviceId", new com.microsoft.azure.sdk.iot.service.Message("abc"));
 
+        // Assert
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertTrue(futureAfterClose.isCompletedExceptionally());
+        assertFalse(amqpSendHandler.isConnectionNeeded());
+        new Verifications()
+        {
+            {
+                sender.close();
+                times = 1;
+                session.close();
+                times = 1;
+                connection.close();
+                times = 1;
+            }
+        };
     }
 
     private void createProtonObjects()
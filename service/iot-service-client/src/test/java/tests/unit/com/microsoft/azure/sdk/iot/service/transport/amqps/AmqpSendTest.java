@@ -7,11 +7,10 @@ package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSendHandler;
-import mockit.Deencapsulation;
-import mockit.Expectations;
-import mockit.Mocked;
+import mockit.*;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.Connection;
@@ -22,9 +21,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.*;
 
 /** Unit tests for AmqpSend */
 @RunWith(JMockit.class)
@@ -222,9 +225,10 @@ public class AmqpSendTest
         assertNull(Deencapsulation.getField(amqpSend, "amqpSendHandler"));
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The event handler shall create a Proton message with the given content]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The function shall create a Proton message with the given content]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_013: [The function shall wake up the reactor thread so it sends the message.]
     @Test
-    public void send_creates_ProtonMessage() throws Exception
+    public void sendAsync_creates_ProtonMessage_and_wakes_up_reactor() throws Exception
     {
         // Arrange
         String hostName = "aaa";
@@ -235,49 +239,119 @@ public class AmqpSendTest
         Message message = new Message(content);
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor(amqpSend);
+                result = reactor;
+            }
+        };
         amqpSend.open();
-
         AmqpSendHandler handler = Deencapsulation.getField(amqpSend, "amqpSendHandler");
-        // Assert
-        new Expectations()
+        final CompletableFuture<Void> handlerFuture = new CompletableFuture<>();
+        new NonStrictExpectations(handler)
         {
             {
-                Deencapsulation.invoke(handler, "createProtonMessage"
-                        , deviceId, message);
+                handler.createProtonMessage(deviceId, message);
+                result = handlerFuture;
             }
         };
+
         // Act
-        amqpSend.send(deviceId, message);
+        CompletableFuture<Void> future = amqpSend.sendAsync(deviceId, message);
+
+        // Assert
+        assertSame(handlerFuture, future);
+        new Verifications()
+        {
+            {
+                reactor.wakeup();
+                minTimes = 1;
+            }
+        };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The event handler shall initialize the Proton reactor object]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The event handler shall start the Proton reactor object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object on a dedicated thread]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_011: [If the sender is already open, the function shall do nothing.]
     @Test
-    public void send_initializes_Reactor() throws Exception
+    public void open_initializes_Reactor_once() throws Exception
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String deviceId = "deviceId";
-        String content = "abcdefghijklmnopqrst";
-        Message message = new Message(content);
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+
+        // Act
+        amqpSend.open();
         amqpSend.open();
+        amqpSend.close();
+
         // Assert
-        new Expectations()
+        new Verifications()
         {
             {
-                reactor = proton.reactor(amqpSend);
-                reactor.run();
+                Proton.reactor(amqpSend);
+                times = 1;
+                reactor.start();
+                times = 1;
+                reactor.process();
+                minTimes = 1;
+                reactor.free();
+                times = 1;
             }
         };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [The function shall call sendAsync and wait for the message to be settled, and throw the exception it was completed with, if any]
+    @Test (expected = IotHubException.class)
+    public void send_throws_exception_the_message_was_rejected_with() throws Exception
+    {
+        // Arrange
+        String deviceId = "deviceId";
+        Message message = new Message("abcdefghijklmnopqrst");
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        new MockUp<AmqpSendHandler>()
+        {
+            @Mock
+            CompletableFuture<Void> createProtonMessage(String deviceId, Message message)
+            {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(new IotHubException("rejected"));
+                return future;
+            }
+        };
+        amqpSend.open();
+
         // Act
         amqpSend.send(deviceId, message);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The event handler shall throw IOException if the send handler object is not initialized]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [The function shall call sendAsync and wait for the message to be settled, and throw the exception it was completed with, if any]
+    @Test
+    public void send_returns_when_message_is_settled() throws Exception
+    {
+        // Arrange
+        String deviceId = "deviceId";
+        Message message = new Message("abcdefghijklmnopqrst");
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        new MockUp<AmqpSendHandler>()
+        {
+            @Mock
+            CompletableFuture<Void> createProtonMessage(String deviceId, Message message)
+            {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        amqpSend.open();
+
+        // Act
+        amqpSend.send(deviceId, message);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The function shall complete the future with IOException if the send handler object is not initialized]
     // Assert
     @Test (expected = IOException.class)
     public void send_throwsIOException_when_open_has_not_been_called() throws Exception
@@ -294,4 +368,82 @@ public class AmqpSendTest
         // Act
         amqpSend.send(deviceId, message);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The function shall complete the future with IOException if the send handler object is not initialized]
+    @Test
+    public void sendAsync_fails_future_when_open_has_not_been_called() throws Exception
+    {
+        // Arrange
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        CompletableFuture<Void> future = amqpSend.sendAsync("deviceId", new Message("abc"));
+
+        // Assert
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_016: [The function shall throw IllegalArgumentException if the batch is null or empty.]
+    @Test (expected = IllegalArgumentException.class)
+    public void sendBatchAsync_throws_on_empty_batch() throws Exception
+    {
+        // Arrange
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        amqpSend.sendBatchAsync(new ArrayList<>());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_017: [If the send handler object is not initialized, the function shall complete all the futures with IOException.]
+    @Test
+    public void sendBatchAsync_fails_futures_when_open_has_not_been_called() throws Exception
+    {
+        // Arrange
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        List<Map.Entry<String, Message>> batch = new ArrayList<>();
+        batch.add(new AbstractMap.SimpleEntry<>("device1", new Message("abc")));
+        batch.add(new AbstractMap.SimpleEntry<>("device2", new Message("def")));
+
+        // Act
+        List<CompletableFuture<Void>> futures = amqpSend.sendBatchAsync(batch);
+
+        // Assert
+        assertEquals(2, futures.size());
+        assertTrue(futures.get(0).isCompletedExceptionally());
+        assertTrue(futures.get(1).isCompletedExceptionally());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_018: [The function shall create all the binary messages, queue them, and wake up the reactor thread once.]
+    @Test
+    public void sendBatchAsync_queues_batch_and_wakes_up_reactor_once() throws Exception
+    {
+        // Arrange
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        List<Map.Entry<String, Message>> batch = new ArrayList<>();
+        batch.add(new AbstractMap.SimpleEntry<>("device1", new Message("abc")));
+        batch.add(new AbstractMap.SimpleEntry<>("device2", new Message("def")));
+        amqpSend.open();
+        AmqpSendHandler handler = Deencapsulation.getField(amqpSend, "amqpSendHandler");
+        final List<CompletableFuture<Void>> handlerFutures = new ArrayList<>();
+        new NonStrictExpectations(handler)
+        {
+            {
+                handler.createProtonMessages(batch);
+                result = handlerFutures;
+            }
+        };
+
+        // Act
+        List<CompletableFuture<Void>> futures = amqpSend.sendBatchAsync(batch);
+
+        // Assert
+        assertSame(handlerFutures, futures);
+        new Verifications()
+        {
+            {
+                reactor.wakeup();
+                times = 1;
+            }
+        };
+    }
 }
@@ -15,7 +15,9 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -520,6 +522,71 @@ public class HttpsRequestTest
         assertThat(testStatus, is(expectedStatus));
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_001: [The function shall send the request and return the HTTP response with the status code, header fields, and error reason (if any), leaving the body unread in the response body stream.]
+    @Test
+    public void sendStreamedReturnsBodyStreamWithoutReadingIt(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] requestBody = new byte[0];
+        final int status = 200;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.getResponseStatus();
+                result = status;
+                mockConn.readInputAsStream();
+                result = bodyStream;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, requestBody);
+        // Act
+        HttpResponse response = request.sendStreamed();
+        // Assert
+        assertThat(response.getStatus(), is(status));
+        assertThat(response.getBodyStream(), is(bodyStream));
+        assertThat(bodyStream.available(), is(3));
+        assertThat(response.getBody().length, is(0));
+        new Verifications()
+        {
+            {
+                mockConn.readInput();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_001: [The function shall send the request and return the HTTP response with the status code, header fields, and error reason (if any), leaving the body unread in the response body stream.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_12_008: [If an I/O exception occurs because of a bad response status code, the function shall attempt to flush or read the error stream so that the underlying HTTPS connection can be reused.]
+    @Test
+    public void sendStreamedReturnsErrorWithoutBodyStream(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] body = new byte[0];
+        final byte[] error = { 5, 6, 7, 0, 1 };
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.connect();
+                result = new IOException();
+                mockConn.readError();
+                result = error;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        // Act
+        HttpResponse response = request.sendStreamed();
+        // Assert
+        assertThat(response.getErrorReason(), is(error));
+        assertThat(response.getBodyStream() == null, is(true));
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_12_007: [If the client cannot connect to the server, the function shall throw an IOException.]
     // Assert
     @Test(expected = IOException.class)
@@ -10,6 +10,8 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -144,4 +146,38 @@ public class HttpsResponseTest
         // Assert
         assertThat(testErrorReason, is(expectedErrorReason));
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSE_21_001: [The constructor shall store the input arguments so that the getters can return them later, and the body shall be empty.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSE_21_002: [The function shall return the body stream given in the constructor, or null if the response was created with the body.]
+    @Test
+    public void getBodyStreamReturnsBodyStream()
+    {
+        // Arrange
+        final int status = 200;
+        final InputStream bodyStream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        final List<String> values = new LinkedList<>();
+        values.add("twin");
+        headerFields.put("x-ms-item-type", values);
+        byte[] errorReason = {};
+        // Act
+        HttpResponse response = new HttpResponse(status, bodyStream, headerFields, errorReason);
+        // Assert
+        assertThat(response.getBodyStream(), is(bodyStream));
+        assertThat(response.getBody().length, is(0));
+        assertThat(response.getStatus(), is(status));
+        assertThat(response.getHeaderField("X-MS-ITEM-TYPE"), is("twin"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSE_21_002: [The function shall return the body stream given in the constructor, or null if the response was created with the body.]
+    @Test
+    public void getBodyStreamReturnsNullIfCreatedWithBody()
+    {
+        // Arrange
+        final byte[] body = { 1, 2, 3, 4 };
+        // Act
+        HttpResponse response = new HttpResponse(200, body, new HashMap<String, List<String>>(), new byte[0]);
+        // Assert
+        assertThat(response.getBodyStream() == null, is(true));
+    }
 }